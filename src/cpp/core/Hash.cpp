@@ -17,7 +17,10 @@
 
 #include <sstream>
 
+#include <iomanip>
+
 #include <boost/crc.hpp>
+#include <boost/uuid/sha1.hpp>
 #include <boost/lexical_cast.hpp>
 
 #include <core/SafeConvert.hpp>
@@ -44,6 +47,20 @@ std::string crc32HexHash(const std::string& content)
    output << std::uppercase << std::hex << result.checksum();
    return output.str();
 }
+
+std::string sha1HexHash(const std::string& content)
+{
+   boost::uuids::detail::sha1 sha1;
+   sha1.process_bytes(content.data(), content.length());
+   unsigned int digest[5];
+   sha1.get_digest(digest);
+
+   std::ostringstream output;
+   output << std::hex << std::setfill('0');
+   for (int i = 0; i < 5; i++)
+      output << std::setw(8) << digest[i];
+   return output.str();
+}
    
 } // namespace hash
 } // namespace core 
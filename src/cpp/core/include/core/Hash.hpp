@@ -26,6 +26,9 @@ std::string crc32Hash(const std::string& content);
 
 std::string crc32HexHash(const std::string& content);
 
+// lowercase hex SHA-1 digest of the content
+std::string sha1HexHash(const std::string& content);
+
 } // namespace hash
 } // namespace core 
 } // namespace rstudio
@@ -99,6 +99,7 @@ extern "C" const char *locale2charset(const char *);
 
 #include "SessionClientEventQueue.hpp"
 #include "SessionClientEventService.hpp"
+#include "SessionRpcBatch.hpp"
 
 #include <session/SessionRUtil.hpp>
 
@@ -238,6 +239,7 @@ const char * const kHandleUnsavedChangesCompleted = "handle_unsaved_changes_comp
 const char * const kQuitSession = "quit_session" ;   
 const char * const kSuspendSession = "suspend_session";
 const char * const kInterrupt = "interrupt";
+const char * const kRpcBatch = "rpc_batch";
 
 // convenience function for disallowing suspend (note still doesn't override
 // the presence of s_forceSuspend = 1)
@@ -797,6 +799,71 @@ void handleRpcRequest(const core::json::JsonRpcRequest& request,
 
 }
 
+void endHandleRpcBatch(boost::shared_ptr<HttpConnection> ptrConnection,
+                       boost::posix_time::ptime executeStartTime,
+                       std::vector<json::JsonRpcResponse>* pResponses)
+{
+   // are there (or will there likely be) events pending?
+   bool eventsAdded = clientEventQueue().eventAddedSince(executeStartTime);
+
+   bool hasAfterResponse = false;
+   json::Array results;
+   BOOST_FOREACH(json::JsonRpcResponse& response, *pResponses)
+   {
+      if (response.hasAfterResponse())
+         hasAfterResponse = true;
+      else if (!eventsAdded)
+         response.setField(kEventsPending, "false");
+
+      results.push_back(response.getRawResponse());
+   }
+
+   json::JsonRpcResponse batchResponse;
+   batchResponse.setResult(results);
+   if (!eventsAdded && !hasAfterResponse)
+      batchResponse.setField(kEventsPending, "false");
+   ptrConnection->sendJsonRpcResponse(batchResponse);
+
+   // run after response functions (then detect changes again)
+   if (hasAfterResponse)
+   {
+      BOOST_FOREACH(json::JsonRpcResponse& response, *pResponses)
+      {
+         if (response.hasAfterResponse())
+            response.runAfterResponse();
+      }
+      detectChanges(module_context::ChangeSourceRPC);
+   }
+}
+
+void endHandleRpcBatchRequest(json::JsonRpcResponse* pJsonRpcResponse)
+{
+   // allow modules to detect changes after rpc calls
+   if (!pJsonRpcResponse->suppressDetectChanges())
+      detectChanges(module_context::ChangeSourceRPC);
+}
+
+void handleRpcBatch(const core::json::JsonRpcRequest& request,
+                    boost::shared_ptr<HttpConnection> ptrConnection)
+{
+   boost::posix_time::ptime executeStartTime =
+                  boost::posix_time::microsec_clock::universal_time();
+
+   // the batch response is sent once every request in the batch has
+   // completed
+   Error error = rpc_batch::executeBatch(
+                        request,
+                        s_jsonRpcMethods,
+                        endHandleRpcBatchRequest,
+                        endHandleRpcRequestIndirect,
+                        boost::bind(endHandleRpcBatch,
+                                    ptrConnection,
+                                    executeStartTime,
+                                    _1));
+   if (error)
+      ptrConnection->sendJsonRpcError(error);
+}
+
 bool isMethod(const std::string& uri, const std::string& method)
 {
    return boost::algorithm::ends_with(uri, method);
@@ -1043,6 +1110,14 @@ void handleConnection(boost::shared_ptr<HttpConnection> ptrConnection,
                rstudio::r::exec::setInterruptsPending(true);
          }
 
+         // batch of rpc methods
+         else if (jsonRpcRequest.method == kRpcBatch)
+         {
+            jsonRpcRequest.isBackgroundConnection =
+                  (connectionType == BackgroundConnection);
+            handleRpcBatch(jsonRpcRequest, ptrConnection);
+         }
+
          // other rpc method, handle it
          else
          {
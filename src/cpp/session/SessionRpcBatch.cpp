@@ -0,0 +1,170 @@
+/*
+ * SessionRpcBatch.cpp
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+
+#include "SessionRpcBatch.hpp"
+
+#include <boost/bind.hpp>
+#include <boost/shared_ptr.hpp>
+
+#include <core/Error.hpp>
+#include <core/Log.hpp>
+#include <core/system/System.hpp>
+
+using namespace rstudio::core;
+
+namespace rstudio {
+namespace session {
+namespace rpc_batch {
+
+namespace {
+
+// state for a batch of json-rpc requests sent in a single http request
+// (the client uses these to avoid a round trip per request for bursts of
+// small requests)
+struct Batch
+{
+   std::vector<json::JsonRpcResponse> responses;
+   std::size_t pending;
+   RequestCompletedFunction onRequestCompleted;
+   BatchCompletedFunction onCompleted;
+};
+
+void endRequest(boost::shared_ptr<Batch> pBatch,
+                std::size_t index,
+                const Error& executeError,
+                json::JsonRpcResponse* pJsonRpcResponse)
+{
+   if (executeError)
+   {
+      pBatch->responses[index].setError(executeError);
+   }
+   else
+   {
+      pBatch->responses[index] = *pJsonRpcResponse;
+      pBatch->onRequestCompleted(&pBatch->responses[index]);
+   }
+
+   if (--pBatch->pending == 0)
+      pBatch->onCompleted(&pBatch->responses);
+}
+
+Error readRequest(const json::Value& value, json::JsonRpcRequest* pRequest)
+{
+   if (value.type() != json::ObjectType)
+      return Error(json::errc::InvalidRequest, ERROR_LOCATION);
+
+   const json::Object& object = value.get_obj();
+
+   json::Object::const_iterator it = object.find("method");
+   if (it == object.end() || it->second.type() != json::StringType)
+      return Error(json::errc::InvalidRequest, ERROR_LOCATION);
+   pRequest->method = it->second.get_str();
+
+   it = object.find("params");
+   if (it != object.end())
+   {
+      if (it->second.type() != json::ArrayType)
+         return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+      pRequest->params = it->second.get_array();
+   }
+
+   it = object.find("kwparams");
+   if (it != object.end())
+   {
+      if (it->second.type() != json::ObjectType)
+         return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+      pRequest->kwparams = it->second.get_obj();
+   }
+
+   return Success();
+}
+
+} // anonymous namespace
+
+Error executeBatch(const json::JsonRpcRequest& request,
+                   const json::JsonRpcAsyncMethods& methods,
+                   const RequestCompletedFunction& onRequestCompleted,
+                   const IndirectCompletedFunction& onIndirectCompleted,
+                   const BatchCompletedFunction& onCompleted)
+{
+   json::Array requests;
+   Error error = json::readParams(request.params, &requests);
+   if (error)
+      return error;
+
+   boost::shared_ptr<Batch> pBatch(new Batch());
+   pBatch->responses.resize(requests.size());
+   pBatch->pending = requests.size();
+   pBatch->onRequestCompleted = onRequestCompleted;
+   pBatch->onCompleted = onCompleted;
+   if (requests.empty())
+   {
+      onCompleted(&pBatch->responses);
+      return Success();
+   }
+
+   for (std::size_t i = 0; i < requests.size(); i++)
+   {
+      // requests in the batch share the client id, version, etc. of the
+      // batch itself
+      json::JsonRpcRequest batchRequest = request;
+      batchRequest.clear();
+      error = readRequest(requests[i], &batchRequest);
+      if (error)
+      {
+         endRequest(pBatch, i, error, NULL);
+         continue;
+      }
+
+      json::JsonRpcAsyncMethods::const_iterator it =
+                                 methods.find(batchRequest.method);
+      if (it == methods.end())
+      {
+         Error executeError = Error(json::errc::MethodNotFound,
+                                    ERROR_LOCATION);
+         executeError.addProperty("method", batchRequest.method);
+         LOG_ERROR(executeError);
+         endRequest(pBatch, i, executeError, NULL);
+         continue;
+      }
+
+      std::pair<bool, json::JsonRpcAsyncFunction> reg = it->second;
+      json::JsonRpcAsyncFunction handlerFunction = reg.second;
+      if (reg.first)
+      {
+         // direct return
+         handlerFunction(batchRequest,
+                         boost::bind(endRequest, pBatch, i, _1, _2));
+      }
+      else
+      {
+         // indirect return (asyncHandle style)
+         std::string handle = core::system::generateUuid(true);
+         json::JsonRpcResponse response;
+         response.setAsyncHandle(handle);
+         response.setSuppressDetectChanges(true);
+         endRequest(pBatch, i, Success(), &response);
+
+         handlerFunction(batchRequest,
+                         boost::bind(onIndirectCompleted, handle, _1, _2));
+      }
+   }
+
+   return Success();
+}
+
+} // namespace rpc_batch
+} // namespace session
+} // namespace rstudio
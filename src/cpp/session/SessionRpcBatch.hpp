@@ -0,0 +1,61 @@
+/*
+ * SessionRpcBatch.hpp
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+
+#ifndef SESSION_SESSION_RPC_BATCH_HPP
+#define SESSION_SESSION_RPC_BATCH_HPP
+
+#include <string>
+#include <vector>
+
+#include <boost/function.hpp>
+
+#include <core/json/JsonRpc.hpp>
+
+namespace rstudio {
+namespace session {
+namespace rpc_batch {
+
+// called when a request in a batch that returns directly has completed
+typedef boost::function<void(core::json::JsonRpcResponse*)>
+      RequestCompletedFunction;
+
+// called when a request in a batch that was given an async handle has
+// completed (as for a request sent on its own)
+typedef boost::function<void(const std::string&,
+                             const core::Error&,
+                             core::json::JsonRpcResponse*)>
+      IndirectCompletedFunction;
+
+// called with the responses to the requests in a batch, in order, once
+// every request that returns directly has completed
+typedef boost::function<void(std::vector<core::json::JsonRpcResponse>*)>
+      BatchCompletedFunction;
+
+// executes the requests of an rpc_batch request (whose only param is the
+// array of requests, each { method, params, kwparams }) through the given
+// methods. an error in one request is that request's response alone; an
+// error is returned (and no request executed) only if the batch itself is
+// invalid
+core::Error executeBatch(const core::json::JsonRpcRequest& request,
+                         const core::json::JsonRpcAsyncMethods& methods,
+                         const RequestCompletedFunction& onRequestCompleted,
+                         const IndirectCompletedFunction& onIndirectCompleted,
+                         const BatchCompletedFunction& onCompleted);
+
+} // namespace rpc_batch
+} // namespace session
+} // namespace rstudio
+
+#endif // SESSION_SESSION_RPC_BATCH_HPP
@@ -0,0 +1,255 @@
+/*
+ * SessionRpcBatchTests.cpp
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+
+#include <tests/TestThat.hpp>
+
+#include "SessionRpcBatch.hpp"
+
+#include <boost/bind.hpp>
+
+#include <core/Error.hpp>
+
+namespace rstudio {
+namespace session {
+namespace rpc_batch {
+
+using namespace core;
+
+namespace {
+
+// stand-in handlers for the methods a batch may contain
+
+void echo(const json::JsonRpcRequest& request,
+          const json::JsonRpcFunctionContinuation& continuation)
+{
+   json::JsonRpcResponse response;
+   response.setResult(request.params);
+   continuation(Success(), &response);
+}
+
+void fail(const json::JsonRpcRequest& request,
+          const json::JsonRpcFunctionContinuation& continuation)
+{
+   continuation(Error(json::errc::ParamInvalid, ERROR_LOCATION), NULL);
+}
+
+// continuations of "later" requests, completed by the test
+std::vector<json::JsonRpcFunctionContinuation> s_later;
+
+void later(const json::JsonRpcRequest& request,
+           const json::JsonRpcFunctionContinuation& continuation)
+{
+   s_later.push_back(continuation);
+}
+
+json::JsonRpcAsyncMethods standInMethods()
+{
+   json::JsonRpcAsyncMethods methods;
+   methods["echo"] = std::make_pair(true, json::JsonRpcAsyncFunction(echo));
+   methods["fail"] = std::make_pair(true, json::JsonRpcAsyncFunction(fail));
+   methods["later"] = std::make_pair(true, json::JsonRpcAsyncFunction(later));
+   methods["async"] = std::make_pair(false, json::JsonRpcAsyncFunction(echo));
+   return methods;
+}
+
+// records what the batch reported
+struct BatchResults
+{
+   BatchResults() : requestsCompleted(0), batchesCompleted(0) {}
+
+   void onRequestCompleted(json::JsonRpcResponse* pResponse)
+   {
+      requestsCompleted++;
+   }
+
+   void onIndirectCompleted(const std::string& handle,
+                            const Error& error,
+                            json::JsonRpcResponse* pResponse)
+   {
+      indirectHandles.push_back(handle);
+   }
+
+   void onCompleted(std::vector<json::JsonRpcResponse>* pResponses)
+   {
+      batchesCompleted++;
+      responses.clear();
+      for (std::size_t i = 0; i < pResponses->size(); i++)
+         responses.push_back((*pResponses)[i].getRawResponse());
+   }
+
+   int requestsCompleted;
+   int batchesCompleted;
+   std::vector<std::string> indirectHandles;
+   std::vector<json::Object> responses;
+};
+
+json::Value batchEntry(const std::string& method, int param)
+{
+   json::Object entry;
+   entry["method"] = method;
+   json::Array params;
+   params.push_back(param);
+   entry["params"] = params;
+   return entry;
+}
+
+Error execute(const json::Array& requests, BatchResults* pResults)
+{
+   json::JsonRpcRequest request;
+   request.method = "rpc_batch";
+   request.params.push_back(requests);
+
+   return executeBatch(
+            request,
+            standInMethods(),
+            boost::bind(&BatchResults::onRequestCompleted, pResults, _1),
+            boost::bind(&BatchResults::onIndirectCompleted,
+                        pResults, _1, _2, _3),
+            boost::bind(&BatchResults::onCompleted, pResults, _1));
+}
+
+bool hasError(json::Object& response)
+{
+   return response.find(json::kRpcError) != response.end();
+}
+
+int resultParam(json::Object& response)
+{
+   return response[json::kRpcResult].get_array()[0].get_int();
+}
+
+} // anonymous namespace
+
+context("RpcBatch")
+{
+   test_that("responses are returned in request order")
+   {
+      json::Array requests;
+      requests.push_back(batchEntry("echo", 1));
+      requests.push_back(batchEntry("echo", 2));
+      requests.push_back(batchEntry("echo", 3));
+
+      BatchResults results;
+      expect_false(execute(requests, &results));
+      expect_true(results.batchesCompleted == 1);
+      expect_true(results.requestsCompleted == 3);
+      expect_true(results.responses.size() == 3);
+      for (int i = 0; i < 3; i++)
+      {
+         expect_false(hasError(results.responses[i]));
+         expect_true(resultParam(results.responses[i]) == i + 1);
+      }
+   }
+
+   test_that("an error is the failed request's response alone")
+   {
+      json::Array requests;
+      requests.push_back(batchEntry("echo", 1));
+      requests.push_back(batchEntry("fail", 2));
+      requests.push_back(batchEntry("missing", 3));
+      requests.push_back(json::Value("not a request"));
+      requests.push_back(batchEntry("echo", 5));
+
+      BatchResults results;
+      expect_false(execute(requests, &results));
+      expect_true(results.batchesCompleted == 1);
+      expect_true(results.responses.size() == 5);
+      expect_false(hasError(results.responses[0]));
+      expect_true(hasError(results.responses[1]));
+      expect_true(hasError(results.responses[2]));
+      expect_true(hasError(results.responses[3]));
+      expect_false(hasError(results.responses[4]));
+      expect_true(resultParam(results.responses[4]) == 5);
+   }
+
+   test_that("the batch completes when its last request completes")
+   {
+      s_later.clear();
+
+      json::Array requests;
+      requests.push_back(batchEntry("later", 1));
+      requests.push_back(batchEntry("echo", 2));
+      requests.push_back(batchEntry("later", 3));
+
+      BatchResults results;
+      expect_false(execute(requests, &results));
+      expect_true(s_later.size() == 2);
+      expect_true(results.batchesCompleted == 0);
+
+      // complete out of order
+      json::JsonRpcResponse response;
+      response.setResult(3);
+      s_later[1](Success(), &response);
+      expect_true(results.batchesCompleted == 0);
+
+      response.setResult(1);
+      s_later[0](Success(), &response);
+      expect_true(results.batchesCompleted == 1);
+      expect_true(results.responses[0][json::kRpcResult].get_int() == 1);
+      expect_true(resultParam(results.responses[1]) == 2);
+      expect_true(results.responses[2][json::kRpcResult].get_int() == 3);
+
+      s_later.clear();
+   }
+
+   test_that("indirect requests return their async handles")
+   {
+      json::Array requests;
+      requests.push_back(batchEntry("async", 1));
+      requests.push_back(batchEntry("echo", 2));
+
+      BatchResults results;
+      expect_false(execute(requests, &results));
+      expect_true(results.batchesCompleted == 1);
+      expect_true(results.indirectHandles.size() == 1);
+
+      json::Object::iterator it =
+                     results.responses[0].find("asyncHandle");
+      expect_true(it != results.responses[0].end());
+      expect_true(it->second.get_str() == results.indirectHandles[0]);
+      expect_true(resultParam(results.responses[1]) == 2);
+   }
+
+   test_that("an empty batch completes immediately")
+   {
+      BatchResults results;
+      expect_false(execute(json::Array(), &results));
+      expect_true(results.batchesCompleted == 1);
+      expect_true(results.responses.empty());
+   }
+
+   test_that("an invalid batch executes nothing")
+   {
+      json::JsonRpcRequest request;
+      request.method = "rpc_batch";
+      request.params.push_back(json::Value("not an array"));
+
+      BatchResults results;
+      Error error = executeBatch(
+               request,
+               standInMethods(),
+               boost::bind(&BatchResults::onRequestCompleted, &results, _1),
+               boost::bind(&BatchResults::onIndirectCompleted,
+                           &results, _1, _2, _3),
+               boost::bind(&BatchResults::onCompleted, &results, _1));
+      expect_true(error);
+      expect_true(results.batchesCompleted == 0);
+      expect_true(results.requestsCompleted == 0);
+   }
+}
+
+} // namespace rpc_batch
+} // namespace session
+} // namespace rstudio
@@ -30,6 +30,7 @@
 #include <core/Exec.hpp>
 #include <core/Error.hpp>
 #include <core/FileSerializer.hpp>
+#include <core/Hash.hpp>
 
 #include <session/SessionRUtil.hpp>
 #include <session/SessionUserSettings.hpp>
@@ -597,8 +598,8 @@ void applyOptions(const FileLocalLintOptions& fileOptions,
 
 const char * const kLintComment = "(?:^|\\n)#+\\s+\\!diagnostics";
 
-void setFileLocalParseOptions(const std::wstring& rCode,
-                              ParseOptions* pOptions,
+void readFileLocalLintOptions(const std::wstring& rCode,
+                              FileLocalLintOptions* pOptions,
                               bool* pNoLint)
 {
    using namespace string_utils;
@@ -626,18 +627,121 @@ void setFileLocalParseOptions(const std::wstring& rCode,
       start = match[0].second;
    }
    
-   FileLocalLintOptions options = parseLintOptions(lintCommands);
-   applyOptions(options, pOptions);
+   *pOptions = parseLintOptions(lintCommands);
 }
 
-} // end anonymous namespace
+void setFileLocalParseOptions(const std::wstring& rCode,
+                              ParseOptions* pOptions,
+                              bool* pNoLint)
+{
+   FileLocalLintOptions options;
+   readFileLocalLintOptions(rCode, &options, pNoLint);
+   if (!*pNoLint)
+      applyOptions(options, pOptions);
+}
 
-ParseResults parse(const std::wstring& rCode,
-                   const FilePath& origin,
-                   const std::string& documentId = std::string(),
-                   bool isExplicit = false)
+// The document-wide state needed to lint a region of a document on its own:
+// the file-local lint options, and the symbols defined at the top level of
+// the document (which a region may refer to). Recorded by each full lint of
+// the document, along with the client's contents that were linted (so that
+// the client can send only its changes to them next time).
+struct DocumentLintContext
+{
+   DocumentLintContext()
+      : noLint(false), hasContents(false)
+   {}
+   
+   FileLocalLintOptions fileOptions;
+   bool noLint;
+   std::set<std::string> topLevelSymbols;
+   bool hasContents;
+   std::string contents;
+};
+
+std::map<std::string, DocumentLintContext> s_documentLintContexts;
+
+// pContents is the client's copy of the contents linted, or NULL if the
+// saved contents were linted
+void updateDocumentLintContext(const std::string& documentId,
+                               const std::string* pContents,
+                               const std::wstring& rCode,
+                               const ParseResults& results)
+{
+   DocumentLintContext context;
+   readFileLocalLintOptions(rCode, &context.fileOptions, &context.noLint);
+   
+   if (pContents)
+   {
+      context.hasContents = true;
+      context.contents = *pContents;
+   }
+   
+   const ParseNode* pRoot = results.parseTree();
+   if (pRoot)
+   {
+      BOOST_FOREACH(const std::string& symbol,
+                    pRoot->getDefinedSymbols() | boost::adaptors::map_keys)
+      {
+         context.topLevelSymbols.insert(symbol);
+      }
+   }
+   
+   s_documentLintContexts[documentId] = context;
+}
+
+void onDocRemoved(const std::string& documentId)
+{
+   s_documentLintContexts.erase(documentId);
+}
+
+void onRemoveAll()
+{
+   s_documentLintContexts.clear();
+}
+
+// Applies a change sent by the client, { start, end, text, hash }, to the
+// contents recorded for the document: the bytes [start, end) are replaced
+// with text, and the result must have the given CRC-32. Returns false if the
+// contents the change was made to aren't the ones recorded (e.g. the session
+// has been restarted since), in which case the client sends them in full.
+bool applyContentsDelta(const std::string& documentId,
+                        const json::Object& deltaJson,
+                        std::string* pContents)
+{
+   int start = 0;
+   int end = 0;
+   std::string text;
+   std::string expectedHash;
+   Error error = json::readObject(deltaJson,
+                                  "start", &start,
+                                  "end", &end,
+                                  "text", &text,
+                                  "hash", &expectedHash);
+   if (error)
+   {
+      LOG_ERROR(error);
+      return false;
+   }
+   
+   std::map<std::string, DocumentLintContext>::const_iterator it =
+         s_documentLintContexts.find(documentId);
+   if (it == s_documentLintContexts.end() || !it->second.hasContents)
+      return false;
+   
+   const std::string& base = it->second.contents;
+   if (start < 0 || start > end || static_cast<std::size_t>(end) > base.size())
+      return false;
+   
+   std::string contents = base.substr(0, start) + text + base.substr(end);
+   if (hash::crc32Hash(contents) != expectedHash)
+      return false;
+   
+   *pContents = contents;
+   return true;
+}
+
+ParseOptions lintParseOptions(bool isExplicit)
 {
-   ParseResults results;
    ParseOptions options;
    
    options.setLintRFunctions(
@@ -655,12 +759,17 @@ ParseResults parse(const std::wstring& rCode,
    options.setRecordStyleLint(
             userSettings().enableStyleDiagnostics());
    
-   bool noLint = false;
-   setFileLocalParseOptions(rCode, &options, &noLint);
-   if (noLint)
-      return ParseResults();
-   
-   results = rparser::parse(origin, rCode, options);
+   return options;
+}
+
+} // end anonymous namespace
+
+ParseResults parse(const std::wstring& rCode,
+                   const FilePath& origin,
+                   const std::string& documentId,
+                   const ParseOptions& options)
+{
+   ParseResults results = rparser::parse(origin, rCode, options);
    
    ParseNode* pRoot = results.parseTree();
    if (!pRoot)
@@ -688,6 +797,21 @@ ParseResults parse(const std::wstring& rCode,
    return results;
 }
 
+ParseResults parse(const std::wstring& rCode,
+                   const FilePath& origin,
+                   const std::string& documentId = std::string(),
+                   bool isExplicit = false)
+{
+   ParseOptions options = lintParseOptions(isExplicit);
+   
+   bool noLint = false;
+   setFileLocalParseOptions(rCode, &options, &noLint);
+   if (noLint)
+      return ParseResults();
+   
+   return parse(rCode, origin, documentId, options);
+}
+
 ParseResults parse(const std::string& rCode,
                    const FilePath& origin,
                    const std::string& documentId)
@@ -697,26 +821,32 @@ ParseResults parse(const std::string& rCode,
 
 namespace {
 
-json::Array lintAsJson(const LintItems& items)
+void appendLintAsJson(const LintItems& items,
+                      int rowOffset,
+                      json::Array* pArray)
 {
-   json::Array jsonArray;
-   jsonArray.reserve(items.size());
-   
    BOOST_FOREACH(const LintItem& item, items)
    {
       json::Object jsonObject;
       
-      jsonObject["start.row"] = item.startRow;
-      jsonObject["end.row"] = item.endRow;
+      jsonObject["start.row"] = item.startRow + rowOffset;
+      jsonObject["end.row"] = item.endRow + rowOffset;
       jsonObject["start.column"] = item.startColumn;
       jsonObject["end.column"] = item.endColumn;
       jsonObject["text"] = item.message;
       jsonObject["raw"] = item.message;
       jsonObject["type"] = lintTypeToString(item.type);
       
-      jsonArray.push_back(jsonObject);
+      pArray->push_back(jsonObject);
       
    }
+}
+
+json::Array lintAsJson(const LintItems& items)
+{
+   json::Array jsonArray;
+   jsonArray.reserve(items.size());
+   appendLintAsJson(items, 0, &jsonArray);
    return jsonArray;
 }
 
@@ -777,11 +907,13 @@ Error lintRSourceDocument(const json::JsonRpcRequest& request,
    std::string documentPath;
    bool showMarkersTab = false;
    bool isExplicit = false;
+   json::Value contentsJson;
    Error error = json::readParams(request.params,
                                   &documentId,
                                   &documentPath,
                                   &showMarkersTab,
-                                  &isExplicit);
+                                  &isExplicit,
+                                  &contentsJson);
    
    if (error)
    {
@@ -805,18 +937,48 @@ Error lintRSourceDocument(const json::JsonRpcRequest& request,
    if (module_context::isUnmonitoredPackageSourceFile(origin))
       return Success();
    
+   // Lint the client's copy of the contents if it sent one (so that it
+   // needn't save the document first), or a change to the copy it sent
+   // last, or else the saved contents
+   std::string contents;
+   bool clientContents = true;
+   if (json::isType<std::string>(contentsJson))
+   {
+      contents = contentsJson.get_str();
+   }
+   else if (json::isType<json::Object>(contentsJson))
+   {
+      if (!applyContentsDelta(documentId, contentsJson.get_obj(), &contents))
+      {
+         // tell the client we don't have its contents
+         pResponse->setResult(json::Value());
+         return Success();
+      }
+   }
+   else
+   {
+      contents = pDoc->contents();
+      clientContents = false;
+   }
+   
    // Extract R code from various R-code-containing filetypes.
    std::string content;
-   error = r_utils::extractRCode(pDoc->contents(), pDoc->type(), &content);
+   error = r_utils::extractRCode(contents, pDoc->type(), &content);
    if (error)
       return error;
    
+   std::wstring rCode = string_utils::utf8ToWide(content);
    ParseResults results = diagnostics::parse(
-            string_utils::utf8ToWide(content),
+            rCode,
             origin,
             documentId,
             isExplicit);
    
+   updateDocumentLintContext(documentId,
+                             clientContents ? &contents : NULL,
+                             rCode,
+                             results);
+   
    pResponse->setResult(lintAsJson(results.lint()));
    
    if (showMarkersTab)
@@ -830,6 +992,94 @@ Error lintRSourceDocument(const json::JsonRpcRequest& request,
    return Success();
 }
 
+// Lints regions of an R script given as (start row, code) pairs, each on its
+// own, using the context recorded by the last full lint of the document.
+// The rows of the lint returned are document rows. If a region defines a
+// top level symbol the context doesn't have (so that lint of the rest of the
+// document may have changed) the result is null, as it is without a context,
+// and the client lints the whole document.
+Error lintRSourceRegions(const json::JsonRpcRequest& request,
+                         json::JsonRpcResponse* pResponse)
+{
+   pResponse->setResult(json::Array());
+   
+   std::string documentId;
+   std::string documentPath;
+   json::Array rowsJson;
+   json::Array codeJson;
+   Error error = json::readParams(request.params,
+                                  &documentId,
+                                  &documentPath,
+                                  &rowsJson,
+                                  &codeJson);
+   if (error)
+   {
+      LOG_ERROR(error);
+      return error;
+   }
+   
+   if (rowsJson.size() != codeJson.size())
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+   
+   FilePath origin = module_context::resolveAliasedPath(documentPath);
+   if (module_context::isUnmonitoredPackageSourceFile(origin))
+      return Success();
+   
+   // without the context (e.g. the session has been restarted since the
+   // last full lint), tell the client to lint the whole document again
+   std::map<std::string, DocumentLintContext>::const_iterator it =
+         s_documentLintContexts.find(documentId);
+   if (it == s_documentLintContexts.end())
+   {
+      pResponse->setResult(json::Value());
+      return Success();
+   }
+   
+   const DocumentLintContext& context = it->second;
+   if (context.noLint)
+      return Success();
+   
+   ParseOptions options = lintParseOptions(false);
+   applyOptions(context.fileOptions, &options);
+   options.globals().insert(context.topLevelSymbols.begin(),
+                            context.topLevelSymbols.end());
+   
+   json::Array lintJson;
+   for (std::size_t i = 0; i < rowsJson.size(); ++i)
+   {
+      if (!json::isType<int>(rowsJson[i]) ||
+          !json::isType<std::string>(codeJson[i]))
+      {
+         return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+      }
+      
+      ParseResults results = diagnostics::parse(
+               string_utils::utf8ToWide(codeJson[i].get_str()),
+               origin,
+               documentId,
+               options);
+      
+      const ParseNode* pRoot = results.parseTree();
+      if (pRoot)
+      {
+         BOOST_FOREACH(const std::string& symbol,
+                       pRoot->getDefinedSymbols() | boost::adaptors::map_keys)
+         {
+            if (!context.topLevelSymbols.count(symbol))
+            {
+               pResponse->setResult(json::Value());
+               return Success();
+            }
+         }
+      }
+      
+      appendLintAsJson(results.lint(), rowsJson[i].get_int(), &lintJson);
+   }
+   
+   pResponse->setResult(lintJson);
+   return Success();
+}
+
 SEXP rs_lintRFile(SEXP filePathSEXP)
 {
    using namespace r::sexp;
@@ -1021,6 +1271,9 @@ core::Error initialize()
    
    events().afterSessionInitHook.connect(afterSessionInitHook);
    
+   source_database::events().onDocRemoved.connect(onDocRemoved);
+   source_database::events().onRemoveAll.connect(onRemoveAll);
+   
    session::projects::FileMonitorCallbacks cb;
    cb.onFilesChanged = onFilesChanged;
    projects::projectContext().subscribeToFileMonitor("Diagnostics", cb);
@@ -1031,7 +1284,8 @@ core::Error initialize()
    ExecBlock initBlock;
    initBlock.addFunctions()
          (bind(sourceModuleRFile, "SessionDiagnostics.R"))
-         (bind(registerRpcMethod, "lint_r_source_document", lintRSourceDocument));
+         (bind(registerRpcMethod, "lint_r_source_document", lintRSourceDocument))
+         (bind(registerRpcMethod, "lint_r_source_regions", lintRSourceRegions));
    
    return initBlock.execute();
 
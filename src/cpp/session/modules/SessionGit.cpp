@@ -16,6 +16,8 @@
 
 #include <signal.h>
 
+#include <map>
+
 #ifdef _WIN32
 #include <windows.h>
 #include <shlobj.h>
@@ -1428,6 +1430,25 @@ Error vcsCheckout(const json::JsonRpcRequest& request,
    return Success();
 }
 
+// Adds the status of up to count files, starting at offset
+Error filesToJson(const std::vector<FileWithStatus>& files,
+                  std::size_t offset,
+                  std::size_t count,
+                  json::Array* pResult)
+{
+   std::size_t end = std::min(files.size(), offset + count);
+   for (std::size_t i = offset; i < end; i++)
+   {
+      json::Object obj;
+      Error error = statusToJson(files[i].path, files[i].status, &obj);
+      if (error)
+         return error;
+      pResult->push_back(obj);
+   }
+
+   return Success();
+}
+
 Error vcsFullStatus(const json::JsonRpcRequest&,
                     json::JsonRpcResponse* pResponse)
 {
@@ -1438,34 +1459,64 @@ Error vcsFullStatus(const json::JsonRpcRequest&,
 
    std::vector<FileWithStatus> files = statusResult.files();
    json::Array result;
-   for (std::vector<FileWithStatus>::const_iterator it = files.begin();
-        it != files.end();
-        it++)
-   {
-      VCSStatus status = it->status;
-      FilePath path = it->path;
-      json::Object obj;
-      error = statusToJson(path, status, &obj);
-      if (error)
-         return error;
-      result.push_back(obj);
-   }
+   error = filesToJson(files, 0, files.size(), &result);
+   if (error)
+      return error;
 
    pResponse->setResult(result);
 
    return Success();
 }
 
+// The statuses read by git_all_status whose first page has been sent but not
+// the rest, by id; the client then asks for the rest a page at a time
+// (git_status_page). Each window (e.g. the Git pane and the Review Changes
+// window) reads the status separately, so several can be in progress at once;
+// only the most recent few are kept.
+int s_nextStatusId = 0;
+std::map<int, std::vector<FileWithStatus> > s_statusFiles;
+const std::size_t kMaxPendingStatuses = 4;
+
 Error vcsAllStatus(const json::JsonRpcRequest& request,
                    json::JsonRpcResponse* pResponse)
 {
-   json::Object result;
-   json::JsonRpcResponse tmp;
+   int pageSize;
+   Error error = json::readParams(request.params, &pageSize);
+   if (error)
+      return error;
 
-   Error error = vcsFullStatus(request, &tmp);
+   StatusResult statusResult;
+   error = s_git_.status(s_git_.root(), &statusResult);
    if (error)
       return error;
-   result["status"] = tmp.result();
+
+   std::vector<FileWithStatus> files = statusResult.files();
+   int statusId = ++s_nextStatusId;
+
+   int statusCount = static_cast<int>(files.size());
+   std::size_t count = pageSize > 0
+         ? static_cast<std::size_t>(pageSize)
+         : files.size();
+   json::Array status;
+   error = filesToJson(files, 0, count, &status);
+   if (error)
+      return error;
+
+   // keep the rest for git_status_page, dropping the oldest pending status
+   // if there are too many
+   if (count < files.size())
+   {
+      s_statusFiles[statusId].swap(files);
+      if (s_statusFiles.size() > kMaxPendingStatuses)
+         s_statusFiles.erase(s_statusFiles.begin());
+   }
+
+   json::Object result;
+   json::JsonRpcResponse tmp;
+
+   result["status"] = status;
+   result["status_count"] = statusCount;
+   result["status_id"] = statusId;
 
    error = vcsListBranches(request, &tmp);
    if (error)
@@ -1483,6 +1534,43 @@ Error vcsAllStatus(const json::JsonRpcRequest& request,
    return Success();
 }
 
+Error vcsStatusPage(const json::JsonRpcRequest& request,
+                    json::JsonRpcResponse* pResponse)
+{
+   int statusId, offset, count;
+   Error error = json::readParams(request.params, &statusId, &offset, &count);
+   if (error)
+      return error;
+
+   // the status is no longer kept (all of it has been sent, or it was
+   // dropped for newer ones), so there's no page to return
+   std::map<int, std::vector<FileWithStatus> >::iterator it =
+         s_statusFiles.find(statusId);
+   if (it == s_statusFiles.end() || offset < 0 || count <= 0 ||
+       static_cast<std::size_t>(offset) >= it->second.size())
+   {
+      pResponse->setResult(json::Value());
+      return Success();
+   }
+
+   const std::vector<FileWithStatus>& files = it->second;
+   json::Array result;
+   error = filesToJson(files,
+                       static_cast<std::size_t>(offset),
+                       static_cast<std::size_t>(count),
+                       &result);
+   if (error)
+      return error;
+
+   // the client doesn't ask for a page twice
+   if (static_cast<std::size_t>(offset + count) >= files.size())
+      s_statusFiles.erase(it);
+
+   pResponse->setResult(result);
+
+   return Success();
+}
+
 Error vcsCommit(const json::JsonRpcRequest& request,
                 json::JsonRpcResponse* pResponse)
 {
@@ -2827,6 +2915,7 @@ core::Error initialize()
       (bind(registerRpcMethod, "git_checkout", vcsCheckout))
       (bind(registerRpcMethod, "git_full_status", vcsFullStatus))
       (bind(registerRpcMethod, "git_all_status", vcsAllStatus))
+      (bind(registerRpcMethod, "git_status_page", vcsStatusPage))
       (bind(registerRpcMethod, "git_commit", vcsCommit))
       (bind(registerRpcMethod, "git_push", vcsPush))
       (bind(registerRpcMethod, "git_pull", vcsPull))
@@ -30,6 +30,7 @@
 #include <core/FilePath.hpp>
 #include <core/FileInfo.hpp>
 #include <core/FileSerializer.hpp>
+#include <core/Hash.hpp>
 #include <core/StringUtils.hpp>
 #include <core/text/TemplateFilter.hpp>
 #include <core/r_util/RPackageInfo.hpp>
@@ -452,6 +453,196 @@ Error saveDocumentDiff(const json::JsonRpcRequest& request,
    return Success();
 }
 
+Error saveDocumentDiffs(const json::JsonRpcRequest& request,
+                        json::JsonRpcResponse* pResponse)
+{
+   using namespace rstudio::core::string_utils;
+
+   // unique id and jsonPath (can be null for auto-save)
+   std::string id;
+   json::Value jsonPath, jsonType, jsonEncoding, jsonFoldSpec;
+
+   // As for saveDocumentDiff, but with any number of replacements. The
+   // ranges [offsets[i], offsets[i]+lengths[i]) refer to the current
+   // document, are sorted and don't overlap.
+   json::Array replacements, offsets, lengths;
+
+   // This is the expected hash of the current document
+   std::string hash;
+
+   // read params
+   Error error = json::readParams(request.params,
+                                  &id,
+                                  &jsonPath,
+                                  &jsonType,
+                                  &jsonEncoding,
+                                  &jsonFoldSpec,
+                                  &replacements,
+                                  &offsets,
+                                  &lengths,
+                                  &hash);
+   if (error)
+      return error ;
+
+   if (replacements.size() != offsets.size() ||
+       replacements.size() != lengths.size())
+   {
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+   }
+
+   // if this has no path then it is an autosave, in this case
+   // suppress change detection
+   bool hasPath = json::isType<std::string>(jsonPath);
+   if (!hasPath)
+       pResponse->setSuppressDetectChanges(true);
+
+   // get the doc
+   boost::shared_ptr<SourceDocument> pDoc(new SourceDocument());
+   error = source_database::get(id, pDoc);
+   if (error)
+      return error ;
+
+   // Don't even attempt anything if we're not working off the same original
+   if (pDoc->hash() == hash)
+   {
+      const std::string& original = pDoc->contents();
+      std::string contents;
+      contents.reserve(original.size());
+
+      // Apply the replacements in a single forward pass. Offsets and
+      // lengths are specified in characters, but contents is in UTF8
+      // bytes, so advance from the end of the previous range.
+      std::string::const_iterator pos = original.begin();
+      int posOffset = 0;
+      for (std::size_t i = 0; i < replacements.size(); i++)
+      {
+         if (!json::isType<std::string>(replacements[i]) ||
+             !json::isType<int>(offsets[i]) ||
+             !json::isType<int>(lengths[i]))
+         {
+            return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+         }
+
+         int offset = offsets[i].get_int();
+         int length = lengths[i].get_int();
+         if (offset < posOffset || length < 0)
+            return Success(); // Ranges out of order. Abort differential save.
+
+         std::string::const_iterator rangeBegin = pos;
+         error = utf8Advance(pos, offset - posOffset, original.end(),
+                             &rangeBegin);
+         if (error)
+            return Success(); // UTF8 decoding failed. Abort differential save.
+
+         std::string::const_iterator rangeEnd = rangeBegin;
+         error = utf8Advance(rangeBegin, length, original.end(), &rangeEnd);
+         if (error)
+            return Success(); // UTF8 decoding failed. Abort differential save.
+
+         contents.append(pos, rangeBegin);
+         contents.append(replacements[i].get_str());
+         pos = rangeEnd;
+         posOffset = offset + length;
+      }
+      contents.append(pos, original.end());
+
+      error = saveDocumentCore(contents, jsonPath, jsonType, jsonEncoding,
+                               jsonFoldSpec, pDoc);
+      if (error)
+         return error;
+
+      // write to the source_database
+      error = sourceDatabasePutWithUpdatedContents(pDoc);
+      if (error)
+         return error;
+
+      pResponse->setResult(pDoc->hash());
+   }
+
+   return Success();
+}
+
+// Hashes the document in the blocks of lines given by the client and
+// returns the character ranges of the blocks that differ from the client's,
+// so that the client can replace just those blocks (using
+// save_document_diffs with the returned hash). A block matches if both the
+// length and the SHA-1 of the UTF-8 bytes it occupies are the same; the
+// last block takes any lines beyond those the client has.
+Error checkDocumentBlocks(const json::JsonRpcRequest& request,
+                          json::JsonRpcResponse* pResponse)
+{
+   pResponse->setSuppressDetectChanges(true);
+
+   std::string id;
+   json::Array blockLines, blockLengths, blockHashes;
+   Error error = json::readParams(request.params,
+                                  &id,
+                                  &blockLines,
+                                  &blockLengths,
+                                  &blockHashes);
+   if (error)
+      return error;
+
+   if (blockLines.size() != blockHashes.size() ||
+       blockLengths.size() != blockHashes.size())
+   {
+      return Error(json::errc::ParamInvalid, ERROR_LOCATION);
+   }
+
+   boost::shared_ptr<SourceDocument> pDoc(new SourceDocument());
+   error = source_database::get(id, pDoc);
+   if (error)
+      return error;
+
+   const std::string& contents = pDoc->contents();
+   std::string::const_iterator pos = contents.begin();
+   int offset = 0;
+
+   json::Array mismatches;
+   for (std::size_t i = 0; i < blockLines.size(); i++)
+   {
+      if (!json::isType<int>(blockLines[i]) ||
+          !json::isType<int>(blockLengths[i]) ||
+          !json::isType<std::string>(blockHashes[i]))
+      {
+         return Error(json::errc::ParamTypeMismatch, ERROR_LOCATION);
+      }
+
+      bool lastBlock = i == blockLines.size() - 1;
+      int lines = blockLines[i].get_int();
+      int blockOffset = offset;
+      std::string::const_iterator blockStart = pos;
+      while (pos != contents.end() && (lines > 0 || lastBlock))
+      {
+         unsigned char byte = static_cast<unsigned char>(*pos++);
+
+         // count characters, not continuation bytes
+         if ((byte & 0xC0) != 0x80)
+            offset++;
+
+         if (byte == '\n')
+            lines--;
+      }
+
+      std::string block(blockStart, pos);
+      if (static_cast<int>(block.length()) != blockLengths[i].get_int() ||
+          hash::sha1HexHash(block) != blockHashes[i].get_str())
+      {
+         json::Object mismatch;
+         mismatch["index"] = static_cast<int>(i);
+         mismatch["offset"] = blockOffset;
+         mismatch["length"] = offset - blockOffset;
+         mismatches.push_back(mismatch);
+      }
+   }
+
+   json::Object result;
+   result["hash"] = pDoc->hash();
+   result["mismatches"] = mismatches;
+   pResponse->setResult(result);
+   return Success();
+}
+
 Error checkForExternalEdit(const json::JsonRpcRequest& request,
                            json::JsonRpcResponse* pResponse)
 {
@@ -1135,6 +1326,8 @@ Error initialize()
       (bind(registerRpcMethod, "open_document", openDocument))
       (bind(registerRpcMethod, "save_document", saveDocument))
       (bind(registerRpcMethod, "save_document_diff", saveDocumentDiff))
+      (bind(registerRpcMethod, "save_document_diffs", saveDocumentDiffs))
+      (bind(registerRpcMethod, "check_document_blocks", checkDocumentBlocks))
       (bind(registerRpcMethod, "check_for_external_edit", checkForExternalEdit))
       (bind(registerRpcMethod, "ignore_external_edit", ignoreExternalEdit))
       (bind(registerRpcMethod, "set_source_document_on_save", setSourceDocumentOnSave))
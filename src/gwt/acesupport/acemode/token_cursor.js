@@ -564,6 +564,53 @@ var TokenCursor = function(tokens, row, offset) {
       
    };
 
+   // Collect the tokens on rows [startRow, endRow] into flat arrays, so that
+   // callers outside of JavaScript can scan them without a call per token.
+   // 'cursorIndex' is the index of the token at this cursor, and 'endRow'
+   // is clamped to the last row of the document.
+   this.scanRows = function(startRow, endRow)
+   {
+      if (this.$codeModel && this.$codeModel.$tokenizeUpToRow)
+         this.$codeModel.$tokenizeUpToRow.call(this.$codeModel, endRow);
+
+      endRow = Math.min(endRow, this.$tokens.length - 1);
+
+      var types = [];
+      var values = [];
+      var rows = [];
+      var columns = [];
+      var cursorIndex = -1;
+
+      for (var row = startRow; row <= endRow; row++)
+      {
+         if (row === this.$row)
+            cursorIndex = values.length + this.$offset;
+
+         var rowTokens = this.$tokens[row];
+         if (rowTokens == null)
+            continue;
+
+         for (var i = 0; i < rowTokens.length; i++)
+         {
+            var token = rowTokens[i];
+            types.push(token.type);
+            values.push(token.value);
+            rows.push(row);
+            columns.push(token.column);
+         }
+      }
+
+      return {
+         types: types,
+         values: values,
+         rows: rows,
+         columns: columns,
+         startRow: startRow,
+         endRow: endRow,
+         cursorIndex: cursorIndex
+      };
+   };
+
    this.findOpeningBracketCountCommas = function(tokens, failOnOpenBrace)
    {
       if (!isArray(tokens))
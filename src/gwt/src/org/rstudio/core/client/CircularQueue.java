@@ -0,0 +1,102 @@
+/*
+ * CircularQueue.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+// A growable FIFO queue backed by a ring buffer. Unlike ArrayList.remove(0),
+// removing from the head is O(1), which matters when queues are drained
+// in bursts of thousands of elements.
+public class CircularQueue<T>
+{
+   public CircularQueue()
+   {
+      this(16);
+   }
+
+   public CircularQueue(int initialCapacity)
+   {
+      elements_ = new Object[Math.max(1, initialCapacity)];
+   }
+
+   public void add(T element)
+   {
+      if (size_ == elements_.length)
+         grow();
+
+      elements_[(head_ + size_) % elements_.length] = element;
+      size_++;
+   }
+
+   @SuppressWarnings("unchecked")
+   public T peek()
+   {
+      if (size_ == 0)
+         return null;
+
+      return (T) elements_[head_];
+   }
+
+   @SuppressWarnings("unchecked")
+   public T remove()
+   {
+      if (size_ == 0)
+         return null;
+
+      T element = (T) elements_[head_];
+      elements_[head_] = null;
+      head_ = (head_ + 1) % elements_.length;
+      size_--;
+      return element;
+   }
+
+   @SuppressWarnings("unchecked")
+   public T get(int index)
+   {
+      if (index < 0 || index >= size_)
+         throw new IndexOutOfBoundsException("Index: " + index);
+
+      return (T) elements_[(head_ + index) % elements_.length];
+   }
+
+   public int size()
+   {
+      return size_;
+   }
+
+   public boolean isEmpty()
+   {
+      return size_ == 0;
+   }
+
+   public void clear()
+   {
+      for (int i = 0; i < size_; i++)
+         elements_[(head_ + i) % elements_.length] = null;
+      head_ = 0;
+      size_ = 0;
+   }
+
+   private void grow()
+   {
+      Object[] elements = new Object[elements_.length * 2];
+      for (int i = 0; i < size_; i++)
+         elements[i] = elements_[(head_ + i) % elements_.length];
+      elements_ = elements;
+      head_ = 0;
+   }
+
+   private Object[] elements_;
+   private int head_ = 0;
+   private int size_ = 0;
+}
@@ -0,0 +1,218 @@
+/*
+ * StyleSpans.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+/**
+ * Run-length encoded assignment of style classes to a range of characters
+ * [0, getLength()). Spans are kept sorted, contiguous and maximal (two
+ * adjacent spans never share a class), so the number of spans is the number
+ * of style changes rather than the number of characters.
+ */
+public class StyleSpans
+{
+   public StyleSpans()
+   {
+   }
+
+   public int getLength()
+   {
+      return count_ == 0 ? 0 : ends_[count_ - 1];
+   }
+
+   public int getSpanCount()
+   {
+      return count_;
+   }
+
+   public int getSpanStart(int span)
+   {
+      return span == 0 ? 0 : ends_[span - 1];
+   }
+
+   public int getSpanEnd(int span)
+   {
+      return ends_[span];
+   }
+
+   public String getSpanClass(int span)
+   {
+      return classes_[span];
+   }
+
+   // Returns the index of the span containing the given offset
+   public int getSpanAt(int offset)
+   {
+      return findSpan(offset);
+   }
+
+   // Returns the class of the character at the given offset
+   public String getClassAt(int offset)
+   {
+      if (offset < 0 || offset >= getLength())
+         return null;
+      return classes_[findSpan(offset)];
+   }
+
+   // Assigns the class to the characters [start, end), extending the
+   // range covered if necessary (any gap is filled with a null class)
+   public void set(int start, int end, String className)
+   {
+      if (start >= end)
+         return;
+
+      int length = getLength();
+
+      // fast path: appending to the end, as for plain output
+      if (start == length)
+      {
+         if (count_ > 0 && sameClass(classes_[count_ - 1], className))
+            ends_[count_ - 1] = end;
+         else
+            insertSpan(count_, end, className);
+         return;
+      }
+
+      if (start > length)
+      {
+         set(length, start, null);
+         set(start, end, className);
+         return;
+      }
+
+      // make span boundaries at start and end, then replace the spans
+      // between them with a single span
+      int first = split(start);
+      int last = end >= length ? count_ : split(end);
+      removeSpans(first, last);
+      insertSpan(first, end, className);
+      mergeAround(first);
+   }
+
+   // Removes the characters [start, end), shifting later characters left
+   public void delete(int start, int end)
+   {
+      int length = getLength();
+      end = Math.min(end, length);
+      if (start >= end)
+         return;
+
+      int first = split(start);
+      int last = end >= length ? count_ : split(end);
+      removeSpans(first, last);
+
+      int removed = end - start;
+      for (int i = first; i < count_; i++)
+         ends_[i] -= removed;
+
+      if (first > 0)
+         mergeAround(first - 1);
+   }
+
+   public void clear()
+   {
+      count_ = 0;
+      ends_ = new int[INITIAL_CAPACITY];
+      classes_ = new String[INITIAL_CAPACITY];
+   }
+
+   // Ensures there is a span boundary at the given offset (which must be
+   // within [0, getLength())) and returns the index of the span starting
+   // there
+   private int split(int offset)
+   {
+      int span = findSpan(offset);
+      int spanStart = getSpanStart(span);
+      if (spanStart == offset)
+         return span;
+
+      insertSpan(span, offset, classes_[span]);
+      return span + 1;
+   }
+
+   // Returns the index of the span containing the given offset
+   private int findSpan(int offset)
+   {
+      int lo = 0;
+      int hi = count_ - 1;
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (ends_[mid] <= offset)
+            lo = mid + 1;
+         else
+            hi = mid;
+      }
+      return lo;
+   }
+
+   private void insertSpan(int index, int end, String className)
+   {
+      if (count_ == ends_.length)
+      {
+         int[] ends = new int[ends_.length * 2];
+         String[] classes = new String[classes_.length * 2];
+         System.arraycopy(ends_, 0, ends, 0, count_);
+         System.arraycopy(classes_, 0, classes, 0, count_);
+         ends_ = ends;
+         classes_ = classes;
+      }
+
+      System.arraycopy(ends_, index, ends_, index + 1, count_ - index);
+      System.arraycopy(classes_, index, classes_, index + 1, count_ - index);
+      ends_[index] = end;
+      classes_[index] = className;
+      count_++;
+   }
+
+   private void removeSpans(int first, int last)
+   {
+      if (last <= first)
+         return;
+
+      System.arraycopy(ends_, last, ends_, first, count_ - last);
+      System.arraycopy(classes_, last, classes_, first, count_ - last);
+      for (int i = count_ - (last - first); i < count_; i++)
+         classes_[i] = null;
+      count_ -= last - first;
+   }
+
+   // Merges the given span with its neighbors if they share its class
+   private void mergeAround(int span)
+   {
+      if (span + 1 < count_ && sameClass(classes_[span], classes_[span + 1]))
+      {
+         ends_[span] = ends_[span + 1];
+         removeSpans(span + 1, span + 2);
+      }
+
+      if (span > 0 && span < count_ &&
+          sameClass(classes_[span - 1], classes_[span]))
+      {
+         ends_[span - 1] = ends_[span];
+         removeSpans(span, span + 1);
+      }
+   }
+
+   private static boolean sameClass(String a, String b)
+   {
+      return a == null ? b == null : a.equals(b);
+   }
+
+   private int[] ends_ = new int[INITIAL_CAPACITY];
+   private String[] classes_ = new String[INITIAL_CAPACITY];
+   private int count_ = 0;
+
+   private static final int INITIAL_CAPACITY = 8;
+}
@@ -0,0 +1,233 @@
+/*
+ * TextHash.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+/**
+ * Hashes of the UTF-8 encoding of text, matching those the session computes
+ * over its (UTF-8) copies of documents: SHA-1, and the CRC-32 the source
+ * database uses as a document's hash. Only int arithmetic is used, so the
+ * results are exact in javascript.
+ */
+public class TextHash
+{
+   // The number of bytes in the UTF-8 encoding of the text
+   public static int utf8Length(String text)
+   {
+      int length = 0;
+      for (int i = 0; i < text.length(); i++)
+      {
+         char ch = text.charAt(i);
+         if (ch < 0x80)
+            length += 1;
+         else if (ch < 0x800)
+            length += 2;
+         else if (isSurrogatePair(text, i))
+         {
+            length += 4;
+            i++;
+         }
+         else
+            length += 3;
+      }
+      return length;
+   }
+
+   // The SHA-1 digest of the text's UTF-8 encoding, as 40 hex digits
+   public static String sha1(String text)
+   {
+      Sha1 sha1 = new Sha1();
+      encode(text, sha1);
+      return sha1.digest();
+   }
+
+   // The CRC-32 of the text's UTF-8 encoding, as an unsigned decimal string
+   // (as core::hash::crc32Hash)
+   public static String crc32(String text)
+   {
+      Crc32 crc32 = new Crc32();
+      encode(text, crc32);
+      return crc32.checksum();
+   }
+
+   private interface ByteSink
+   {
+      void add(int b);
+   }
+
+   private static void encode(String text, ByteSink sink)
+   {
+      for (int i = 0; i < text.length(); i++)
+      {
+         int ch = text.charAt(i);
+         if (ch < 0x80)
+         {
+            sink.add(ch);
+         }
+         else if (ch < 0x800)
+         {
+            sink.add(0xC0 | (ch >> 6));
+            sink.add(0x80 | (ch & 0x3F));
+         }
+         else if (isSurrogatePair(text, i))
+         {
+            int codePoint = Character.toCodePoint((char) ch,
+                                                  text.charAt(++i));
+            sink.add(0xF0 | (codePoint >> 18));
+            sink.add(0x80 | ((codePoint >> 12) & 0x3F));
+            sink.add(0x80 | ((codePoint >> 6) & 0x3F));
+            sink.add(0x80 | (codePoint & 0x3F));
+         }
+         else
+         {
+            sink.add(0xE0 | (ch >> 12));
+            sink.add(0x80 | ((ch >> 6) & 0x3F));
+            sink.add(0x80 | (ch & 0x3F));
+         }
+      }
+   }
+
+   private static boolean isSurrogatePair(String text, int i)
+   {
+      return Character.isHighSurrogate(text.charAt(i)) &&
+             i + 1 < text.length() &&
+             Character.isLowSurrogate(text.charAt(i + 1));
+   }
+
+   private static class Sha1 implements ByteSink
+   {
+      @Override
+      public void add(int b)
+      {
+         block_[blockLength_ >> 2] |= (b & 0xFF) << (24 - 8 * (blockLength_ & 3));
+         blockLength_++;
+         length_++;
+         if (blockLength_ == 64)
+            processBlock();
+      }
+
+      public String digest()
+      {
+         long bits = (long) length_ * 8;
+         add(0x80);
+         while (blockLength_ != 56)
+            add(0);
+         for (int shift = 56; shift >= 0; shift -= 8)
+            add((int) (bits >>> shift));
+
+         StringBuilder result = new StringBuilder();
+         for (int i = 0; i < 5; i++)
+         {
+            String hex = Integer.toHexString(h_[i]);
+            for (int pad = hex.length(); pad < 8; pad++)
+               result.append('0');
+            result.append(hex);
+         }
+         return result.toString();
+      }
+
+      private void processBlock()
+      {
+         int[] w = w_;
+         for (int t = 0; t < 16; t++)
+         {
+            w[t] = block_[t];
+            block_[t] = 0;
+         }
+         for (int t = 16; t < 80; t++)
+            w[t] = rotate(w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16], 1);
+
+         int a = h_[0], b = h_[1], c = h_[2], d = h_[3], e = h_[4];
+         for (int t = 0; t < 80; t++)
+         {
+            int f, k;
+            if (t < 20)
+            {
+               f = (b & c) | (~b & d);
+               k = 0x5A827999;
+            }
+            else if (t < 40)
+            {
+               f = b ^ c ^ d;
+               k = 0x6ED9EBA1;
+            }
+            else if (t < 60)
+            {
+               f = (b & c) | (b & d) | (c & d);
+               k = 0x8F1BBCDC;
+            }
+            else
+            {
+               f = b ^ c ^ d;
+               k = 0xCA62C1D6;
+            }
+
+            int temp = rotate(a, 5) + f + e + k + w[t];
+            e = d;
+            d = c;
+            c = rotate(b, 30);
+            b = a;
+            a = temp;
+         }
+
+         h_[0] += a;
+         h_[1] += b;
+         h_[2] += c;
+         h_[3] += d;
+         h_[4] += e;
+         blockLength_ = 0;
+      }
+
+      private static int rotate(int value, int bits)
+      {
+         return (value << bits) | (value >>> (32 - bits));
+      }
+
+      private final int[] h_ = { 0x67452301, 0xEFCDAB89, 0x98BADCFE,
+                                 0x10325476, 0xC3D2E1F0 };
+      private final int[] block_ = new int[16];
+      private final int[] w_ = new int[80];
+      private int blockLength_ = 0;
+      private int length_ = 0;
+   }
+
+   private static class Crc32 implements ByteSink
+   {
+      @Override
+      public void add(int b)
+      {
+         crc_ = CRC_TABLE[(crc_ ^ b) & 0xFF] ^ (crc_ >>> 8);
+      }
+
+      public String checksum()
+      {
+         long value = (crc_ ^ 0xFFFFFFFF) & 0xFFFFFFFFL;
+         return String.valueOf(value);
+      }
+
+      private int crc_ = 0xFFFFFFFF;
+   }
+
+   private static final int[] CRC_TABLE = new int[256];
+   static
+   {
+      for (int n = 0; n < 256; n++)
+      {
+         int c = n;
+         for (int k = 0; k < 8; k++)
+            c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+         CRC_TABLE[n] = c;
+      }
+   }
+}
@@ -14,13 +14,13 @@
  */
 package org.rstudio.core.client;
 
-import java.util.ArrayList;
-
+import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.regex.Match;
 import org.rstudio.core.client.regex.Pattern;
 
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.SpanElement;
 import com.google.gwt.dom.client.Text;
 
@@ -71,8 +71,9 @@ public class VirtualConsole
             case '\r':
                carriageReturn();
                // the sequence \r\n or \n\r can be represented in an append-only
-               // way, so treat these cases as an append
-               appendOnly = 
+               // way, so treat these cases as an append (unless an earlier
+               // control character already overwrote something)
+               appendOnly &= 
                      ((pos > 0 && data.charAt(pos - 1) == '\n') ||
                       (tail < data.length() && data.charAt(tail) == '\n'));
                break;
@@ -106,6 +107,8 @@ public class VirtualConsole
       if (pos_ == 0)
          return;
       o.deleteCharAt(--pos_);
+      spans_.delete(pos_, pos_ + 1);
+      dirtyStart_ = Math.min(dirtyStart_, pos_);
    }
 
    private void carriageReturn()
@@ -129,7 +132,8 @@ public class VirtualConsole
    {
       o.setLength(0);
       pos_ = 0;
-      charClass.clear();
+      spans_.clear();
+      dirtyStart_ = 0;
    }
 
    private void text(String text, String className)
@@ -139,33 +143,15 @@ public class VirtualConsole
       int endPos = pos_ + text.length();
       
       o.replace(pos_, endPos, text);
+      dirtyStart_ = Math.min(dirtyStart_, pos_);
       
-      // record the class of each character emitted
+      // record the class of the characters emitted
       if (className != null) 
-      {
-         padCharClass(endPos);
-         for (int i = pos_; i < endPos; i++)
-         {
-            charClass.set(i, className);
-         }
-      }
+         spans_.set(pos_, endPos, className);
 
       pos_ = endPos;
    }
    
-   // ensures that the character class mapping buffer is at least 'len' 
-   // characters long (note that ensureCapacity just reallocs the underlying
-   // JavaScript array if necessary)
-   private void padCharClass(int len)
-   {
-      int curSize = charClass.size();
-      if (curSize >= len)
-         return;
-      charClass.ensureCapacity(len);
-      for (int i = 0; i < (len - curSize); i++)
-         charClass.add(null);
-   }
-   
    @Override
    public String toString()
    {
@@ -177,22 +163,24 @@ public class VirtualConsole
       return o.length();
    }
    
+   // Returns the console contents starting at the given offset
+   public String substring(int start)
+   {
+      return o.substring(start);
+   }
+   
+   // Returns true if the cursor is at the end of the buffer, meaning that
+   // plain text submitted next will be appended rather than overwrite
+   // existing characters
+   public boolean isCursorAtEnd()
+   {
+      return pos_ == o.length();
+   }
+   
    public void submitAndRender(String data, String clazz, Element parent)
    {
-      if (!submit(data, clazz))
-      {
-         // output isn't append-only; redraw the whole thing
-         // (note that even this isn't technically necessary but control 
-         // characters are relatively infrequent and additional bookkeeping
-         // would be required to determine the invalidated range when 
-         // control characters are used)
-         redraw(parent);
-      }
-      else
-      {
-         // consolify just the data to be rendered
-         emitRange(consolify(data), clazz, parent);
-      }
+      submit(data, clazz);
+      render(parent);
    }
    
    public void clear()
@@ -200,6 +188,49 @@ public class VirtualConsole
       formfeed();
    }
    
+   // Discards up to the given number of lines from the start of the output,
+   // along with the corresponding nodes rendered into parent (if any). 
+   // Returns the number of lines discarded.
+   public int trimLines(int lines, Element parent)
+   {
+      int offset = 0;
+      int trimmed = 0;
+      while (trimmed < lines)
+      {
+         int newline = o.indexOf("\n", offset);
+         if (newline < 0)
+            break;
+         offset = newline + 1;
+         trimmed++;
+      }
+      if (trimmed == 0)
+         return 0;
+      
+      o.delete(0, offset);
+      spans_.delete(0, offset);
+      pos_ = Math.max(0, pos_ - offset);
+      dirtyStart_ = Math.max(0, dirtyStart_ - offset);
+      
+      if (parent != null)
+      {
+         if (offset <= renderedLength_ &&
+             DomUtils.trimLines(parent, trimmed) == trimmed)
+         {
+            renderedLength_ -= offset;
+         }
+         else
+         {
+            // couldn't trim the rendered output consistently; render it
+            // again from scratch next time
+            parent.setInnerHTML("");
+            renderedLength_ = 0;
+            dirtyStart_ = 0;
+         }
+      }
+      
+      return trimmed;
+   }
+   
    public static String consolify(String text)
    {
       VirtualConsole console = new VirtualConsole();
@@ -222,49 +253,84 @@ public class VirtualConsole
       parent.appendChild(textNode);
    }
    
-   private void redraw(Element parent)
+   // Brings the contents of parent (which holds what was rendered by
+   // previous calls) up to date. Only the nodes at or after the first 
+   // character changed since the last render are touched, so appends and
+   // carriage returns on the last line (e.g. progress bars) don't require
+   // re-rendering the entire output.
+   private void render(Element parent)
    {
-      // convert to a plain-text string
-      String plainText = toString();
-      int len = plainText.length();
-      String lastClass = null;
-      padCharClass(len);
-      
-      // clean existing content
-      parent.setInnerHTML("");
+      int start = Math.min(dirtyStart_, renderedLength_);
+      if (start < renderedLength_ && !truncateRendered(parent, start))
+      {
+         // the DOM doesn't look like what we rendered; start over
+         parent.setInnerHTML("");
+         start = 0;
+      }
       
-      // for performance reasons, we don't emit one character at a time;
-      // instead, we keep track of the string indices that correspond to
-      // contiguous runs of characters to emit into the stream
-      int accumulateBegin = 0;
-      int accumulateEnd = 0;
-
-      // iterate in lockstep over the plain-text string and character class
-      // assignment list; emit the appropriate tags when switching classes
-      for (int i = 0; i < len; i++)
+      emitFrom(start, parent);
+      renderedLength_ = o.length();
+      dirtyStart_ = renderedLength_;
+   }
+   
+   // Removes rendered text from the given offset onwards, walking backwards
+   // from the last node. Returns false if the rendered nodes don't account
+   // for the expected amount of text.
+   private boolean truncateRendered(Element parent, int start)
+   {
+      int end = renderedLength_;
+      Node child = parent.getLastChild();
+      while (child != null && end > start)
+      {
+         Node previous = child.getPreviousSibling();
+         int childStart = end - getTextLength(child);
+         if (childStart >= start)
+            child.removeFromParent();
+         else
+            truncateText(child, start - childStart);
+         end = Math.max(childStart, start);
+         child = previous;
+      }
+      return end == start;
+   }
+   
+   // Emits the text from the given offset to the end, one node per span
+   private void emitFrom(int start, Element parent)
+   {
+      int length = o.length();
+      int pos = start;
+      if (pos < spans_.getLength())
       {
-         if (!charClass.get(i).equals(lastClass))
+         for (int i = spans_.getSpanAt(pos); 
+              i < spans_.getSpanCount() && pos < length; 
+              i++)
          {
-            emitRange(
-                  plainText.substring(accumulateBegin, accumulateEnd),
-                  lastClass, parent);
-            
-            // begin accumulating from the emitted point
-            accumulateBegin = accumulateEnd;
+            int end = Math.min(spans_.getSpanEnd(i), length);
+            emitRange(o.substring(pos, end), spans_.getSpanClass(i), parent);
+            pos = end;
          }
-         lastClass = charClass.get(i);
-         accumulateEnd = i;
       }
-
-      // finishing up--emit accumulated text into stream
-      emitRange(
-            plainText.substring(accumulateBegin),
-            lastClass, parent);
-      return;
+      
+      // emit any trailing text that was written without a class
+      if (pos < length)
+         emitRange(o.substring(pos), null, parent);
    }
+   
+   private static native int getTextLength(Node node) /*-{
+      return node.textContent.length;
+   }-*/;
+   
+   private static native void truncateText(Node node, int length) /*-{
+      node.textContent = node.textContent.substring(0, length);
+   }-*/;
+   
    private final StringBuilder o = new StringBuilder();
-   private final ArrayList<String> charClass = new ArrayList<String>();
+   private final StyleSpans spans_ = new StyleSpans();
    private int pos_ = 0;
+   // the first offset modified since the last render, and the length of
+   // the text as of the last render
+   private int dirtyStart_ = 0;
+   private int renderedLength_ = 0;
    private static final Pattern CONTROL = Pattern.create("[\r\b\f\n]");
    private static final Pattern CONTROL_SPECIAL = Pattern.create("[\r\b\f]");
 }
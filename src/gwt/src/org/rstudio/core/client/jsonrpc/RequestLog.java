@@ -14,39 +14,134 @@
  */
 package org.rstudio.core.client.jsonrpc;
 
-import java.util.ArrayList;
-
+// Keeps the most recent RPC requests for the request log viewer, in a
+// fixed-size ring. Request and response bodies are truncated to a short
+// prefix for a sample of the requests and to a summary (which still names
+// the method) for the rest, unless full bodies have been requested for
+// diagnostic purposes. The log is bounded both by entry count and by the
+// total size of the stored bodies, so large payloads (events, file
+// contents, data viewer pages) aren't retained. Entries for requests still
+// in flight are only evicted if every entry is in flight.
 public class RequestLog
 {
    public static RequestLogEntry log(String requestId, String requestData)
    {
-      RequestLogEntry entry = new RequestLogEntry(System.currentTimeMillis(),
-                                                  requestId, requestData);
-      entries_.add(entry);
-
-      for (int i = 0; entries_.size() > MAX_ENTRIES && i < entries_.size(); i++)
+      int maxBodyLength;
+      if (retainFullBodies_)
+         maxBodyLength = Integer.MAX_VALUE;
+      else if (logCount_++ % BODY_SAMPLE_INTERVAL == 0)
+         maxBodyLength = MAX_BODY_LENGTH;
+      else
+         maxBodyLength = SUMMARY_BODY_LENGTH;
+      
+      RequestLogEntry entry = new RequestLogEntry(
+            System.currentTimeMillis(),
+            requestId,
+            requestData,
+            maxBodyLength);
+      
+      if (count_ == MAX_ENTRIES)
       {
-         RequestLogEntry oldEntry = entries_.get(i);
-         if (!oldEntry.isAlive())
-         {
-            entries_.remove(i);
-            i--;
-         }
+         int index = findEvictable();
+         remove(index >= 0 ? index : 0);
       }
-
+      entries_[(head_ + count_) % MAX_ENTRIES] = entry;
+      count_++;
+      storedSize_ += entry.getStoredSize();
+      
+      trim();
       return entry;
    }
 
    public static RequestLogEntry[] getEntries()
    {
-      RequestLogEntry[] entries = new RequestLogEntry[entries_.size()];
-      for (int i = 0; i < entries.length; i++)
-         entries[i] = entries_.get(i).clone();
+      RequestLogEntry[] entries = new RequestLogEntry[count_];
+      for (int i = 0; i < count_; i++)
+         entries[i] = get(i).clone();
       return entries;
    }
 
-   private static final ArrayList<RequestLogEntry> entries_ =
-         new ArrayList<RequestLogEntry>();
+   // When set, requests logged from now on keep their full request and
+   // response bodies (subject to a larger size budget)
+   public static void setRetainFullBodies(boolean retainFullBodies)
+   {
+      retainFullBodies_ = retainFullBodies;
+      trim();
+   }
+
+   public static boolean getRetainFullBodies()
+   {
+      return retainFullBodies_;
+   }
+
+   // Called by entries in the log when their response (and so their stored
+   // size) changes
+   static void onStoredSizeChanged(int delta)
+   {
+      storedSize_ += delta;
+      trim();
+   }
+
+   private static void trim()
+   {
+      int maxStoredSize = retainFullBodies_ ? MAX_STORED_SIZE_FULL_BODIES
+                                            : MAX_STORED_SIZE;
+      while (storedSize_ > maxStoredSize)
+      {
+         int index = findEvictable();
+         if (index < 0)
+            break;
+         remove(index);
+      }
+   }
+
+   // Returns the index of the oldest entry that isn't in flight, or -1
+   private static int findEvictable()
+   {
+      for (int i = 0; i < count_; i++)
+      {
+         if (!get(i).isAlive())
+            return i;
+      }
+      return -1;
+   }
+
+   // Removes the entry at the given index (from the oldest) by moving the
+   // older entries up a slot, which is rarely more than a few as entries
+   // are usually evicted oldest first
+   private static void remove(int index)
+   {
+      RequestLogEntry entry = get(index);
+      entry.setLogged(false);
+      storedSize_ -= entry.getStoredSize();
+      
+      for (int i = index; i > 0; i--)
+         entries_[(head_ + i) % MAX_ENTRIES] = get(i - 1);
+      entries_[head_] = null;
+      head_ = (head_ + 1) % MAX_ENTRIES;
+      count_--;
+   }
+
+   private static RequestLogEntry get(int index)
+   {
+      return entries_[(head_ + index) % MAX_ENTRIES];
+   }
+
+   private static final int MAX_ENTRIES = 100;
+   // sizes are in characters of stored request/response data
+   private static final int MAX_BODY_LENGTH = 1024;
+   private static final int SUMMARY_BODY_LENGTH = 64;
+   private static final int MAX_STORED_SIZE = 256 * 1024;
+   private static final int MAX_STORED_SIZE_FULL_BODIES = 8 * 1024 * 1024;
+   // one in this many requests keeps MAX_BODY_LENGTH of its bodies
+   private static final int BODY_SAMPLE_INTERVAL = 8;
 
-   private static final int MAX_ENTRIES = 50;
+   // the entries, oldest first from head_
+   private static final RequestLogEntry[] entries_ =
+         new RequestLogEntry[MAX_ENTRIES];
+   private static int head_ = 0;
+   private static int count_ = 0;
+   private static int storedSize_ = 0;
+   private static int logCount_ = 0;
+   private static boolean retainFullBodies_ = false;
 }
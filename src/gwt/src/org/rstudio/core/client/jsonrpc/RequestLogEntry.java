@@ -32,10 +32,25 @@ public class RequestLogEntry
    public RequestLogEntry(long requestTime,
                           String requestId,
                           String requestData)
+   {
+      this(requestTime, requestId, requestData, Integer.MAX_VALUE);
+      logged_ = false;
+   }
+
+   // Entries created by RequestLog store at most maxBodyLength characters
+   // of the request and response bodies; the full sizes are recorded before
+   // truncation. The method name is only parsed when it's displayed: it's
+   // the first member of the request, so it's kept in a truncated body.
+   RequestLogEntry(long requestTime,
+                   String requestId,
+                   String requestData,
+                   int maxBodyLength)
    {
       requestTime_ = requestTime;
       requestId_ = requestId;
-      requestData_ = requestData;
+      maxBodyLength_ = maxBodyLength;
+      requestSize_ = requestData.length();
+      requestData_ = truncate(requestData);
    }
 
    public long getRequestTime()
@@ -63,11 +78,52 @@ public class RequestLogEntry
       return responseData_;
    }
 
+   // Size of the full request body, in characters
+   public int getRequestSize()
+   {
+      return requestSize_;
+   }
+
+   // Size of the full response body, in characters (-1 if no response has
+   // been logged)
+   public int getResponseSize()
+   {
+      return responseSize_;
+   }
+
+   // Milliseconds between the request and its response (-1 if no response
+   // has been logged)
+   public long getLatency()
+   {
+      if (responseTime_ == null)
+         return -1;
+      return responseTime_ - requestTime_;
+   }
+
+   public boolean isTruncated()
+   {
+      return requestData_.length() < requestSize_ ||
+             (responseData_ != null && responseData_.length() < responseSize_);
+   }
+
+   // Number of characters of request/response data held by this entry
+   public int getStoredSize()
+   {
+      return requestData_.length() +
+             (responseData_ != null ? responseData_.length() : 0);
+   }
+
    public void logResponse(int responseType, String data)
    {
+      int storedSize = getStoredSize();
+      
       responseType_ = responseType;
       responseTime_ = System.currentTimeMillis();
-      responseData_ = data;
+      responseSize_ = data != null ? data.length() : 0;
+      responseData_ = truncate(data);
+
+      if (logged_)
+         RequestLog.onStoredSizeChanged(getStoredSize() - storedSize);
    }
 
    public int getResponseType()
@@ -75,6 +131,12 @@ public class RequestLogEntry
       return responseType_;
    }
 
+   // Set by RequestLog when the entry is evicted
+   void setLogged(boolean logged)
+   {
+      logged_ = logged;
+   }
+
    public boolean isAlive()
    {
       return responseType_ == ResponseType.None;
@@ -82,14 +144,12 @@ public class RequestLogEntry
 
    public String getRequestMethodName()
    {
-      if (requestData_.equals("[REDACTED]"))
-         return requestData_;
-
-      Pattern p = Pattern.create("\\\"method\\\":\\s*\\\"([^\"]+)\\\"");
-      Match match = p.match(requestData_, 0);
-      if (match == null)
-         return null;
-      return match.getGroup(1);
+      if (!methodNameParsed_)
+      {
+         methodName_ = parseMethodName(requestData_);
+         methodNameParsed_ = true;
+      }
+      return methodName_;
    }
 
    public RequestLogEntry clone()
@@ -97,8 +157,12 @@ public class RequestLogEntry
       RequestLogEntry clone = new RequestLogEntry(requestTime_,
                                                   requestId_,
                                                   requestData_);
+      clone.methodName_ = methodName_;
+      clone.methodNameParsed_ = methodNameParsed_;
+      clone.requestSize_ = requestSize_;
       clone.responseType_ = responseType_;
       clone.responseData_ = responseData_;
+      clone.responseSize_ = responseSize_;
       clone.responseTime_ = responseTime_;
       return clone;
    }
@@ -137,13 +201,42 @@ public class RequestLogEntry
       entry.responseType_ = respType;
       entry.responseTime_ = respTime;
       entry.responseData_ = respData;
+      if (respData != null)
+         entry.responseSize_ = respData.length();
       return entry;
    }
 
+   private static String parseMethodName(String requestData)
+   {
+      if (requestData.equals("[REDACTED]"))
+         return requestData;
+
+      Pattern p = Pattern.create("\\\"method\\\":\\s*\\\"([^\"]+)\\\"");
+      Match match = p.match(requestData, 0);
+      if (match == null)
+         return null;
+      return match.getGroup(1);
+   }
+
+   private String truncate(String data)
+   {
+      if (data == null || data.length() <= maxBodyLength_)
+         return data;
+
+      return data.substring(0, maxBodyLength_) +
+             "... [truncated, " + data.length() + " characters]";
+   }
+
    private final long requestTime_;
    private final String requestId_;
    private final String requestData_;
+   private final int maxBodyLength_;
+   private String methodName_;
+   private boolean methodNameParsed_;
+   private int requestSize_;
    private Long responseTime_;
    private String responseData_;
+   private int responseSize_ = -1;
    private int responseType_ = ResponseType.None;
+   private boolean logged_ = true;
 }
@@ -0,0 +1,150 @@
+/*
+ * RpcBatch.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+import java.util.ArrayList;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.json.client.JSONArray;
+
+// Requests sent together as a single rpc_batch request. Each request is
+// logged and measured as if it had been sent on its own, and gets its own
+// response (or error) through its callback. If the session rejects the
+// batch as a whole none of its requests were executed, so they are sent
+// individually instead.
+public class RpcBatch
+{
+   public interface Transport
+   {
+      // sends the rpc_batch request with the given params
+      void sendBatch(JSONArray params, RpcRequestCallback callback);
+
+      // sends a request on its own
+      void send(RpcRequest request, RpcRequestCallback callback);
+
+      // called when the session doesn't support batches
+      void onBatchingUnsupported();
+   }
+
+   public RpcBatch(Transport transport)
+   {
+      transport_ = transport;
+   }
+
+   public void add(RpcRequest request, RpcRequestCallback callback)
+   {
+      requests_.add(request);
+      callbacks_.add(callback);
+   }
+
+   public void send()
+   {
+      // requests cancelled while they were queued aren't sent
+      final ArrayList<RpcRequest> requests = new ArrayList<RpcRequest>();
+      final ArrayList<RpcRequestCallback> callbacks =
+            new ArrayList<RpcRequestCallback>();
+      for (int i = 0; i < requests_.size(); i++)
+      {
+         if (!requests_.get(i).isCancelled())
+         {
+            requests.add(requests_.get(i));
+            callbacks.add(callbacks_.get(i));
+         }
+      }
+      requests_.clear();
+      callbacks_.clear();
+
+      if (requests.isEmpty())
+         return;
+
+      // no point in batching a single request
+      if (requests.size() == 1)
+      {
+         transport_.send(requests.get(0), callbacks.get(0));
+         return;
+      }
+
+      JSONArray entries = new JSONArray();
+      for (int i = 0; i < requests.size(); i++)
+      {
+         requests.get(i).beginBatched();
+         entries.set(i, requests.get(i).createBatchEntry());
+      }
+      JSONArray params = new JSONArray();
+      params.set(0, entries);
+
+      transport_.sendBatch(params, new RpcRequestCallback() {
+         public void onError(RpcRequest request, RpcError error)
+         {
+            // the batch wasn't delivered; each request fails the same
+            // way it would have if sent on its own
+            for (int i = 0; i < requests.size(); i++)
+            {
+               requests.get(i).endBatched(error);
+               if (!requests.get(i).isCancelled())
+                  callbacks.get(i).onError(requests.get(i), error);
+            }
+         }
+
+         public void onResponseReceived(RpcRequest request,
+                                        RpcResponse response)
+         {
+            // the batch as a whole was rejected (e.g. unauthorized, or a
+            // session which doesn't support batches) -- none of the
+            // requests were executed, so send them individually to get
+            // the usual error handling and retry behavior. the requests
+            // aren't ended here: sending one completes the log entry and
+            // measurement begun for it when the batch was sent
+            if (response.getError() != null)
+            {
+               if (response.getError().getCode() == RpcError.METHOD_NOT_FOUND)
+                  transport_.onBatchingUnsupported();
+
+               for (int i = 0; i < requests.size(); i++)
+               {
+                  if (!requests.get(i).isCancelled())
+                     transport_.send(requests.get(i), callbacks.get(i));
+               }
+               return;
+            }
+
+            JsArray<RpcResponse> responses = response.getResult();
+            if (responses == null || responses.length() != requests.size())
+            {
+               RpcError error = RpcError.create(RpcError.TRANSMISSION_ERROR,
+                                                "Invalid batch response");
+               onError(request, error);
+               return;
+            }
+
+            for (int i = 0; i < requests.size(); i++)
+            {
+               requests.get(i).endBatched(responses.get(i));
+               if (!requests.get(i).isCancelled())
+               {
+                  callbacks.get(i).onResponseReceived(requests.get(i),
+                                                      responses.get(i));
+               }
+            }
+         }
+      });
+   }
+
+   private final Transport transport_;
+   private final ArrayList<RpcRequest> requests_ =
+         new ArrayList<RpcRequest>();
+   private final ArrayList<RpcRequestCallback> callbacks_ =
+         new ArrayList<RpcRequestCallback>();
+}
@@ -0,0 +1,233 @@
+/*
+ * RpcMetrics.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+
+// Per-method RPC statistics, recorded for every request sent by RpcRequest.
+// Latencies and payload sizes go into fixed-size, logarithmically bucketed
+// histograms so that recording a response never allocates (beyond the
+// first response for a method) and percentiles can be estimated at any
+// time. Sizes are in characters of the JSON request/response text.
+public class RpcMetrics
+{
+   public static void recordResponse(String method,
+                                     long latencyMs,
+                                     int requestSize,
+                                     int responseSize,
+                                     int errorCode)
+   {
+      MethodMetrics metrics = getMethodMetrics(method);
+      metrics.count++;
+      metrics.latency.add(latencyMs);
+      metrics.requestSize.add(requestSize);
+      metrics.responseSize.add(responseSize);
+
+      if (errorCode != RpcError.SUCCESS)
+      {
+         metrics.errorCount++;
+         Integer count = metrics.errorCodes.get(errorCode);
+         metrics.errorCodes.put(errorCode, count == null ? 1 : count + 1);
+      }
+   }
+
+   public static void recordRetry(String method)
+   {
+      getMethodMetrics(method).retryCount++;
+   }
+
+   // Starts recording over, so a snapshot covers just what follows
+   public static void reset()
+   {
+      metrics_.clear();
+      startTime_ = System.currentTimeMillis();
+   }
+
+   // Returns a snapshot of the metrics for all methods, busiest first
+   public static JSONObject getSnapshot()
+   {
+      ArrayList<MethodMetrics> metrics =
+            new ArrayList<MethodMetrics>(metrics_.values());
+      Collections.sort(metrics, new Comparator<MethodMetrics>()
+      {
+         public int compare(MethodMetrics a, MethodMetrics b)
+         {
+            return b.count - a.count;
+         }
+      });
+
+      JSONArray methods = new JSONArray();
+      for (MethodMetrics metric : metrics)
+         methods.set(methods.size(), metric.toJson());
+
+      JSONObject snapshot = new JSONObject();
+      snapshot.put("start_time", new JSONNumber(startTime_));
+      snapshot.put("end_time", new JSONNumber(System.currentTimeMillis()));
+      snapshot.put("methods", methods);
+      return snapshot;
+   }
+
+   private static MethodMetrics getMethodMetrics(String method)
+   {
+      MethodMetrics metrics = metrics_.get(method);
+      if (metrics == null)
+      {
+         metrics = new MethodMetrics(method);
+         metrics_.put(method, metrics);
+      }
+      return metrics;
+   }
+
+   private static class MethodMetrics
+   {
+      public MethodMetrics(String method)
+      {
+         this.method = method;
+      }
+
+      public JSONObject toJson()
+      {
+         JSONObject errorCodes = new JSONObject();
+         for (Map.Entry<Integer, Integer> entry : this.errorCodes.entrySet())
+         {
+            errorCodes.put(entry.getKey().toString(),
+                           new JSONNumber(entry.getValue()));
+         }
+
+         JSONObject json = new JSONObject();
+         json.put("method", new JSONString(method));
+         json.put("count", new JSONNumber(count));
+         json.put("errors", new JSONNumber(errorCount));
+         json.put("retries", new JSONNumber(retryCount));
+         json.put("error_codes", errorCodes);
+         json.put("latency_ms", latency.toJson());
+         json.put("request_size", requestSize.toJson());
+         json.put("response_size", responseSize.toJson());
+         return json;
+      }
+
+      public final String method;
+      public int count;
+      public int errorCount;
+      public int retryCount;
+      public final HashMap<Integer, Integer> errorCodes =
+            new HashMap<Integer, Integer>();
+
+      // 1 ms to ~65 s in steps of sqrt(2)
+      public final Histogram latency = new Histogram(1, Math.sqrt(2), 33);
+      // 64 characters to 64 MB in powers of 2
+      public final Histogram requestSize = new Histogram(64, 2, 21);
+      public final Histogram responseSize = new Histogram(64, 2, 21);
+   }
+
+   // Histogram with bucket upper bounds firstBound * ratio^i, plus a final
+   // overflow bucket. Percentiles are reported as the upper bound of the
+   // bucket they fall in (or the maximum value, if smaller).
+   static class Histogram
+   {
+      public Histogram(double firstBound, double ratio, int buckets)
+      {
+         bounds_ = new double[buckets];
+         double bound = firstBound;
+         for (int i = 0; i < buckets; i++)
+         {
+            bounds_[i] = bound;
+            bound *= ratio;
+         }
+         counts_ = new int[buckets + 1];
+      }
+
+      public void add(double value)
+      {
+         int lo = 0;
+         int hi = bounds_.length;
+         while (lo < hi)
+         {
+            int mid = (lo + hi) >>> 1;
+            if (bounds_[mid] < value)
+               lo = mid + 1;
+            else
+               hi = mid;
+         }
+         counts_[lo]++;
+         count_++;
+         total_ += value;
+         max_ = Math.max(max_, value);
+      }
+
+      public int getCount()
+      {
+         return count_;
+      }
+
+      public double getTotal()
+      {
+         return total_;
+      }
+
+      public double getMax()
+      {
+         return max_;
+      }
+
+      public double getPercentile(double percentile)
+      {
+         if (count_ == 0)
+            return 0;
+
+         int rank = (int) Math.ceil(percentile * count_);
+         int seen = 0;
+         for (int i = 0; i < bounds_.length; i++)
+         {
+            seen += counts_[i];
+            if (seen >= rank)
+               return Math.min(bounds_[i], max_);
+         }
+         return max_;
+      }
+
+      public JSONObject toJson()
+      {
+         JSONObject json = new JSONObject();
+         json.put("total", new JSONNumber(total_));
+         json.put("mean", new JSONNumber(count_ == 0 ? 0 : total_ / count_));
+         json.put("p50", new JSONNumber(getPercentile(0.50)));
+         json.put("p95", new JSONNumber(getPercentile(0.95)));
+         json.put("p99", new JSONNumber(getPercentile(0.99)));
+         json.put("max", new JSONNumber(max_));
+         return json;
+      }
+
+      private final double[] bounds_;
+      private final int[] counts_;
+      private int count_;
+      private double total_;
+      private double max_;
+   }
+
+   private static final HashMap<String, MethodMetrics> metrics_ =
+         new HashMap<String, MethodMetrics>();
+
+   private static long startTime_ = System.currentTimeMillis();
+}
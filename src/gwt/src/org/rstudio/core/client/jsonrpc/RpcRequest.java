@@ -64,29 +64,19 @@ public class RpcRequest
       final RpcRequestCallback requestCallback = callback ;
       
       // build json request object
-      JSONObject request = new JSONObject() ;
-      request.put("method", new JSONString(method_)) ;
-      if ( params_ != null )
-         request.put("params", params_);  
-      if ( kwparams_ != null)
-         request.put("kwparams", kwparams_);
-      
-      // add src window if we have it
-      if (sourceWindow_ != null)
-         request.put("sourceWnd", sourceWindow_);
-      
-      // add client id if we have it
-      if (clientId_ != null)
-         request.put("clientId", clientId_);
-      
-      // add client version
-      request.put("version", clientVersion_);
+      JSONObject request = createRequestObject();
       
       // configure request builder
       RequestBuilder builder = new RequestBuilder(RequestBuilder.POST, url_);
       builder.setHeader("Content-Type", "application/json") ;
       builder.setHeader("Accept", "application/json");
-      String requestId = Integer.toString(Random.nextInt());
+      
+      // a request sent after its batch was rejected is still logged and
+      // measured as begun when the batch was sent
+      boolean resend = batched_ && requestLogEntry_ != null;
+      batched_ = false;
+      String requestId = resend ? requestLogEntry_.getRequestId()
+                                : Integer.toString(Random.nextInt());
       builder.setHeader("X-RS-RID", requestId);
       
       // send request
@@ -96,9 +86,16 @@ public class RpcRequest
          if (TRACE)
             Debug.log("Request: " + requestString) ;
 
-         requestLogEntry_ = RequestLog.log(requestId,
-                                           redactLog_ ? "[REDACTED]"
-                                                      : requestString);
+         final long startTime = resend ? batchStartTime_
+                                       : System.currentTimeMillis();
+         final int requestSize = requestString.length();
+
+         if (!resend)
+         {
+            requestLogEntry_ = RequestLog.log(requestId,
+                                              redactLog_ ? "[REDACTED]"
+                                                         : requestString);
+         }
 
          request_ = builder.sendRequest(requestString, new RequestCallback() {
             
@@ -106,6 +103,8 @@ public class RpcRequest
             {      
                requestLogEntry_.logResponse(ResponseType.Error,
                                            exception.getLocalizedMessage());
+               recordMetrics(startTime, requestSize, 0,
+                             RpcError.TRANSMISSION_ERROR);
                // ERROR: Request failed
                RpcError error = RpcError.create(
                                           RpcError.TRANSMISSION_ERROR,
@@ -130,6 +129,10 @@ public class RpcRequest
                      requestLogEntry_.logResponse(ResponseType.Normal,
                                                  responseText);
                      rpcResponse = RpcResponse.parse(responseText);
+                     recordMetrics(startTime,
+                                   requestSize,
+                                   responseText.length(),
+                                   getErrorCode(rpcResponse));
                      
                      // response received and validated, process it!
                      requestCallback.onResponseReceived(enclosingRequest, 
@@ -162,6 +165,8 @@ public class RpcRequest
                  
                   requestLogEntry_.logResponse(ResponseType.Unknown,
                                               message);
+                  recordMetrics(startTime, requestSize, 0,
+                                RpcError.TRANSMISSION_ERROR);
                   RpcError error = RpcError.create(
                                              RpcError.TRANSMISSION_ERROR,
                                              message) ;
@@ -185,8 +190,54 @@ public class RpcRequest
       }
    }
    
+   // Requests sent together in a batch share a single http request, so
+   // the batch's sender calls these to log and measure each request as if
+   // it had been sent on its own. beginBatched is called when the batch
+   // is sent, and endBatched when its response (or error) arrives. If the
+   // request is instead sent on its own, send ends it.
+   public void beginBatched()
+   {
+      batched_ = true;
+      String requestString = createRequestObject().toString();
+      batchStartTime_ = System.currentTimeMillis();
+      batchRequestSize_ = requestString.length();
+      requestLogEntry_ = RequestLog.log(Integer.toString(Random.nextInt()),
+                                        redactLog_ ? "[REDACTED]"
+                                                   : requestString);
+   }
+   
+   public void endBatched(RpcResponse response)
+   {
+      batched_ = false;
+      String responseText = new JSONObject(response).toString();
+      if (requestLogEntry_ != null)
+         requestLogEntry_.logResponse(ResponseType.Normal, responseText);
+      recordMetrics(batchStartTime_,
+                    batchRequestSize_,
+                    responseText.length(),
+                    getErrorCode(response));
+   }
+   
+   public void endBatched(RpcError error)
+   {
+      batched_ = false;
+      if (requestLogEntry_ != null)
+         requestLogEntry_.logResponse(ResponseType.Error, error.getMessage());
+      recordMetrics(batchStartTime_, batchRequestSize_, 0, error.getCode());
+   }
+   
+   // True if the request was cancelled; a batched request that is cancelled
+   // is left out of its batch, or its response ignored if the batch has
+   // already been sent
+   public boolean isCancelled()
+   {
+      return cancelled_;
+   }
+   
    public void cancel()
    {
+      cancelled_ = true;
+      
       if (request_ != null)
       {
          request_.cancel();
@@ -200,6 +251,64 @@ public class RpcRequest
       }
    }
      
+   // The request as an entry of an rpc_batch request (which carries the
+   // source window, client id and version for all of its entries)
+   JSONObject createBatchEntry()
+   {
+      JSONObject entry = new JSONObject();
+      entry.put("method", new JSONString(method_));
+      if (params_ != null)
+         entry.put("params", params_);
+      if (kwparams_ != null)
+         entry.put("kwparams", kwparams_);
+      return entry;
+   }
+   
+   private JSONObject createRequestObject()
+   {
+      JSONObject request = new JSONObject() ;
+      request.put("method", new JSONString(method_)) ;
+      if ( params_ != null )
+         request.put("params", params_);  
+      if ( kwparams_ != null)
+         request.put("kwparams", kwparams_);
+      
+      // add src window if we have it
+      if (sourceWindow_ != null)
+         request.put("sourceWnd", sourceWindow_);
+      
+      // add client id if we have it
+      if (clientId_ != null)
+         request.put("clientId", clientId_);
+      
+      // add client version
+      request.put("version", clientVersion_);
+      
+      return request;
+   }
+   
+   private void recordMetrics(long startTime,
+                              int requestSize,
+                              int responseSize,
+                              int errorCode)
+   {
+      RpcMetrics.recordResponse(method_,
+                                System.currentTimeMillis() - startTime,
+                                requestSize,
+                                responseSize,
+                                errorCode);
+   }
+
+   private static int getErrorCode(RpcResponse response)
+   {
+      if (response == null)
+         return RpcError.PARSE_ERROR;
+      else if (response.getError() != null)
+         return response.getError().getCode();
+      else
+         return RpcError.SUCCESS;
+   }
+     
    final private String url_ ;
    final private String method_ ;
    final private JSONArray params_ ;
@@ -210,6 +319,10 @@ public class RpcRequest
    final private JSONNumber clientVersion_;
    private Request request_ = null;
    private RequestLogEntry requestLogEntry_ = null;
+   private boolean cancelled_ = false;
+   private boolean batched_ = false;
+   private long batchStartTime_;
+   private int batchRequestSize_;
    
      
 }
@@ -0,0 +1,361 @@
+/*
+ * LineDiff.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.patch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Diffs two strings into a bounded number of replacements (hunks), so that
+ * scattered edits to a large document don't turn into a replacement of
+ * everything between them, as they do with SubstringDiff.
+ *
+ * The common head and tail are trimmed first, then the lines in between are
+ * compared with Myers' O(ND) algorithm and each changed run of lines is
+ * narrowed to the characters that actually differ. If the lines can't be
+ * compared within the time budget (or the edit distance is very large), the
+ * result degrades to the single replacement SubstringDiff would produce.
+ * If there are more than maxHunks hunks, those closest together are merged.
+ */
+public class LineDiff
+{
+   public LineDiff(String origVal, String newVal)
+   {
+      this(origVal, newVal, DEFAULT_TIME_BUDGET_MS, DEFAULT_MAX_HUNKS);
+   }
+
+   public LineDiff(String origVal,
+                   String newVal,
+                   int timeBudgetMs,
+                   int maxHunks)
+   {
+      // Trim the common head (back to the start of its last line, so that
+      // the first line compared is whole) and the common tail.
+      int headLimit = Math.min(origVal.length(), newVal.length());
+      int head;
+      for (head = 0;
+            head < headLimit && origVal.charAt(head) == newVal.charAt(head);
+            head++)
+      {}
+      if (head < headLimit)
+         head = origVal.lastIndexOf('\n', head - 1) + 1;
+
+      int tailLimit = headLimit - head;
+      int tail;
+      for (tail = 0;
+            tail < tailLimit && origVal.charAt(origVal.length() - tail - 1) ==
+                                newVal.charAt(newVal.length() - tail - 1);
+            tail++)
+      {}
+
+      int origEnd = origVal.length() - tail;
+      int newEnd = newVal.length() - tail;
+
+      if (head == origEnd && head == newEnd)
+      {
+         complete_ = true;
+         return;
+      }
+
+      ArrayList<int[]> hunks = diffLines(origVal, head, origEnd,
+                                         newVal, head, newEnd,
+                                         timeBudgetMs);
+      complete_ = hunks != null;
+      if (hunks == null)
+      {
+         hunks = new ArrayList<int[]>();
+         hunks.add(new int[] { head, origEnd, head, newEnd });
+      }
+
+      if (hunks.size() > maxHunks)
+         hunks = mergeHunks(hunks, Math.max(1, maxHunks));
+
+      for (int[] hunk : hunks)
+      {
+         String original = origVal.substring(hunk[0], hunk[1]);
+         String replacement = newVal.substring(hunk[2], hunk[3]);
+         SubstringDiff diff = new SubstringDiff(original, replacement);
+         if (diff.isEmpty())
+            continue;
+
+         replacements_.add(diff.getReplacement());
+         offsets_.add(hunk[0] + diff.getOffset());
+         lengths_.add(diff.getLength());
+      }
+   }
+
+   public int getHunkCount()
+   {
+      return replacements_.size();
+   }
+
+   // The replacement for each hunk, in order
+   public List<String> getReplacements()
+   {
+      return replacements_;
+   }
+
+   // The offset of each hunk in the original string, in ascending order
+   public List<Integer> getOffsets()
+   {
+      return offsets_;
+   }
+
+   // The length of each hunk in the original string
+   public List<Integer> getLengths()
+   {
+      return lengths_;
+   }
+
+   public String patch(String original)
+   {
+      if (isEmpty())
+         return original;
+
+      StringBuilder result = new StringBuilder();
+      int copied = 0;
+      for (int i = 0; i < replacements_.size(); i++)
+      {
+         int offset = offsets_.get(i);
+         result.append(original, copied, offset);
+         result.append(replacements_.get(i));
+         copied = offset + lengths_.get(i);
+      }
+      result.append(original, copied, original.length());
+      return result.toString();
+   }
+
+   /**
+    * @return True iff there was no difference between the strings.
+    */
+   public boolean isEmpty()
+   {
+      return replacements_.isEmpty();
+   }
+
+   /**
+    * @return False if the lines couldn't be compared within the time budget,
+    *         in which case there is a single hunk spanning the first to the
+    *         last difference.
+    */
+   public boolean isComplete()
+   {
+      return complete_;
+   }
+
+   // Returns the hunks { origStart, origEnd, newStart, newEnd } (as offsets
+   // in the strings) needed to turn the lines of origVal[origStart, origEnd)
+   // into those of newVal[newStart, newEnd), or null if that couldn't be
+   // worked out in time
+   private static ArrayList<int[]> diffLines(String origVal,
+                                             int origStart,
+                                             int origEnd,
+                                             String newVal,
+                                             int newStart,
+                                             int newEnd,
+                                             int timeBudgetMs)
+   {
+      long deadline = System.currentTimeMillis() + timeBudgetMs;
+
+      HashMap<String, Integer> ids = new HashMap<String, Integer>();
+      int[] origOffsets = splitLines(origVal, origStart, origEnd);
+      int[] newOffsets = splitLines(newVal, newStart, newEnd);
+      int[] a = lineIds(origVal, origOffsets, ids);
+      int[] b = lineIds(newVal, newOffsets, ids);
+      int n = a.length;
+      int m = b.length;
+
+      // v[d][k + d] is the furthest x reached on diagonal k = x - y with d
+      // edits
+      int maxD = Math.min(n + m, MAX_EDIT_DISTANCE);
+      ArrayList<int[]> v = new ArrayList<int[]>();
+      int found = -1;
+      for (int d = 0; d <= maxD && found < 0; d++)
+      {
+         if (System.currentTimeMillis() > deadline)
+            return null;
+
+         int[] prev = d == 0 ? null : v.get(d - 1);
+         int[] cur = new int[2 * d + 1];
+         for (int k = -d; k <= d; k += 2)
+         {
+            int x;
+            if (d == 0)
+               x = 0;
+            else if (k == -d || (k != d && prev[k - 1 + d - 1] <
+                                           prev[k + 1 + d - 1]))
+               x = prev[k + 1 + d - 1];
+            else
+               x = prev[k - 1 + d - 1] + 1;
+
+            int y = x - k;
+            while (x < n && y < m && a[x] == b[y])
+            {
+               x++;
+               y++;
+            }
+            cur[k + d] = x;
+
+            if (x >= n && y >= m)
+            {
+               found = d;
+               break;
+            }
+         }
+         v.add(cur);
+      }
+
+      if (found < 0)
+         return null;
+
+      // Walk back through the edits, collecting runs of edited lines (in
+      // reverse) as { origStartLine, origEndLine, newStartLine, newEndLine }
+      ArrayList<int[]> lineHunks = new ArrayList<int[]>();
+      int[] hunk = null;
+      int x = n;
+      int y = m;
+      for (int d = found; d > 0; d--)
+      {
+         int[] prev = v.get(d - 1);
+         int k = x - y;
+         boolean insert = k == -d || (k != d && prev[k - 1 + d - 1] <
+                                                prev[k + 1 + d - 1]);
+         int prevK = insert ? k + 1 : k - 1;
+         int prevX = prev[prevK + d - 1];
+         int prevY = prevX - prevK;
+
+         // lines between the edit and (x, y) are unchanged
+         int editEndX = insert ? prevX : prevX + 1;
+         if (hunk != null && editEndX < x)
+         {
+            lineHunks.add(hunk);
+            hunk = null;
+         }
+
+         if (hunk == null)
+         {
+            hunk = insert ? new int[] { prevX, prevX, prevY, prevY + 1 }
+                          : new int[] { prevX, prevX + 1, prevY, prevY };
+         }
+         hunk[0] = prevX;
+         hunk[2] = prevY;
+
+         x = prevX;
+         y = prevY;
+      }
+      if (hunk != null)
+         lineHunks.add(hunk);
+
+      ArrayList<int[]> hunks = new ArrayList<int[]>();
+      for (int i = lineHunks.size() - 1; i >= 0; i--)
+      {
+         int[] lines = lineHunks.get(i);
+         hunks.add(new int[] { origOffsets[lines[0]], origOffsets[lines[1]],
+                               newOffsets[lines[2]], newOffsets[lines[3]] });
+      }
+      return hunks;
+   }
+
+   // Returns the offsets at which each line of value[start, end) begins,
+   // followed by end
+   private static int[] splitLines(String value, int start, int end)
+   {
+      int count = 0;
+      for (int i = value.indexOf('\n', start);
+           i >= 0 && i < end - 1;
+           i = value.indexOf('\n', i + 1))
+      {
+         count++;
+      }
+
+      int lines = start == end ? 0 : count + 1;
+      int[] offsets = new int[lines + 1];
+      int offset = start;
+      for (int i = 0; i < lines; i++)
+      {
+         offsets[i] = offset;
+         offset = value.indexOf('\n', offset) + 1;
+      }
+      offsets[lines] = end;
+      return offsets;
+   }
+
+   private static int[] lineIds(String value,
+                                int[] offsets,
+                                HashMap<String, Integer> ids)
+   {
+      int[] result = new int[offsets.length - 1];
+      for (int i = 0; i < result.length; i++)
+      {
+         String line = value.substring(offsets[i], offsets[i + 1]);
+         Integer id = ids.get(line);
+         if (id == null)
+         {
+            id = ids.size();
+            ids.put(line, id);
+         }
+         result[i] = id;
+      }
+      return result;
+   }
+
+   // Merges the hunks separated by the smallest gaps until there are at
+   // most maxHunks
+   private static ArrayList<int[]> mergeHunks(ArrayList<int[]> hunks,
+                                              int maxHunks)
+   {
+      int[] gaps = new int[hunks.size() - 1];
+      for (int i = 0; i < gaps.length; i++)
+         gaps[i] = hunks.get(i + 1)[0] - hunks.get(i)[1];
+
+      int[] sorted = gaps.clone();
+      Arrays.sort(sorted);
+      int threshold = sorted[hunks.size() - maxHunks - 1];
+      int toMerge = hunks.size() - maxHunks;
+
+      ArrayList<int[]> merged = new ArrayList<int[]>();
+      int[] current = hunks.get(0).clone();
+      for (int i = 0; i < gaps.length; i++)
+      {
+         int[] next = hunks.get(i + 1);
+         if (toMerge > 0 && gaps[i] <= threshold)
+         {
+            current[1] = next[1];
+            current[3] = next[3];
+            toMerge--;
+         }
+         else
+         {
+            merged.add(current);
+            current = next.clone();
+         }
+      }
+      merged.add(current);
+      return merged;
+   }
+
+   private final ArrayList<String> replacements_ = new ArrayList<String>();
+   private final ArrayList<Integer> offsets_ = new ArrayList<Integer>();
+   private final ArrayList<Integer> lengths_ = new ArrayList<Integer>();
+   private boolean complete_;
+
+   public static final int DEFAULT_TIME_BUDGET_MS = 25;
+   public static final int DEFAULT_MAX_HUNKS = 100;
+
+   // bounds the memory used to record the edit paths (~MAX^2 ints)
+   private static final int MAX_EDIT_DISTANCE = 1000;
+}
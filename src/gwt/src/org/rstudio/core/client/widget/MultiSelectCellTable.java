@@ -171,8 +171,7 @@ public class MultiSelectCellTable<T> extends CellTable<T>
                   event.preventDefault();
                   event.stopPropagation();
 
-                  for (T item : getVisibleItems())
-                     getSelectionModel().setSelected(item, true);
+                  selectAll();
                }
             }
             break;
@@ -316,6 +315,12 @@ public class MultiSelectCellTable<T> extends CellTable<T>
       return true;
    }
 
+   protected void selectAll()
+   {
+      for (T item : getVisibleItems())
+         getSelectionModel().setSelected(item, true);
+   }
+
    @Override
    public HandlerRegistration addClickHandler(ClickHandler handler)
    {
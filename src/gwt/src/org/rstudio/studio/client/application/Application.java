@@ -42,6 +42,8 @@ import org.rstudio.core.client.command.CommandBinder;
 import org.rstudio.core.client.command.Handler;
 import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.dom.WindowEx;
+import org.rstudio.core.client.jsonrpc.RequestLog;
+import org.rstudio.core.client.jsonrpc.RpcMetrics;
 import org.rstudio.core.client.regex.Pattern;
 import org.rstudio.core.client.widget.Operation;
 import org.rstudio.studio.client.application.ApplicationQuit.QuitContext;
@@ -57,6 +59,7 @@ import org.rstudio.studio.client.common.SuperDevMode;
 import org.rstudio.studio.client.common.satellite.SatelliteManager;
 import org.rstudio.studio.client.projects.Projects;
 import org.rstudio.studio.client.server.*;
+import org.rstudio.studio.client.server.remote.ClientEventDispatcher;
 import org.rstudio.studio.client.workbench.ClientStateUpdater;
 import org.rstudio.studio.client.workbench.Workbench;
 import org.rstudio.studio.client.workbench.commands.Commands;
@@ -304,6 +307,33 @@ public class Application implements ApplicationEventHandlers
       Element el = DomUtils.getActiveElement();
       DomUtils.dump(el, "Focused Element: ");
    }
+   
+   @Handler
+   public void onLogClientEventStats()
+   {
+      Debug.log("Client Event Statistics:\n" + 
+                ClientEventDispatcher.getDispatchStatsSummary());
+   }
+
+   @Handler
+   public void onRetainFullRequestLog()
+   {
+      boolean retain = !RequestLog.getRetainFullBodies();
+      RequestLog.setRetainFullBodies(retain);
+      commands_.retainFullRequestLog().setChecked(retain);
+   }
+
+   @Handler
+   public void onLogRpcMetrics()
+   {
+      Debug.log("RPC Metrics:\n" + RpcMetrics.getSnapshot().toString());
+   }
+
+   @Handler
+   public void onResetRpcMetrics()
+   {
+      RpcMetrics.reset();
+   }
 
    @Handler
    public void onRefreshSuperDevMode()
@@ -627,6 +657,18 @@ public class Application implements ApplicationEventHandlers
       // interrupt hack(s)
       events_.addHandler(ClientDisconnectedEvent.TYPE, this); 
       
+      // batch requests if requested (before creating the workbench so that
+      // the burst of requests it makes at startup is batched)
+      server_.setBatchRequests(uiPrefs_.get().batchRpcRequests().getValue());
+      uiPrefs_.get().batchRpcRequests().addValueChangeHandler(
+                                          new ValueChangeHandler<Boolean>() {
+         @Override
+         public void onValueChange(ValueChangeEvent<Boolean> event)
+         {
+            server_.setBatchRequests(event.getValue());
+         }
+      });
+      
       // create workbench
       Workbench wb = workbench_.get();
       eventBusProvider_.get().fireEvent(new SessionInitEvent()) ;
@@ -58,6 +58,9 @@ public interface ApplicationServerOperations extends PrefsServerOperations
    // verify current credentials
    void updateCredentials();
    
+   // send requests issued in the same event loop turn as a single request
+   void setBatchRequests(boolean batchRequests);
+   
    // get an application URL
    String getApplicationURL(String pathName);
    
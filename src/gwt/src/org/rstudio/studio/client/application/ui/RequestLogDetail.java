@@ -31,7 +31,11 @@ public class RequestLogDetail extends Composite
       panel.getElement().getStyle().setOverflow(Overflow.AUTO);
 
       HTML html = new HTML();
-      html.setText("Request ID: " + entry.getRequestId() + "\n\n"
+      html.setText("Request ID: " + entry.getRequestId() + "\n"
+                   + "Method: " + entry.getRequestMethodName() + "\n"
+                   + "Latency: " + entry.getLatency() + " ms\n"
+                   + "Request size: " + entry.getRequestSize() + "\n"
+                   + "Response size: " + entry.getResponseSize() + "\n\n"
                    + "== REQUEST ======\n"
                    + req
                    + "\n\n"
@@ -16,6 +16,7 @@
 
 package org.rstudio.studio.client.common.compile;
 
+import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.VirtualConsole;
 import org.rstudio.core.client.widget.BottomScrollPanel;
 import org.rstudio.core.client.widget.FontSizer;
@@ -43,12 +44,37 @@ public class CompileOutputBuffer extends Composite
    
    public void append(String output)
    {
-      virtualConsole_.submit(output);
-      output_.setText(virtualConsole_.toString()); 
+      // render only what changed rather than resetting the entire text
+      virtualConsole_.submitAndRender(output, null, output_.getElement());
+      
+      // a form feed clears the console, so count the lines left after it
+      if (output.indexOf('\f') >= 0)
+         lines_ = StringUtil.countMatches(virtualConsole_.toString(), '\n');
+      else
+         lines_ += StringUtil.countMatches(output, '\n');
+      trimExcess();
 
       scrollPanel_.onContentSizeChanged();
    }
    
+   @Override
+   public void setMaxLines(int maxLines)
+   {
+      maxLines_ = maxLines;
+      trimExcess();
+   }
+   
+   private void trimExcess()
+   {
+      // trim in batches so we aren't trimming on every append once the
+      // limit has been reached
+      if (maxLines_ <= 0 || lines_ <= maxLines_ + TRIM_BATCH_LINES)
+         return;
+      
+      lines_ -= virtualConsole_.trimLines(lines_ - maxLines_,
+                                          output_.getElement());
+   }
+   
    @Override
    public void writeCommand(String command)
    {
@@ -80,9 +106,15 @@ public class CompileOutputBuffer extends Composite
    {
       output_.setText("");
       virtualConsole_ = new VirtualConsole();
+      lines_ = 0;
    }
  
    private PreWidget output_;
    private VirtualConsole virtualConsole_ = new VirtualConsole();
+   private int lines_ = 0;
+   private int maxLines_ = DEFAULT_MAX_LINES;
    private BottomScrollPanel scrollPanel_;
+   
+   public static final int DEFAULT_MAX_LINES = 20000;
+   private static final int TRIM_BATCH_LINES = 500;
 }
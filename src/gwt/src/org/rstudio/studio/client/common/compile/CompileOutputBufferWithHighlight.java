@@ -16,6 +16,7 @@
 
 package org.rstudio.studio.client.common.compile;
 
+import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.VirtualConsole;
 import org.rstudio.core.client.widget.BottomScrollPanel;
 import org.rstudio.core.client.widget.FontSizer;
@@ -78,14 +79,37 @@ public class CompileOutputBufferWithHighlight extends Composite
    {
       console_.clear();
       output_.setText("");
+      lines_ = 0;
+   }
+   
+   @Override
+   public void setMaxLines(int maxLines)
+   {
+      maxLines_ = maxLines;
+      trimExcess();
    }
    
    private void write(String output, String className)
    {
       console_.submitAndRender(output, className, output_.getElement());
+      
+      // a form feed clears the console, so count the lines left after it
+      if (output.indexOf('\f') >= 0)
+         lines_ = StringUtil.countMatches(console_.toString(), '\n');
+      else
+         lines_ += StringUtil.countMatches(output, '\n');
+      trimExcess();
       scrollPanel_.onContentSizeChanged();
    }
    
+   private void trimExcess()
+   {
+      if (maxLines_ <= 0 || lines_ <= maxLines_ + TRIM_BATCH_LINES)
+         return;
+      
+      lines_ -= console_.trimLines(lines_ - maxLines_, output_.getElement());
+   }
+   
    private String getErrorClass()
    {
       return styles_.output() + " " + 
@@ -96,4 +120,8 @@ public class CompileOutputBufferWithHighlight extends Composite
    VirtualConsole console_ = new VirtualConsole();
    private BottomScrollPanel scrollPanel_;
    private ConsoleResources.ConsoleStyles styles_;
+   private int lines_ = 0;
+   private int maxLines_ = CompileOutputBuffer.DEFAULT_MAX_LINES;
+   
+   private static final int TRIM_BATCH_LINES = 500;
 }
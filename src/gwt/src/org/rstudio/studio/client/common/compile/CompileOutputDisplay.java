@@ -29,4 +29,7 @@ public interface CompileOutputDisplay
    public void clear();
    public void scrollToBottom();
    
+   // Limits the output retained to the given number of lines (the oldest
+   // lines are discarded first); values <= 0 mean no limit
+   public void setMaxLines(int maxLines);
 }
@@ -131,6 +131,13 @@ public class CompilePanel extends Composite
       }
    }
    
+   // Limits the output retained to the given number of lines; values <= 0
+   // mean no limit
+   public void setMaxOutputLines(int maxLines)
+   {
+      outputDisplay_.setMaxLines(maxLines);
+   }
+   
    public void showOutput(String output)
    {
       outputDisplay_.writeOutput(output);
@@ -0,0 +1,294 @@
+/*
+ * OutputLineStore.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.shell;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.rstudio.core.client.CircularQueue;
+
+/**
+ * Compact in-memory store for console scrollback, used by the virtualized
+ * console output view. Completed lines are stored as a string plus a
+ * (usually single-entry) list of style runs; only the trailing, still open
+ * line keeps per-character style information so that \r and \b can
+ * overwrite it the same way VirtualConsole does.
+ */
+public class OutputLineStore
+{
+   public static class Line
+   {
+      private Line(String text, String[] classes, int[] ends)
+      {
+         text_ = text;
+         classes_ = classes;
+         ends_ = ends;
+      }
+
+      public String getText()
+      {
+         return text_;
+      }
+
+      public int getRunCount()
+      {
+         return classes_.length;
+      }
+
+      public String getRunClass(int run)
+      {
+         return classes_[run];
+      }
+
+      public int getRunStart(int run)
+      {
+         return run == 0 ? 0 : getRunEnd(run - 1);
+      }
+
+      public int getRunEnd(int run)
+      {
+         return ends_ == null ? text_.length() : ends_[run];
+      }
+
+      private final String text_;
+      private final String[] classes_;
+      // null when the whole line has a single class
+      private final int[] ends_;
+   }
+
+   public OutputLineStore()
+   {
+   }
+
+   // Adds the given output to the store, interpreting \n, \r, \b and \f
+   // like the R console. Returns the index of the first line which changed.
+   public int append(String data, String className)
+   {
+      className = intern(className);
+      int firstChanged = getOpenLineIndex();
+
+      int tail = 0;
+      int length = data.length();
+      for (int i = 0; i < length; i++)
+      {
+         char ch = data.charAt(i);
+         if (ch != '\n' && ch != '\r' && ch != '\b' && ch != '\f')
+            continue;
+
+         write(data.substring(tail, i), className);
+         tail = i + 1;
+
+         switch (ch)
+         {
+         case '\n':
+            commitOpenLine();
+            break;
+         case '\r':
+            // \r\n is just a newline
+            if (i + 1 < length && data.charAt(i + 1) == '\n')
+               break;
+            openPos_ = 0;
+            break;
+         case '\b':
+            if (openPos_ > 0)
+            {
+               openPos_--;
+               openText_.deleteCharAt(openPos_);
+               openClasses_.remove(openPos_);
+            }
+            break;
+         case '\f':
+            clear();
+            firstChanged = 0;
+            break;
+         }
+      }
+      write(data.substring(tail), className);
+
+      return Math.min(firstChanged, getOpenLineIndex());
+   }
+
+   // Number of lines, including the trailing line if it has any content
+   public int getLineCount()
+   {
+      return lines_.size() + (openText_.length() > 0 ? 1 : 0);
+   }
+
+   public Line getLine(int index)
+   {
+      if (index == lines_.size())
+         return createLine(openText_.toString(), openClasses_);
+      return lines_.get(index);
+   }
+
+   // Returns the text of lines [start, end), each terminated by a newline
+   // (except for a trailing line which has not yet been completed)
+   public String getText(int start, int end)
+   {
+      StringBuilder builder = new StringBuilder();
+      int count = Math.min(end, getLineCount());
+      for (int i = Math.max(0, start); i < count; i++)
+      {
+         builder.append(getLine(i).getText());
+         if (i < lines_.size())
+            builder.append('\n');
+      }
+      return builder.toString();
+   }
+
+   // Returns the index of the next line at or after (or, if searching
+   // backwards, at or before) the given line containing the query, wrapping
+   // around the buffer; -1 if there is no match
+   public int find(String query, int fromLine, boolean forward,
+                   boolean ignoreCase)
+   {
+      int count = getLineCount();
+      if (count == 0 || query.length() == 0)
+         return -1;
+
+      if (ignoreCase)
+         query = query.toLowerCase();
+
+      int line = Math.max(0, Math.min(fromLine, count - 1));
+      for (int i = 0; i < count; i++)
+      {
+         String text = getLine(line).getText();
+         if (ignoreCase)
+            text = text.toLowerCase();
+         if (text.indexOf(query) >= 0)
+            return line;
+
+         line = forward ? (line + 1) % count : (line - 1 + count) % count;
+      }
+      return -1;
+   }
+
+   // Removes lines from the top of the buffer so that at most maxLines
+   // remain; returns the number of lines removed
+   public int trim(int maxLines)
+   {
+      int removed = 0;
+      while (getLineCount() > maxLines && !lines_.isEmpty())
+      {
+         lines_.remove();
+         removed++;
+      }
+      return removed;
+   }
+
+   public void clear()
+   {
+      lines_.clear();
+      openText_.setLength(0);
+      openClasses_.clear();
+      openPos_ = 0;
+   }
+
+   private int getOpenLineIndex()
+   {
+      return lines_.size();
+   }
+
+   private void write(String text, String className)
+   {
+      if (text.length() == 0)
+         return;
+
+      int endPos = openPos_ + text.length();
+      openText_.replace(openPos_, Math.min(endPos, openText_.length()), text);
+      for (int i = openPos_; i < endPos; i++)
+      {
+         if (i < openClasses_.size())
+            openClasses_.set(i, className);
+         else
+            openClasses_.add(className);
+      }
+      openPos_ = endPos;
+   }
+
+   private void commitOpenLine()
+   {
+      lines_.add(createLine(openText_.toString(), openClasses_));
+      openText_.setLength(0);
+      openClasses_.clear();
+      openPos_ = 0;
+   }
+
+   private Line createLine(String text, ArrayList<String> classes)
+   {
+      int end = classes.size();
+      if (end == 0)
+         return new Line(text, new String[] { lastClass_ }, null);
+
+      // count the runs first so we can allocate exactly sized arrays
+      int runs = 1;
+      for (int i = 1; i < end; i++)
+      {
+         if (!sameClass(classes.get(i - 1), classes.get(i)))
+            runs++;
+      }
+
+      if (runs == 1)
+      {
+         lastClass_ = classes.get(0);
+         return new Line(text, new String[] { lastClass_ }, null);
+      }
+
+      String[] runClasses = new String[runs];
+      int[] runEnds = new int[runs];
+      int run = 0;
+      runClasses[0] = classes.get(0);
+      for (int i = 1; i < end; i++)
+      {
+         if (!sameClass(classes.get(i - 1), classes.get(i)))
+         {
+            runEnds[run++] = i;
+            runClasses[run] = classes.get(i);
+         }
+      }
+      runEnds[run] = end;
+      lastClass_ = runClasses[run];
+      return new Line(text, runClasses, runEnds);
+   }
+
+   private static boolean sameClass(String a, String b)
+   {
+      return a == null ? b == null : a.equals(b);
+   }
+
+   // style class strings are often rebuilt for every write, so share a
+   // single instance of each to keep per-line overhead to a reference
+   private String intern(String className)
+   {
+      if (className == null)
+         return null;
+
+      String interned = classNames_.get(className);
+      if (interned == null)
+      {
+         classNames_.put(className, className);
+         interned = className;
+      }
+      return interned;
+   }
+
+   private final CircularQueue<Line> lines_ = new CircularQueue<Line>();
+   private final StringBuilder openText_ = new StringBuilder();
+   private final ArrayList<String> openClasses_ = new ArrayList<String>();
+   private int openPos_ = 0;
+   private String lastClass_ = null;
+   private final HashMap<String, String> classNames_ =
+         new HashMap<String, String>();
+}
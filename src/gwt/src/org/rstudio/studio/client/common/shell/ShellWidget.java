@@ -14,9 +14,11 @@
  */
 package org.rstudio.studio.client.common.shell;
 
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.TreeMap;
 
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
@@ -70,6 +72,7 @@ public class ShellWidget extends Composite implements ShellDisplay,
       events_ = events;
       
       SelectInputClickHandler secondaryInputHandler = new SelectInputClickHandler();
+      secondaryInputHandler_ = secondaryInputHandler;
 
       output_ = new PreWidget();
       output_.setStylePrimaryName(styles_.output());
@@ -139,6 +142,19 @@ public class ShellWidget extends Composite implements ShellDisplay,
                                      scrollPanel_.getOffsetHeight() + 40;
                   scrollPanel_.setVerticalScrollPosition(Math.max(0, newScrollTop));
                   break;
+
+               case 'A':
+                  // With nothing typed there's nothing in the input to
+                  // select, so select all of the (virtualized) output
+                  if ((event.isControlKeyDown() || event.isMetaKeyDown()) &&
+                      virtualOutput_ != null &&
+                      input_.getCode().length() == 0)
+                  {
+                     event.stopPropagation();
+                     event.preventDefault();
+                     virtualOutput_.selectAll();
+                  }
+                  break;
             }
          }
       });
@@ -243,13 +259,18 @@ public class ShellWidget extends Composite implements ShellDisplay,
    {
       clearPendingInput();
       output(error, getErrorClass(), false);
-
+      
       // Pick up the last element emitted to the console. If we get extended
       // information for this error, we'll need to swap out the simple error
-      // element for the extended error element. 
-      Element outputElement = output_.getElement();
-      Node errorNode = outputElement.getChild(
-            outputElement.getChildCount() - 1);
+      // element for the extended error element. (Virtualized output has no
+      // element to swap, so there we just note that the error was written.)
+      Node errorNode = null;
+      if (virtualOutput_ == null)
+      {
+         Element outputElement = output_.getElement();
+         errorNode = outputElement.getChild(
+               outputElement.getChildCount() - 1);
+      }
       if (clearErrors_)
       {
          errorNodes_.clear();
@@ -262,7 +283,14 @@ public class ShellWidget extends Composite implements ShellDisplay,
          final String error, UnhandledError traceInfo, 
          boolean expand, String command)
    {
-      if (errorNodes_.containsKey(error))
+      if (errorNodes_.containsKey(error) && virtualOutput_ != null)
+      {
+         // the error widget can't be shown in virtualized output, so write
+         // out the traceback after the error as text instead
+         errorNodes_.remove(error);
+         output(formatTraceback(traceInfo), getErrorClass(), false);
+      }
+      else if (errorNodes_.containsKey(error))
       {
          Node errorNode = errorNodes_.get(error);
          clearPendingInput();
@@ -285,6 +313,29 @@ public class ShellWidget extends Composite implements ShellDisplay,
       }
    }
    
+   // The error's call stack, innermost call first, numbered and described as
+   // in the traceback of a ConsoleError
+   private static String formatTraceback(UnhandledError traceInfo)
+   {
+      StringBuilder traceback = new StringBuilder();
+      JsArray<ErrorFrame> frames = traceInfo.getErrorFrames();
+      for (int i = frames.length() - 1; i >= 0; i--)
+      {
+         ErrorFrame frame = frames.get(i);
+         traceback.append(i + 1).append(": ").append(frame.getFunctionName());
+         if (!frame.getFileName().isEmpty())
+         {
+            traceback.append(" at ")
+                     .append(FileSystemItem.getNameFromPath(
+                                                   frame.getFileName()))
+                     .append("#")
+                     .append(frame.getLineNumber());
+         }
+         traceback.append("\n");
+      }
+      return traceback.toString();
+   }
+
    @Override
    public void showSourceForFrame(ErrorFrame frame)
    {
@@ -363,6 +414,9 @@ public class ShellWidget extends Composite implements ShellDisplay,
                           String className,
                           boolean addToTop)
    {
+      if (virtualOutput_ != null)
+         return outputVirtualized(text, className);
+      
       if (text.indexOf('\f') >= 0)
          clearOutput();
 
@@ -370,6 +424,14 @@ public class ShellWidget extends Composite implements ShellDisplay,
       boolean isOutput = StringUtil.isNullOrEmpty(className)
                          || className.equals(styles_.output());
 
+      // if the trailing output was entirely trimmed away then there is
+      // nothing left to append to; start a new output run instead
+      if (trailingOutput_ != null && trailingOutput_.getParentNode() == null)
+      {
+         trailingOutput_ = null;
+         trailingOutputConsole_ = null;
+      }
+
       if (isOutput && !addToTop && trailingOutput_ != null)
       {
          // Short-circuit the case where we're appending output to the
@@ -377,12 +439,30 @@ public class ShellWidget extends Composite implements ShellDisplay,
          // treat this differently in case the new output uses control
          // characters to pound over parts of the previous output.
 
-         int oldLineCount = DomUtils.countLines(trailingOutput_, true);
-         trailingOutputConsole_.submit(text);
-         trailingOutput_.setNodeValue(
-               ensureNewLine(trailingOutputConsole_.toString()));
-         int newLineCount = DomUtils.countLines(trailingOutput_, true);
-         lines_ += newLineCount - oldLineCount;
+         boolean cursorAtEnd = trailingOutputConsole_.isCursorAtEnd();
+         int oldLength = trailingOutputConsole_.getLength();
+         boolean appendOnly = trailingOutputConsole_.submit(text) &&
+                              cursorAtEnd;
+         
+         if (appendOnly)
+         {
+            // The new output only adds characters to the end of the run, so
+            // we can append just those to the text node and compute the 
+            // line count delta from the chunk itself. This keeps the cost
+            // of an append independent of the amount of output already in
+            // the run (and also leaves any lines already trimmed from the
+            // front of the node alone).
+            appendTrailingOutput(trailingOutputConsole_.substring(oldLength));
+         }
+         else
+         {
+            int oldLineCount = DomUtils.countLines(trailingOutput_, true);
+            String value = trailingOutputConsole_.toString();
+            trailingOutputPadded_ = needsNewLine(value);
+            trailingOutput_.setNodeValue(ensureNewLine(value));
+            int newLineCount = DomUtils.countLines(trailingOutput_, true);
+            lines_ += newLineCount - oldLineCount;
+         }
       }
       else
       {
@@ -409,10 +489,12 @@ public class ShellWidget extends Composite implements ShellDisplay,
             // If we're prepending output to the top of the console, then
             // it's safe to add a newline if the next chunk (which is already
             // there) is something besides output.
+            boolean padded = false;
             if (!addToTop ||
                 (!outEl.hasChildNodes()
                  || outEl.getFirstChild().getNodeType() != Node.TEXT_NODE))
             {
+               padded = needsNewLine(consoleSnapshot);
                consoleSnapshot = ensureNewLine(consoleSnapshot);
             }
 
@@ -421,6 +503,7 @@ public class ShellWidget extends Composite implements ShellDisplay,
             {
                trailingOutput_ = (Text) node;
                trailingOutputConsole_ = console;
+               trailingOutputPadded_ = padded;
             }
          }
          else
@@ -452,12 +535,62 @@ public class ShellWidget extends Composite implements ShellDisplay,
       return result;
    }
 
+   private boolean outputVirtualized(String text, String className)
+   {
+      // output written while earlier output is still being played back
+      // belongs after it
+      if (pendingOutput_ != null)
+      {
+         pendingOutput_.add(new String[] { text, className });
+         return true;
+      }
+
+      // the line store handles control characters (including \f) itself
+      virtualOutput_.append(text, className);
+      lines_ = virtualOutput_.getLineCount();
+      boolean result = !trimExcess();
+
+      scrollPanel_.onContentSizeChanged();
+      if (scrollPanel_.isScrolledToBottom())
+         scrollToBottomCommand_.nudge();
+
+      return result;
+   }
+   
+   private boolean needsNewLine(String s)
+   {
+      return s.length() > 0 && s.charAt(s.length() - 1) != '\n';
+   }
+   
    private String ensureNewLine(String s)
    {
-      if (s.length() == 0 || s.charAt(s.length() - 1) == '\n')
-         return s;
-      else
+      if (needsNewLine(s))
          return s + '\n';
+      else
+         return s;
+   }
+   
+   private void appendTrailingOutput(String text)
+   {
+      if (text.length() == 0)
+         return;
+      
+      // remove the newline we added to keep the prompt on its own line; 
+      // it will be re-added below if the run still doesn't end in one
+      if (trailingOutputPadded_)
+      {
+         int length = trailingOutput_.getLength();
+         if (length > 0)
+            trailingOutput_.deleteData(length - 1, 1);
+         lines_--;
+      }
+      
+      trailingOutputPadded_ = needsNewLine(text);
+      if (trailingOutputPadded_)
+         text = text + '\n';
+      
+      trailingOutput_.insertData(trailingOutput_.getLength(), text);
+      lines_ += StringUtil.countMatches(text, '\n');
    }
 
    private boolean trimExcess()
@@ -466,7 +599,12 @@ public class ShellWidget extends Composite implements ShellDisplay,
          return false;  // No limit in effect
 
       int linesToTrim = lines_ - maxLines_;
-      if (linesToTrim > 0)
+      if (linesToTrim > 0 && virtualOutput_ != null)
+      {
+         lines_ -= virtualOutput_.trim(maxLines_);
+         return true;
+      }
+      else if (linesToTrim > 0)
       {
          lines_ -= DomUtils.trimLines(output_.getElement(),
                                       lines_ - maxLines_);
@@ -478,6 +616,12 @@ public class ShellWidget extends Composite implements ShellDisplay,
 
    public void playbackActions(final RpcObjectList<ConsoleAction> actions)
    {
+      if (virtualOutput_ != null)
+      {
+         playbackActionsVirtualized(actions);
+         return;
+      }
+      
       Scheduler.get().scheduleIncremental(new RepeatingCommand()
       {
          private int i = actions.length() - 1;
@@ -530,6 +674,80 @@ public class ShellWidget extends Composite implements ShellDisplay,
       });
    }
 
+   // the virtualized output can only be appended to, so rather than 
+   // prepending actions in reverse (which lets the DOM output show the most
+   // recent output first) we replay them in order, a chunk at a time. Any
+   // output written in the meantime is held until the playback is done.
+   private void playbackActionsVirtualized(
+                               final RpcObjectList<ConsoleAction> actions)
+   {
+      final VirtualizedOutputWidget output = virtualOutput_;
+      if (pendingOutput_ == null)
+         pendingOutput_ = new ArrayList<String[]>();
+
+      Scheduler.get().scheduleIncremental(new RepeatingCommand()
+      {
+         private int i = maxLines_ > 0 ?
+                           Math.max(0, actions.length() - maxLines_) : 0;
+
+         public boolean execute()
+         {
+            // User hit Ctrl+L, or switched output modes--we're done.
+            if (cleared_ || virtualOutput_ != output)
+            {
+               flushPendingOutput();
+               return false;
+            }
+
+            int end = Math.min(i + PLAYBACK_CHUNK_SIZE, actions.length());
+            for (; i < end; i++)
+            {
+               ConsoleAction action = actions.get(i);
+               switch (action.getType())
+               {
+                  case ConsoleAction.INPUT:
+                     output.append(action.getData() + "\n",
+                                   styles_.command() + KEYWORD_CLASS_NAME);
+                     break;
+                  case ConsoleAction.OUTPUT:
+                     output.append(action.getData(), styles_.output());
+                     break;
+                  case ConsoleAction.ERROR:
+                     output.append(action.getData(), styles_.error());
+                     break;
+                  case ConsoleAction.PROMPT:
+                     output.append(action.getData(),
+                                   styles_.prompt() + KEYWORD_CLASS_NAME);
+                     break;
+               }
+            }
+            lines_ = output.getLineCount();
+            trimExcess();
+
+            if (i >= actions.length())
+               flushPendingOutput();
+
+            scrollPanel_.onContentSizeChanged();
+            if (!DomUtils.selectionExists())
+               scrollPanel_.scrollToBottom();
+
+            return i < actions.length();
+         }
+      });
+   }
+
+   // Writes out the output held during a playback of console actions
+   private void flushPendingOutput()
+   {
+      if (pendingOutput_ == null)
+         return;
+
+      ArrayList<String[]> pending = pendingOutput_;
+      pendingOutput_ = null;
+      for (String[] output : pending)
+         output(output[0], output[1], false);
+   }
+
    public void focus()
    {
       input_.setFocus(true) ;
@@ -585,6 +803,17 @@ public class ShellWidget extends Composite implements ShellDisplay,
                if (event.isControlKeyDown() || event.isMetaKeyDown())
                   return;
                break;
+            case 'A':
+               // only the visible window of virtualized output is in the
+               // DOM, so it has to do the selecting itself
+               if ((event.isControlKeyDown() || event.isMetaKeyDown()) &&
+                   virtualOutput_ != null)
+               {
+                  event.preventDefault();
+                  virtualOutput_.selectAll();
+                  return;
+               }
+               break;
          }
          input_.setFocus(true);
          delegateEvent(input_.asWidget(), event);
@@ -637,6 +866,10 @@ public class ShellWidget extends Composite implements ShellDisplay,
    public void clearOutput()
    {
       output_.setText("") ;
+      if (virtualOutput_ != null)
+         virtualOutput_.clear();
+      if (pendingOutput_ != null)
+         pendingOutput_.clear();
       lines_ = 0;
       cleared_ = true;
       trailingOutput_ = null;
@@ -755,6 +988,61 @@ public class ShellWidget extends Composite implements ShellDisplay,
       trimExcess();
    }
    
+   // Switches between rendering every output line into the DOM and keeping
+   // output in a line store of which only the visible window is rendered
+   // (which allows for very large scrollback, but doesn't wrap lines). 
+   // Existing output is carried over as plain text.
+   public void setVirtualizedOutput(boolean virtualized)
+   {
+      if (virtualized == (virtualOutput_ != null))
+         return;
+      
+      if (virtualized)
+      {
+         String existing = output_.getElement().getInnerText();
+         virtualOutput_ = new VirtualizedOutputWidget(
+               scrollPanel_,
+               styles_.output() + " " + styles_.virtualizedOutput());
+         virtualOutput_.addClickHandler(secondaryInputHandler_);
+         verticalPanel_.insert(virtualOutput_, 0);
+         output_.setText("");
+         output_.setVisible(false);
+         trailingOutput_ = null;
+         trailingOutputConsole_ = null;
+         errorNodes_.clear();
+         virtualOutput_.append(existing, null);
+         lines_ = virtualOutput_.getLineCount();
+      }
+      else
+      {
+         String existing = virtualOutput_.getText();
+         verticalPanel_.remove(virtualOutput_);
+         virtualOutput_ = null;
+         output_.setVisible(true);
+         lines_ = 0;
+         output(existing, styles_.output(), false);
+         flushPendingOutput();
+      }
+      
+      trimExcess();
+      scrollPanel_.onContentSizeChanged();
+   }
+   
+   public boolean isVirtualizedOutput()
+   {
+      return virtualOutput_ != null;
+   }
+   
+   // Finds the given text in the console output, scrolling the next match 
+   // into view. Only available when output is virtualized (otherwise the
+   // browser's own find can see all output).
+   public boolean findInOutput(String query, boolean forward)
+   {
+      if (virtualOutput_ == null)
+         return false;
+      return virtualOutput_.find(query, forward, true);
+   }
+   
    @Override
    public Widget getShellWidget()
    {
@@ -776,12 +1064,20 @@ public class ShellWidget extends Composite implements ShellDisplay,
    private int lines_ = 0;
    private int maxLines_ = -1;
    private boolean cleared_ = false;
+   // output (text and class name) held while console actions are played
+   // back into virtualized output
+   private ArrayList<String[]> pendingOutput_ ;
    private final PreWidget output_ ;
+   private VirtualizedOutputWidget virtualOutput_ ;
+   private final SelectInputClickHandler secondaryInputHandler_ ;
    private PreWidget pendingInput_ ;
    // Save a reference to the most recent output text node in case the
    // next bit of output contains \b or \r control characters
    private Text trailingOutput_ ;
    private VirtualConsole trailingOutputConsole_ ;
+   // Whether we appended a newline to trailingOutput_ that isn't part of
+   // the console output itself (see ensureNewLine)
+   private boolean trailingOutputPadded_ ;
    private final HTML prompt_ ;
    protected final AceEditor input_ ;
    private final DockPanel inputLine_ ;
@@ -797,4 +1093,5 @@ public class ShellWidget extends Composite implements ShellDisplay,
    private boolean clearErrors_ = false;
 
    private static final String KEYWORD_CLASS_NAME = ConsoleResources.KEYWORD_CLASS_NAME;
+   private static final int PLAYBACK_CHUNK_SIZE = 1000;
 }
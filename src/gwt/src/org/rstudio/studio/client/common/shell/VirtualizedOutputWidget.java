@@ -0,0 +1,350 @@
+/*
+ * VirtualizedOutputWidget.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.shell;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.PreElement;
+import com.google.gwt.dom.client.SpanElement;
+import com.google.gwt.dom.client.Style.Position;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.HasClickHandlers;
+import com.google.gwt.event.dom.client.KeyDownEvent;
+import com.google.gwt.event.dom.client.KeyDownHandler;
+import com.google.gwt.event.dom.client.MouseDownEvent;
+import com.google.gwt.event.dom.client.MouseDownHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import com.google.gwt.user.client.ui.Widget;
+
+import org.rstudio.core.client.dom.DomUtils;
+
+/**
+ * Console output view which keeps its scrollback in an OutputLineStore and
+ * only materializes the lines currently scrolled into view (plus some
+ * overscan) as DOM. The widget's height is that of the full buffer so the
+ * enclosing scroll panel behaves as though every line were present.
+ *
+ * Lines are assumed to have a fixed height, so lines are not wrapped in
+ * this mode. Select All followed by Copy copies the entire buffer.
+ */
+public class VirtualizedOutputWidget extends Widget
+                                     implements HasClickHandlers
+{
+   public VirtualizedOutputWidget(ScrollPanel scrollPanel, String className)
+   {
+      scrollPanel_ = scrollPanel;
+
+      Element container = Document.get().createDivElement();
+      container.getStyle().setPosition(Position.RELATIVE);
+      container.setTabIndex(0);
+      setElement(container);
+
+      window_ = Document.get().createPreElement();
+      window_.setClassName(className);
+      window_.getStyle().setPosition(Position.ABSOLUTE);
+      window_.getStyle().setLeft(0, Unit.PX);
+      window_.getStyle().setRight(0, Unit.PX);
+      window_.getStyle().setTop(0, Unit.PX);
+      container.appendChild(window_);
+
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         @Override
+         public void onScroll(ScrollEvent event)
+         {
+            scheduleRender();
+         }
+      });
+
+      addDomHandler(new KeyDownHandler()
+      {
+         @Override
+         public void onKeyDown(KeyDownEvent event)
+         {
+            if ((event.isControlKeyDown() || event.isMetaKeyDown()) &&
+                event.getNativeKeyCode() == 'A')
+            {
+               event.preventDefault();
+               event.stopPropagation();
+               selectAll();
+            }
+         }
+      }, KeyDownEvent.getType());
+
+      addDomHandler(new MouseDownHandler()
+      {
+         @Override
+         public void onMouseDown(MouseDownEvent event)
+         {
+            selectAll_ = false;
+         }
+      }, MouseDownEvent.getType());
+
+      addCopyHook(container);
+   }
+
+   @Override
+   public HandlerRegistration addClickHandler(ClickHandler handler)
+   {
+      return addDomHandler(handler, ClickEvent.getType());
+   }
+
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
+      lineHeight_ = 0;
+      scheduleRender();
+   }
+
+   public void append(String text, String className)
+   {
+      int firstChanged = store_.append(text, className);
+      if (firstChanged < renderedEnd_)
+         renderedEnd_ = firstChanged;
+      updateHeight();
+      scheduleRender();
+   }
+
+   // Trims the buffer to at most maxLines; returns the number of lines
+   // removed
+   public int trim(int maxLines)
+   {
+      int removed = store_.trim(maxLines);
+      if (removed > 0)
+      {
+         invalidate();
+         updateHeight();
+         scheduleRender();
+      }
+      return removed;
+   }
+
+   public void clear()
+   {
+      store_.clear();
+      selectAll_ = false;
+      invalidate();
+      updateHeight();
+      window_.setInnerText("");
+   }
+
+   public int getLineCount()
+   {
+      return store_.getLineCount();
+   }
+
+   public String getText()
+   {
+      return store_.getText(0, store_.getLineCount());
+   }
+
+   // Searches the full buffer (not just the rendered lines) for the query,
+   // starting after the last match, and scrolls the matching line into
+   // view. Returns false if there is no match.
+   public boolean find(String query, boolean forward, boolean ignoreCase)
+   {
+      int from = lastFindLine_ < 0 ?
+            (forward ? 0 : store_.getLineCount() - 1) :
+            lastFindLine_ + (forward ? 1 : -1);
+      int line = store_.find(query, from, forward, ignoreCase);
+      lastFindLine_ = line;
+      if (line < 0)
+         return false;
+
+      scrollToLine(line);
+      return true;
+   }
+
+   public void scrollToLine(int line)
+   {
+      int lineTop = getElement().getAbsoluteTop() -
+                    scrollPanel_.getElement().getAbsoluteTop() +
+                    scrollPanel_.getVerticalScrollPosition() +
+                    line * getLineHeight();
+      int centered = lineTop - (scrollPanel_.getOffsetHeight() / 2);
+      scrollPanel_.setVerticalScrollPosition(Math.max(0, centered));
+      scheduleRender();
+   }
+
+   // Selects the whole buffer (for copying), taking focus so that the copy
+   // comes here rather than going to whatever had focus
+   public void selectAll()
+   {
+      getElement().focus();
+      selectAll_ = true;
+      DomUtils.selectElement(window_);
+   }
+
+   private void invalidate()
+   {
+      renderedStart_ = 0;
+      renderedEnd_ = 0;
+   }
+
+   private void updateHeight()
+   {
+      getElement().getStyle().setHeight(
+            store_.getLineCount() * getLineHeight(), Unit.PX);
+   }
+
+   private void scheduleRender()
+   {
+      if (renderScheduled_)
+         return;
+
+      renderScheduled_ = true;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         @Override
+         public void execute()
+         {
+            renderScheduled_ = false;
+            render();
+         }
+      });
+   }
+
+   private void render()
+   {
+      if (!isAttached())
+         return;
+
+      int lineHeight = getLineHeight();
+      int lineCount = store_.getLineCount();
+      updateHeight();
+
+      // position of the top of the viewport relative to our top
+      int viewportTop = scrollPanel_.getElement().getAbsoluteTop() -
+                        getElement().getAbsoluteTop();
+      int viewportLines = scrollPanel_.getOffsetHeight() / lineHeight + 1;
+
+      int first = Math.max(0, viewportTop / lineHeight - OVERSCAN);
+      int last = Math.min(lineCount,
+                          first + viewportLines + 2 * OVERSCAN);
+      first = Math.max(0, Math.min(first, last - viewportLines - OVERSCAN));
+
+      if (first == renderedStart_ && last == renderedEnd_)
+         return;
+
+      // replacing the rendered lines would destroy a selection the user is
+      // making, so keep them for as long as they still cover the viewport
+      int firstVisible = Math.max(0, viewportTop / lineHeight);
+      int lastVisible = Math.min(lineCount, firstVisible + viewportLines);
+      if (!selectAll_ && DomUtils.selectionExists() &&
+          renderedStart_ <= firstVisible && lastVisible <= renderedEnd_)
+      {
+         return;
+      }
+
+      PreElement window = Document.get().createPreElement();
+      window.setClassName(window_.getClassName());
+      window.getStyle().setPosition(Position.ABSOLUTE);
+      window.getStyle().setLeft(0, Unit.PX);
+      window.getStyle().setRight(0, Unit.PX);
+      window.getStyle().setTop(first * lineHeight, Unit.PX);
+      for (int i = first; i < last; i++)
+         renderLine(store_.getLine(i), i < lineCount - 1, window);
+
+      getElement().replaceChild(window, window_);
+      window_ = window;
+      renderedStart_ = first;
+      renderedEnd_ = last;
+
+      if (selectAll_)
+         DomUtils.selectElement(window_);
+   }
+
+   private void renderLine(OutputLineStore.Line line,
+                           boolean newline,
+                           Element parent)
+   {
+      Document doc = Document.get();
+      String text = line.getText();
+      for (int run = 0; run < line.getRunCount(); run++)
+      {
+         String runText = text.substring(line.getRunStart(run),
+                                         line.getRunEnd(run));
+         if (runText.length() == 0)
+            continue;
+
+         String className = line.getRunClass(run);
+         if (className == null)
+         {
+            parent.appendChild(doc.createTextNode(runText));
+         }
+         else
+         {
+            SpanElement span = doc.createSpanElement();
+            span.setClassName(className);
+            span.setInnerText(runText);
+            parent.appendChild(span);
+         }
+      }
+      if (newline)
+         parent.appendChild(doc.createTextNode("\n"));
+   }
+
+   private int getLineHeight()
+   {
+      if (lineHeight_ > 0)
+         return lineHeight_;
+
+      if (isAttached())
+      {
+         PreElement probe = Document.get().createPreElement();
+         probe.setClassName(window_.getClassName());
+         probe.setInnerText("X");
+         getElement().appendChild(probe);
+         lineHeight_ = probe.getOffsetHeight();
+         getElement().removeChild(probe);
+      }
+
+      return lineHeight_ > 0 ? lineHeight_ : DEFAULT_LINE_HEIGHT;
+   }
+
+   private final native void addCopyHook(Element element) /*-{
+      var self = this;
+      element.addEventListener("copy", $entry(function(e) {
+         if (!self.@org.rstudio.studio.client.common.shell.VirtualizedOutputWidget::selectAll_)
+            return;
+         var text = self.@org.rstudio.studio.client.common.shell.VirtualizedOutputWidget::getText()();
+         if (e.clipboardData && e.clipboardData.setData) {
+            e.clipboardData.setData("text/plain", text);
+            e.preventDefault();
+         }
+      }), true);
+   }-*/;
+
+   private final ScrollPanel scrollPanel_;
+   private final OutputLineStore store_ = new OutputLineStore();
+   private PreElement window_;
+   private int renderedStart_ = 0;
+   private int renderedEnd_ = 0;
+   private int lineHeight_ = 0;
+   private boolean renderScheduled_ = false;
+   private boolean selectAll_ = false;
+   private int lastFindLine_ = -1;
+
+   private static final int OVERSCAN = 50;
+   private static final int DEFAULT_LINE_HEIGHT = 16;
+}
@@ -25,6 +25,15 @@ public class AllStatus extends JavaScriptObject
       return this.status;
    }-*/;
 
+   // The number of entries in the status (of which getStatus has the first)
+   public native final int getStatusCount() /*-{
+      return this.status_count;
+   }-*/;
+
+   public native final int getStatusId() /*-{
+      return this.status_id;
+   }-*/;
+
    public native final BranchesInfo getBranches() /*-{
       return this.branches;
    }-*/;
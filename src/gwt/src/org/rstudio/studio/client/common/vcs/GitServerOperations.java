@@ -59,9 +59,20 @@ public interface GitServerOperations extends VCSServerOperations
    void gitUnstage(ArrayList<String> paths,
                    ServerRequestCallback<Void> requestCallback);
 
+   // Gets the first pageSize entries of the status (all of them if pageSize
+   // is 0); the rest are fetched with gitStatusPage
    void gitAllStatus(
+         int pageSize,
          ServerRequestCallback<AllStatus> requestCallback);
 
+   // Gets entries of the status last read by gitAllStatus, or null if it's
+   // been read again since
+   void gitStatusPage(
+         int statusId,
+         int offset,
+         int count,
+         ServerRequestCallback<JsArray<StatusAndPathInfo>> requestCallback);
+
    void gitFullStatus(
          ServerRequestCallback<JsArray<StatusAndPathInfo>> requestCallback);
 
@@ -132,6 +132,10 @@ class ClientEvent extends JavaScriptObject
    {
    }
    
+   public static final native ClientEvent create(String type, String data) /*-{
+      return { type: type, data: data };
+   }-*/;
+   
    public final native int getId() /*-{
       return this.id;
    }-*/;
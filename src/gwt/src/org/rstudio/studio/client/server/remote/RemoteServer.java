@@ -16,7 +16,9 @@
 package org.rstudio.studio.client.server.remote;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -28,7 +30,9 @@ import org.rstudio.core.client.files.FileSystemItem;
 import org.rstudio.core.client.js.JsArrayEx;
 import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.js.JsUtil;
+import org.rstudio.core.client.jsonrpc.RpcBatch;
 import org.rstudio.core.client.jsonrpc.RpcError;
+import org.rstudio.core.client.jsonrpc.RpcMetrics;
 import org.rstudio.core.client.jsonrpc.RpcObjectList;
 import org.rstudio.core.client.jsonrpc.RpcRequest;
 import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
@@ -142,6 +146,7 @@ import org.rstudio.studio.client.workbench.views.environment.model.RObject;
 import org.rstudio.studio.client.workbench.views.files.model.FileUploadToken;
 import org.rstudio.studio.client.workbench.views.help.model.HelpInfo;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
+import org.rstudio.studio.client.workbench.views.output.lint.model.LintContentsDelta;
 import org.rstudio.studio.client.workbench.views.output.lint.model.LintItem;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallContext;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageState;
@@ -149,6 +154,7 @@ import org.rstudio.studio.client.workbench.views.packages.model.PackageUpdate;
 import org.rstudio.studio.client.workbench.views.plots.model.Point;
 import org.rstudio.studio.client.workbench.views.presentation.model.PresentationRPubsSource;
 import org.rstudio.studio.client.workbench.views.source.editors.text.IconvListResult;
+import org.rstudio.studio.client.workbench.views.source.model.CheckDocumentBlocksResult;
 import org.rstudio.studio.client.workbench.views.source.model.CheckForExternalEditResult;
 import org.rstudio.studio.client.workbench.views.source.model.CppCapabilities;
 import org.rstudio.studio.client.workbench.views.source.model.CppCompletionResult;
@@ -167,6 +173,8 @@ import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.JsArrayInteger;
 import com.google.gwt.core.client.JsArrayNumber;
 import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.http.client.URL;
 import com.google.gwt.json.client.JSONArray;
 import com.google.gwt.json.client.JSONBoolean;
@@ -244,6 +252,11 @@ public class RemoteServer implements Server
       disconnected_ = true;
       serverEventListener_.stop();
    }
+   
+   public void setBatchRequests(boolean batchRequests)
+   {
+      batchRequests_ = batchRequests;
+   }
      
    public void log(int logEntryType, 
                    String logEntry, 
@@ -1506,6 +1519,45 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, SAVE_DOCUMENT_DIFF, params, requestCallback);
    }
 
+   public void saveDocumentDiffs(String id,
+                                 String path,
+                                 String fileType,
+                                 String encoding,
+                                 String foldSpec,
+                                 List<String> replacements,
+                                 List<Integer> offsets,
+                                 List<Integer> lengths,
+                                 String hash,
+                                 ServerRequestCallback<String> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(id));
+      params.set(1, path == null ? JSONNull.getInstance() : new JSONString(path));
+      params.set(2, fileType == null ? JSONNull.getInstance() : new JSONString(fileType));
+      params.set(3, encoding == null ? JSONNull.getInstance() : new JSONString(encoding));
+      params.set(4, new JSONString(StringUtil.notNull(foldSpec)));
+      setArrayString(params, 5, replacements);
+      setArrayNumber(params, 6, offsets);
+      setArrayNumber(params, 7, lengths);
+      params.set(8, new JSONString(hash));
+      sendRequest(RPC_SCOPE, SAVE_DOCUMENT_DIFFS, params, requestCallback);
+   }
+
+   public void checkDocumentBlocks(
+         String id,
+         List<Integer> blockLines,
+         List<Integer> blockLengths,
+         List<String> blockHashes,
+         ServerRequestCallback<CheckDocumentBlocksResult> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(id));
+      setArrayNumber(params, 1, blockLines);
+      setArrayNumber(params, 2, blockLengths);
+      setArrayString(params, 3, blockHashes);
+      sendRequest(RPC_SCOPE, CHECK_DOCUMENT_BLOCKS, params, requestCallback);
+   }
+
    public void checkForExternalEdit(
          String id,
          ServerRequestCallback<CheckForExternalEditResult> requestCallback)
@@ -1890,9 +1942,24 @@ public class RemoteServer implements Server
    }
 
    @Override
-   public void gitAllStatus(ServerRequestCallback<AllStatus> requestCallback)
+   public void gitAllStatus(int pageSize,
+                            ServerRequestCallback<AllStatus> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, GIT_ALL_STATUS, pageSize, requestCallback);
+   }
+
+   @Override
+   public void gitStatusPage(
+         int statusId,
+         int offset,
+         int count,
+         ServerRequestCallback<JsArray<StatusAndPathInfo>> requestCallback)
    {
-      sendRequest(RPC_SCOPE, GIT_ALL_STATUS, requestCallback);
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONNumber(statusId));
+      params.set(1, new JSONNumber(offset));
+      params.set(2, new JSONNumber(count));
+      sendRequest(RPC_SCOPE, GIT_STATUS_PAGE, params, requestCallback);
    }
 
    @Override
@@ -2375,6 +2442,8 @@ public class RemoteServer implements Server
 
          public void onRetry()
          {
+            RpcMetrics.recordRetry(method);
+
             // retry one time (passing null as last param ensures there
             // is no retry handler installed)
             sendRequest(scope,
@@ -2475,8 +2544,23 @@ public class RemoteServer implements Server
       if (isDisconnected())
          return rpcRequest;
 
-      // send the request
-      rpcRequest.send(new RpcRequestCallback() {
+      // send the request (or queue it to be sent in a batch)
+      RpcRequestCallback callback = createRpcRequestCallback(responseHandler,
+                                                             retryHandler);
+      if (isBatchable(sourceWindow, scope, method, redactLog))
+         enqueueBatchRequest(rpcRequest, callback);
+      else
+         rpcRequest.send(callback);
+
+      // return the request
+      return rpcRequest;
+   }
+   
+   private RpcRequestCallback createRpcRequestCallback(
+                                 final RpcResponseHandler responseHandler,
+                                 final RetryHandler retryHandler)
+   {
+      return new RpcRequestCallback() {
          public void onError(RpcRequest request, RpcError error)
          {
             // ignore errors if we are disconnected
@@ -2540,10 +2624,74 @@ public class RemoteServer implements Server
                   serverEventListener_.ensureEvents();
             }
          }
-      });
-
-      // return the request
-      return rpcRequest;
+      };
+   }
+   
+   // Requests to the rpc scope issued from the main window during the same
+   // event loop turn are sent together as a single rpc_batch request when
+   // batching is enabled. Methods the session handles specially (or which
+   // the session waits for while R is busy) are always sent on their own.
+   private boolean isBatchable(String sourceWindow,
+                               String scope,
+                               String method,
+                               boolean redactLog)
+   {
+      return batchRequests_ &&
+             sourceWindow == null &&
+             !redactLog &&
+             scope.equals(RPC_SCOPE) &&
+             !UNBATCHED_METHODS.contains(method);
+   }
+   
+   private void enqueueBatchRequest(RpcRequest request,
+                                    RpcRequestCallback callback)
+   {
+      if (pendingBatch_ == null)
+      {
+         pendingBatch_ = new RpcBatch(new BatchTransport());
+         Scheduler.get().scheduleFinally(new ScheduledCommand()
+         {
+            @Override
+            public void execute()
+            {
+               RpcBatch batch = pendingBatch_;
+               pendingBatch_ = null;
+               if (!isDisconnected())
+                  batch.send();
+            }
+         });
+      }
+      pendingBatch_.add(request, callback);
+   }
+   
+   private class BatchTransport implements RpcBatch.Transport
+   {
+      @Override
+      public void sendBatch(JSONArray params, RpcRequestCallback callback)
+      {
+         RpcRequest batchRequest = new RpcRequest(
+                                 getApplicationURL(RPC_SCOPE) + "/" + RPC_BATCH,
+                                 RPC_BATCH,
+                                 params,
+                                 null,
+                                 false,
+                                 null,
+                                 clientId_,
+                                 clientVersion_);
+         batchRequest.send(callback);
+      }
+      
+      @Override
+      public void send(RpcRequest request, RpcRequestCallback callback)
+      {
+         request.send(callback);
+      }
+      
+      @Override
+      public void onBatchingUnsupported()
+      {
+         batchRequests_ = false;
+      }
    }
    
    private void ensureListeningForEvents()
@@ -2753,6 +2901,8 @@ public class RemoteServer implements Server
         
          public void onRetry()
          {
+            RpcMetrics.recordRetry(method);
+
             // retry one time (passing null as last param ensures there
             // is no retry handler installed)
             sendRequest(getSourceWindowName(sourceWindow),
@@ -4183,6 +4333,7 @@ public class RemoteServer implements Server
                                    String documentPath,
                                    boolean showMarkersPane,
                                    boolean explicit,
+                                   String contents,
                                    ServerRequestCallback<JsArray<LintItem>> requestCallback)
    {
       JSONArray params = new JSONArray();
@@ -4190,9 +4341,49 @@ public class RemoteServer implements Server
       params.set(1, new JSONString(documentPath));
       params.set(2, JSONBoolean.getInstance(showMarkersPane));
       params.set(3, JSONBoolean.getInstance(explicit));
+      params.set(4, contents == null ? JSONNull.getInstance() :
+                                       new JSONString(contents));
       sendRequest(RPC_SCOPE, LINT_R_SOURCE_DOCUMENT, params, requestCallback);
    }
    
+   @Override
+   public void lintRSourceDocumentDelta(String documentId,
+                                        String documentPath,
+                                        boolean showMarkersPane,
+                                        boolean explicit,
+                                        LintContentsDelta delta,
+                                        ServerRequestCallback<JsArray<LintItem>> requestCallback)
+   {
+      JSONObject deltaJson = new JSONObject();
+      deltaJson.put("start", new JSONNumber(delta.getStart()));
+      deltaJson.put("end", new JSONNumber(delta.getEnd()));
+      deltaJson.put("text", new JSONString(delta.getText()));
+      deltaJson.put("hash", new JSONString(delta.getHash()));
+      
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(documentId));
+      params.set(1, new JSONString(documentPath));
+      params.set(2, JSONBoolean.getInstance(showMarkersPane));
+      params.set(3, JSONBoolean.getInstance(explicit));
+      params.set(4, deltaJson);
+      sendRequest(RPC_SCOPE, LINT_R_SOURCE_DOCUMENT, params, requestCallback);
+   }
+   
+   @Override
+   public void lintRSourceRegions(String documentId,
+                                  String documentPath,
+                                  JsArrayInteger rows,
+                                  JsArrayString code,
+                                  ServerRequestCallback<JsArray<LintItem>> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(documentId));
+      params.set(1, new JSONString(documentPath));
+      params.set(2, new JSONArray(rows));
+      params.set(3, new JSONArray(code));
+      sendRequest(RPC_SCOPE, LINT_R_SOURCE_REGIONS, params, requestCallback);
+   }
+   
    @Override
    public void analyzeProject(ServerRequestCallback<Void> requestCallback)
    {
@@ -4292,6 +4483,8 @@ public class RemoteServer implements Server
    private double clientVersion_ = 0;
    private boolean listeningForEvents_;
    private boolean disconnected_;
+   private boolean batchRequests_ = false;
+   private RpcBatch pendingBatch_ = null;
 
    private final RemoteServerAuth serverAuth_;
    private final RemoteServerEventListener serverEventListener_ ;
@@ -4421,6 +4614,8 @@ public class RemoteServer implements Server
    private static final String OPEN_DOCUMENT = "open_document";
    private static final String SAVE_DOCUMENT = "save_document";
    private static final String SAVE_DOCUMENT_DIFF = "save_document_diff";
+   private static final String SAVE_DOCUMENT_DIFFS = "save_document_diffs";
+   private static final String CHECK_DOCUMENT_BLOCKS = "check_document_blocks";
    private static final String CHECK_FOR_EXTERNAL_EDIT = "check_for_external_edit";
    private static final String IGNORE_EXTERNAL_EDIT = "ignore_external_edit";
    private static final String CLOSE_DOCUMENT = "close_document";
@@ -4461,6 +4656,7 @@ public class RemoteServer implements Server
    private static final String GIT_STAGE = "git_stage";
    private static final String GIT_UNSTAGE = "git_unstage";
    private static final String GIT_ALL_STATUS = "git_all_status";
+   private static final String GIT_STATUS_PAGE = "git_status_page";
    private static final String GIT_FULL_STATUS = "git_full_status";
    private static final String GIT_LIST_BRANCHES = "git_list_branches";
    private static final String GIT_CHECKOUT = "git_checkout";
@@ -4620,6 +4816,7 @@ public class RemoteServer implements Server
    private static final String GET_PENDING_ACTIONS = "get_pending_actions";
    
    private static final String LINT_R_SOURCE_DOCUMENT = "lint_r_source_document";
+   private static final String LINT_R_SOURCE_REGIONS = "lint_r_source_regions";
    private static final String ANALYZE_PROJECT = "analyze_project";
    
    private static final String GET_SET_CLASS_CALL = "get_set_class_slots";
@@ -4628,4 +4825,21 @@ public class RemoteServer implements Server
    private static final String GET_SET_REF_CLASS_CALL = "get_set_ref_class_call";
    private static final String TRANSFORM_SNIPPET = "transform_snippet";
    private static final String GET_SNIPPETS = "get_snippets";
+   
+   private static final String RPC_BATCH = "rpc_batch";
+   private static final HashSet<String> UNBATCHED_METHODS =
+         new HashSet<String>(Arrays.asList(
+               CLIENT_INIT,
+               CONSOLE_INPUT,
+               EDIT_COMPLETED,
+               CHOOSE_FILE_COMPLETED,
+               LOCATOR_COMPLETED,
+               USER_PROMPT_COMPLETED,
+               HANDLE_UNSAVED_CHANGES_COMPLETED,
+               QUIT_SESSION,
+               SUSPEND_SESSION,
+               SUSPEND_FOR_RESTART,
+               INTERRUPT,
+               ABORT,
+               PING));
 }
@@ -21,6 +21,7 @@ import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.Window.ClosingEvent;
 import com.google.gwt.user.client.Window.ClosingHandler;
 import org.rstudio.core.client.jsonrpc.RpcError;
+import org.rstudio.core.client.jsonrpc.RpcMetrics;
 import org.rstudio.core.client.jsonrpc.RpcRequest;
 import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
 import org.rstudio.core.client.jsonrpc.RpcResponse;
@@ -333,6 +334,8 @@ class RemoteServerEventListener
 
          public void onRetry()
          {
+            RpcMetrics.recordRetry("get_events");
+
             // need to do a full restart to ensure that the existing
             // activeRequest_ and activeRequestCallback_ are cleaned up
             // and all state is reset correctly
@@ -330,6 +330,11 @@ public abstract class
    public abstract AppCommand helpKeyboardShortcuts();
    public abstract AppCommand showRequestLog();
    public abstract AppCommand logFocusedElement();
+   public abstract AppCommand logClientEventStats();
+   public abstract AppCommand retainFullRequestLog();
+   public abstract AppCommand logRpcMetrics();
+   public abstract AppCommand resetRpcMetrics();
+   public abstract AppCommand logHibernatedEditors();
    public abstract AppCommand debugDumpContents();
    public abstract AppCommand debugImportDump();
    public abstract AppCommand refreshSuperDevMode();
@@ -149,6 +149,10 @@ public class UIPrefs extends UIPrefsAccessor implements UiPrefsChangedHandler
          preferredDocumentOutlineWidth().setGlobalValue(
                               newUiPrefs.preferredDocumentOutlineWidth().getGlobalValue());
          
+         // inactive editor hibernation
+         hibernateInactiveEditorsMinutes().setGlobalValue(
+                              newUiPrefs.hibernateInactiveEditorsMinutes().getGlobalValue());
+         
          // show document outline by default for Rmd
          showDocumentOutlineRmd().setGlobalValue(
                               newUiPrefs.showDocumentOutlineRmd().getGlobalValue());
@@ -264,6 +268,18 @@ public class UIPrefs extends UIPrefsAccessor implements UiPrefsChangedHandler
          syntaxColorConsole().setGlobalValue(
                              newUiPrefs.syntaxColorConsole().getGlobalValue());
          
+         // virtualized console output
+         virtualizeConsoleOutput().setGlobalValue(
+                        newUiPrefs.virtualizeConsoleOutput().getGlobalValue());
+         
+         // compile output scrollback
+         compileOutputMaxLines().setGlobalValue(
+                        newUiPrefs.compileOutputMaxLines().getGlobalValue());
+         
+         // batched rpc requests
+         batchRpcRequests().setGlobalValue(
+                        newUiPrefs.batchRpcRequests().getGlobalValue());
+         
          highlightRFunctionCalls().setGlobalValue(
                              newUiPrefs.highlightRFunctionCalls().getGlobalValue());
          
@@ -266,6 +266,21 @@ public class UIPrefsAccessor extends Prefs
       return bool("syntax_color_console", false);
    }
    
+   public PrefValue<Boolean> virtualizeConsoleOutput()
+   {
+      return bool("virtualize_console_output", false);
+   }
+   
+   public PrefValue<Integer> compileOutputMaxLines()
+   {
+      return integer("compile_output_max_lines", 20000);
+   }
+   
+   public PrefValue<Boolean> batchRpcRequests()
+   {
+      return bool("batch_rpc_requests", false);
+   }
+   
    public PrefValue<Boolean> highlightRFunctionCalls()
    {
       return bool("highlight_r_function_calls", false);
@@ -505,6 +520,13 @@ public class UIPrefsAccessor extends Prefs
       return integer("preferred_document_outline_width", 110);
    }
    
+   // minutes after which the editors of inactive tabs are released (0 to
+   // never release them)
+   public PrefValue<Integer> hibernateInactiveEditorsMinutes()
+   {
+      return integer("hibernate_inactive_editors_minutes", 60);
+   }
+   
    public PrefValue<Boolean> showDocumentOutlineRmd()
    {
       return bool("show_doc_outline_rmd", false);
@@ -156,7 +156,11 @@ public class EditingPreferencesPane extends PreferencesPane
       displayPanel.add(checkboxPref("Show indent guides", prefs_.showIndentGuides()));
       displayPanel.add(checkboxPref("Blinking cursor", prefs_.blinkingCursor()));
       displayPanel.add(checkboxPref("Show syntax highlighting in console input", prefs_.syntaxColorConsole()));
+      displayPanel.add(checkboxPref("Render only visible console output (no line wrapping)", prefs_.virtualizeConsoleOutput()));
       displayPanel.add(checkboxPref("Highlight R function calls", prefs_.highlightRFunctionCalls()));
+      displayPanel.add(hibernateMinutes_ = numericPref(
+            "Release editors of tabs inactive for (minutes, 0 = never):",
+            prefs_.hibernateInactiveEditorsMinutes()));
       
       Label rMarkdownLabel = headerLabel("R Markdown");
       rMarkdownLabel.getElement().getStyle().setPaddingTop(14, Unit.PX);
@@ -475,7 +479,8 @@ public class EditingPreferencesPane extends PreferencesPane
              (!showMargin_.getValue() || marginCol_.validate("Margin column")) &&
              alwaysCompleteChars_.validateRange("Characters entered", 1, 100) &&
              alwaysCompleteDelayMs_.validateRange("Completion keyboard idle (ms)", 0, 10000) &&
-             backgroundDiagnosticsDelayMs_.validateRange("Diagnostics keyboard idle (ms):", 0, 10000);
+             backgroundDiagnosticsDelayMs_.validateRange("Diagnostics keyboard idle (ms):", 0, 10000) &&
+             hibernateMinutes_.validateRange("Release inactive editors (minutes)", 0, 10080);
    }
 
    @Override
@@ -501,6 +506,7 @@ public class EditingPreferencesPane extends PreferencesPane
    private final NumericValueWidget alwaysCompleteChars_;
    private final NumericValueWidget alwaysCompleteDelayMs_;
    private final NumericValueWidget backgroundDiagnosticsDelayMs_;
+   private final NumericValueWidget hibernateMinutes_;
    private final CheckBox spacesForTab_;
    private final CheckBox showMargin_;
    private final SelectWidget showCompletions_;
@@ -182,6 +182,9 @@ public class GeneralPreferencesPane extends PreferencesPane
                           prefs_.checkForUpdates()));
       }
       
+      add(checkboxPref("Batch requests to the R session (experimental)",
+                       prefs_.batchRpcRequests()));
+      
       saveWorkspace_.setEnabled(false);
       loadRData_.setEnabled(false);
       dirChooser_.setEnabled(false);
@@ -30,6 +30,7 @@ import com.google.inject.Inject;
 import org.rstudio.core.client.BrowseCap;
 import org.rstudio.core.client.widget.HelpButton;
 import org.rstudio.core.client.widget.MessageDialog;
+import org.rstudio.core.client.widget.NumericValueWidget;
 import org.rstudio.core.client.widget.OperationWithInput;
 import org.rstudio.core.client.widget.TextBoxWithButton;
 import org.rstudio.studio.client.common.GlobalDisplay;
@@ -133,6 +134,9 @@ public class PackagesPreferencesPane extends PreferencesPane
       
       add(checkboxPref("Save all files prior to building packages", uiPrefs.saveAllBeforeBuild()));
       add(checkboxPref("Automatically navigate editor to build errors", uiPrefs.navigateToBuildError()));
+      add(compileOutputMaxLines_ = numericPref(
+            "Limit build and compile output to (lines, 0 = no limit):",
+            uiPrefs.compileOutputMaxLines()));
       
       hideObjectFiles_ = new CheckBox("Hide object files in package src directory");
       lessSpaced(hideObjectFiles_);
@@ -177,7 +181,8 @@ public class PackagesPreferencesPane extends PreferencesPane
    @Override
    public boolean validate()
    {
-      return true;
+      return compileOutputMaxLines_.validateRange(
+            "Build and compile output (lines)", 0, 1000000);
    }
 
    @Override
@@ -265,5 +270,6 @@ public class PackagesPreferencesPane extends PreferencesPane
    private CheckBox useDevtools_;
    private CheckBox useSecurePackageDownload_;
    private CheckBox useNewlineInMakefiles_;
+   private final NumericValueWidget compileOutputMaxLines_;
    private boolean reloadRequired_ = false;
 }
@@ -153,6 +153,12 @@ public class BuildPane extends WorkbenchPane implements BuildPresenter.Display
       return compilePanel_.errorList();
    }
    
+   @Override
+   public void setMaxOutputLines(int maxLines)
+   {
+      compilePanel_.setMaxOutputLines(maxLines);
+   }
+   
    @Override
    public void scrollToBottom()
    {
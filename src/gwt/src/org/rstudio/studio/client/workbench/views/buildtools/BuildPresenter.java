@@ -63,6 +63,7 @@ public class BuildPresenter extends BasePresenter
       
       void showOutput(CompileOutput output);
       void scrollToBottom();
+      void setMaxOutputLines(int maxLines);
       
       void showErrors(String basePath,
                       JsArray<SourceMarker> errors, 
@@ -94,6 +95,14 @@ public class BuildPresenter extends BasePresenter
       commands_ = commands;
       fileTypeRegistry_ = fileTypeRegistry;
       sourceBuildHelper_ = sourceBuildHelper;
+      
+      uiPrefs.compileOutputMaxLines().bind(new CommandWithArg<Integer>()
+      {
+         public void execute(Integer maxLines)
+         {
+            view_.setMaxOutputLines(maxLines);
+         }
+      });
         
       eventBus.addHandler(BuildStartedEvent.TYPE, 
                           new BuildStartedEvent.Handler()
@@ -16,19 +16,25 @@ package org.rstudio.studio.client.workbench.views.console;
 
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.dom.client.KeyCodes;
+import com.google.gwt.event.dom.client.KeyDownEvent;
+import com.google.gwt.event.dom.client.KeyDownHandler;
 import com.google.gwt.user.client.ui.IsWidget;
 import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.Widget;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.theme.res.ThemeStyles;
 import org.rstudio.core.client.widget.CanFocus;
+import org.rstudio.core.client.widget.FindTextBox;
 import org.rstudio.core.client.widget.SecondaryToolbar;
 import org.rstudio.core.client.widget.Toolbar;
 import org.rstudio.core.client.widget.ToolbarButton;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.model.Session;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.ui.WorkbenchPane;
 import org.rstudio.studio.client.workbench.views.console.shell.Shell;
 
@@ -39,7 +45,8 @@ public class ConsolePane extends WorkbenchPane
    public ConsolePane(Provider<Shell> consoleProvider,
                       final EventBus events,
                       Commands commands,
-                      Session session)
+                      Session session,
+                      UIPrefs uiPrefs)
    {
       super("Console");
 
@@ -52,6 +59,16 @@ public class ConsolePane extends WorkbenchPane
       // is always created during startup
       ensureWidget();
 
+      // virtualized output isn't all in the DOM, so the browser can't find
+      // text in it
+      uiPrefs.virtualizeConsoleOutput().bind(new CommandWithArg<Boolean>()
+      {
+         public void execute(Boolean arg)
+         {
+            findTextBox_.setVisible(arg);
+         }
+      });
+
       new Console(this, events, commands);
    }
 
@@ -92,6 +109,39 @@ public class ConsolePane extends WorkbenchPane
       toolbar.addLeftWidget(commands_.goToWorkingDir().createToolbarButton());
       consoleInterruptButton_ = commands_.interruptR().createToolbarButton();
       toolbar.addRightWidget(consoleInterruptButton_);
+
+      findTextBox_ = new FindTextBox("Find in Output");
+      findTextBox_.setOverrideWidth(90);
+      findTextBox_.setVisible(false);
+      findTextBox_.addKeyDownHandler(new KeyDownHandler()
+      {
+         @Override
+         public void onKeyDown(KeyDownEvent event)
+         {
+            switch (event.getNativeKeyCode())
+            {
+               case KeyCodes.KEY_ENTER:
+                  event.preventDefault();
+                  event.stopPropagation();
+                  String term = findTextBox_.getValue().trim();
+                  if (term.length() > 0 &&
+                      shell_.getDisplay().isVirtualizedOutput())
+                  {
+                     shell_.getDisplay().findInOutput(term,
+                                                      !event.isShiftKeyDown());
+                  }
+                  break;
+
+               case KeyCodes.KEY_ESCAPE:
+                  event.preventDefault();
+                  event.stopPropagation();
+                  findTextBox_.setValue("");
+                  focus();
+                  break;
+            }
+         }
+      });
+      toolbar.addRightWidget(findTextBox_);
       return toolbar;
    }
    
@@ -168,5 +218,6 @@ public class ConsolePane extends WorkbenchPane
    private Session session_;
    private Label workingDir_;
    private ToolbarButton consoleInterruptButton_;
+   private FindTextBox findTextBox_;
    private boolean debugMode_;
 }
@@ -31,6 +31,7 @@ public interface ConsoleResources extends ClientBundle
       String input();
       String prompt();
       String output();
+      String virtualizedOutput();
       String command();
       String completionPopup();
       String completionGrid();
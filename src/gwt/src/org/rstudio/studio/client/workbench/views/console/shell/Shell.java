@@ -84,6 +84,9 @@ public class Shell implements ConsoleInputHandler,
       void onBeforeUnselected();
       void onBeforeSelected();
       void onSelected();
+
+      boolean isVirtualizedOutput();
+      boolean findInOutput(String query, boolean forward);
    }
    
    @Inject
@@ -58,6 +58,14 @@ public class ShellPane extends ShellWidget implements Shell.Display
             editor.setBlinkingCursor(arg);
          }
       });  
+      
+      uiPrefs.virtualizeConsoleOutput().bind(new CommandWithArg<Boolean>()
+      {
+         public void execute(Boolean arg)
+         {
+            setVirtualizedOutput(arg);
+         }
+      });
    }
 
    @Override
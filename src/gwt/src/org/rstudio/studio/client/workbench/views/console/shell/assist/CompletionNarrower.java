@@ -0,0 +1,196 @@
+/*
+ * CompletionNarrower.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell.assist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Narrows a list of completions to those matching a token, ordered by how
+// well they match. Each candidate is scored once per token (rather than once
+// per comparison while sorting), and the results for each token are kept so
+// that typing another character narrows the results for the previous token
+// instead of the full list. The results kept are bounded by their total
+// number of items, dropping those least recently used.
+public class CompletionNarrower<T>
+{
+   public interface Matcher<T>
+   {
+      // Returns the score of the item for the token (lower scores are better
+      // matches), or NO_MATCH if it doesn't match
+      int score(T item, String token);
+
+      // Orders items with equal scores (lower first)
+      int tieBreak(T item);
+
+      // Returns true if every item matching 'token' also matches 'prefix'
+      // (which it starts with), so that the items for 'token' can be found
+      // among the items for 'prefix'
+      boolean isRefinement(String prefix, String token);
+   }
+
+   public CompletionNarrower(List<T> completions,
+                             Matcher<T> matcher,
+                             int maxCachedItems)
+   {
+      completions_ = completions;
+      matcher_ = matcher;
+      maxCachedItems_ = maxCachedItems;
+   }
+
+   public ArrayList<T> narrow(String token)
+   {
+      Result<T> cached = results_.get(token);
+      if (cached != null)
+         return cached.items;
+
+      // start from the results for the longest prefix of the token we have
+      Result<T> candidates = null;
+      for (int length = token.length() - 1; length > 0; length--)
+      {
+         String prefix = token.substring(0, length);
+         Result<T> prefixResult = results_.get(prefix);
+         if (prefixResult != null && matcher_.isRefinement(prefix, token))
+         {
+            candidates = prefixResult;
+            break;
+         }
+      }
+
+      ArrayList<Scored<T>> scored = new ArrayList<Scored<T>>();
+      int count = candidates == null ? completions_.size()
+                                     : candidates.items.size();
+      for (int i = 0; i < count; i++)
+      {
+         T item;
+         int index;
+         if (candidates == null)
+         {
+            item = completions_.get(i);
+            index = i;
+         }
+         else
+         {
+            item = candidates.items.get(i);
+            index = candidates.indices[i];
+         }
+
+         int score = matcher_.score(item, token);
+         if (score != NO_MATCH)
+         {
+            scored.add(new Scored<T>(item,
+                                     index,
+                                     score,
+                                     matcher_.tieBreak(item)));
+         }
+      }
+
+      // items that tie keep their order in the full list
+      Collections.sort(scored, new Comparator<Scored<T>>()
+      {
+         @Override
+         public int compare(Scored<T> lhs, Scored<T> rhs)
+         {
+            if (lhs.score != rhs.score)
+               return lhs.score < rhs.score ? -1 : 1;
+            if (lhs.tieBreak != rhs.tieBreak)
+               return lhs.tieBreak - rhs.tieBreak;
+            return lhs.index - rhs.index;
+         }
+      });
+
+      Result<T> result = new Result<T>(scored.size());
+      for (int i = 0; i < scored.size(); i++)
+      {
+         result.items.add(scored.get(i).item);
+         result.indices[i] = scored.get(i).index;
+      }
+
+      cache(token, result);
+      return result.items;
+   }
+
+   public int getCachedItemCount()
+   {
+      return cachedItems_;
+   }
+
+   private void cache(String token, Result<T> result)
+   {
+      // results larger than the whole cache aren't worth keeping
+      int size = result.indices.length;
+      if (size > maxCachedItems_)
+         return;
+
+      results_.put(token, result);
+      cachedItems_ += size;
+
+      Iterator<Map.Entry<String, Result<T>>> it =
+            results_.entrySet().iterator();
+      while (cachedItems_ > maxCachedItems_ && it.hasNext())
+      {
+         Map.Entry<String, Result<T>> entry = it.next();
+         if (entry.getKey().equals(token))
+            continue;
+         cachedItems_ -= entry.getValue().indices.length;
+         it.remove();
+      }
+   }
+
+   // The items matching a token, in order, with their indices in the full
+   // list
+   private static class Result<T>
+   {
+      public Result(int size)
+      {
+         items = new ArrayList<T>(size);
+         indices = new int[size];
+      }
+
+      public final ArrayList<T> items;
+      public final int[] indices;
+   }
+
+   private static class Scored<T>
+   {
+      public Scored(T item, int index, int score, int tieBreak)
+      {
+         this.item = item;
+         this.index = index;
+         this.score = score;
+         this.tieBreak = tieBreak;
+      }
+
+      public final T item;
+      public final int index;
+      public final int score;
+      public final int tieBreak;
+   }
+
+   public static final int NO_MATCH = Integer.MAX_VALUE;
+
+   private final List<T> completions_;
+   private final Matcher<T> matcher_;
+   private final int maxCachedItems_;
+
+   // in order of use, least recent first
+   private final LinkedHashMap<String, Result<T>> results_ =
+         new LinkedHashMap<String, Result<T>>(16, 0.75f, true);
+   private int cachedItems_ = 0;
+}
@@ -53,8 +53,6 @@ import org.rstudio.studio.client.workbench.views.source.model.RnwCompletionConte
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -68,8 +66,8 @@ public class CompletionRequester
    private final SnippetHelper snippets_ ;
 
    private String cachedLinePrefix_ ;
-   private HashMap<String, CompletionResult> cachedCompletions_ =
-         new HashMap<String, CompletionResult>();
+   private CompletionResult cachedResult_ ;
+   private CompletionNarrower<QualifiedName> narrower_ ;
    private RnwCompletionContext rnwContext_ ;
    
    public CompletionRequester(RnwCompletionContext rnwContext,
@@ -107,26 +105,23 @@ public class CompletionRequester
       if (cachedLinePrefix_ == null)
          return false;
       
-      CompletionResult cachedResult = cachedCompletions_.get("");
-      if (cachedResult == null)
+      if (cachedResult_ == null)
          return false;
       
       if (token.toLowerCase().startsWith(cachedLinePrefix_.toLowerCase()))
       {
          String diff = token.substring(cachedLinePrefix_.length(), token.length());
 
-         // if we already have a cached result for this diff, use it
-         CompletionResult cached = cachedCompletions_.get(diff);
-         if (cached != null)
+         if (diff.length() == 0)
          {
-            callback.onResponseReceived(cached);
+            callback.onResponseReceived(cachedResult_);
             return true;
          }
-
+         
          // otherwise, produce a new completion list
-         if (diff.length() > 0 && !diff.endsWith("::"))
+         if (!diff.endsWith("::"))
          {
-            callback.onResponseReceived(narrow(token, diff, cachedResult)) ;
+            callback.onResponseReceived(narrow(token)) ;
             return true;
          }
       }
@@ -146,79 +141,74 @@ public class CompletionRequester
       return !(!token.startsWith(".") && item.startsWith("."));
    }
    
-   private CompletionResult narrow(final String token,
-                                   final String diff,
-                                   CompletionResult cachedResult)
+   private CompletionResult narrow(String token)
    {
-      ArrayList<QualifiedName> newCompletions = new ArrayList<QualifiedName>();
-      newCompletions.ensureCapacity(cachedResult.completions.size());
-      
-      // For completions that are files or directories, we need to post-process
-      // the token and the qualified name to strip out just the basename (filename).
-      // Note that we normalize the paths such that files will have no trailing slash,
-      // while directories will have one trailing slash (but we defend against multiple
-      // trailing slashes)
-      
-      // Transform the token once beforehand for completions.
-      final String tokenSub = token.substring(
-            token.lastIndexOf('/') + 1);
-      
-      for (QualifiedName qname : cachedResult.completions)
+      return new CompletionResult(
+            token,
+            narrower_.narrow(token),
+            cachedResult_.guessedFunctionName,
+            cachedResult_.suggestOnAccept,
+            cachedResult_.dontInsertParens) ;
+   }
+   
+   private void setCachedResult(CompletionResult result)
+   {
+      cachedResult_ = result;
+      narrower_ = new CompletionNarrower<QualifiedName>(
+            result.completions,
+            new CompletionMatcher(),
+            MAX_NARROWED_COMPLETIONS);
+   }
+   
+   private class CompletionMatcher
+         implements CompletionNarrower.Matcher<QualifiedName>
+   {
+      @Override
+      public int score(QualifiedName qname, String token)
       {
-         // File types are narrowed only by the file name
+         // For completions that are files or directories, we need to
+         // post-process the token and the qualified name to strip out just
+         // the basename (filename). Note that we normalize the paths such
+         // that files will have no trailing slash, while directories will
+         // have one trailing slash (but we defend against multiple trailing
+         // slashes)
+         int score;
          if (RCompletionType.isFileType(qname.type))
          {
-            if (StringUtil.isSubsequence(basename(qname.name), tokenSub, true))
-               newCompletions.add(qname);
+            // File types are narrowed only by the file name
+            String name = basename(qname.name);
+            String tokenSub = token.substring(token.lastIndexOf('/') + 1);
+            if (!StringUtil.isSubsequence(name, tokenSub, true))
+               return CompletionNarrower.NO_MATCH;
+            score = CodeSearchOracle.scoreMatch(name, tokenSub, true);
          }
          else
          {
-            if (StringUtil.isSubsequence(qname.name, token, true) &&
-                filterStartsWithDot(qname.name, token))
-               newCompletions.add(qname) ;
+            if (!StringUtil.isSubsequence(qname.name, token, true) ||
+                !filterStartsWithDot(qname.name, token))
+               return CompletionNarrower.NO_MATCH;
+            score = CodeSearchOracle.scoreMatch(qname.name, token, false);
          }
-      }
-      
-      java.util.Collections.sort(newCompletions, new Comparator<QualifiedName>() {
          
-         @Override
-         public int compare(QualifiedName lhs,
-                            QualifiedName rhs)
-         {
-            int lhsScore;
-            if (RCompletionType.isFileType(lhs.type))
-               lhsScore = CodeSearchOracle.scoreMatch(
-                     basename(lhs.name), tokenSub, true);
-            else
-               lhsScore = CodeSearchOracle.scoreMatch(lhs.name, token, false);
-            
-            int rhsScore;
-            if (RCompletionType.isFileType(rhs.type))
-               rhsScore = CodeSearchOracle.scoreMatch(
-                     basename(rhs.name), tokenSub, true);
-            else
-               rhsScore = CodeSearchOracle.scoreMatch(rhs.name, token, false);
-            
-            // Place arguments higher (give less penalty)
-            if (lhs.type == RCompletionType.ARGUMENT) lhsScore -= 3;
-            if (rhs.type == RCompletionType.ARGUMENT) rhsScore -= 3;
-
-            if (lhsScore == rhsScore)
-               return lhs.name.length() - rhs.name.length();
-            else
-               return lhsScore < rhsScore ? -1 : 1;
-         }
-      });
+         // Place arguments higher (give less penalty)
+         if (qname.type == RCompletionType.ARGUMENT)
+            score -= 3;
+         
+         return score;
+      }
       
-      CompletionResult result = new CompletionResult(
-            token,
-            newCompletions,
-            cachedResult.guessedFunctionName,
-            cachedResult.suggestOnAccept,
-            cachedResult.dontInsertParens) ;
+      @Override
+      public int tieBreak(QualifiedName qname)
+      {
+         return qname.name.length();
+      }
       
-      cachedCompletions_.put(diff, result);
-      return result;
+      @Override
+      public boolean isRefinement(String prefix, String token)
+      {
+         // file names are matched by the token after its last '/'
+         return token.indexOf('/', prefix.length()) == -1;
+      }
    }
    
    public void getDplyrJoinCompletionsString(
@@ -312,7 +302,7 @@ public class CompletionRequester
 
       if (response.isCacheable())
       {
-         cachedCompletions_.put("", result);
+         setCachedResult(result);
       }
 
       if (!implicit || result.completions.size() != 0)
@@ -426,7 +416,7 @@ public class CompletionRequester
 
             if (response.isCacheable())
             {
-               cachedCompletions_.put("", result);
+               setCachedResult(result);
             }
 
             callback.onResponseReceived(result);
@@ -706,7 +696,8 @@ public class CompletionRequester
    public void flushCache()
    {
       cachedLinePrefix_ = null ;
-      cachedCompletions_.clear();
+      cachedResult_ = null ;
+      narrower_ = null ;
    }
    
    public static class CompletionResult
@@ -966,6 +957,9 @@ public class CompletionRequester
             RStudioGinjector.INSTANCE.getFileTypeRegistry();
    }
    
+   // the most completions kept across all narrowed lists
+   private static final int MAX_NARROWED_COMPLETIONS = 50000;
+   
    private static final CompletionRequesterResources RES =
          CompletionRequesterResources.INSTANCE;
    
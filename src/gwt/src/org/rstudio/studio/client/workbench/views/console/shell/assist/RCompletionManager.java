@@ -77,6 +77,7 @@ import org.rstudio.studio.client.workbench.views.source.editors.text.ace.RInfixD
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Token;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.TokenCursor;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.TokenWindow;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.PasteEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.r.RCompletionToolTip;
 import org.rstudio.studio.client.workbench.views.source.events.CodeBrowserNavigationEvent;
@@ -1172,8 +1173,9 @@ public class RCompletionManager implements CompletionManager
             // If that failed, try a non-infix lookup
             if (joinContext == null)
             {
-               String joinString =
-                     getDplyrJoinString(editor, cursor);
+               String joinString = getDplyrJoinString(
+                     editor,
+                     new TokenWindow(cursor).getCursor());
                
                if (!StringUtil.isNullOrEmpty(joinString))
                {
@@ -1227,7 +1229,7 @@ public class RCompletionManager implements CompletionManager
    
    private String getDplyrJoinString(
          AceEditor editor,
-         TokenCursor cursor)
+         TokenWindow.Cursor cursor)
    {
       while (true)
       {
@@ -1325,22 +1327,26 @@ public class RCompletionManager implements CompletionManager
       CodeModel codeModel = editor.getSession().getMode().getRCodeModel();
       codeModel.tokenizeUpToRow(input_.getCursorPosition().getRow());
       
-      TokenCursor cursor = codeModel.getTokenCursor();
+      TokenCursor codeModelCursor = codeModel.getTokenCursor();
          
-      if (!cursor.moveToPosition(input_.getCursorPosition()))
+      if (!codeModelCursor.moveToPosition(input_.getCursorPosition()))
          return false;
       
+      TokenWindow.Cursor cursor =
+            new TokenWindow(codeModelCursor).getCursor();
+      
       // Move back to the '$'
-      while (cursor.currentValue() != "$" && cursor.currentValue() != "@")
+      while (!cursor.currentValue().equals("$") &&
+             !cursor.currentValue().equals("@"))
          if (!cursor.moveToPreviousToken())
             return false;
       
-      int type = cursor.currentValue() == "$" ?
+      int type = cursor.currentValue().equals("$") ?
             AutocompletionContext.TYPE_DOLLAR :
             AutocompletionContext.TYPE_AT;
       
       // Put a cursor here
-      TokenCursor contextEndCursor = cursor.cloneCursor();
+      TokenWindow.Cursor contextEndCursor = cursor.cloneCursor();
       
       // We allow for arbitrary elements previous, so we want to get e.g.
       //
@@ -1447,18 +1453,24 @@ public class RCompletionManager implements CompletionManager
       
       // Make a token cursor and place it at the first token previous
       // to the cursor.
-      TokenCursor tokenCursor = codeModel.getTokenCursor();
-      if (!tokenCursor.moveToPosition(input_.getCursorPosition()))
+      TokenCursor codeModelCursor = codeModel.getTokenCursor();
+      if (!codeModelCursor.moveToPosition(input_.getCursorPosition()))
          return context;
       
+      // The walks below can cover many tokens (e.g. back to the start of a
+      // long pipeline), so read the tokens around the cursor in bulk and
+      // walk those instead.
+      TokenWindow.Cursor tokenCursor =
+            new TokenWindow(codeModelCursor).getCursor();
+      
       // Check to see if the token following the cursor is a `::` or `:::`.
       // If that's the case, then we probably only want to complete package
       // names.
       if (tokenCursor.moveToNextToken())
       {
-         if (tokenCursor.currentValue() == ":" ||
-             tokenCursor.currentValue() == "::" ||
-             tokenCursor.currentValue() == ":::")
+         if (tokenCursor.currentValue().equals(":") ||
+             tokenCursor.currentValue().equals("::") ||
+             tokenCursor.currentValue().equals(":::"))
          {
             return new AutocompletionContext(
                   token,
@@ -1467,12 +1479,13 @@ public class RCompletionManager implements CompletionManager
          tokenCursor.moveToPreviousToken();
       }
       
-      TokenCursor startCursor = tokenCursor.cloneCursor();
+      TokenWindow.Cursor startCursor = tokenCursor.cloneCursor();
       
       // Find an opening '(' or '[' -- this provides the function or object
       // for completion.
       int initialNumCommas = 0;
-      if (tokenCursor.currentValue() != "(" && tokenCursor.currentValue() != "[")
+      if (!tokenCursor.currentValue().equals("(") &&
+          !tokenCursor.currentValue().equals("["))
       {
          int commaCount = tokenCursor.findOpeningBracketCountCommas(
                new String[]{ "[", "(" }, true);
@@ -1494,20 +1507,20 @@ public class RCompletionManager implements CompletionManager
       
       // Figure out whether we're looking at '(', '[', or '[[',
       // and place the token cursor on the first token preceding.
-      TokenCursor endOfDecl = tokenCursor.cloneCursor();
+      TokenWindow.Cursor endOfDecl = tokenCursor.cloneCursor();
       int initialDataType = AutocompletionContext.TYPE_UNKNOWN;
-      if (tokenCursor.currentValue() == "(")
+      if (tokenCursor.currentValue().equals("("))
       {
          initialDataType = AutocompletionContext.TYPE_FUNCTION;
          if (!tokenCursor.moveToPreviousToken())
             return context;
       }
-      else if (tokenCursor.currentValue() == "[")
+      else if (tokenCursor.currentValue().equals("["))
       {
          if (!tokenCursor.moveToPreviousToken())
             return context;
          
-         if (tokenCursor.currentValue() == "[")
+         if (tokenCursor.currentValue().equals("["))
          {
             if (!endOfDecl.moveToPreviousToken())
                return context;
@@ -1537,9 +1550,9 @@ public class RCompletionManager implements CompletionManager
       endPos.setColumn(endPos.getColumn() + startCursor.currentValue().length());
       
       // try to look forward for closing paren
-      if (endOfDecl.currentValue() == "(")
+      if (endOfDecl.currentValue().equals("("))
       {
-         TokenCursor closingParenCursor = endOfDecl.cloneCursor();
+         TokenWindow.Cursor closingParenCursor = endOfDecl.cloneCursor();
          if (closingParenCursor.fwdToMatchingToken())
          {
             endPos = closingParenCursor.currentPosition();
@@ -1553,7 +1566,7 @@ public class RCompletionManager implements CompletionManager
       // match.call() can later properly resolve the current argument.
       //
       // Attempt to find the start of the current statement.
-      TokenCursor clone = startCursor.cloneCursor();
+      TokenWindow.Cursor clone = startCursor.cloneCursor();
       do
       {
          String value = clone.currentValue();
@@ -1612,7 +1625,7 @@ public class RCompletionManager implements CompletionManager
       // Try to identify whether we're producing autocompletions for
       // a _named_ function argument; if so, produce completions tuned to
       // that argument.
-      TokenCursor argsCursor = startCursor.cloneCursor();
+      TokenWindow.Cursor argsCursor = startCursor.cloneCursor();
       do
       {
          String argsValue = argsCursor.currentValue();
@@ -1666,11 +1679,11 @@ public class RCompletionManager implements CompletionManager
          
          numCommas = commaCount;
          
-         TokenCursor declEnd = tokenCursor.cloneCursor();
+         TokenWindow.Cursor declEnd = tokenCursor.cloneCursor();
          if (!tokenCursor.moveToPreviousToken())
             return context;
          
-         if (tokenCursor.currentValue() == "[")
+         if (tokenCursor.currentValue().equals("["))
          {
             if (!declEnd.moveToPreviousToken())
                return context;
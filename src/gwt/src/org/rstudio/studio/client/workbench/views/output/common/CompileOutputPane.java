@@ -127,6 +127,12 @@ public class CompileOutputPane extends WorkbenchPane
       return DomUtils.isEffectivelyVisible(getElement());
    }
 
+   @Override
+   public void setMaxOutputLines(int maxLines)
+   {
+      compilePanel_.setMaxOutputLines(maxLines);
+   }
+   
    @Override
    public void scrollToBottom()
    {
@@ -37,6 +37,7 @@ public interface CompileOutputPaneDisplay extends WorkbenchView, HasEnsureHidden
    HasSelectionCommitHandlers<CodeNavigationTarget> errorList();
    boolean isEffectivelyVisible();
    void scrollToBottom();
+   void setMaxOutputLines(int maxLines);
    void setHasLogs(boolean logs);
    void setCanStop(boolean canStop);
 }
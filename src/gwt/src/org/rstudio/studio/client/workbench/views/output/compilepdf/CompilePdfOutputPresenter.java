@@ -22,6 +22,7 @@ import com.google.inject.Inject;
 
 import org.rstudio.core.client.CodeNavigationTarget;
 import org.rstudio.core.client.CommandUtil;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.events.*;
 import org.rstudio.core.client.files.FileSystemItem;
 import org.rstudio.core.client.widget.MessageDialog;
@@ -39,6 +40,7 @@ import org.rstudio.studio.client.common.compilepdf.model.CompilePdfState;
 import org.rstudio.studio.client.common.filetypes.FileTypeRegistry;
 import org.rstudio.studio.client.common.synctex.model.SourceLocation;
 import org.rstudio.studio.client.server.VoidServerRequestCallback;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.views.BusyPresenter;
 import org.rstudio.studio.client.workbench.views.console.events.ConsoleActivateEvent;
 import org.rstudio.studio.client.workbench.views.output.common.CompileOutputPaneDisplay;
@@ -58,7 +60,8 @@ public class CompilePdfOutputPresenter extends BusyPresenter
                                     GlobalDisplay globalDisplay,
                                     CompilePdfServerOperations server,
                                     FileTypeRegistry fileTypeRegistry,
-                                    EventBus events)
+                                    EventBus events,
+                                    UIPrefs uiPrefs)
    {
       super(outputFactory.create("Compile PDF", 
                                  "View the LaTeX compilation log"));
@@ -68,6 +71,14 @@ public class CompilePdfOutputPresenter extends BusyPresenter
       fileTypeRegistry_ = fileTypeRegistry;
       events_ = events;
 
+      uiPrefs.compileOutputMaxLines().bind(new CommandWithArg<Integer>()
+      {
+         public void execute(Integer maxLines)
+         {
+            view_.setMaxOutputLines(maxLines);
+         }
+      });
+
       view_.stopButton().addClickHandler(new ClickHandler() {
          @Override
          public void onClick(ClickEvent event)
@@ -0,0 +1,316 @@
+/*
+ * LintCache.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.output.lint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.rstudio.studio.client.workbench.views.output.lint.model.LintItem;
+import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
+import org.rstudio.studio.client.workbench.views.source.editors.text.Scope;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.AceDocumentChangeEventNative;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
+import org.rstudio.studio.client.workbench.views.source.editors.text.events.DocumentChangedEvent;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayString;
+
+// Keeps the lint of a document between lints, along with the rows edited
+// since: lint on edited rows is dropped, and lint below them is moved with
+// the rows it refers to. Only the regions of the document containing the
+// edited rows then need to be linted again -- the top-level scopes (e.g.
+// function definitions) containing them, or else the runs of non-blank rows
+// around them.
+class LintCache implements DocumentChangedEvent.Handler
+{
+   public LintCache(DocDisplay docDisplay)
+   {
+      docDisplay_ = docDisplay;
+      docDisplay_.addDocumentChangedHandler(this);
+   }
+
+   @Override
+   public void onDocumentChanged(DocumentChangedEvent event)
+   {
+      generation_++;
+      if (lint_ == null)
+         return;
+
+      AceDocumentChangeEventNative change = event.getEvent();
+      String action = change.getAction();
+      Range range = change.getRange();
+      int startRow = range.getStart().getRow();
+      int rows = range.getEnd().getRow() - startRow + 1;
+
+      // the range spans the rows after an insertion, or before a removal
+      if (action.equals("insertText") || action.equals("insertLines"))
+         replaceRows(startRow, 1, rows);
+      else if (action.equals("removeText") || action.equals("removeLines"))
+         replaceRows(startRow, rows, 1);
+      else
+         invalidate();
+   }
+
+   // Incremented on every change to the document, so that the caller can
+   // tell whether lint it requested still applies when it arrives
+   public int getGeneration()
+   {
+      return generation_;
+   }
+
+   public boolean hasLint()
+   {
+      return lint_ != null;
+   }
+
+   public JsArray<LintItem> getLint()
+   {
+      return lint_;
+   }
+
+   // Records the lint of the whole document
+   public void setLint(JsArray<LintItem> lint)
+   {
+      lint_ = lint;
+      dirtyRows_.clear();
+   }
+
+   public void invalidate()
+   {
+      lint_ = null;
+      dirtyRows_.clear();
+   }
+
+   // Returns the regions of the document that need to be linted again, as
+   // [first row, last row] pairs in document order, or null if the document
+   // should be linted as a whole instead
+   public ArrayList<int[]> getDirtyRegions()
+   {
+      if (lint_ == null)
+         return null;
+
+      ArrayList<int[]> regions = new ArrayList<int[]>();
+      if (dirtyRows_.isEmpty())
+         return regions;
+
+      int lastRow = docDisplay_.getRowCount() - 1;
+      ArrayList<int[]> scopes = new ArrayList<int[]>();
+      if (!collectCodeScopes(docDisplay_.getScopeTree(), scopes))
+         return null;
+
+      for (int[] dirty : dirtyRows_)
+      {
+         int first = Math.min(dirty[0], lastRow);
+         int last = Math.min(dirty[1], lastRow);
+
+         // grow the region until it neither splits a scope nor ends
+         // next to a non-blank row
+         boolean grown = true;
+         while (grown)
+         {
+            grown = false;
+            while (first > 0 && !isBlank(first - 1))
+               first--;
+            while (last < lastRow && !isBlank(last + 1))
+               last++;
+
+            for (int[] scope : scopes)
+            {
+               if (scope[0] <= last && scope[1] >= first &&
+                   (scope[0] < first || scope[1] > last))
+               {
+                  first = Math.min(first, scope[0]);
+                  last = Math.max(last, scope[1]);
+                  grown = true;
+               }
+            }
+         }
+         regions.add(new int[] {first, last});
+      }
+
+      // merge overlapping and adjacent regions
+      Collections.sort(regions, new Comparator<int[]>()
+      {
+         @Override
+         public int compare(int[] a, int[] b)
+         {
+            return a[0] - b[0];
+         }
+      });
+
+      ArrayList<int[]> merged = new ArrayList<int[]>();
+      int dirtyRowCount = 0;
+      for (int[] region : regions)
+      {
+         int[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+         if (previous != null && region[0] <= previous[1] + 1)
+         {
+            dirtyRowCount += Math.max(0, region[1] - previous[1]);
+            previous[1] = Math.max(previous[1], region[1]);
+         }
+         else
+         {
+            dirtyRowCount += region[1] - region[0] + 1;
+            merged.add(region);
+         }
+      }
+
+      // linting most of the document piecemeal saves nothing
+      if (dirtyRowCount > (lastRow + 1) / 2)
+         return null;
+
+      return merged;
+   }
+
+   // Returns the code of the given region, or null if it can't be linted on
+   // its own
+   public String getRegionCode(int[] region)
+   {
+      JsArrayString lines = docDisplay_.getLines(region[0], region[1]);
+      StringBuilder code = new StringBuilder();
+      for (int i = 0; i < lines.length(); i++)
+      {
+         // file-local lint options apply to the whole document
+         if (lines.get(i).contains(DIAGNOSTICS_COMMENT))
+            return null;
+
+         if (i > 0)
+            code.append('\n');
+         code.append(lines.get(i));
+      }
+      return code.toString();
+   }
+
+   // Replaces the cached lint in the given regions with their new lint,
+   // returning the lint of the whole document
+   public JsArray<LintItem> mergeRegionLint(ArrayList<int[]> regions,
+                                            JsArray<LintItem> regionLint)
+   {
+      JsArray<LintItem> lint = JsArray.createArray().cast();
+      for (int i = 0; i < lint_.length(); i++)
+      {
+         LintItem item = lint_.get(i);
+         boolean replaced = false;
+         for (int[] region : regions)
+         {
+            if (item.getStartRow() <= region[1] &&
+                item.getEndRow() >= region[0])
+            {
+               replaced = true;
+               break;
+            }
+         }
+         if (!replaced)
+            lint.push(item);
+      }
+
+      for (int i = 0; i < regionLint.length(); i++)
+         lint.push(regionLint.get(i));
+
+      setLint(lint);
+      return lint;
+   }
+
+   // Records that the rows [row, row + removedRows) were replaced with
+   // insertedRows rows
+   private void replaceRows(int row, int removedRows, int insertedRows)
+   {
+      int delta = insertedRows - removedRows;
+      int endRow = row + removedRows;
+
+      JsArray<LintItem> lint = JsArray.createArray().cast();
+      for (int i = 0; i < lint_.length(); i++)
+      {
+         LintItem item = lint_.get(i);
+         if (item.getEndRow() < row)
+         {
+            lint.push(item);
+         }
+         else if (item.getStartRow() >= endRow)
+         {
+            lint.push(delta == 0 ? item : LintItem.create(
+                  item.getStartRow() + delta,
+                  item.getStartColumn(),
+                  item.getEndRow() + delta,
+                  item.getEndColumn(),
+                  item.getText(),
+                  item.getType()));
+         }
+      }
+      lint_ = lint;
+
+      int first = row;
+      int last = row + insertedRows - 1;
+      ArrayList<int[]> dirtyRows = new ArrayList<int[]>();
+      for (int[] dirty : dirtyRows_)
+      {
+         if (dirty[1] < row)
+         {
+            dirtyRows.add(dirty);
+         }
+         else if (dirty[0] >= endRow)
+         {
+            dirtyRows.add(new int[] {dirty[0] + delta, dirty[1] + delta});
+         }
+         else
+         {
+            first = Math.min(first, dirty[0]);
+            last = Math.max(last, dirty[1] + delta);
+         }
+      }
+      dirtyRows.add(new int[] {first, Math.max(first, last)});
+      dirtyRows_ = dirtyRows;
+   }
+
+   // Collects the rows spanned by each top-level scope containing code,
+   // returning false if one is unterminated
+   private boolean collectCodeScopes(JsArray<Scope> scopes,
+                                     ArrayList<int[]> rows)
+   {
+      for (int i = 0; i < scopes.length(); i++)
+      {
+         Scope scope = scopes.get(i);
+         if (scope.isSection())
+         {
+            if (!collectCodeScopes(scope.getChildren(), rows))
+               return false;
+         }
+         else if (scope.getEnd() == null)
+         {
+            return false;
+         }
+         else
+         {
+            rows.add(new int[] {scope.getPreamble().getRow(),
+                                scope.getEnd().getRow()});
+         }
+      }
+      return true;
+   }
+
+   private boolean isBlank(int row)
+   {
+      return docDisplay_.getLine(row).trim().isEmpty();
+   }
+
+   private final DocDisplay docDisplay_;
+
+   private JsArray<LintItem> lint_;
+   private ArrayList<int[]> dirtyRows_ = new ArrayList<int[]>();
+   private int generation_ = 0;
+
+   private static final String DIAGNOSTICS_COMMENT = "!diagnostics";
+}
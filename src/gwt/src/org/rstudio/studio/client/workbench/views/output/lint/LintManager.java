@@ -14,6 +14,8 @@
  */
 package org.rstudio.studio.client.workbench.views.output.lint;
 
+import java.util.ArrayList;
+
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.Invalidation;
 import org.rstudio.studio.client.RStudioGinjector;
@@ -24,6 +26,7 @@ import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
+import org.rstudio.studio.client.workbench.views.output.lint.model.LintContentsDelta;
 import org.rstudio.studio.client.workbench.views.output.lint.model.LintItem;
 import org.rstudio.studio.client.workbench.views.output.lint.model.LintServerOperations;
 import org.rstudio.studio.client.workbench.views.presentation.events.SourceFileSaveCompletedEvent;
@@ -38,6 +41,8 @@ import org.rstudio.studio.client.workbench.views.source.editors.text.cpp.CppComp
 import org.rstudio.studio.client.workbench.views.source.model.CppDiagnostic;
 
 import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
@@ -93,6 +98,7 @@ public class LintManager
       target_ = target;
       cppCompletionContext_ = cppCompletionContext;
       docDisplay_ = target.getDocDisplay();
+      lintCache_ = new LintCache(docDisplay_);
       showMarkers_ = false;
       explicit_ = false;
       invalidation_ = new Invalidation();
@@ -194,8 +200,9 @@ public class LintManager
             }
          });
       }
-      else
+      else if (isCppDocument())
       {
+         // the C++ diagnostics are of the saved document
          target_.withSavedDoc(new Command()
          {
             @Override
@@ -205,6 +212,17 @@ public class LintManager
             }
          });
       }
+      else
+      {
+         // R lint is of the contents we send, so needn't wait for a save
+         performLintServerRequest(context);
+      }
+   }
+   
+   private boolean isCppDocument()
+   {
+      return target_.getTextFileType().isCpp() ||
+             target_.getTextFileType().isC();
    }
 
    private void performLintServerRequest(final LintContext context)
@@ -212,9 +230,10 @@ public class LintManager
       if (context.token.isInvalid())
          return;
       
-      if (target_.getTextFileType().isCpp() ||
-          target_.getTextFileType().isC())
+      if (isCppDocument())
          performCppLintServerRequest(context);
+      else if (canLintIncrementally(context))
+         performIncrementalRLintServerRequest(context);
       else
          performRLintServerRequest(context);
    }
@@ -226,6 +245,13 @@ public class LintManager
          @Override
          public void execute(String docPath, int line, int column)
          {
+            // the C++ and R lint are independent, so request them together
+            final CppLintResults results = new CppLintResults(context);
+            
+            // the R lint is of the saved document, which replaces the
+            // contents the session had for the document
+            serverContents_ = null;
+            
             server_.getCppDiagnostics(
             target_.getPath(),
             new ServerRequestCallback<JsArray<CppDiagnostic>>()
@@ -234,68 +260,251 @@ public class LintManager
                @Override
                public void onResponseReceived(JsArray<CppDiagnostic> diag)
                {
-                  if (context.token.isInvalid())
-                     return;
-                  
-                  final JsArray<LintItem> cppLint =
-                        CppCompletionRequest.asLintArray(diag);
-                  
-                  server_.lintRSourceDocument(
-                        target_.getId(),
-                        target_.getPath(),
-                        context.showMarkers,
-                        context.explicit,
-                        new ServerRequestCallback<JsArray<LintItem>>()
-                        {
-                           @Override
-                           public void onResponseReceived(JsArray<LintItem> rLint)
-                           {
-                              if (context.token.isInvalid())
-                                 return;
-                              
-                              JsArray<LintItem> allLint = JsArray.createArray().cast();
-                              for (int i = 0; i < cppLint.length(); i++)
-                                 allLint.push(cppLint.get(i));
-                              for (int i = 0; i < rLint.length(); i++)
-                                 allLint.push(rLint.get(i));
-                              showLint(context, allLint);
-                           }
-
-                           @Override
-                           public void onError(ServerError error)
-                           {
-                              Debug.logError(error);
-                           }
-                        });
+                  results.setCppLint(CppCompletionRequest.asLintArray(diag));
                }
                
                @Override
                public void onError(ServerError error)
                {
+                  results.onError();
                   Debug.logError(error);
                }
             });
+            
+            server_.lintRSourceDocument(
+                  target_.getId(),
+                  target_.getPath(),
+                  context.showMarkers,
+                  context.explicit,
+                  null,
+                  new ServerRequestCallback<JsArray<LintItem>>()
+                  {
+                     @Override
+                     public void onResponseReceived(JsArray<LintItem> rLint)
+                     {
+                        results.setRLint(rLint);
+                     }
+
+                     @Override
+                     public void onError(ServerError error)
+                     {
+                        results.onError();
+                        Debug.logError(error);
+                     }
+                  });
          } 
       });
    }
+   
+   // Shows the C++ and R lint of a document once both have arrived
+   private class CppLintResults
+   {
+      public CppLintResults(LintContext context)
+      {
+         context_ = context;
+      }
+      
+      public void setCppLint(JsArray<LintItem> cppLint)
+      {
+         cppLint_ = cppLint;
+         showIfComplete();
+      }
+      
+      public void setRLint(JsArray<LintItem> rLint)
+      {
+         rLint_ = rLint;
+         showIfComplete();
+      }
+      
+      public void onError()
+      {
+         failed_ = true;
+      }
+      
+      private void showIfComplete()
+      {
+         if (failed_ || cppLint_ == null || rLint_ == null)
+            return;
+         
+         if (context_.token.isInvalid())
+            return;
+         
+         JsArray<LintItem> allLint = JsArray.createArray().cast();
+         for (int i = 0; i < cppLint_.length(); i++)
+            allLint.push(cppLint_.get(i));
+         for (int i = 0; i < rLint_.length(); i++)
+            allLint.push(rLint_.get(i));
+         showLint(context_, allLint);
+      }
+      
+      private final LintContext context_;
+      private JsArray<LintItem> cppLint_;
+      private JsArray<LintItem> rLint_;
+      private boolean failed_;
+   }
 
    private void performRLintServerRequest(final LintContext context)
    {
+      // lint the saved document when showing markers (as it's just been
+      // saved, and the markers refer to the file), else the editor contents;
+      // lint of R scripts is kept so later lints can be incremental
+      final boolean cacheLint = target_.getTextFileType().isR();
+      final int generation = lintCache_.getGeneration();
+      final String code = context.showMarkers ? null : docDisplay_.getCode();
+      
+      ServerRequestCallback<JsArray<LintItem>> callback =
+            new ServerRequestCallback<JsArray<LintItem>>()
+      {
+         @Override
+         public void onResponseReceived(JsArray<LintItem> lint)
+         {
+            // the session doesn't have the contents our change was to (so
+            // nor any sent after them); send them in full
+            if (lint == null)
+            {
+               serverContents_ = null;
+               if (!context.token.isInvalid())
+                  performRLintServerRequest(context);
+               return;
+            }
+            
+            if (cacheLint && generation == lintCache_.getGeneration())
+            {
+               lintCache_.setLint(lint);
+               incrementalLintCount_ = 0;
+            }
+            
+            if (context.token.isInvalid())
+               return;
+
+            showLint(context, lint);
+         }
 
-      server_.lintRSourceDocument(
+         @Override
+         public void onError(ServerError error)
+         {
+            serverContents_ = null;
+            Debug.logError(error);
+         }
+      };
+      
+      // once the session has the contents, send only what has changed in
+      // them (the session handles requests in order, so later requests can
+      // be relative to these contents before this one completes)
+      String previousContents = serverContents_;
+      serverContents_ = code;
+      if (code != null && previousContents != null)
+      {
+         server_.lintRSourceDocumentDelta(
+               target_.getId(),
+               target_.getPath(),
+               context.showMarkers,
+               context.explicit,
+               LintContentsDelta.create(previousContents, code),
+               callback);
+      }
+      else
+      {
+         server_.lintRSourceDocument(
+               target_.getId(),
+               target_.getPath(),
+               context.showMarkers,
+               context.explicit,
+               code,
+               callback);
+      }
+   }
+   
+   // Background lint of an R script that has been linted before can lint
+   // just the regions edited since (explicit lint checks more than
+   // background lint, so always covers the whole document). The session
+   // asks for a full lint when a region defines a new top level symbol, but
+   // can't tell when one is no longer defined, so the whole document is
+   // linted again every so often too.
+   private boolean canLintIncrementally(LintContext context)
+   {
+      return !context.explicit &&
+             !context.showMarkers &&
+             target_.getTextFileType().isR() &&
+             lintCache_.hasLint() &&
+             incrementalLintCount_ < MAX_INCREMENTAL_LINTS;
+   }
+   
+   private void performIncrementalRLintServerRequest(
+         final LintContext context)
+   {
+      final ArrayList<int[]> regions = lintCache_.getDirtyRegions();
+      if (regions == null)
+      {
+         performRLintServerRequest(context);
+         return;
+      }
+      
+      // nothing has been edited since the last lint
+      if (regions.isEmpty())
+      {
+         showLint(context, lintCache_.getLint());
+         return;
+      }
+      
+      JsArrayInteger rows = JsArrayInteger.createArray().cast();
+      JsArrayString code = JsArrayString.createArray().cast();
+      for (int[] region : regions)
+      {
+         String regionCode = lintCache_.getRegionCode(region);
+         if (regionCode == null)
+         {
+            performRLintServerRequest(context);
+            return;
+         }
+         rows.push(region[0]);
+         code.push(regionCode);
+      }
+      
+      incrementalLintCount_++;
+      final int generation = lintCache_.getGeneration();
+      server_.lintRSourceRegions(
             target_.getId(),
             target_.getPath(),
-            context.showMarkers,
-            context.explicit,
+            rows,
+            code,
             new ServerRequestCallback<JsArray<LintItem>>()
             {
                @Override
-               public void onResponseReceived(JsArray<LintItem> lint)
+               public void onResponseReceived(JsArray<LintItem> regionLint)
                {
+                  // the session has lost the context of the document's last
+                  // lint (e.g. it has been restarted), or a region defines
+                  // a new top level symbol; lint it all again (if the
+                  // session lost the contents as well, it will ask for them)
+                  if (regionLint == null)
+                  {
+                     if (!context.token.isInvalid())
+                        performRLintServerRequest(context);
+                     return;
+                  }
+                  
+                  // the document has changed since; the lint that will be
+                  // requested for the change covers these regions too
+                  if (generation != lintCache_.getGeneration())
+                     return;
+                  
                   if (context.token.isInvalid())
                      return;
-
-                  showLint(context, lint);
+                  
+                  // a region may have been cut from a larger expression,
+                  // so have errors confirmed by linting the whole document
+                  for (int i = 0; i < regionLint.length(); i++)
+                  {
+                     if (regionLint.get(i).getType().equals("error"))
+                     {
+                        performRLintServerRequest(context);
+                        return;
+                     }
+                  }
+                  
+                  showLint(context,
+                           lintCache_.mergeRegionLint(regions, regionLint));
                }
 
                @Override
@@ -376,6 +585,12 @@ public class LintManager
    private final TextEditingTarget target_;
    private final DocDisplay docDisplay_;
    private final Invalidation invalidation_;
+   private final LintCache lintCache_;
+   // the contents of the document as the session last had them for linting
+   // (or null if unknown), so that only changes to them need be sent
+   private String serverContents_;
+   // region lints since the last full lint
+   private int incrementalLintCount_;
    
    private boolean explicit_;
    private boolean showMarkers_;
@@ -386,6 +601,8 @@ public class LintManager
    private EventBus eventBus_;
    private final CppCompletionContext cppCompletionContext_;
    
+   private static final int MAX_INCREMENTAL_LINTS = 10;
+   
    static {
       LintResources.INSTANCE.styles().ensureInjected();
       RetinaStyleInjector.injectAtEnd(
@@ -0,0 +1,99 @@
+/*
+ * LintContentsDelta.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.output.lint.model;
+
+import org.rstudio.core.client.TextHash;
+
+/**
+ * The change from the contents of a document last sent to the session for
+ * linting to its current contents, as the single range of the old contents
+ * that is replaced. Offsets are into the UTF-8 encoding of the old contents
+ * (as the session holds it), and the hash is the CRC-32 of the new contents,
+ * so the session can tell when it doesn't hold the contents the change was
+ * made to.
+ */
+public class LintContentsDelta
+{
+   public static LintContentsDelta create(String oldContents,
+                                          String newContents)
+   {
+      int limit = Math.min(oldContents.length(), newContents.length());
+      int prefix = 0;
+      while (prefix < limit &&
+             oldContents.charAt(prefix) == newContents.charAt(prefix))
+      {
+         prefix++;
+      }
+
+      int suffix = 0;
+      while (suffix < limit - prefix &&
+             oldContents.charAt(oldContents.length() - 1 - suffix) ==
+             newContents.charAt(newContents.length() - 1 - suffix))
+      {
+         suffix++;
+      }
+
+      // don't split a surrogate pair, which is a single UTF-8 sequence
+      if (prefix > 0 && Character.isHighSurrogate(oldContents.charAt(prefix - 1)))
+         prefix--;
+      if (suffix > 0 && Character.isLowSurrogate(
+                           oldContents.charAt(oldContents.length() - suffix)))
+         suffix--;
+
+      int start = TextHash.utf8Length(oldContents.substring(0, prefix));
+      int end = TextHash.utf8Length(oldContents) - TextHash.utf8Length(
+                     oldContents.substring(oldContents.length() - suffix));
+      return new LintContentsDelta(
+            start,
+            end,
+            newContents.substring(prefix, newContents.length() - suffix),
+            TextHash.crc32(newContents));
+   }
+
+   private LintContentsDelta(int start, int end, String text, String hash)
+   {
+      start_ = start;
+      end_ = end;
+      text_ = text;
+      hash_ = hash;
+   }
+
+   // The first byte of the old contents replaced
+   public int getStart()
+   {
+      return start_;
+   }
+
+   // The byte after the last one of the old contents replaced
+   public int getEnd()
+   {
+      return end_;
+   }
+
+   public String getText()
+   {
+      return text_;
+   }
+
+   public String getHash()
+   {
+      return hash_;
+   }
+
+   private final int start_;
+   private final int end_;
+   private final String text_;
+   private final String hash_;
+}
@@ -19,15 +19,39 @@ import org.rstudio.studio.client.workbench.snippets.model.SnippetData;
 import org.rstudio.studio.client.workbench.views.source.model.CppDiagnostic;
 
 import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayInteger;
+import com.google.gwt.core.client.JsArrayString;
 
 public interface LintServerOperations
 {
+   // if contents is null then the saved contents of the document are linted
    void lintRSourceDocument(String documentId,
                             String documentPath,
                             boolean showMarkersPane,
                             boolean explicit,
+                            String contents,
                             ServerRequestCallback<JsArray<LintItem>> requestCallback);
    
+   // lints the contents last sent with the given change applied; the result
+   // is null if the session doesn't have those contents (e.g. it has been
+   // restarted since), and then they must be sent in full
+   void lintRSourceDocumentDelta(String documentId,
+                                 String documentPath,
+                                 boolean showMarkersPane,
+                                 boolean explicit,
+                                 LintContentsDelta delta,
+                                 ServerRequestCallback<JsArray<LintItem>> requestCallback);
+   
+   // lints each region of code (starting at the corresponding row) on its
+   // own, in the context of the last full lint of the document; the result
+   // is null if the session has no such context (so the document must be
+   // linted in full)
+   void lintRSourceRegions(String documentId,
+                           String documentPath,
+                           JsArrayInteger rows,
+                           JsArrayString code,
+                           ServerRequestCallback<JsArray<LintItem>> requestCallback);
+   
    void getCppDiagnostics(
                 String docPath,
                 ServerRequestCallback<JsArray<CppDiagnostic>> requestCallback);
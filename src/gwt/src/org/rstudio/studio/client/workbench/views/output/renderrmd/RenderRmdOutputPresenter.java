@@ -21,6 +21,7 @@ import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
 
 import org.rstudio.core.client.CodeNavigationTarget;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.events.SelectionCommitEvent;
 import org.rstudio.core.client.events.SelectionCommitHandler;
 import org.rstudio.core.client.files.FileSystemItem;
@@ -37,6 +38,7 @@ import org.rstudio.studio.client.rmarkdown.model.RMarkdownServerOperations;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.views.BusyPresenter;
 import org.rstudio.studio.client.workbench.views.console.events.ConsoleActivateEvent;
 import org.rstudio.studio.client.workbench.views.output.common.CompileOutputPaneDisplay;
@@ -52,13 +54,21 @@ public class RenderRmdOutputPresenter extends BusyPresenter
    public RenderRmdOutputPresenter(CompileOutputPaneFactory outputFactory,
                                    RMarkdownServerOperations server,
                                    GlobalDisplay globalDisplay,
-                                   EventBus events)
+                                   EventBus events,
+                                   UIPrefs uiPrefs)
    {
       super(outputFactory.create("R Markdown", 
                                  "View the R Markdown render log"));
       view_ = (CompileOutputPaneDisplay) getView();
       view_.setHasLogs(false);
       server_ = server;
+      uiPrefs.compileOutputMaxLines().bind(new CommandWithArg<Integer>()
+      {
+         public void execute(Integer maxLines)
+         {
+            view_.setMaxOutputLines(maxLines);
+         }
+      });
       events_ = events;
 
       view_.stopButton().addClickHandler(new ClickHandler() {
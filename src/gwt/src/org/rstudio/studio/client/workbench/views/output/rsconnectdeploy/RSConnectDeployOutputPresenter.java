@@ -18,6 +18,7 @@ package org.rstudio.studio.client.workbench.views.output.rsconnectdeploy;
 import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
 
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.application.events.RestartStatusEvent;
@@ -25,6 +26,7 @@ import org.rstudio.studio.client.common.GlobalDisplay;
 import org.rstudio.studio.client.rsconnect.events.RSConnectDeploymentCompletedEvent;
 import org.rstudio.studio.client.rsconnect.events.RSConnectDeploymentOutputEvent;
 import org.rstudio.studio.client.rsconnect.events.RSConnectDeploymentStartedEvent;
+import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.views.BusyPresenter;
 import org.rstudio.studio.client.workbench.views.console.events.ConsoleActivateEvent;
 import org.rstudio.studio.client.workbench.views.output.common.CompileOutputPaneDisplay;
@@ -39,12 +41,20 @@ public class RSConnectDeployOutputPresenter extends BusyPresenter
    @Inject
    public RSConnectDeployOutputPresenter(CompileOutputPaneFactory outputFactory,
                                    GlobalDisplay globalDisplay,
-                                   EventBus events)
+                                   EventBus events,
+                                   UIPrefs uiPrefs)
    {
       super(outputFactory.create("Deploy", ""));
       view_ = (CompileOutputPaneDisplay) getView();
       view_.setHasLogs(false);
       view_.setCanStop(false);
+      uiPrefs.compileOutputMaxLines().bind(new CommandWithArg<Integer>()
+      {
+         public void execute(Integer maxLines)
+         {
+            view_.setMaxOutputLines(maxLines);
+         }
+      });
       events_ = events;
    }
    
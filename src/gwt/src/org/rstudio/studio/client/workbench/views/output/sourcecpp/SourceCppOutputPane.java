@@ -85,6 +85,12 @@ public class SourceCppOutputPane extends WorkbenchPane
       }
    }
     
+   @Override
+   public void setMaxOutputLines(int maxLines)
+   {
+      compilePanel_.setMaxOutputLines(maxLines);
+   }
+   
    @Override
    public void scrollToBottom()
    {
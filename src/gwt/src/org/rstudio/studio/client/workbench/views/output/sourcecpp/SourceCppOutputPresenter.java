@@ -19,6 +19,7 @@ import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
 
 import org.rstudio.core.client.CodeNavigationTarget;
+import org.rstudio.core.client.CommandWithArg;
 import org.rstudio.core.client.FilePosition;
 import org.rstudio.core.client.events.*;
 import org.rstudio.core.client.files.FileSystemItem;
@@ -41,6 +42,7 @@ public class SourceCppOutputPresenter extends BasePresenter
       void ensureVisible(boolean activate);
       void clearAll();
       void scrollToBottom();
+      void setMaxOutputLines(int maxLines);
       void showResults(SourceCppState state);
       HasSelectionCommitHandlers<CodeNavigationTarget> errorList();
    }
@@ -54,6 +56,14 @@ public class SourceCppOutputPresenter extends BasePresenter
       view_ = view;
       fileTypeRegistry_ = fileTypeRegistry;
       uiPrefs_ = uiPrefs;
+      
+      uiPrefs.compileOutputMaxLines().bind(new CommandWithArg<Integer>()
+      {
+         public void execute(Integer maxLines)
+         {
+            view_.setMaxOutputLines(maxLines);
+         }
+      });
     
       view_.errorList().addSelectionCommitHandler(
                          new SelectionCommitHandler<CodeNavigationTarget>() {
@@ -14,7 +14,9 @@
  */
 package org.rstudio.studio.client.workbench.views.source;
 
-import org.rstudio.core.client.Counter;
+import java.util.ArrayList;
+import java.util.HashMap;
+
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.theme.res.ThemeStyles;
@@ -28,9 +30,11 @@ import org.rstudio.studio.client.workbench.views.source.editors.text.events.Docu
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.EditorThemeChangedEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.RenderFinishedEvent;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style;
@@ -69,6 +73,7 @@ public class DocumentOutlineWidget extends Composite
       public DocumentOutlineTreeEntry(Scope node, int depth)
       {
          node_ = node;
+         key_ = getNodeKey(node, depth);
          FlowPanel panel = new FlowPanel();
          
          setIndent(depth);
@@ -102,28 +107,7 @@ public class DocumentOutlineWidget extends Composite
       
       private void setLabel(Scope node)
       {
-         String text = "";
-         if (node.isChunk())
-         {
-            text = node.getChunkLabel();
-         }
-         else if (node.isFunction())
-         {
-            ScopeFunction asFunctionNode = (ScopeFunction) node;
-            text = asFunctionNode.getFunctionName();
-         }
-         else if (node.isYaml())
-         {
-            text = "Title";
-         }
-         else
-         {
-            text = node.getLabel();
-         }
-
-         if (text.equals(""))
-            text = "(chunk)";
-
+         String text = getLabelText(node);
          if (label_ == null)
             label_ = new Label(text);
          else
@@ -157,11 +141,11 @@ public class DocumentOutlineWidget extends Composite
          indent_.getElement().getStyle().setFloat(Style.Float.LEFT);
       }
       
-      public void update(Scope node, int depth)
+      // Points the entry at an equivalent node from a newer scope tree
+      // (one with the same key); the rendered entry is unchanged
+      public void setScopeNode(Scope node)
       {
          node_ = node;
-         setLabel(node);
-         setIndent(depth);
       }
       
       public Scope getScopeNode()
@@ -169,7 +153,13 @@ public class DocumentOutlineWidget extends Composite
          return node_;
       }
       
+      public String getKey()
+      {
+         return key_;
+      }
+      
       private Scope node_;
+      private final String key_;
       private HTML indent_;
       private Label label_;
    }
@@ -240,6 +230,15 @@ public class DocumentOutlineWidget extends Composite
          }
       };
       
+      docUpdateTimer_ = new Timer()
+      {
+         @Override
+         public void run()
+         {
+            rebuildScopeTree();
+         }
+      };
+      
       // Sync themes with editor on startup. Because this requires the CSS
       // styles to have been read and rendered, we briefly time this out.
       new Timer()
@@ -274,16 +273,11 @@ public class DocumentOutlineWidget extends Composite
             new DocumentChangedEvent.Handler()
             {
                @Override
-               public void onDocumentChanged(final DocumentChangedEvent event)
+               public void onDocumentChanged(DocumentChangedEvent event)
                {
-                  Scheduler.get().scheduleDeferred(new ScheduledCommand()
-                  {
-                     @Override
-                     public void execute()
-                     {
-                        DocumentOutlineWidget.this.onDocumentChanged(event);
-                     }
-                  });
+                  // Debounce value changed events to avoid over-aggressively
+                  // rebuilding the scope tree.
+                  docUpdateTimer_.schedule(1000);
                }
             });
       
@@ -306,27 +300,6 @@ public class DocumentOutlineWidget extends Composite
       resetTreeStyles();
    }
    
-   private void onDocumentChanged(final DocumentChangedEvent event)
-   {
-      // Debounce value changed events to avoid over-aggressively rebuilding
-      // the scope tree.
-      if (docUpdateTimer_ != null)
-         docUpdateTimer_.cancel();
-      
-      docUpdateTimer_ = new Timer()
-      {
-         
-         @Override
-         public void run()
-         {
-            updateScopeTree(event);
-            resetTreeStyles();
-         }
-      };
-      
-      docUpdateTimer_.schedule(1000);
-   }
-   
    private void syncThemesWithEditor()
    {
       Element editorContainer = target_.asWidget().getElement();
@@ -351,35 +324,22 @@ public class DocumentOutlineWidget extends Composite
       outlineStyles.setColor(computed.getColor());
    }
    
-   private void addOrSetItem(Scope node, int depth, int index)
-   {
-      int treeSize = tree_.getItemCount();
-      if (index < treeSize)
-      {
-         DocumentOutlineTreeItem item =
-            (DocumentOutlineTreeItem) tree_.getItem(index);
-         
-         item.getEntry().update(node, depth);
-      }
-      else
-      {
-         tree_.addItem(createEntry(node, depth));
-      }
-   }
-   
-   private void updateScopeTree(DocumentChangedEvent event)
-   {
-      rebuildScopeTree();
-   }
-   
    private void setActiveWidget(Widget widget)
    {
+      // avoid detaching and reattaching the tree (and the flicker that
+      // comes with it) when it's already showing
+      if (panel_.getWidgetCount() == 1 && panel_.getWidget(0) == widget)
+         return;
+      
       panel_.clear();
       panel_.add(widget);
    }
    
    private void rebuildScopeTree()
    {
+      // abandon any rebuild still in progress
+      final int generation = ++rebuildGeneration_;
+      
       scopeTree_ = target_.getDocDisplay().getScopeTree();
       
       if (scopeTree_.length() == 0)
@@ -403,26 +363,95 @@ public class DocumentOutlineWidget extends Composite
       
       int initialDepth = h1Count == 1 ? -1 : 0;
       
-      Counter counter = new Counter(-1);
+      // Flatten the nodes to display, in tree order, and count the entries
+      // wanted for each key so that we can tell which rendered entries
+      // have been removed and which have merely shifted
+      final ArrayList<Scope> nodes = new ArrayList<Scope>();
+      final ArrayList<Integer> depths = new ArrayList<Integer>();
+      final ArrayList<String> keys = new ArrayList<String>();
       for (int i = 0; i < scopeTree_.length(); i++)
-         buildScopeTreeImpl(scopeTree_.get(i), initialDepth, counter);
+         collectNodes(scopeTree_.get(i), initialDepth, nodes, depths, keys);
       
-      // Clean up leftovers in the tree. 
-      int oldTreeSize = tree_.getItemCount();
-      int newTreeSize = counter.increment();
-      
-      for (int i = oldTreeSize - 1; i >= newTreeSize; i--)
+      final HashMap<String, Integer> pending = new HashMap<String, Integer>();
+      for (String key : keys)
       {
-         TreeItem item = tree_.getItem(i);
-         if (item != null)
-            item.remove();
+         Integer count = pending.get(key);
+         pending.put(key, count == null ? 1 : count + 1);
       }
+      
+      // Walk the rendered entries against the new ones, keeping entries
+      // whose key is unchanged, and inserting or removing the rest. The
+      // DOM updates are done in time slices so that rebuilding a long
+      // outline doesn't hold up typing.
+      Scheduler.get().scheduleIncremental(new RepeatingCommand()
+      {
+         @Override
+         public boolean execute()
+         {
+            if (generation != rebuildGeneration_)
+               return false;
+            
+            double deadline = Duration.currentTimeMillis() + REBUILD_SLICE_MS;
+            while (index_ < nodes.size())
+            {
+               if (Duration.currentTimeMillis() > deadline)
+                  return true;
+               
+               String key = keys.get(index_);
+               DocumentOutlineTreeItem item = index_ < tree_.getItemCount()
+                     ? (DocumentOutlineTreeItem) tree_.getItem(index_)
+                     : null;
+               
+               if (item != null && item.getEntry().getKey().equals(key))
+               {
+                  item.getEntry().setScopeNode(nodes.get(index_));
+               }
+               else if (item != null &&
+                        !pending.containsKey(item.getEntry().getKey()))
+               {
+                  // this entry is gone; compare the next one against the
+                  // same node
+                  item.remove();
+                  continue;
+               }
+               else
+               {
+                  tree_.insertItem(index_,
+                        createEntry(nodes.get(index_), depths.get(index_)));
+               }
+               
+               Integer count = pending.get(key);
+               if (count == 1)
+                  pending.remove(key);
+               else
+                  pending.put(key, count - 1);
+               index_++;
+            }
+            
+            // Clean up leftovers in the tree.
+            for (int i = tree_.getItemCount() - 1; i >= nodes.size(); i--)
+               tree_.getItem(i).remove();
+            
+            resetTreeStyles();
+            return false;
+         }
+         
+         private int index_ = 0;
+      });
    }
    
-   private void buildScopeTreeImpl(Scope node, int depth, Counter counter)
+   private void collectNodes(Scope node,
+                             int depth,
+                             ArrayList<Scope> nodes,
+                             ArrayList<Integer> depths,
+                             ArrayList<String> keys)
    {
       if (shouldDisplayNode(node))
-         addOrSetItem(node, depth, counter.increment());
+      {
+         nodes.add(node);
+         depths.add(depth);
+         keys.add(getNodeKey(node, depth));
+      }
       
       JsArray<Scope> children = node.getChildren();
       for (int i = 0; i < children.length(); i++)
@@ -433,10 +462,54 @@ public class DocumentOutlineWidget extends Composite
          if (node.isNamespace())
             newDepth--;
          
-         buildScopeTreeImpl(children.get(i), newDepth, counter);
+         collectNodes(children.get(i), newDepth, nodes, depths, keys);
       }
    }
    
+   // Identifies a node by everything its entry renders (kind, label and
+   // indent), so that an entry can be kept for the equivalent node of a
+   // newer scope tree
+   private static String getNodeKey(Scope node, int depth)
+   {
+      String kind;
+      if (node.isChunk())
+         kind = "c";
+      else if (node.isSection() && !node.isMarkdownHeader() && !node.isYaml())
+         kind = "s";
+      else if (node.isFunction())
+         kind = "f";
+      else
+         kind = "o";
+      return kind + Math.max(0, depth) + ":" + getLabelText(node);
+   }
+   
+   private static String getLabelText(Scope node)
+   {
+      String text = "";
+      if (node.isChunk())
+      {
+         text = node.getChunkLabel();
+      }
+      else if (node.isFunction())
+      {
+         ScopeFunction asFunctionNode = (ScopeFunction) node;
+         text = asFunctionNode.getFunctionName();
+      }
+      else if (node.isYaml())
+      {
+         text = "Title";
+      }
+      else
+      {
+         text = node.getLabel();
+      }
+
+      if (text.equals(""))
+         text = "(chunk)";
+      
+      return text;
+   }
+   
    private boolean isUnnamedNode(Scope node)
    {
       if (node.isChunk())
@@ -513,8 +586,9 @@ public class DocumentOutlineWidget extends Composite
    private final TextEditingTarget target_;
    
    private final Timer renderTimer_;
-   private Timer docUpdateTimer_;
+   private final Timer docUpdateTimer_;
    private JsArray<Scope> scopeTree_;
+   private int rebuildGeneration_ = 0;
    
    private EventBus events_;
    private UIPrefs uiPrefs_;
@@ -547,6 +621,8 @@ public class DocumentOutlineWidget extends Composite
       Styles styles();
    }
    
+   private static final int REBUILD_SLICE_MS = 5;
+   
    private static Resources RES = GWT.create(Resources.class);
    static {
       RES.styles().ensureInjected();
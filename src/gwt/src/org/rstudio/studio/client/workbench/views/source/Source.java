@@ -14,6 +14,7 @@
  */
 package org.rstudio.studio.client.workbench.views.source;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.core.client.Scheduler;
@@ -59,6 +60,7 @@ import org.rstudio.studio.client.common.GlobalProgressDelayer;
 import org.rstudio.studio.client.common.SimpleRequestCallback;
 import org.rstudio.studio.client.common.dependencies.DependencyManager;
 import org.rstudio.studio.client.common.filetypes.EditableFileType;
+import org.rstudio.studio.client.common.filetypes.FileType;
 import org.rstudio.studio.client.common.filetypes.FileTypeRegistry;
 import org.rstudio.studio.client.common.filetypes.TextFileType;
 import org.rstudio.studio.client.common.filetypes.events.OpenPresentationSourceFileEvent;
@@ -100,6 +102,7 @@ import org.rstudio.studio.client.workbench.views.data.events.ViewDataEvent;
 import org.rstudio.studio.client.workbench.views.data.events.ViewDataHandler;
 import org.rstudio.studio.client.workbench.views.output.find.events.FindInFilesEvent;
 import org.rstudio.studio.client.workbench.views.source.SourceWindowManager.NavigationResult;
+import org.rstudio.studio.client.workbench.views.source.editors.DeferredEditingTarget;
 import org.rstudio.studio.client.workbench.views.source.editors.EditingTarget;
 import org.rstudio.studio.client.workbench.views.source.editors.EditingTargetSource;
 import org.rstudio.studio.client.workbench.views.source.editors.codebrowser.CodeBrowserEditingTarget;
@@ -134,6 +137,7 @@ import org.rstudio.studio.client.workbench.views.source.model.SourcePosition;
 import org.rstudio.studio.client.workbench.views.source.model.SourceServerOperations;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 
 public class Source implements InsertSourceHandler,
@@ -570,6 +574,15 @@ public class Source implements InsertSourceHandler,
          @Override
          protected void onInit(Integer value)
          {
+            // restored tabs aren't selected as they're added (so that their
+            // editors needn't be created); if there's no saved tab to
+            // select, select the last one
+            if ((value == null || value < 0 || view_.getTabCount() <= value) &&
+                view_.getTabCount() > 0)
+            {
+               view_.selectTab(view_.getTabCount() - 1);
+            }
+            
             if (value == null)
                return;
             if (value >= 0 && view_.getTabCount() > value)
@@ -617,6 +630,15 @@ public class Source implements InsertSourceHandler,
       });
 
       initialized_ = true;
+      
+      new Timer()
+      {
+         @Override
+         public void run()
+         {
+            hibernateInactiveEditors();
+         }
+      }.scheduleRepeating(HIBERNATE_CHECK_INTERVAL_MS);
 
       // As tabs were added before, manageCommands() was suppressed due to
       // initialized_ being false, so we need to run it explicitly
@@ -678,7 +700,7 @@ public class Source implements InsertSourceHandler,
                                       Command continuation)
                   {
                      view_.closeTab(
-                           editingTarget.asWidget(),
+                           getTabWidget(editingTarget),
                            false,
                            continuation);
                   }
@@ -759,19 +781,32 @@ public class Source implements InsertSourceHandler,
              (SourceWindowManager.isMainSourceWindow() && 
               !windowManager_.isSourceWindowOpen(docWindowId)))
          {
-            EditingTarget editor = addTab(doc, true);
-            
             // if this is a source window, check to see if it was opened to
             // pop out a particular doc, and restore that doc's position if so
+            SourcePosition initialPosition = null;
             if (!SourceWindowManager.isMainSourceWindow())
             {
                SourceWindow sourceWindow = 
                      RStudioGinjector.INSTANCE.getSourceWindow();
-               if (sourceWindow.getInitialDocId() == doc.getId() &&
-                   sourceWindow.getInitialSourcePosition() != null)
+               if (sourceWindow.getInitialDocId() == doc.getId())
+                  initialPosition = sourceWindow.getInitialSourcePosition();
+            }
+            
+            // create the editor up front only if we need it now; otherwise
+            // it's created when the tab is first activated
+            FileType type = fileTypeRegistry_.getTypeByTypeName(doc.getType());
+            if (initialPosition == null &&
+                type instanceof TextFileType &&
+                DeferredEditingTarget.canDefer(doc))
+            {
+               addDeferredTab(doc, (TextFileType) type);
+            }
+            else
+            {
+               EditingTarget editor = addTab(doc, true);
+               if (initialPosition != null)
                {
-                  editor.restorePosition(
-                        sourceWindow.getInitialSourcePosition());
+                  editor.restorePosition(initialPosition);
                   editor.ensureCursorVisible();
                }
             }
@@ -1903,7 +1938,7 @@ public class Source implements InsertSourceHandler,
                   }
                   else
                   {
-                     view_.closeTab(target.asWidget(), false, continuation);
+                     view_.closeTab(getTabWidget(target), false, continuation);
                   }
                }
             });
@@ -2060,7 +2095,7 @@ public class Source implements InsertSourceHandler,
                else
                {
                   // untitled document -- just close the tab non-interactively
-                  view_.closeTab(saveTarget.asWidget(), false, continuation);
+                  view_.closeTab(getTabWidget(saveTarget), false, continuation);
                }
             }
          },
@@ -2427,7 +2462,7 @@ public class Source implements InsertSourceHandler,
             view_.selectTab(i);
             pMruList_.get().add(thisPath);
             if (resultCallback != null)
-               resultCallback.onSuccess(target);
+               resultCallback.onSuccess(getEditorAt(i));
             return;
          }
       }
@@ -2547,7 +2582,52 @@ public class Source implements InsertSourceHandler,
 
    private EditingTarget addTab(SourceDocument doc, Integer position)
    {
-      final EditingTarget target = editingTargetSource_.getEditingTarget(
+      // text editors are hosted by a DeferredEditingTarget (created along
+      // with its editor here), so that they can later be hibernated
+      FileType type = fileTypeRegistry_.getTypeByTypeName(doc.getType());
+      if (type instanceof TextFileType)
+      {
+         DeferredEditingTarget host = new DeferredEditingTarget(
+               doc, (TextFileType) type, commands_, editorFactory_);
+         EditingTarget editor = host.getEditor();
+         addTab(doc, host, position, true);
+         replaceHost(host, editor);
+         return editor;
+      }
+      
+      EditingTarget target = createEditingTarget(doc);
+      addTab(doc, target, position, true);
+      return target;
+   }
+   
+   // Adds a tab for a restored document without creating its editor, which
+   // is done when the tab is first activated (or the editor is otherwise
+   // needed)
+   private void addDeferredTab(SourceDocument doc, TextFileType type)
+   {
+      addTab(doc, 
+             new DeferredEditingTarget(doc, type, commands_, editorFactory_), 
+             null, 
+             false);
+   }
+   
+   // From the time its editor is created, the editor takes the host's place
+   // in the editor list, though its tab still holds the host's widget
+   private void replaceHost(DeferredEditingTarget host, EditingTarget editor)
+   {
+      hosts_.put(editor, host);
+      lastActiveTimes_.put(editor.getId(), Duration.currentTimeMillis());
+      
+      int index = editors_.indexOf(host);
+      if (index >= 0)
+         editors_.set(index, editor);
+      if (activeEditor_ == host)
+         activeEditor_ = editor;
+   }
+   
+   private EditingTarget createEditingTarget(SourceDocument doc)
+   {
+      return editingTargetSource_.getEditingTarget(
             doc, fileContext_, new Provider<String>()
             {
                public String get()
@@ -2555,7 +2635,128 @@ public class Source implements InsertSourceHandler,
                   return getNextDefaultName();
                }
             });
+   }
+   
+   // Returns the editor of the tab at the given index, creating it if it 
+   // was deferred
+   private EditingTarget getEditorAt(int index)
+   {
+      EditingTarget target = editors_.get(index);
+      if (target instanceof DeferredEditingTarget)
+         return ((DeferredEditingTarget) target).getEditor();
+      return target;
+   }
+   
+   // Returns the widget of the tab holding the given editor
+   private Widget getTabWidget(EditingTarget target)
+   {
+      DeferredEditingTarget host = hosts_.get(target);
+      return host != null ? host.asWidget() : target.asWidget();
+   }
+   
+   // Releases the editors of text documents that haven't been active for
+   // the period set in the prefs, leaving a snapshot of each document (with
+   // its cursor, scroll position and folds) in its tab's host, from which
+   // the editor is recreated when it's next needed
+   private void hibernateInactiveEditors()
+   {
+      int minutes = uiPrefs_.hibernateInactiveEditorsMinutes().getValue();
+      if (minutes <= 0)
+         return;
+      
+      double now = Duration.currentTimeMillis();
+      for (EditingTarget target : new ArrayList<EditingTarget>(editors_))
+      {
+         if (target == activeEditor_ || 
+             !(target instanceof TextEditingTarget) ||
+             !hosts_.containsKey(target))
+         {
+            continue;
+         }
+         
+         Double lastActive = lastActiveTimes_.get(target.getId());
+         if (lastActive != null && now - lastActive >= minutes * 60000.0)
+            hibernateEditor((TextEditingTarget) target);
+      }
+   }
+   
+   private void hibernateEditor(final TextEditingTarget editor)
+   {
+      // make sure the session has the editor's contents before releasing it
+      editor.withSavedDoc(new Command()
+      {
+         @Override
+         public void execute()
+         {
+            // the tab may have been activated or closed in the meantime
+            DeferredEditingTarget host = hosts_.get(editor);
+            int index = editors_.indexOf(editor);
+            if (host == null || index < 0 || editor == activeEditor_)
+               return;
+            
+            SourceDocument snapshot = editor.getHibernationSnapshot();
+            if (snapshot == null)
+               return;
+            
+            SourcePosition position = editor.currentPosition();
+            editor.onDismiss();
+            host.hibernate(snapshot, editor.getTextFileType(), position);
+            
+            editors_.set(index, host);
+            hosts_.remove(editor);
+            hibernationCount_++;
+            
+            if (!editor.isReleased())
+            {
+               unreleasedCount_++;
+               Debug.log("Warning: hibernated editor for " + 
+                         snapshot.getPath() + " still handles events or " +
+                         "is still attached");
+            }
+         }
+      });
+   }
+   
+   @Handler
+   public void onLogHibernatedEditors()
+   {
+      int hibernated = 0;
+      long chars = 0;
+      for (EditingTarget target : editors_)
+      {
+         if (target instanceof DeferredEditingTarget &&
+             ((DeferredEditingTarget) target).isHibernated())
+         {
+            hibernated++;
+            String contents = 
+               ((DeferredEditingTarget) target).getDocument().getContents();
+            if (contents != null)
+               chars += contents.length();
+         }
+      }
       
+      double heapSize = getUsedHeapSize();
+      Debug.log("Hibernated editors: " + hibernated + " of " + 
+                editors_.size() + " open documents (" + hibernationCount_ +
+                " hibernations this session, " + unreleasedCount_ + 
+                " not fully released)\n" +
+                "Snapshot text held: " + chars + " chars\n" +
+                "JS heap in use: " + (heapSize < 0 ? "not reported" : 
+                   Math.round(heapSize / 1024) + " KB"));
+   }
+   
+   // The size of the javascript heap in use, in bytes, or -1 if the browser
+   // doesn't report it
+   private static native double getUsedHeapSize() /*-{
+      var memory = $wnd.performance && $wnd.performance.memory;
+      return memory ? memory.usedJSHeapSize : -1;
+   }-*/;
+
+   private void addTab(SourceDocument doc,
+                       final EditingTarget target,
+                       Integer position,
+                       boolean switchToTab)
+   {
       final Widget widget = createWidget(target);
 
       if (position == null)
@@ -2584,7 +2785,7 @@ public class Source implements InsertSourceHandler,
                    target.getName().getValue(),
                    target.getTabTooltip(), // used as tooltip, if non-null
                    position,
-                   true);
+                   switchToTab);
       fireDocTabsChanged();
 
       target.getName().addValueChangeHandler(new ValueChangeHandler<String>()
@@ -2631,8 +2832,6 @@ public class Source implements InsertSourceHandler,
       // multiple documents are open; if this is the second document, go check
       if (editors_.size() == 2)
          manageMultiTabCommands();
-      
-      return target;
    }
 
    private String getNextDefaultName()
@@ -2729,6 +2928,8 @@ public class Source implements InsertSourceHandler,
    private void closeTabIndex(int idx, boolean closeDocument)
    {
       EditingTarget target = editors_.remove(idx);
+      hosts_.remove(target);
+      lastActiveTimes_.remove(target.getId());
 
       tabOrder_.remove(new Integer(idx));
       for (int i = 0; i < tabOrder_.size(); i++)
@@ -2846,13 +3047,17 @@ public class Source implements InsertSourceHandler,
    public void onSelection(SelectionEvent<Integer> event)
    {
       if (activeEditor_ != null)
+      {
          activeEditor_.onDeactivate();
+         lastActiveTimes_.put(activeEditor_.getId(), 
+                              Duration.currentTimeMillis());
+      }
 
       activeEditor_ = null;
 
       if (event.getSelectedItem() >= 0)
       {
-         activeEditor_ = editors_.get(event.getSelectedItem());
+         activeEditor_ = getEditorAt(event.getSelectedItem());
          activeEditor_.onActivate();
          // don't send focus to the tab if we're expecting a debug selection
          // event
@@ -3248,7 +3453,7 @@ public class Source implements InsertSourceHandler,
             suspendSourceNavigationAdding_ = true;
             try
             {
-               view_.selectTab(target.asWidget());
+               view_.selectTab(getTabWidget(target));
                target.restorePosition(navigation.getPosition());
             }
             finally
@@ -3644,7 +3849,7 @@ public class Source implements InsertSourceHandler,
          String editorPath = editors_.get(i).getPath();
          if (editorPath != null && editorPath.equals(path))
          {
-            onEditorLocated.execute(editors_.get(i));
+            onEditorLocated.execute(getEditorAt(i));
             break;
          }
       }
@@ -3658,7 +3863,7 @@ public class Source implements InsertSourceHandler,
          String editorId = editors_.get(i).getId();
          if (editorId != null && editorId.equals(id))
          {
-            onEditorLocated.execute(editors_.get(i));
+            onEditorLocated.execute(getEditorAt(i));
             break;
          }
       }
@@ -3666,6 +3871,24 @@ public class Source implements InsertSourceHandler,
    
    ArrayList<EditingTarget> editors_ = new ArrayList<EditingTarget>();
    ArrayList<Integer> tabOrder_ = new ArrayList<Integer>();
+   private final HashMap<EditingTarget, DeferredEditingTarget> hosts_ =
+         new HashMap<EditingTarget, DeferredEditingTarget>();
+   private final DeferredEditingTarget.EditorFactory editorFactory_ = 
+         new DeferredEditingTarget.EditorFactory()
+   {
+      @Override
+      public EditingTarget createEditor(DeferredEditingTarget host,
+                                        SourceDocument document)
+      {
+         EditingTarget editor = createEditingTarget(document);
+         replaceHost(host, editor);
+         return editor;
+      }
+   };
+   private final HashMap<String, Double> lastActiveTimes_ =
+         new HashMap<String, Double>();
+   private int hibernationCount_ = 0;
+   private int unreleasedCount_ = 0;
    private EditingTarget activeEditor_;
    private final Commands commands_;
    private final Display view_;
@@ -3694,6 +3917,7 @@ public class Source implements InsertSourceHandler,
   
    private static final String MODULE_SOURCE = "source-pane";
    private static final String KEY_ACTIVETAB = "activeTab";
+   private static final int HIBERNATE_CHECK_INTERVAL_MS = 60000;
    private boolean initialized_;
    private Timer debugSelectionTimer_ = null;
    
@@ -121,6 +121,8 @@ public class SourceShim extends Composite
       public abstract void onSourceNavigateForward();
       @Handler
       public abstract void onShowProfiler();
+      @Handler
+      public abstract void onLogHibernatedEditors();
       
       @Override
       protected void preInstantiationHook(Command continuation)
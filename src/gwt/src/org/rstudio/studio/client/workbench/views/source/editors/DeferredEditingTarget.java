@@ -0,0 +1,549 @@
+/*
+ * DeferredEditingTarget.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors;
+
+import com.google.gwt.event.logical.shared.CloseEvent;
+import com.google.gwt.event.logical.shared.CloseHandler;
+import com.google.gwt.event.logical.shared.ValueChangeEvent;
+import com.google.gwt.event.logical.shared.ValueChangeHandler;
+import com.google.gwt.event.shared.GwtEvent;
+import com.google.gwt.event.shared.HandlerManager;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.ui.HasValue;
+import com.google.gwt.user.client.ui.SimpleLayoutPanel;
+import com.google.gwt.user.client.ui.Widget;
+import com.google.inject.Provider;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.core.client.command.AppCommand;
+import org.rstudio.core.client.events.EnsureHeightEvent;
+import org.rstudio.core.client.events.EnsureHeightHandler;
+import org.rstudio.core.client.events.EnsureVisibleEvent;
+import org.rstudio.core.client.events.EnsureVisibleHandler;
+import org.rstudio.core.client.files.FileSystemContext;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.studio.client.common.ReadOnlyValue;
+import org.rstudio.studio.client.common.Value;
+import org.rstudio.studio.client.common.filetypes.FileType;
+import org.rstudio.studio.client.common.filetypes.TextFileType;
+import org.rstudio.studio.client.workbench.commands.Commands;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
+import org.rstudio.studio.client.workbench.views.source.events.CollabEditStartParams;
+import org.rstudio.studio.client.workbench.views.source.model.SourceDocument;
+import org.rstudio.studio.client.workbench.views.source.model.SourcePosition;
+
+import java.util.HashSet;
+
+/**
+ * Stands in for the editor of a source document until the editor is needed.
+ * The tab's name, icon, and dirty state come straight from the
+ * SourceDocument; the editor itself (and its Ace instance) is only created,
+ * via the given factory, when the tab is first activated or some operation
+ * needs the document's editor state.
+ *
+ * Once created, the editor's widget is placed in this target's widget (so
+ * the tab keeps the same widget), and this target delegates to the editor
+ * and forwards its events to handlers registered here. The editor can later
+ * be released again (hibernated), leaving a snapshot of the document to
+ * recreate it from.
+ */
+public class DeferredEditingTarget implements EditingTarget
+{
+   public interface EditorFactory
+   {
+      EditingTarget createEditor(DeferredEditingTarget host,
+                                 SourceDocument document);
+   }
+   
+   public DeferredEditingTarget(SourceDocument document,
+                                TextFileType fileType,
+                                Commands commands,
+                                EditorFactory editorFactory)
+   {
+      document_ = document;
+      fileType_ = fileType;
+      commands_ = commands;
+      editorFactory_ = editorFactory;
+      name_ = new Value<String>(getNameFromDocument(document));
+      dirtyState_ = new Value<Boolean>(document.isDirty());
+      container_ = new SimpleLayoutPanel();
+   }
+
+   // Only documents that can be named without the editor (i.e. that have a
+   // path or an assigned untitled name) can be deferred
+   public static boolean canDefer(SourceDocument document)
+   {
+      return getNameFromDocument(document) != null;
+   }
+
+   private static String getNameFromDocument(SourceDocument document)
+   {
+      if (document.getPath() != null)
+         return FileSystemItem.getNameFromPath(document.getPath());
+
+      String name = document.getProperties().getString("tempName");
+      if (!StringUtil.isNullOrEmpty(name))
+         return name;
+
+      return null;
+   }
+
+   public boolean isMaterialized()
+   {
+      return editor_ != null;
+   }
+   
+   // True if the editor was released by hibernate() and hasn't been
+   // recreated since
+   public boolean isHibernated()
+   {
+      return editor_ == null && position_ != null;
+   }
+   
+   // The document the editor will be created from
+   public SourceDocument getDocument()
+   {
+      return document_;
+   }
+
+   // Returns the editor for this document, creating it if necessary
+   public EditingTarget getEditor()
+   {
+      if (editor_ != null)
+         return editor_;
+
+      final EditingTarget editor = editorFactory_.createEditor(this, 
+                                                               document_);
+      editor_ = editor;
+      container_.setWidget(editor.asWidget());
+      
+      if (position_ != null)
+      {
+         editor.restorePosition(position_);
+         position_ = null;
+      }
+      
+      if (extendedType_ != null)
+      {
+         editor.adaptToExtendedFileType(extendedType_);
+         extendedType_ = null;
+      }
+
+      // forward the editor's state and events for as long as it's ours
+      name_.setValue(editor.getName().getValue(), true);
+      editor.getName().addValueChangeHandler(new ValueChangeHandler<String>()
+      {
+         @Override
+         public void onValueChange(ValueChangeEvent<String> event)
+         {
+            if (editor_ == editor)
+               name_.setValue(event.getValue(), true);
+         }
+      });
+
+      dirtyState_.setValue(editor.dirtyState().getValue(), true);
+      editor.dirtyState().addValueChangeHandler(
+            new ValueChangeHandler<Boolean>()
+      {
+         @Override
+         public void onValueChange(ValueChangeEvent<Boolean> event)
+         {
+            if (editor_ == editor)
+               dirtyState_.setValue(event.getValue(), true);
+         }
+      });
+
+      editor.addEnsureVisibleHandler(new EnsureVisibleHandler()
+      {
+         @Override
+         public void onEnsureVisible(EnsureVisibleEvent event)
+         {
+            if (editor_ == editor)
+               fireEvent(new EnsureVisibleEvent(event.getActivate()));
+         }
+      });
+
+      editor.addEnsureHeightHandler(new EnsureHeightHandler()
+      {
+         @Override
+         public void onEnsureHeight(EnsureHeightEvent event)
+         {
+            if (editor_ == editor)
+               fireEvent(new EnsureHeightEvent(event.getHeight()));
+         }
+      });
+
+      editor.addCloseHandler(new CloseHandler<Void>()
+      {
+         @Override
+         public void onClose(CloseEvent<Void> event)
+         {
+            if (editor_ == editor)
+               CloseEvent.fire(DeferredEditingTarget.this, null);
+         }
+      });
+
+      return editor;
+   }
+   
+   // Releases the editor (which the caller must already have dismissed),
+   // to be recreated from the given snapshot of its document and restored
+   // to the given position when next needed
+   public void hibernate(SourceDocument snapshot,
+                         TextFileType fileType,
+                         SourcePosition position)
+   {
+      assert editor_ != null : "Only a created editor can be hibernated";
+      
+      container_.clear();
+      editor_ = null;
+      document_ = snapshot;
+      fileType_ = fileType;
+      supportedCommands_ = null;
+      position_ = position;
+      dirtyState_.setValue(snapshot.isDirty(), true);
+   }
+
+   public String getId()
+   {
+      return document_.getId();
+   }
+
+   // The extended type is applied to the editor when it's created
+   @Override
+   public void adaptToExtendedFileType(String extendedType)
+   {
+      if (editor_ != null)
+         editor_.adaptToExtendedFileType(extendedType);
+      else
+         extendedType_ = extendedType;
+   }
+
+   @Override
+   public String getExtendedFileType()
+   {
+      if (editor_ != null)
+         return editor_.getExtendedFileType();
+      if (extendedType_ != null)
+         return extendedType_;
+      return document_.getExtendedType();
+   }
+
+   public HasValue<String> getName()
+   {
+      return name_;
+   }
+
+   public String getTitle()
+   {
+      return name_.getValue();
+   }
+
+   public String getPath()
+   {
+      if (editor_ != null)
+         return editor_.getPath();
+      return document_.getPath();
+   }
+
+   public String getContext()
+   {
+      if (editor_ != null)
+         return editor_.getContext();
+      return null;
+   }
+
+   public ImageResource getIcon()
+   {
+      if (editor_ != null)
+         return editor_.getIcon();
+      return fileType_.getDefaultIcon();
+   }
+
+   public String getTabTooltip()
+   {
+      if (editor_ != null)
+         return editor_.getTabTooltip();
+      return document_.getPath();
+   }
+
+   @Override
+   public TextFileType getTextFileType()
+   {
+      if (editor_ != null)
+         return editor_.getTextFileType();
+      return fileType_;
+   }
+
+   // The commands a text editor supports depend only on its file type
+   public HashSet<AppCommand> getSupportedCommands()
+   {
+      if (editor_ != null)
+         return editor_.getSupportedCommands();
+      if (supportedCommands_ == null)
+         supportedCommands_ = fileType_.getSupportedCommands(commands_);
+      return supportedCommands_;
+   }
+
+   @Override
+   public boolean canCompilePdf()
+   {
+      return getEditor().canCompilePdf();
+   }
+
+   @Override
+   public void verifyCppPrerequisites()
+   {
+      getEditor().verifyCppPrerequisites();
+   }
+
+   public void focus()
+   {
+      getEditor().focus();
+   }
+
+   public void onActivate()
+   {
+      getEditor().onActivate();
+   }
+
+   public void onDeactivate()
+   {
+      if (editor_ != null)
+         editor_.onDeactivate();
+   }
+
+   @Override
+   public void onInitiallyLoaded()
+   {
+      getEditor().onInitiallyLoaded();
+   }
+
+   @Override
+   public void recordCurrentNavigationPosition()
+   {
+      if (editor_ != null)
+         editor_.recordCurrentNavigationPosition();
+   }
+
+   @Override
+   public void navigateToPosition(SourcePosition position,
+                                  boolean recordCurrent)
+   {
+      getEditor().navigateToPosition(position, recordCurrent);
+   }
+
+   @Override
+   public void navigateToPosition(SourcePosition position,
+                                  boolean recordCurrent,
+                                  boolean highlightLine)
+   {
+      getEditor().navigateToPosition(position, recordCurrent, highlightLine);
+   }
+
+   @Override
+   public void restorePosition(SourcePosition position)
+   {
+      getEditor().restorePosition(position);
+   }
+
+   @Override
+   public SourcePosition currentPosition()
+   {
+      return getEditor().currentPosition();
+   }
+
+   @Override
+   public boolean isAtSourceRow(SourcePosition position)
+   {
+      return getEditor().isAtSourceRow(position);
+   }
+
+   @Override
+   public void forceLineHighlighting()
+   {
+      getEditor().forceLineHighlighting();
+   }
+
+   @Override
+   public void setCursorPosition(Position position)
+   {
+      getEditor().setCursorPosition(position);
+   }
+
+   @Override
+   public void ensureCursorVisible()
+   {
+      getEditor().ensureCursorVisible();
+   }
+
+   @Override
+   public Position search(String regex)
+   {
+      return getEditor().search(regex);
+   }
+
+   @Override
+   public Position search(Position startPos, String regex)
+   {
+      return getEditor().search(startPos, regex);
+   }
+
+   @Override
+   public void highlightDebugLocation(SourcePosition startPos,
+                                      SourcePosition endPos,
+                                      boolean executing)
+   {
+      getEditor().highlightDebugLocation(startPos, endPos, executing);
+   }
+
+   @Override
+   public void endDebugHighlighting()
+   {
+      if (editor_ != null)
+         editor_.endDebugHighlighting();
+   }
+
+   @Override
+   public void beginCollabSession(CollabEditStartParams params)
+   {
+      getEditor().beginCollabSession(params);
+   }
+
+   @Override
+   public void endCollabSession()
+   {
+      if (editor_ != null)
+         editor_.endCollabSession();
+   }
+
+   public boolean onBeforeDismiss()
+   {
+      if (editor_ != null)
+         return editor_.onBeforeDismiss();
+      return true;
+   }
+
+   public void onDismiss()
+   {
+      if (editor_ != null)
+         editor_.onDismiss();
+   }
+
+   public ReadOnlyValue<Boolean> dirtyState()
+   {
+      return dirtyState_;
+   }
+
+   @Override
+   public boolean isSaveCommandActive()
+   {
+      if (editor_ != null)
+         return editor_.isSaveCommandActive();
+      return dirtyState_.getValue();
+   }
+
+   @Override
+   public void forceSaveCommandActive()
+   {
+      getEditor().forceSaveCommandActive();
+   }
+
+   public void save(Command onCompleted)
+   {
+      if (editor_ == null && !dirtyState_.getValue())
+         onCompleted.execute();
+      else
+         getEditor().save(onCompleted);
+   }
+
+   public void saveWithPrompt(Command onCompleted, Command onCancelled)
+   {
+      if (editor_ == null && !dirtyState_.getValue())
+         onCompleted.execute();
+      else
+         getEditor().saveWithPrompt(onCompleted, onCancelled);
+   }
+
+   public void revertChanges(Command onCompleted)
+   {
+      if (editor_ == null && !dirtyState_.getValue())
+         onCompleted.execute();
+      else
+         getEditor().revertChanges(onCompleted);
+   }
+
+   public void initialize(SourceDocument document,
+                          FileSystemContext fileContext,
+                          FileType type,
+                          Provider<String> defaultNameProvider)
+   {
+      assert false : "Deferred editing targets are initialized on creation";
+   }
+
+   public long getFileSizeLimit()
+   {
+      return getEditor().getFileSizeLimit();
+   }
+
+   public long getLargeFileSize()
+   {
+      return getEditor().getLargeFileSize();
+   }
+
+   public Widget asWidget()
+   {
+      return container_;
+   }
+
+   public HandlerRegistration addEnsureVisibleHandler(
+         EnsureVisibleHandler handler)
+   {
+      return handlers_.addHandler(EnsureVisibleEvent.TYPE, handler);
+   }
+
+   public HandlerRegistration addEnsureHeightHandler(
+         EnsureHeightHandler handler)
+   {
+      return handlers_.addHandler(EnsureHeightEvent.TYPE, handler);
+   }
+
+   @Override
+   public HandlerRegistration addCloseHandler(CloseHandler<Void> handler)
+   {
+      return handlers_.addHandler(CloseEvent.getType(), handler);
+   }
+
+   public void fireEvent(GwtEvent<?> event)
+   {
+      handlers_.fireEvent(event);
+   }
+
+   private final Commands commands_;
+   private final EditorFactory editorFactory_;
+   private final Value<String> name_;
+   private final Value<Boolean> dirtyState_;
+   private final SimpleLayoutPanel container_;
+   private final HandlerManager handlers_ = new HandlerManager(this);
+
+   private SourceDocument document_;
+   private TextFileType fileType_;
+   private SourcePosition position_;
+   private String extendedType_;
+   private HashSet<AppCommand> supportedCommands_;
+   private EditingTarget editor_;
+}
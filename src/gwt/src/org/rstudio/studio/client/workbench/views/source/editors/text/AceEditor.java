@@ -961,6 +961,11 @@ public class AceEditor implements DocDisplay,
       return getSession().getDocument().getLength();
    }
 
+   public String getNewLineCharacter()
+   {
+      return getSession().getDocument().getNewLineCharacter();
+   }
+
    public String getLine(int row)
    {
       return getSession().getLine(row);
@@ -104,6 +104,10 @@ public class AceEditorWidget extends Composite
             if (inOnChangeHandler_)
             {
                Debug.log("Warning: ignoring recursive ACE change event");
+               
+               // those keeping track of the document's rows still need to
+               // know of the change, after the one being handled
+               pendingChanges_.add(event);
                return;
             }
             inOnChangeHandler_ = true;
@@ -134,6 +138,20 @@ public class AceEditorWidget extends Composite
                Debug.log("Exception occurred during ACE change event: " + 
                          ex.getMessage());
             }
+            
+            while (!pendingChanges_.isEmpty())
+            {
+               try
+               {
+                  AceEditorWidget.this.fireEvent(
+                        new DocumentChangedEvent(pendingChanges_.remove(0)));
+               }
+               catch (Exception ex)
+               {
+                  Debug.log("Exception occurred during ACE change event: " + 
+                            ex.getMessage());
+               }
+            }
             inOnChangeHandler_ = false;
          }
 
@@ -988,6 +1006,8 @@ public class AceEditorWidget extends Composite
    private final HandlerManager capturingHandlers_;
    private boolean initToEmptyString_ = true;
    private boolean inOnChangeHandler_ = false;
+   private final ArrayList<AceDocumentChangeEventNative> pendingChanges_ =
+         new ArrayList<AceDocumentChangeEventNative>();
    private ArrayList<Breakpoint> breakpoints_ = new ArrayList<Breakpoint>();
    
    private ArrayList<AnchoredAceAnnotation> annotations_ =
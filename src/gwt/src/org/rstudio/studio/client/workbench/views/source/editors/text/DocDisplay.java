@@ -90,6 +90,8 @@ public interface DocDisplay extends HasValueChangeHandlers<Void>,
    void setCppCompletionContext(CppCompletionContext cppContext);
    void setRCompletionContext(RCompletionContext rContext);
    String getCode();
+   // The text between rows in getCode()
+   String getNewLineCharacter();
    JsArrayString getLines();
    JsArrayString getLines(int startRow, int endRow);
    void setCode(String code, boolean preserveCursorPosition);
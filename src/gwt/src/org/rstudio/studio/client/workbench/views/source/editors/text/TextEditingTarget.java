@@ -95,7 +95,7 @@ import org.rstudio.studio.client.rmarkdown.model.RmdFrontMatterOutputOptions;
 import org.rstudio.studio.client.rmarkdown.model.RmdOutputFormat;
 import org.rstudio.studio.client.rmarkdown.model.RmdTemplateFormat;
 import org.rstudio.studio.client.rmarkdown.model.RmdYamlData;
-import org.rstudio.studio.client.rmarkdown.model.YamlFrontMatter;
+import org.rstudio.studio.client.rmarkdown.model.YamlTree;
 import org.rstudio.studio.client.rmarkdown.ui.RmdTemplateOptionsDialog;
 import org.rstudio.studio.client.rsconnect.events.RSConnectActionEvent;
 import org.rstudio.studio.client.rsconnect.events.RSConnectDeployInitiatedEvent;
@@ -409,6 +409,8 @@ public class TextEditingTarget implements
                                                                   docDisplay_);
       reformatHelper_ = new TextEditingTargetReformatHelper(docDisplay_);
       renameHelper_ = new TextEditingTargetRenameHelper(docDisplay_);
+      frontMatterTracker_ = 
+            new TextEditingTargetFrontMatterTracker(docDisplay_);
       
       docDisplay_.setRnwCompletionContext(compilePdfHelper_);
       docDisplay_.setCppCompletionContext(cppCompletionContext_);
@@ -581,7 +583,7 @@ public class TextEditingTarget implements
          }
       });
       
-      events_.addHandler(
+      releaseOnDismiss_.add(events_.addHandler(
             ShinyApplicationStatusEvent.TYPE, 
             new ShinyApplicationStatusEvent.Handler()
             {
@@ -608,9 +610,9 @@ public class TextEditingTarget implements
                      view_.onShinyApplicationStateChanged(state);
                   }
                }
-            });
+            }));
       
-      events_.addHandler(
+      releaseOnDismiss_.add(events_.addHandler(
             BreakpointsSavedEvent.TYPE, 
             new BreakpointsSavedEvent.Handler()
       {         
@@ -652,9 +654,9 @@ public class TextEditingTarget implements
             }
             updateBreakpointWarningBar();
          }
-      });
+      }));
       
-      events_.addHandler(ConvertToShinyDocEvent.TYPE, 
+      releaseOnDismiss_.add(events_.addHandler(ConvertToShinyDocEvent.TYPE, 
                          new ConvertToShinyDocEvent.Handler()
       {
          @Override
@@ -671,9 +673,9 @@ public class TextEditingTarget implements
                renderRmd();
             }
          }
-      });
+      }));
       
-      events_.addHandler(RSConnectDeployInitiatedEvent.TYPE, 
+      releaseOnDismiss_.add(events_.addHandler(RSConnectDeployInitiatedEvent.TYPE, 
             new RSConnectDeployInitiatedEvent.Handler()
             {
                @Override
@@ -705,9 +707,9 @@ public class TextEditingTarget implements
                      addAdditionalResourceFiles(settings.getAdditionalFiles());
                   }
                }
-            });
+            }));
       
-      events_.addHandler(
+      releaseOnDismiss_.add(events_.addHandler(
             SetEditorCommandBindingsEvent.TYPE,
             new SetEditorCommandBindingsEvent.Handler()
             {
@@ -718,9 +720,9 @@ public class TextEditingTarget implements
                         event.getId(),
                         event.getKeySequences());
                }
-            });
+            }));
       
-      events_.addHandler(
+      releaseOnDismiss_.add(events_.addHandler(
             ResetEditorCommandsEvent.TYPE,
             new ResetEditorCommandsEvent.Handler()
             {
@@ -729,9 +731,9 @@ public class TextEditingTarget implements
                {
                   getDocDisplay().resetCommands();
                }
-            });
+            }));
       
-      events_.addHandler(DocTabDragStateChangedEvent.TYPE, 
+      releaseOnDismiss_.add(events_.addHandler(DocTabDragStateChangedEvent.TYPE, 
             new DocTabDragStateChangedEvent.Handler()
             {
                
@@ -742,7 +744,7 @@ public class TextEditingTarget implements
                   docDisplay_.setDragEnabled(e.getState() == 
                         DocTabDragStateChangedEvent.STATE_NONE);
                }
-            });
+            }));
    }
    
    private boolean moveCursorToNextSectionOrChunk()
@@ -2547,7 +2549,36 @@ public class TextEditingTarget implements
    {
       docUpdateSentinel_.withSavedDoc(onsaved);
    }
-   
+
+   // Returns the document in a state from which this editor can be
+   // recreated (as it would be on reload), or null if the editor has state
+   // that the document can't capture: changes the session doesn't have yet,
+   // or a collaborative editing session. Undo history is not kept.
+   public SourceDocument getHibernationSnapshot()
+   {
+      if (docDisplay_.hasActiveCollabSession())
+         return null;
+
+      if (!docDisplay_.getCode().equals(docUpdateSentinel_.getContents()))
+         return null;
+
+      SourceDocument doc = docUpdateSentinel_.getDoc();
+      doc.setDirty(dirtyState_.getValue());
+      doc.setExtendedType(extendedType_);
+      doc.setFoldSpec(Fold.encode(Fold.flatten(docDisplay_.getFolds())));
+      return doc;
+   }
+
+   // True if, after being dismissed, the editor no longer handles any events
+   // and its widget has been removed from the page, so that nothing but its
+   // host's references keeps it alive
+   public boolean isReleased()
+   {
+      return releaseOnDismiss_.isEmpty() &&
+             commandHandlerReg_ == null &&
+             !asWidget().isAttached();
+   }
+
    @Handler
    void onCheckSpelling()
    {
@@ -3325,28 +3356,23 @@ public class TextEditingTarget implements
    
    private String getRmdFrontMatter()
    {
-      return YamlFrontMatter.getFrontMatter(docDisplay_.getCode());
+      return frontMatterTracker_.getFrontMatter();
    }
    
    private void applyRmdFrontMatter(String yaml)
    {
-      String code = docDisplay_.getCode();
-      String newCode = YamlFrontMatter.applyFrontMatter(code, yaml);
-      if (!code.equals(newCode)) 
-      {
-         docDisplay_.setCode(newCode, true);
+      if (frontMatterTracker_.applyFrontMatter(yaml))
          updateRmdFormatList();
-      }
    }
 
    private RmdSelectedTemplate getSelectedTemplate()
    {
       // try to extract the front matter and ascertain the template to which
       // it refers
-      String yaml = getRmdFrontMatter();
-      if (yaml == null)
+      YamlTree tree = frontMatterTracker_.getFrontMatterTree();
+      if (tree == null)
          return null;
-      return rmarkdownHelper_.getTemplateFormat(yaml);
+      return rmarkdownHelper_.getTemplateFormat(tree);
    }
    
    private void updateRmdFormatList()
@@ -4284,11 +4310,16 @@ public class TextEditingTarget implements
    @Handler
    void onPreviewHTML()
    {
-      // last ditch extended type detection
+      // last ditch extended type detection (only needed, and only worth
+      // copying the document for, if we don't have an extended type yet)
       String extendedType = extendedType_;
-      extendedType = rmarkdownHelper_.detectExtendedType(docDisplay_.getCode(),
-                                                         extendedType, 
-                                                         fileType_);
+      if (extendedType.length() == 0)
+      {
+         extendedType = rmarkdownHelper_.detectExtendedType(
+                                                   docDisplay_.getCode(),
+                                                   extendedType, 
+                                                   fileType_);
+      }
       
       if (extendedType == "rmarkdown")
          renderRmd();
@@ -5569,6 +5600,7 @@ public class TextEditingTarget implements
    
    private StatusBar statusBar_;
    private final DocDisplay docDisplay_;
+   private final TextEditingTargetFrontMatterTracker frontMatterTracker_;
    private final UIPrefs prefs_;
    private Display view_;
    private final Commands commands_;
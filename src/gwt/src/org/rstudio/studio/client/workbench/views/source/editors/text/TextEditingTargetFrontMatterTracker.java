@@ -0,0 +1,209 @@
+/*
+ * TextEditingTargetFrontMatterTracker.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text;
+
+import com.google.gwt.regexp.shared.RegExp;
+
+import org.rstudio.core.client.Debug;
+import org.rstudio.studio.client.rmarkdown.model.RmdFrontMatter;
+import org.rstudio.studio.client.rmarkdown.model.YamlFrontMatter;
+import org.rstudio.studio.client.rmarkdown.model.YamlTree;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Position;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
+import org.rstudio.studio.client.workbench.views.source.editors.text.events.DocumentChangedEvent;
+
+// Tracks the YAML front matter of a document. The header is located by
+// reading rows from the top of the document only until the front matter
+// (or its absence) is established, and the result is cached until an edit
+// touches one of those rows; edits below the header leave it untouched.
+public class TextEditingTargetFrontMatterTracker
+      implements DocumentChangedEvent.Handler
+{
+   public TextEditingTargetFrontMatterTracker(DocDisplay docDisplay)
+   {
+      docDisplay_ = docDisplay;
+      docDisplay_.addDocumentChangedHandler(this);
+   }
+
+   @Override
+   public void onDocumentChanged(DocumentChangedEvent event)
+   {
+      if (valid_ &&
+          event.getEvent().getRange().getStart().getRow() <= lastScannedRow_)
+      {
+         invalidate();
+      }
+   }
+
+   public void invalidate()
+   {
+      valid_ = false;
+      header_ = null;
+      range_ = null;
+      tree_ = null;
+      treeFailed_ = false;
+   }
+
+   // Returns the range of the front matter as in
+   // YamlFrontMatter.getFrontMatterRange, or null if there is none
+   public int[] getFrontMatterRange()
+   {
+      update();
+      return range_;
+   }
+
+   // As YamlFrontMatter.getFrontMatter
+   public String getFrontMatter()
+   {
+      update();
+      if (range_ == null)
+         return DEFAULT_FRONT_MATTER;
+      return header_.substring(range_[0], range_[1]);
+   }
+
+   // Returns the parsed front matter, or null if it can't be parsed. The
+   // tree is shared by all callers until the front matter changes, so it
+   // must not be modified.
+   public YamlTree getFrontMatterTree()
+   {
+      update();
+      if (tree_ == null && !treeFailed_)
+      {
+         String yaml = getFrontMatter();
+         try
+         {
+            tree_ = new YamlTree(yaml);
+         }
+         catch (Exception e)
+         {
+            // don't parse it again until it changes
+            treeFailed_ = true;
+            Debug.log("Warning: Exception thrown while parsing YAML:\n" + yaml);
+         }
+      }
+      return tree_;
+   }
+
+   // As YamlFrontMatter.applyFrontMatter, but edits just the front matter
+   // rather than replacing the whole document. Returns true if the document
+   // was changed.
+   public boolean applyFrontMatter(String yaml)
+   {
+      if (yaml == null || yaml.isEmpty())
+         return false;
+
+      update();
+      if (range_ == null)
+      {
+         docDisplay_.replaceRange(
+               Range.create(0, 0, 0, 0),
+               RmdFrontMatter.FRONTMATTER_SEPARATOR +
+               yaml +
+               RmdFrontMatter.FRONTMATTER_SEPARATOR);
+         return true;
+      }
+
+      if (header_.substring(range_[0], range_[1]).equals(yaml))
+         return false;
+
+      docDisplay_.replaceRange(
+            Range.fromPoints(toPosition(range_[0]), toPosition(range_[1])),
+            yaml);
+      return true;
+   }
+
+   private void update()
+   {
+      if (valid_)
+         return;
+
+      // skip leading blank rows; the first non-blank row must open the
+      // front matter
+      int rowCount = docDisplay_.getRowCount();
+      int row = 0;
+      while (row < rowCount && docDisplay_.getLine(row).trim().isEmpty())
+         row++;
+
+      int closingRow = -1;
+      if (row < rowCount && FRONT_MATTER_BEGIN.test(docDisplay_.getLine(row)))
+      {
+         for (row++; row < rowCount; row++)
+         {
+            if (FRONT_MATTER_END.test(docDisplay_.getLine(row)))
+            {
+               closingRow = row;
+               break;
+            }
+         }
+      }
+
+      if (closingRow >= 0)
+      {
+         // the header includes the newline ending the closing row (if any),
+         // so that YamlFrontMatter sees exactly what it would in the whole
+         // document
+         StringBuilder header = new StringBuilder();
+         for (int i = 0; i <= closingRow; i++)
+         {
+            header.append(docDisplay_.getLine(i));
+            if (i < rowCount - 1)
+               header.append('\n');
+         }
+         header_ = header.toString();
+         range_ = YamlFrontMatter.getFrontMatterRange(header_);
+         lastScannedRow_ = closingRow;
+      }
+      else
+      {
+         header_ = null;
+         range_ = null;
+
+         // if the front matter was opened but not closed, any later row
+         // could close it
+         lastScannedRow_ = row < rowCount ? row : Integer.MAX_VALUE;
+      }
+
+      tree_ = null;
+      valid_ = true;
+   }
+
+   private Position toPosition(int offset)
+   {
+      int row = 0;
+      int rowStart = 0;
+      for (int i = header_.indexOf('\n');
+           i >= 0 && i < offset;
+           i = header_.indexOf('\n', i + 1))
+      {
+         row++;
+         rowStart = i + 1;
+      }
+      return Position.create(row, offset - rowStart);
+   }
+
+   private final DocDisplay docDisplay_;
+
+   private boolean valid_ = false;
+   private int lastScannedRow_;
+   private String header_;
+   private int[] range_;
+   private YamlTree tree_;
+   private boolean treeFailed_;
+
+   private static final String DEFAULT_FRONT_MATTER = "output: html_document\n";
+   private static final RegExp FRONT_MATTER_BEGIN = RegExp.compile("^---\\s*$");
+   private static final RegExp FRONT_MATTER_END =
+         RegExp.compile("^(---|\\.\\.\\.)\\s*$");
+}
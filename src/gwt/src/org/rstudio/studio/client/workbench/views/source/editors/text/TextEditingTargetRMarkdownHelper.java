@@ -445,13 +445,26 @@ public class TextEditingTargetRMarkdownHelper
 
    // Return the selected template and format given the YAML front matter
    public RmdSelectedTemplate getTemplateFormat(String yaml)
+   {
+      try
+      {
+         return getTemplateFormat(new YamlTree(yaml));
+      }
+      catch (Exception e)
+      {
+         Debug.log("Warning: Exception thrown while parsing YAML:\n" + yaml);
+      }
+      return null;
+   }
+
+   // As above, given the parsed front matter (which isn't modified)
+   public RmdSelectedTemplate getTemplateFormat(YamlTree tree)
    {
       // This is in the editor load path, so guard against exceptions and log
       // any we find without bringing down the editor. Failing to find a 
       // template here just turns off the template-specific UI format editor.
       try
       {
-         YamlTree tree = new YamlTree(yaml);
          boolean isShiny = false;
          
          if (tree.getKeyValue(RmdFrontMatter.KNIT_KEY).length() > 0)
@@ -482,7 +495,7 @@ public class TextEditingTargetRMarkdownHelper
       }
       catch (Exception e)
       {
-         Debug.log("Warning: Exception thrown while parsing YAML:\n" + yaml);
+         Debug.log("Warning: Exception thrown while reading YAML:\n" + tree);
       }
       return null;
    }
@@ -33,6 +33,10 @@ public class Document extends JavaScriptObject
       return this.getLength();
    }-*/;
 
+   public native final String getNewLineCharacter() /*-{
+      return this.getNewLineCharacter();
+   }-*/;
+
    public final String getDocumentDump()
    {
       StringBuilder output = new StringBuilder();
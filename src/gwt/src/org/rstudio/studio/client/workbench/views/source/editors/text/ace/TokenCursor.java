@@ -145,6 +145,11 @@ public class TokenCursor extends JavaScriptObject
       return this.findOpeningBracketCountCommas(tokens, failOnOpenBrace);
    }-*/;
    
+   // Reads the tokens on rows [startRow, endRow] in one call
+   public native final TokenScan scanRows(int startRow, int endRow) /*-{
+      return this.scanRows(startRow, endRow);
+   }-*/;
+   
    public native final boolean bwdToMatchingToken() /*-{
       return this.bwdToMatchingToken();
    }-*/;
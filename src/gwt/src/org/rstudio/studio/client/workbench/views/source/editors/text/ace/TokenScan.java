@@ -0,0 +1,57 @@
+/*
+ * TokenScan.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.ace;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+// The tokens on a range of rows, as read by TokenCursor.scanRows
+public class TokenScan extends JavaScriptObject implements TokenWindow.Scan
+{
+   protected TokenScan() {}
+   
+   public native final int length() /*-{
+      return this.values.length;
+   }-*/;
+   
+   public native final String getType(int index) /*-{
+      return this.types[index];
+   }-*/;
+   
+   public native final String getValue(int index) /*-{
+      return this.values[index];
+   }-*/;
+   
+   public native final int getRow(int index) /*-{
+      return this.rows[index];
+   }-*/;
+   
+   public native final int getColumn(int index) /*-{
+      return this.columns[index];
+   }-*/;
+   
+   public native final int getStartRow() /*-{
+      return this.startRow;
+   }-*/;
+   
+   public native final int getEndRow() /*-{
+      return this.endRow;
+   }-*/;
+   
+   // The index of the token at the cursor that was scanned from, or -1 if
+   // the cursor wasn't within the rows scanned
+   public native final int getCursorIndex() /*-{
+      return this.cursorIndex;
+   }-*/;
+}
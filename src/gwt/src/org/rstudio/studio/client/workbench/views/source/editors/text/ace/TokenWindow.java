@@ -0,0 +1,353 @@
+/*
+ * TokenWindow.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.ace;
+
+// The tokens around an R token cursor, read in bulk so they can be walked
+// without a call into the code model per token. The window starts out
+// covering the rows near the cursor, and is widened (doubling the rows read
+// each time) if a walk runs off either end, so the number of reads grows
+// only with the log of the distance walked.
+//
+// Cursors over the window mirror the TokenCursor methods used to work out
+// the context of a completion, and are cheap to clone.
+public class TokenWindow
+{
+   // The tokens on a range of rows (a TokenScan)
+   interface Scan
+   {
+      int length();
+      String getType(int index);
+      String getValue(int index);
+      int getRow(int index);
+      int getColumn(int index);
+      int getStartRow();
+      int getEndRow();
+      int getCursorIndex();
+   }
+
+   // Reads the tokens on a range of rows, locating the token the window is
+   // around among them
+   interface Scanner
+   {
+      Scan scanRows(int startRow, int endRow);
+   }
+
+   public TokenWindow(TokenCursor cursor)
+   {
+      // the window is around the token the cursor is on now, wherever the
+      // cursor is moved to later
+      final TokenCursor clone = cursor.cloneCursor();
+      scanner_ = new Scanner()
+      {
+         @Override
+         public Scan scanRows(int startRow, int endRow)
+         {
+            return clone.scanRows(startRow, endRow);
+         }
+      };
+      int row = clone.getRow();
+      scan(Math.max(0, row - INITIAL_ROWS), row + INITIAL_ROWS);
+   }
+
+   TokenWindow(Scanner scanner, int row)
+   {
+      scanner_ = scanner;
+      scan(Math.max(0, row - INITIAL_ROWS), row + INITIAL_ROWS);
+   }
+
+   // Returns a cursor on the token of the cursor the window was created from
+   public Cursor getCursor()
+   {
+      return new Cursor(0);
+   }
+
+   public class Cursor
+   {
+      private Cursor(int index)
+      {
+         index_ = index;
+      }
+
+      public Cursor cloneCursor()
+      {
+         return new Cursor(index_);
+      }
+
+      public String currentValue()
+      {
+         return hasToken(index_) ? scan_.getValue(origin_ + index_) : "";
+      }
+
+      public String currentType()
+      {
+         String type = hasToken(index_) ? scan_.getType(origin_ + index_) : null;
+         return type == null ? "" : type;
+      }
+
+      public Position currentPosition()
+      {
+         return Position.create(scan_.getRow(origin_ + index_),
+                                scan_.getColumn(origin_ + index_));
+      }
+
+      public boolean moveToPreviousToken()
+      {
+         if (!hasToken(index_ - 1))
+            return false;
+         index_--;
+         return true;
+      }
+
+      public boolean moveToNextToken()
+      {
+         if (!hasToken(index_ + 1))
+            return false;
+         index_++;
+         return true;
+      }
+
+      public boolean bwdToMatchingToken()
+      {
+         String value = currentValue();
+         String complement = getComplement(value);
+         if (!isRightBracket(value))
+            return false;
+
+         int index = index_;
+         int count = 0;
+         while (hasToken(--index))
+         {
+            String current = scan_.getValue(origin_ + index);
+            if (current.equals(complement))
+            {
+               if (count == 0)
+               {
+                  index_ = index;
+                  return true;
+               }
+               count--;
+            }
+            else if (current.equals(value))
+            {
+               count++;
+            }
+         }
+
+         // as TokenCursor, the cursor is left at the start of the document
+         index_ = index + 1;
+         return false;
+      }
+
+      public boolean fwdToMatchingToken()
+      {
+         String value = currentValue();
+         String complement = getComplement(value);
+         if (!isLeftBracket(value))
+            return false;
+
+         int index = index_;
+         int count = 0;
+         while (hasToken(++index))
+         {
+            String current = scan_.getValue(origin_ + index);
+            if (current.equals(complement))
+            {
+               if (count == 0)
+               {
+                  index_ = index;
+                  return true;
+               }
+               count--;
+            }
+            else if (current.equals(value))
+            {
+               count++;
+            }
+         }
+
+         index_ = index - 1;
+         return false;
+      }
+
+      public int findOpeningBracketCountCommas(String token,
+                                               boolean failOnOpenBrace)
+      {
+         return findOpeningBracketCountCommas(new String[] { token },
+                                              failOnOpenBrace);
+      }
+
+      // Walks back to the nearest unmatched bracket among 'tokens', returning
+      // the number of commas passed on the way (or -1, leaving the cursor
+      // where it is, if there's no such bracket)
+      public int findOpeningBracketCountCommas(String[] tokens,
+                                               boolean failOnOpenBrace)
+      {
+         Cursor clone = cloneCursor();
+         int commaCount = 0;
+         do
+         {
+            if (clone.bwdToMatchingToken())
+               continue;
+
+            String value = clone.currentValue();
+            if (value.equals(","))
+               commaCount++;
+
+            if (failOnOpenBrace && value.equals("{"))
+               return -1;
+
+            for (String token : tokens)
+            {
+               if (value.equals(token))
+               {
+                  index_ = clone.index_;
+                  return commaCount;
+               }
+            }
+
+         } while (clone.moveToPreviousToken());
+
+         return -1;
+      }
+
+      // Finds the start of the evaluation context for a generic expression,
+      // e.g.
+      //
+      //     x[[1]]$foo[[1]][, 2]@bar[[1]]()
+      //     ^~~~~~~~~~~~<~~~~~~~~~~~~~~~~~^
+      public boolean findStartOfEvaluationContext()
+      {
+         Cursor clone = cloneCursor();
+         do
+         {
+            if (clone.bwdToMatchingToken())
+               continue;
+
+            // If we land on an identifier, we keep going if the token
+            // previous is 'infix-y', and bail otherwise.
+            if (clone.isValidAsIdentifier())
+            {
+               if (!clone.moveToPreviousToken())
+                  break;
+
+               if (clone.isExtractionOperator())
+                  continue;
+
+               if (!clone.moveToNextToken())
+                  return false;
+
+               break;
+            }
+
+            // Fail if we get here as it implies we hit something not
+            // permissible for the evaluation context
+            return false;
+
+         } while (clone.moveToPreviousToken());
+
+         index_ = clone.index_;
+         return true;
+      }
+
+      public boolean isValidAsIdentifier()
+      {
+         String type = currentType();
+         return hasType(type, "identifier") ||
+                hasType(type, "constant") ||
+                type.equals("symbol") ||
+                type.equals("keyword") ||
+                type.equals("string");
+      }
+
+      public boolean isExtractionOperator()
+      {
+         String value = currentValue();
+         return value.equals("$") ||
+                value.equals("@") ||
+                value.equals("::") ||
+                value.equals(":::");
+      }
+
+      private int index_;
+   }
+
+   // Returns true if there's a token at the given index (relative to the
+   // cursor's token), widening the window to include it if need be
+   private boolean hasToken(int index)
+   {
+      while (origin_ + index < 0 && scan_.getStartRow() > 0)
+      {
+         int rows = scan_.getEndRow() - scan_.getStartRow() + 1;
+         scan(Math.max(0, scan_.getStartRow() - rows), scan_.getEndRow());
+      }
+
+      while (origin_ + index >= scan_.length() && !atEnd_)
+      {
+         int rows = scan_.getEndRow() - scan_.getStartRow() + 1;
+         scan(scan_.getStartRow(), scan_.getEndRow() + rows);
+      }
+
+      return origin_ + index >= 0 && origin_ + index < scan_.length();
+   }
+
+   private void scan(int startRow, int endRow)
+   {
+      scan_ = scanner_.scanRows(startRow, endRow);
+      origin_ = scan_.getCursorIndex();
+      atEnd_ = scan_.getEndRow() < endRow;
+   }
+
+   private static boolean hasType(String tokenType, String type)
+   {
+      return tokenType.equals(type) ||
+             tokenType.contains(type + ".") ||
+             tokenType.contains("." + type);
+   }
+
+   private static boolean isLeftBracket(String value)
+   {
+      return value.equals("(") || value.equals("[") || value.equals("{");
+   }
+
+   private static boolean isRightBracket(String value)
+   {
+      return value.equals(")") || value.equals("]") || value.equals("}");
+   }
+
+   private static String getComplement(String value)
+   {
+      if (value.equals("("))
+         return ")";
+      else if (value.equals("["))
+         return "]";
+      else if (value.equals("{"))
+         return "}";
+      else if (value.equals(")"))
+         return "(";
+      else if (value.equals("]"))
+         return "[";
+      else if (value.equals("}"))
+         return "{";
+      return "";
+   }
+
+   private final Scanner scanner_;
+
+   private Scan scan_;
+   private int origin_;
+   private boolean atEnd_;
+
+   static final int INITIAL_ROWS = 50;
+}
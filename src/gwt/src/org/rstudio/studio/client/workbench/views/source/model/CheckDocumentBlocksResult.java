@@ -0,0 +1,53 @@
+/*
+ * CheckDocumentBlocksResult.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+public class CheckDocumentBlocksResult extends JavaScriptObject
+{
+   protected CheckDocumentBlocksResult()
+   {
+   }
+
+   /**
+    * The hash of the session's copy of the document
+    */
+   public native final String getHash() /*-{
+      return this.hash;
+   }-*/;
+
+   public native final int getMismatchCount() /*-{
+      return this.mismatches.length;
+   }-*/;
+
+   /**
+    * The index of the mismatching block
+    */
+   public native final int getIndex(int mismatch) /*-{
+      return this.mismatches[mismatch].index;
+   }-*/;
+
+   /**
+    * The character range the block covers in the session's copy
+    */
+   public native final int getOffset(int mismatch) /*-{
+      return this.mismatches[mismatch].offset;
+   }-*/;
+
+   public native final int getLength(int mismatch) /*-{
+      return this.mismatches[mismatch].length;
+   }-*/;
+}
@@ -0,0 +1,199 @@
+/*
+ * DocBlockHashes.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import java.util.ArrayList;
+
+import com.google.gwt.core.client.JsArrayString;
+
+import org.rstudio.core.client.TextHash;
+import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
+
+/**
+ * Hashes a document in blocks of rows, kept up to date as the document is
+ * edited: a change only marks the blocks it touches as dirty, and those are
+ * rehashed (from just their rows) the next time the hashes are needed. This
+ * is used to resync a document with the session's copy of it when a save
+ * finds the copy isn't the version we thought.
+ *
+ * A block's hash is the SHA-1 of exactly the text it occupies in the
+ * document -- its rows, each followed by the document's newline (\n or
+ * \r\n) except its last row -- as UTF-8 bytes, and is kept with that text's length in bytes, so the
+ * session can hash the same row ranges of its own copy (see
+ * check_document_blocks) and report which blocks differ. (A weak hash isn't
+ * enough: a block wrongly taken to match is never sent, and saving the
+ * resynced document would lose its edits.)
+ */
+public class DocBlockHashes
+{
+   public DocBlockHashes()
+   {
+   }
+
+   // Forgets all block hashes; they're recomputed on the next update()
+   public void reset(int rowCount)
+   {
+      blocks_.clear();
+      for (int row = 0; row < rowCount; row += BLOCK_ROWS)
+         blocks_.add(new Block(Math.min(BLOCK_ROWS, rowCount - row)));
+      rowCount_ = rowCount;
+      needsReset_ = false;
+   }
+
+   public void invalidate()
+   {
+      version_++;
+      needsReset_ = true;
+   }
+
+   // Records that the rows [row, row + removedRows) were replaced with
+   // insertedRows rows
+   public void replaceRows(int row, int removedRows, int insertedRows)
+   {
+      version_++;
+      if (needsReset_)
+         return;
+
+      if (row < 0 || removedRows < 1 || insertedRows < 1 ||
+          row + removedRows > rowCount_)
+      {
+         invalidate();
+         return;
+      }
+
+      // find the blocks spanning the removed rows
+      int first = 0;
+      int firstRow = 0;
+      while (firstRow + blocks_.get(first).rows <= row)
+         firstRow += blocks_.get(first++).rows;
+
+      int last = first;
+      int endRow = firstRow + blocks_.get(first).rows;
+      while (endRow < row + removedRows)
+         endRow += blocks_.get(++last).rows;
+
+      // replace them with a single dirty block, merging a small result
+      // into the next block
+      int rows = endRow - firstRow - removedRows + insertedRows;
+      if (rows < BLOCK_ROWS / 4 && last + 1 < blocks_.size())
+         rows += blocks_.get(++last).rows;
+
+      for (int i = last; i >= first; i--)
+         blocks_.remove(i);
+
+      // and split it if it's grown too large
+      int index = first;
+      while (rows > 2 * BLOCK_ROWS)
+      {
+         blocks_.add(index++, new Block(BLOCK_ROWS));
+         rows -= BLOCK_ROWS;
+      }
+      blocks_.add(index, new Block(rows));
+
+      rowCount_ += insertedRows - removedRows;
+   }
+
+   // Changes whenever the document does
+   public int getVersion()
+   {
+      return version_;
+   }
+
+   // Rehashes the dirty blocks
+   public void update(DocDisplay docDisplay)
+   {
+      int rowCount = docDisplay.getRowCount();
+      if (needsReset_ || rowCount != rowCount_)
+         reset(rowCount);
+
+      int row = 0;
+      for (Block block : blocks_)
+      {
+         if (block.dirty)
+         {
+            String text = getBlockText(docDisplay, row, block.rows);
+            block.hash = TextHash.sha1(text);
+            block.length = TextHash.utf8Length(text);
+            block.dirty = false;
+         }
+         row += block.rows;
+      }
+   }
+
+   // The following must only be called after update()
+
+   public int getBlockCount()
+   {
+      return blocks_.size();
+   }
+
+   public int getBlockRows(int block)
+   {
+      return blocks_.get(block).rows;
+   }
+
+   public String getBlockHash(int block)
+   {
+      return blocks_.get(block).hash;
+   }
+
+   // The length of the block's text in UTF-8 bytes
+   public int getBlockLength(int block)
+   {
+      return blocks_.get(block).length;
+   }
+
+   public String getBlockText(DocDisplay docDisplay, int block)
+   {
+      int row = 0;
+      for (int i = 0; i < block; i++)
+         row += blocks_.get(i).rows;
+      return getBlockText(docDisplay, row, blocks_.get(block).rows);
+   }
+
+   private String getBlockText(DocDisplay docDisplay, int row, int rows)
+   {
+      JsArrayString lines = docDisplay.getLines(row, row + rows - 1);
+      String newline = docDisplay.getNewLineCharacter();
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < lines.length(); i++)
+      {
+         text.append(lines.get(i));
+         if (row + i < rowCount_ - 1)
+            text.append(newline);
+      }
+      return text.toString();
+   }
+
+   private static class Block
+   {
+      public Block(int rows)
+      {
+         this.rows = rows;
+      }
+
+      public final int rows;
+      public String hash;
+      public int length;
+      public boolean dirty = true;
+   }
+
+   private final ArrayList<Block> blocks_ = new ArrayList<Block>();
+   private int rowCount_ = 0;
+   private boolean needsReset_ = true;
+   private int version_ = 0;
+
+   private static final int BLOCK_ROWS = 64;
+}
@@ -0,0 +1,316 @@
+/*
+ * DocChangeJournal.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import java.util.ArrayList;
+
+import com.google.gwt.core.client.JsArrayString;
+
+import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
+
+/**
+ * Records which rows of a document have changed since a base version, as a
+ * sorted list of disjoint hunks, each mapping the rows [oldStart, oldEnd) of
+ * the base version to the rows [newStart, newEnd) of the current document.
+ * Rows outside the hunks are unchanged. This lets a patch against the base
+ * version be built from just the changed rows, without materializing or
+ * scanning the whole current document.
+ *
+ * The journal is conservative: a hunk may include rows that didn't actually
+ * change, but never misses one that did. Once invalidated (because of a
+ * change it can't interpret, or too many hunks) it stays invalid until
+ * reset against a new base version.
+ *
+ * The journal must be told of every change to the document (the editor
+ * reports those made while it's handling another change after that one).
+ * It's trusted, so building a patch reads only the changed rows of the
+ * document, and the rows of the base version up to the last of them.
+ */
+public class DocChangeJournal
+{
+   public static class Patch
+   {
+      public final ArrayList<String> replacements = new ArrayList<String>();
+      public final ArrayList<Integer> offsets = new ArrayList<Integer>();
+      public final ArrayList<Integer> lengths = new ArrayList<Integer>();
+      public String newContents;
+
+      public boolean isEmpty()
+      {
+         return replacements.isEmpty();
+      }
+   }
+
+   public DocChangeJournal()
+   {
+   }
+
+   public boolean isValid()
+   {
+      return valid_;
+   }
+
+   public void invalidate()
+   {
+      valid_ = false;
+      hunks_.clear();
+   }
+
+   // Makes the current document the base version, given its number of
+   // rows and the text between them
+   public void reset(int rowCount, String newline)
+   {
+      valid_ = true;
+      hunks_.clear();
+      baseRowCount_ = rowCount;
+      newline_ = newline;
+   }
+
+   public int getHunkCount()
+   {
+      return hunks_.size();
+   }
+
+   public int getOldStart(int hunk)
+   {
+      return hunks_.get(hunk).oldStart;
+   }
+
+   public int getOldEnd(int hunk)
+   {
+      return hunks_.get(hunk).oldEnd;
+   }
+
+   public int getNewStart(int hunk)
+   {
+      return hunks_.get(hunk).newStart;
+   }
+
+   public int getNewEnd(int hunk)
+   {
+      return hunks_.get(hunk).newEnd;
+   }
+
+   // Records that the rows [row, row + removedRows) of the current document
+   // were replaced with insertedRows rows. Any hunks overlapping or adjacent
+   // to the range are merged with it.
+   public void replaceRows(int row, int removedRows, int insertedRows)
+   {
+      if (!valid_)
+         return;
+
+      if (row < 0 || removedRows < 1 || insertedRows < 1)
+      {
+         invalidate();
+         return;
+      }
+
+      int start = row;
+      int end = row + removedRows;
+
+      int first = 0;
+      while (first < hunks_.size() && hunks_.get(first).newEnd < start)
+         first++;
+      int last = first;
+      while (last < hunks_.size() && hunks_.get(last).newStart <= end)
+         last++;
+
+      // rows before hunk 'first' are offset by the row delta of the hunks
+      // preceding it
+      int shift = first == 0 ? 0 : hunks_.get(first - 1).getShift();
+
+      Hunk merged = new Hunk();
+      if (first < last)
+      {
+         Hunk firstHunk = hunks_.get(first);
+         Hunk lastHunk = hunks_.get(last - 1);
+
+         if (firstHunk.newStart <= start)
+         {
+            merged.oldStart = firstHunk.oldStart;
+            merged.newStart = firstHunk.newStart;
+         }
+         else
+         {
+            merged.oldStart = start - shift;
+            merged.newStart = start;
+         }
+
+         if (lastHunk.newEnd >= end)
+         {
+            merged.oldEnd = lastHunk.oldEnd;
+            merged.newEnd = lastHunk.newEnd;
+         }
+         else
+         {
+            merged.oldEnd = end - lastHunk.getShift();
+            merged.newEnd = end;
+         }
+      }
+      else
+      {
+         merged.oldStart = start - shift;
+         merged.oldEnd = end - shift;
+         merged.newStart = start;
+         merged.newEnd = end;
+      }
+
+      int delta = insertedRows - removedRows;
+      merged.newEnd += delta;
+
+      for (int i = last - 1; i >= first; i--)
+         hunks_.remove(i);
+      hunks_.add(first, merged);
+      for (int i = first + 1; i < hunks_.size(); i++)
+      {
+         Hunk hunk = hunks_.get(i);
+         hunk.newStart += delta;
+         hunk.newEnd += delta;
+      }
+
+      // a patch with this many ranges is no longer compact; let the caller
+      // fall back to diffing the whole document
+      if (hunks_.size() > MAX_HUNKS)
+         invalidate();
+   }
+
+   // Creates a patch transforming oldContents (the base version) into the
+   // current contents of the document, or returns null if the journal can't
+   // be used (in which case the caller should diff the whole document)
+   public Patch createPatch(String oldContents, DocDisplay docDisplay)
+   {
+      if (!valid_)
+         return null;
+
+      // the editor picks the text between rows when its contents are
+      // replaced, in which case the base version's rows are delimited
+      // differently
+      if (!newline_.equals(docDisplay.getNewLineCharacter()))
+         return null;
+
+      int newRowCount = docDisplay.getRowCount();
+      if (newRowCount != baseRowCount_ + getRowDelta())
+         return null;
+
+      // find the offsets of the hunks' rows in the base version; the last
+      // row has no trailing newline, so a hunk ending after it ends at the
+      // end of the contents
+      int[] oldStarts = new int[hunks_.size()];
+      int[] oldEnds = new int[hunks_.size()];
+      int row = 0;
+      int offset = 0;
+      for (int i = 0; i < hunks_.size(); i++)
+      {
+         Hunk h = hunks_.get(i);
+         offset = skipRows(oldContents, offset, h.oldStart - row);
+         if (offset < 0)
+            return null;
+         oldStarts[i] = offset;
+
+         if (h.oldEnd == baseRowCount_)
+         {
+            offset = oldContents.length();
+         }
+         else
+         {
+            offset = skipRows(oldContents, offset, h.oldEnd - h.oldStart);
+            if (offset < 0)
+               return null;
+         }
+         oldEnds[i] = offset;
+         row = h.oldEnd;
+      }
+
+      Patch patch = new Patch();
+      StringBuilder newContents = new StringBuilder();
+      int copied = 0;
+      for (int i = 0; i < hunks_.size(); i++)
+      {
+         Hunk h = hunks_.get(i);
+         JsArrayString lines = docDisplay.getLines(h.newStart, h.newEnd - 1);
+         if (lines.length() != h.newEnd - h.newStart)
+            return null;
+
+         StringBuilder replacement = new StringBuilder();
+         for (int j = 0; j < lines.length(); j++)
+         {
+            if (j > 0)
+               replacement.append(newline_);
+            replacement.append(lines.get(j));
+         }
+         if (h.newEnd < newRowCount)
+            replacement.append(newline_);
+
+         String text = replacement.toString();
+         int start = oldStarts[i];
+         int length = oldEnds[i] - start;
+
+         // skip rows that were edited back to their original text
+         if (text.length() == length && oldContents.startsWith(text, start))
+            continue;
+
+         newContents.append(oldContents, copied, start);
+         newContents.append(text);
+         copied = start + length;
+
+         patch.replacements.add(text);
+         patch.offsets.add(start);
+         patch.lengths.add(length);
+      }
+      newContents.append(oldContents, copied, oldContents.length());
+      patch.newContents = newContents.toString();
+      return patch;
+   }
+
+   // The offset of the row the given number of rows after the one at offset,
+   // or -1 if there aren't that many
+   private int skipRows(String contents, int offset, int rows)
+   {
+      for (int i = 0; i < rows; i++)
+      {
+         int newline = contents.indexOf(newline_, offset);
+         if (newline < 0)
+            return -1;
+         offset = newline + newline_.length();
+      }
+      return offset;
+   }
+
+   private int getRowDelta()
+   {
+      return hunks_.isEmpty() ? 0 : hunks_.get(hunks_.size() - 1).getShift();
+   }
+
+   private static class Hunk
+   {
+      // the row delta of this hunk and those preceding it
+      public int getShift()
+      {
+         return newEnd - oldEnd;
+      }
+
+      public int oldStart;
+      public int oldEnd;
+      public int newStart;
+      public int newEnd;
+   }
+
+   private final ArrayList<Hunk> hunks_ = new ArrayList<Hunk>();
+   private boolean valid_ = false;
+   private int baseRowCount_;
+   private String newline_;
+
+   private static final int MAX_HUNKS = 100;
+}
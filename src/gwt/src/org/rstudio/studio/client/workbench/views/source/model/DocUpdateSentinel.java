@@ -28,7 +28,7 @@ import org.rstudio.core.client.Barrier.Token;
 import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.TimeBufferedCommand;
 import org.rstudio.core.client.js.JsObject;
-import org.rstudio.core.client.patch.SubstringDiff;
+import org.rstudio.core.client.patch.LineDiff;
 import org.rstudio.core.client.widget.ProgressIndicator;
 import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.common.SimpleRequestCallback;
@@ -40,16 +40,22 @@ import org.rstudio.studio.client.workbench.events.LastChanceSaveHandler;
 import org.rstudio.studio.client.workbench.model.ChangeTracker;
 import org.rstudio.studio.client.workbench.views.source.editors.text.DocDisplay;
 import org.rstudio.studio.client.workbench.views.source.editors.text.Fold;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.AceDocumentChangeEventNative;
+import org.rstudio.studio.client.workbench.views.source.editors.text.ace.Range;
 import org.rstudio.studio.client.workbench.views.source.editors.text.ace.VimMarks;
+import org.rstudio.studio.client.workbench.views.source.editors.text.events.DocumentChangedEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.FoldChangeEvent;
 import org.rstudio.studio.client.workbench.views.source.editors.text.events.SourceOnSaveChangedEvent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DocUpdateSentinel
       implements ValueChangeHandler<Void>,
-      FoldChangeEvent.Handler
+      FoldChangeEvent.Handler,
+      DocumentChangedEvent.Handler
 {
    private class ReopenFileCallback extends ServerRequestCallback<SourceDocument>
    {
@@ -69,6 +75,7 @@ public class DocUpdateSentinel
          sourceDoc_ = response;
          docDisplay_.setCode(sourceDoc_.getContents(), true);
          dirtyState_.markClean();
+         resetJournal();
 
          if (progress_ != null)
             progress_.onCompleted();
@@ -119,6 +126,18 @@ public class DocUpdateSentinel
 
       docDisplay_.addValueChangeHandler(this);
       docDisplay_.addFoldChangeHandler(this);
+      docDisplay_.addDocumentChangedHandler(this);
+      blockHashes_.reset(docDisplay_.getRowCount());
+
+      // the editor is given the document's contents once we're created
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         @Override
+         public void execute()
+         {
+            resetJournal();
+         }
+      });
 
       // Web only
       closeHandlerReg_ = Window.addWindowClosingHandler(new ClosingHandler()
@@ -329,21 +348,52 @@ public class DocUpdateSentinel
          actually sent to the server. */
       final ChangeTracker thisChangeTracker = changeTracker_.fork();
 
-      final String newContents = docDisplay_.getCode();
       String oldContents = sourceDoc_.getContents();
       final String hash = sourceDoc_.getHash();
 
+      // Build the patch from the rows changed since the contents we last
+      // saved if we can; otherwise diff the whole document.
+      DocChangeJournal.Patch patch = null;
+      if (journalVersion_ == savedVersion_)
+         patch = journal_.createPatch(oldContents, docDisplay_);
+
+      final String newContents;
+      final List<String> replacements;
+      final List<Integer> offsets;
+      final List<Integer> lengths;
+      if (patch != null)
+      {
+         newContents = patch.newContents;
+         replacements = patch.replacements;
+         offsets = patch.offsets;
+         lengths = patch.lengths;
+      }
+      else
+      {
+         newContents = docDisplay_.getCode();
+         LineDiff diff = new LineDiff(oldContents, newContents);
+         replacements = diff.getReplacements();
+         offsets = diff.getOffsets();
+         lengths = diff.getLengths();
+      }
+
+      // Subsequent changes are journaled against the contents we're about to
+      // send. If the save doesn't succeed, savedVersion_ won't match and the
+      // next save will diff the whole document.
+      journal_.reset(docDisplay_.getRowCount(),
+                     docDisplay_.getNewLineCharacter());
+      final int newVersion = ++journalVersion_;
+
       final String foldSpec = Fold.encode(Fold.flatten(docDisplay_.getFolds()));
       String oldFoldSpec = sourceDoc_.getFoldSpec();
 
-      //String patch = DiffMatchPatch.diff(oldContents, newContents);
-      SubstringDiff diff = new SubstringDiff(oldContents, newContents);
-
       // Don't auto-save when there are no changes. In addition to being
       // wasteful, it causes the server to think the document is dirty.
-      if (path == null && fileType == null && diff.isEmpty()
+      if (path == null && fileType == null && replacements.isEmpty()
           && foldSpec.equals(oldFoldSpec))
       {
+         // the contents we have are already saved
+         savedVersion_ = newVersion;
          changesPending_ = false;
          return false;
       }
@@ -361,78 +411,240 @@ public class DocUpdateSentinel
          return false;
       }
 
-      server_.saveDocumentDiff(
+      ServerRequestCallback<String> callback =
+            new ServerRequestCallback<String>()
+      {
+         @Override
+         public void onError(ServerError error)
+         {
+            Debug.logError(error);
+            if (progress != null)
+               progress.onError(error.getUserMessage());
+            changesPending_ = false;
+         }
+
+         @Override
+         public void onResponseReceived(String newHash)
+         {
+            if (newHash != null)
+            {
+               // If the document hasn't changed further since the version
+               // we saved, then we know we're all synced up.
+               try
+               {
+                  if (!thisChangeTracker.hasChanged())
+                     changeTracker_.reset();
+
+                  onSuccessfulUpdate(newContents,
+                                     newHash,
+                                     path,
+                                     fileType,
+                                     encoding);
+                  savedVersion_ = newVersion;
+               }
+               catch(Exception ex)
+               {
+                  // log exception, but continue (we want to guarantee the
+                  // progress indicator is updated)
+                  Debug.log("Exception in post-save update " + path + 
+                            " to " + newHash + ": " + ex.getMessage());
+               }
+               if (progress != null)
+                  progress.onCompleted();
+            }
+            else if (!hash.equals(sourceDoc_.getHash()))
+            {
+               // We just hit a race condition where two updates
+               // happened at once. Try again
+               doSave(path, fileType, encoding, progress);
+            }
+            else if (!thisChangeTracker.hasChanged() &&
+                     docDisplay_.getNewLineCharacter().endsWith("\n"))
+            {
+               // The server's copy isn't what we thought it was. The editor
+               // still has the contents we tried to save, so send just the
+               // blocks of it that differ from the server's copy.
+               resyncDocument(path, fileType, encoding, foldSpec,
+                              newContents, this);
+            }
+            else
+            {
+               /*Debug.log("Diff-based save failed--falling back to " +
+                         "snapshot save");*/
+               server_.saveDocument(
+                     sourceDoc_.getId(),
+                     path,
+                     fileType,
+                     encoding,
+                     foldSpec,
+                     newContents,
+                     this);
+            }
+         }
+      };
+
+      server_.saveDocumentDiffs(
             sourceDoc_.getId(),
             path,
             fileType,
             encoding,
             foldSpec,
-            diff.getReplacement(),
-            diff.getOffset(),
-            diff.getLength(),
+            replacements,
+            offsets,
+            lengths,
             hash,
-            new ServerRequestCallback<String>()
-            {
-               @Override
-               public void onError(ServerError error)
-               {
-                  Debug.logError(error);
-                  if (progress != null)
-                     progress.onError(error.getUserMessage());
-                  changesPending_ = false;
-               }
+            callback);
 
+      return true;
+   }
+
+   // Makes the contents we last saved the version the journal tracks
+   // changes against, if the editor still has them
+   private void resetJournal()
+   {
+      journal_.invalidate();
+      if (docDisplay_.getCode().equals(sourceDoc_.getContents()))
+      {
+         journal_.reset(docDisplay_.getRowCount(),
+                        docDisplay_.getNewLineCharacter());
+         savedVersion_ = ++journalVersion_;
+      }
+   }
+
+   private void resyncDocument(final String path,
+                               final String fileType,
+                               final String encoding,
+                               final String foldSpec,
+                               final String contents,
+                               final ServerRequestCallback<String> callback)
+   {
+      blockHashes_.update(docDisplay_);
+      final List<Integer> blockLines = new ArrayList<Integer>();
+      final List<Integer> blockLengths = new ArrayList<Integer>();
+      final List<String> blockHashes = new ArrayList<String>();
+      for (int i = 0; i < blockHashes_.getBlockCount(); i++)
+      {
+         blockLines.add(blockHashes_.getBlockRows(i));
+         blockLengths.add(blockHashes_.getBlockLength(i));
+         blockHashes.add(blockHashes_.getBlockHash(i));
+      }
+
+      final int version = blockHashes_.getVersion();
+      server_.checkDocumentBlocks(
+            sourceDoc_.getId(),
+            blockLines,
+            blockLengths,
+            blockHashes,
+            new ServerRequestCallback<CheckDocumentBlocksResult>()
+            {
                @Override
-               public void onResponseReceived(String newHash)
+               public void onResponseReceived(CheckDocumentBlocksResult result)
                {
-                  if (newHash != null)
-                  {
-                     // If the document hasn't changed further since the version
-                     // we saved, then we know we're all synced up.
-                     try
-                     {
-                        if (!thisChangeTracker.hasChanged())
-                           changeTracker_.reset();
-
-                        onSuccessfulUpdate(newContents,
-                                           newHash,
-                                           path,
-                                           fileType,
-                                           encoding);
-                     }
-                     catch(Exception ex)
-                     {
-                        // log exception, but continue (we want to guarantee the
-                        // progress indicator is updated)
-                        Debug.log("Exception in post-save update " + path + 
-                                  " to " + newHash + ": " + ex.getMessage());
-                     }
-                     if (progress != null)
-                        progress.onCompleted();
-                  }
-                  else if (!hash.equals(sourceDoc_.getHash()))
+                  // fall back to sending the whole document if the editor
+                  // changed while we were waiting
+                  if (blockHashes_.getVersion() != version)
                   {
-                     // We just hit a race condition where two updates
-                     // happened at once. Try again
-                     doSave(path, fileType, encoding, progress);
+                     saveContents();
+                     return;
                   }
-                  else
+
+                  // a block that matches has the same length and SHA-1 as
+                  // ours, so only the others need replacing
+                  final boolean patched = result.getMismatchCount() > 0;
+                  List<String> replacements = new ArrayList<String>();
+                  List<Integer> offsets = new ArrayList<Integer>();
+                  List<Integer> lengths = new ArrayList<Integer>();
+                  for (int i = 0; i < result.getMismatchCount(); i++)
                   {
-                     /*Debug.log("Diff-based save failed--falling back to " +
-                               "snapshot save");*/
-                     server_.saveDocument(
-                           sourceDoc_.getId(),
-                           path,
-                           fileType,
-                           encoding,
-                           foldSpec,
-                           newContents,
-                           this);
+                     replacements.add(blockHashes_.getBlockText(
+                                         docDisplay_, result.getIndex(i)));
+                     offsets.add(result.getOffset(i));
+                     lengths.add(result.getLength(i));
                   }
+
+                  server_.saveDocumentDiffs(
+                        sourceDoc_.getId(),
+                        path,
+                        fileType,
+                        encoding,
+                        foldSpec,
+                        replacements,
+                        offsets,
+                        lengths,
+                        result.getHash(),
+                        new ServerRequestCallback<String>()
+                        {
+                           @Override
+                           public void onResponseReceived(String newHash)
+                           {
+                              if (newHash == null)
+                                 saveContents();
+                              else if (patched)
+                                 verifyPatched(newHash);
+                              else
+                                 callback.onResponseReceived(newHash);
+                           }
+
+                           @Override
+                           public void onError(ServerError error)
+                           {
+                              callback.onError(error);
+                           }
+                        });
                }
-            });
 
-      return true;
+               @Override
+               public void onError(ServerError error)
+               {
+                  saveContents();
+               }
+
+               // only trust the patched copy if its blocks now all match
+               // ours (which the session checks, rather than us hashing the
+               // whole document)
+               private void verifyPatched(final String newHash)
+               {
+                  server_.checkDocumentBlocks(
+                        sourceDoc_.getId(),
+                        blockLines,
+                        blockLengths,
+                        blockHashes,
+                        new ServerRequestCallback<CheckDocumentBlocksResult>()
+                        {
+                           @Override
+                           public void onResponseReceived(
+                                 CheckDocumentBlocksResult result)
+                           {
+                              if (result.getMismatchCount() == 0 &&
+                                  newHash.equals(result.getHash()))
+                              {
+                                 callback.onResponseReceived(newHash);
+                              }
+                              else
+                              {
+                                 saveContents();
+                              }
+                           }
+
+                           @Override
+                           public void onError(ServerError error)
+                           {
+                              saveContents();
+                           }
+                        });
+               }
+
+               private void saveContents()
+               {
+                  server_.saveDocument(sourceDoc_.getId(),
+                                       path,
+                                       fileType,
+                                       encoding,
+                                       foldSpec,
+                                       contents,
+                                       callback);
+               }
+            });
    }
 
    private void onSuccessfulUpdate(String contents,
@@ -581,6 +793,33 @@ public class DocUpdateSentinel
       changesPending_ = true;
       bufferedCommand_.nudge();
    }
+
+   @Override
+   public void onDocumentChanged(DocumentChangedEvent event)
+   {
+      AceDocumentChangeEventNative change = event.getEvent();
+      String action = change.getAction();
+      Range range = change.getRange();
+      int startRow = range.getStart().getRow();
+      int rows = range.getEnd().getRow() - startRow + 1;
+
+      // the range spans the rows after an insertion, or before a removal
+      if (action.equals("insertText") || action.equals("insertLines"))
+      {
+         journal_.replaceRows(startRow, 1, rows);
+         blockHashes_.replaceRows(startRow, 1, rows);
+      }
+      else if (action.equals("removeText") || action.equals("removeLines"))
+      {
+         journal_.replaceRows(startRow, rows, 1);
+         blockHashes_.replaceRows(startRow, rows, 1);
+      }
+      else
+      {
+         journal_.invalidate();
+         blockHashes_.invalidate();
+      }
+   }
    
    public String getPath()
    {
@@ -653,6 +892,15 @@ public class DocUpdateSentinel
    }
 
    private boolean changesPending_ = false;
+
+   // Changes since the contents most recently sent to the server, which are
+   // journalVersion_; savedVersion_ is the version sourceDoc_ holds.
+   private final DocChangeJournal journal_ = new DocChangeJournal();
+   private int journalVersion_ = 0;
+   private int savedVersion_ = -1;
+
+   // Block hashes of the editor's contents, for resyncing with the server
+   private final DocBlockHashes blockHashes_ = new DocBlockHashes();
    private final ChangeTracker changeTracker_;
    private final SourceServerOperations server_;
    private final DocDisplay docDisplay_;
@@ -113,6 +113,34 @@ public interface SourceServerOperations extends FilesServerOperations,
                          String hash,
                          ServerRequestCallback<String> requestCallback);
 
+   /**
+    * Same as saveDocumentDiff, but with any number of replacements. The
+    * ranges [offsets[i], offsets[i] + lengths[i]) refer to the contents the
+    * server currently has and must be sorted and non-overlapping.
+    */
+   void saveDocumentDiffs(String id,
+                          String path,
+                          String fileType,
+                          String encoding,
+                          String foldSpec,
+                          List<String> replacements,
+                          List<Integer> offsets,
+                          List<Integer> lengths,
+                          String hash,
+                          ServerRequestCallback<String> requestCallback);
+
+   /**
+    * Hashes the server's copy of the document in the given blocks of lines
+    * and returns the ranges of the blocks whose UTF-8 lengths or SHA-1
+    * hashes differ from blockLengths and blockHashes (see DocBlockHashes).
+    */
+   void checkDocumentBlocks(
+         String id,
+         List<Integer> blockLines,
+         List<Integer> blockLengths,
+         List<String> blockHashes,
+         ServerRequestCallback<CheckDocumentBlocksResult> requestCallback);
+
    void checkForExternalEdit(
          String id,
          ServerRequestCallback<CheckForExternalEditResult> requestCallback);
@@ -0,0 +1,289 @@
+/*
+ * ChangelistItems.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+// Keeps the items of a ChangelistTable sorted as changes to them are
+// applied, and finds their rows by key. This is only list logic, kept apart
+// from the table so that it can be tested outside the browser.
+//
+// The items are kept by key as they change, so applying a delta only looks
+// up the rows of the items it changes or removes. Adding a page of new items
+// (as a large status is read) doesn't need any rows, so it costs the merge
+// alone; the index of every row is built only when it's needed.
+class ChangelistItems<T>
+{
+   interface KeyProvider<T>
+   {
+      String getKey(T item);
+   }
+
+   ChangelistItems(List<T> list, KeyProvider<T> keys)
+   {
+      list_ = list;
+      keys_ = keys;
+      reset();
+   }
+
+   // Call when the list has been replaced
+   void reset()
+   {
+      itemsByKey_.clear();
+      for (T item : list_)
+         itemsByKey_.put(keys_.getKey(item), item);
+      rowIndex_ = null;
+   }
+
+   // Call when the items in the list have been reordered (e.g. sorted)
+   void invalidateRows()
+   {
+      rowIndex_ = null;
+   }
+
+   // The row of the item with the given key, or null if there isn't one
+   Integer getRow(String key)
+   {
+      return getRowIndex().get(key);
+   }
+
+   // Removes the items with the given keys from the list, and replaces or
+   // adds the updated items, keeping the list sorted (if comparator isn't
+   // null). Returns true if any rows were added, removed or moved.
+   boolean applyDelta(Collection<String> removedKeys,
+                      Collection<? extends T> updated,
+                      Comparator<T> comparator)
+   {
+      HashSet<Integer> removed = new HashSet<Integer>();
+      ArrayList<T> inserted = new ArrayList<T>();
+
+      for (String key : removedKeys)
+      {
+         T item = itemsByKey_.remove(key);
+         if (item == null)
+            continue;
+
+         // an item that isn't in the list has nothing to remove
+         Integer row = findRow(key, item, comparator);
+         if (row != null)
+            removed.add(row);
+      }
+
+      for (T item : updated)
+      {
+         String key = keys_.getKey(item);
+         T current = itemsByKey_.put(key, item);
+         if (current == null)
+         {
+            inserted.add(item);
+         }
+         else if (current != item)
+         {
+            // An item that sorts the same as the one it replaces stays in
+            // its row. Any other is taken out and inserted again once all
+            // the removals are done: checking it against its neighbours
+            // isn't enough, since they may be about to move too.
+            Integer row = findRow(key, current, comparator);
+            if (row == null)
+            {
+               // added earlier in this delta (or, if it isn't in the list,
+               // added now)
+               boolean found = false;
+               for (int i = 0; i < inserted.size(); i++)
+               {
+                  if (inserted.get(i) == current)
+                  {
+                     inserted.set(i, item);
+                     found = true;
+                  }
+               }
+               if (!found)
+                  inserted.add(item);
+            }
+            else if (!removed.contains(row) &&
+                (comparator == null || comparator.compare(current, item) == 0))
+            {
+               list_.set(row, item);
+            }
+            else
+            {
+               removed.add(row);
+               inserted.add(item);
+            }
+         }
+      }
+
+      if (removed.isEmpty() && inserted.isEmpty())
+         return false;
+
+      if (removed.size() > MAX_SEPARATE_CHANGES ||
+          inserted.size() > MAX_SEPARATE_CHANGES)
+      {
+         // e.g. a page of a large status: rebuild the list in a single pass
+         // rather than shifting the rows after each change
+         List<T> kept = list_;
+         if (!removed.isEmpty())
+         {
+            kept = new ArrayList<T>(list_.size() - removed.size());
+            for (int row = 0; row < list_.size(); row++)
+            {
+               if (!removed.contains(row))
+                  kept.add(list_.get(row));
+            }
+         }
+         ArrayList<T> merged = merge(kept, inserted, comparator);
+         list_.clear();
+         list_.addAll(merged);
+      }
+      else
+      {
+         Integer[] rows = removed.toArray(new Integer[removed.size()]);
+         Arrays.sort(rows);
+         for (int i = rows.length - 1; i >= 0; i--)
+            list_.remove(rows[i].intValue());
+         for (T item : inserted)
+            list_.add(findInsertionRow(list_, item, comparator), item);
+      }
+
+      rowIndex_ = null;
+      return true;
+   }
+
+   // The row of the given item (or null if it isn't in the list), looked up
+   // in the sorted list if the index of rows isn't built and the item is
+   // found quickly that way
+   private Integer findRow(String key, T item, Comparator<T> comparator)
+   {
+      if (rowIndex_ == null && comparator != null)
+      {
+         // the first row not before the item, then along the items that
+         // sort the same as it
+         int low = 0;
+         int high = list_.size();
+         while (low < high)
+         {
+            int mid = (low + high) / 2;
+            if (comparator.compare(list_.get(mid), item) < 0)
+               low = mid + 1;
+            else
+               high = mid;
+         }
+         for (int row = low;
+              row < list_.size() && row < low + MAX_SCAN_ROWS;
+              row++)
+         {
+            if (list_.get(row) == item)
+               return row;
+         }
+      }
+
+      Integer row = getRowIndex().get(key);
+      return row != null && list_.get(row) == item ? row : null;
+   }
+
+   private HashMap<String, Integer> getRowIndex()
+   {
+      if (rowIndex_ == null)
+      {
+         rowIndex_ = new HashMap<String, Integer>();
+         for (int i = 0; i < list_.size(); i++)
+            rowIndex_.put(keys_.getKey(list_.get(i)), i);
+      }
+      return rowIndex_;
+   }
+
+   // Merges items into a copy of the (sorted) list, leaving each after any
+   // items equal to it as findInsertionRow would
+   static <T> ArrayList<T> merge(List<T> list,
+                                 List<? extends T> items,
+                                 Comparator<T> comparator)
+   {
+      ArrayList<T> merged = new ArrayList<T>(list.size() + items.size());
+      if (comparator == null)
+      {
+         merged.addAll(list);
+         merged.addAll(items);
+         return merged;
+      }
+
+      ArrayList<T> sorted = new ArrayList<T>(items);
+      Collections.sort(sorted, comparator);
+
+      // find where each item goes by binary search, copying the rows before
+      // it in bulk, so that merging a page into a long list compares the
+      // page's items rather than every row
+      int i = 0;
+      for (T item : sorted)
+      {
+         int row = findInsertionRow(list, i, item, comparator);
+         merged.addAll(list.subList(i, row));
+         merged.add(item);
+         i = row;
+      }
+      merged.addAll(list.subList(i, list.size()));
+      return merged;
+   }
+
+   static <T> int findInsertionRow(List<T> list,
+                                   T item,
+                                   Comparator<T> comparator)
+   {
+      return findInsertionRow(list, 0, item, comparator);
+   }
+
+   // As above, among the rows from start
+   private static <T> int findInsertionRow(List<T> list,
+                                           int start,
+                                           T item,
+                                           Comparator<T> comparator)
+   {
+      if (comparator == null)
+         return list.size();
+
+      // after any items equal to it
+      int low = start;
+      int high = list.size();
+      while (low < high)
+      {
+         int mid = (low + high) / 2;
+         if (comparator.compare(list.get(mid), item) <= 0)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+      return low;
+   }
+
+   private final List<T> list_;
+   private final KeyProvider<T> keys_;
+   private final HashMap<String, T> itemsByKey_ = new HashMap<String, T>();
+   // built as it's needed, and dropped when the items move
+   private HashMap<String, Integer> rowIndex_;
+
+   // more changes than this are made in a single pass over the list rather
+   // than one at a time
+   static final int MAX_SEPARATE_CHANGES = 32;
+
+   // how far along the items that sort the same as an item to look for it,
+   // before building the index of rows instead
+   private static final int MAX_SCAN_ROWS = 64;
+}
@@ -19,6 +19,8 @@ import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style;
+import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.shared.HandlerRegistration;
@@ -28,19 +30,24 @@ import com.google.gwt.text.shared.SafeHtmlRenderer;
 import com.google.gwt.user.cellview.client.CellTable;
 import com.google.gwt.user.cellview.client.Column;
 import com.google.gwt.user.cellview.client.ColumnSortEvent;
+import com.google.gwt.user.cellview.client.ColumnSortList.ColumnSortInfo;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.LayoutPanel;
 import com.google.gwt.user.client.ui.ScrollPanel;
 import com.google.gwt.view.client.*;
+import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.theme.RStudioCellTableStyle;
 import org.rstudio.core.client.widget.InfoBar;
 import org.rstudio.core.client.widget.MultiSelectCellTable;
 import org.rstudio.core.client.widget.ProgressPanel;
 import org.rstudio.studio.client.common.vcs.StatusAndPath;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public abstract class ChangelistTable extends Composite
@@ -129,12 +136,41 @@ public abstract class ChangelistTable extends Composite
 
    public ChangelistTable()
    {
-      table_ = new MultiSelectCellTable<StatusAndPath>(100, resources_);
+      table_ = new MultiSelectCellTable<StatusAndPath>(RENDER_PAGE_ROWS,
+                                                       resources_)
+      {
+         // only the rows in view are rendered, so keyboard selection works
+         // over the items rather than the visible rows
+
+         @Override
+         public void moveSelection(boolean up, boolean extend)
+         {
+            moveSelectedItem(up, extend);
+         }
+
+         @Override
+         protected void selectAll()
+         {
+            for (StatusAndPath item : dataProvider_.getList())
+               selectionModel_.setSelected(item, true);
+         }
+      };
 
       dataProvider_ = new ListDataProvider<StatusAndPath>();
+      items_ = new ChangelistItems<StatusAndPath>(dataProvider_.getList(),
+                                                  RAW_PATH_KEY);
       sortHandler_ = new ColumnSortEvent.ListHandler<StatusAndPath>(
             dataProvider_.getList());
       table_.addColumnSortHandler(sortHandler_);
+      table_.addColumnSortHandler(new ColumnSortEvent.Handler()
+      {
+         @Override
+         public void onColumnSort(ColumnSortEvent event)
+         {
+            // sorting moves the items
+            items_.invalidateRows();
+         }
+      });
 
       selectionModel_ = createSelectionModel();
       table_.setSelectionModel(selectionModel_);
@@ -146,6 +182,14 @@ public abstract class ChangelistTable extends Composite
 
       layout_ = new LayoutPanel();
       scrollPanel_ = new ScrollPanel(table_);
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         @Override
+         public void onScroll(ScrollEvent event)
+         {
+            renderRowsInView(false);
+         }
+      });
       layout_.add(scrollPanel_);
       layout_.setWidgetTopBottom(scrollPanel_, 0, Unit.PX, 0, Unit.PX);
       layout_.setWidgetLeftRight(scrollPanel_, 0, Unit.PX, 0, Unit.PX);
@@ -160,6 +204,22 @@ public abstract class ChangelistTable extends Composite
       initWidget(layout_);
    }
 
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
+
+      // the scroll panel is laid out by now
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         @Override
+         public void execute()
+         {
+            renderRowsInView(true);
+         }
+      });
+   }
+
    protected MultiSelectionModel<StatusAndPath> createSelectionModel()
    {
       return new MultiSelectionModel<StatusAndPath>(
@@ -293,11 +353,12 @@ public abstract class ChangelistTable extends Composite
    public void setItems(ArrayList<StatusAndPath> items)
    {
       setProgress(false);
-      table_.setPageSize(items.size());
       dataProvider_.getList().clear();
       dataProvider_.getList().addAll(items);
+      items_.reset();
       ColumnSortEvent.fire(table_,
                            table_.getColumnSortList());
+      renderRowsInView(true);
 
       if (selectFirstItemByDefault_)
       {
@@ -306,22 +367,180 @@ public abstract class ChangelistTable extends Composite
             @Override
             public void execute()
             {
-               if (table_.getVisibleItemCount() > 0
+               List<StatusAndPath> list = dataProvider_.getList();
+               if (list.size() > 0
                    && selectionModel_.getSelectedSet().isEmpty())
                {
-                  selectionModel_.setSelected(table_.getVisibleItem(0), true);
+                  selectionModel_.setSelected(list.get(0), true);
                }
             }
          });
       }
    }
 
+   // Applies changes to individual items, keeping the items sorted, so that
+   // only the rows that move are redrawn (rather than all of them, as on
+   // setItems)
+   public void updateItems(StatusDelta delta)
+   {
+      setProgress(false);
+
+      boolean moved = items_.applyDelta(delta.getRemoved(),
+                                        delta.getUpdated(),
+                                        getSortComparator());
+      if (moved)
+         renderRowsInView(true);
+   }
+
+   // Renders the rows in view (and a page either side) unless they're
+   // already rendered, or regardless if force is true; the rows above and
+   // below are stood in for by the table's margins
+   private void renderRowsInView(boolean force)
+   {
+      // estimate the height of the rows not rendered from those that are
+      int rendered = Math.min(table_.getVisibleItemCount(),
+                              renderedEnd_ - renderedStart_);
+      if (rendered > 0 && isAttached())
+      {
+         TableRowElement firstRow = table_.getRowElement(0);
+         TableRowElement lastRow = table_.getRowElement(rendered - 1);
+         int height = lastRow.getOffsetTop() + lastRow.getOffsetHeight()
+                      - firstRow.getOffsetTop();
+         if (height > 0)
+         {
+            rowHeight_ = (double) height / rendered;
+            headerHeight_ = firstRow.getOffsetTop();
+         }
+      }
+
+      int rowCount = dataProvider_.getList().size();
+      int first = 0;
+      int last = Math.min(rowCount, RENDER_PAGE_ROWS);
+
+      if (isAttached() && scrollPanel_.getOffsetHeight() > 0)
+      {
+         int viewTop = scrollPanel_.getVerticalScrollPosition() - headerHeight_;
+         int viewBottom = viewTop + scrollPanel_.getOffsetHeight();
+
+         int firstInView = Math.min(rowCount,
+               Math.max(0, (int) Math.floor(viewTop / rowHeight_)));
+         int lastInView = Math.min(rowCount,
+               Math.max(0, (int) Math.ceil(viewBottom / rowHeight_)));
+         if (!force &&
+             firstInView >= renderedStart_ &&
+             lastInView <= renderedEnd_)
+         {
+            return;
+         }
+
+         first = Math.max(0, firstInView - RENDER_PAGE_ROWS);
+         last = Math.min(rowCount, lastInView + RENDER_PAGE_ROWS);
+      }
+
+      renderedStart_ = first;
+      renderedEnd_ = last;
+      table_.setVisibleRange(first, rowCount == 0 ? RENDER_PAGE_ROWS
+                                                  : last - first);
+
+      Style style = table_.getElement().getStyle();
+      style.setMarginTop((int) Math.round(first * rowHeight_), Unit.PX);
+      style.setMarginBottom((int) Math.round((rowCount - last) * rowHeight_),
+                            Unit.PX);
+   }
+
+   // Selects the item before or after the selection, as
+   // MultiSelectCellTable.moveSelection does for the visible rows
+   private void moveSelectedItem(boolean up, boolean extend)
+   {
+      List<StatusAndPath> list = dataProvider_.getList();
+      if (list.isEmpty())
+         return;
+
+      int min = list.size();
+      int max = -1;
+      for (StatusAndPath item : selectionModel_.getSelectedSet())
+      {
+         Integer row = items_.getRow(item.getRawPath());
+         if (row != null && selectionModel_.isSelected(list.get(row)))
+         {
+            min = Math.min(min, row);
+            max = Math.max(max, row);
+         }
+      }
+
+      int row = up ? Math.max(0, min - 1)
+                   : Math.min(list.size() - 1, max + 1);
+      if (!extend)
+         selectionModel_.clear();
+      selectionModel_.setSelected(list.get(row), true);
+      ensureRowVisible(row);
+   }
+
+   private void ensureRowVisible(int row)
+   {
+      if (row == 0)
+      {
+         // show the header too
+         scrollPanel_.scrollToTop();
+         return;
+      }
+
+      if (row < renderedStart_ || row >= renderedEnd_)
+      {
+         scrollPanel_.setVerticalScrollPosition(
+               headerHeight_ + (int) Math.round(row * rowHeight_)
+               - scrollPanel_.getOffsetHeight() / 2);
+         renderRowsInView(true);
+      }
+
+      if (row >= renderedStart_ && row < renderedEnd_)
+         DomUtils.scrollIntoViewVert(table_.getRowElement(row - renderedStart_));
+   }
+
+   // The comparator the items are sorted with, or null if they aren't
+   private Comparator<StatusAndPath> getSortComparator()
+   {
+      if (table_.getColumnSortList().size() == 0)
+         return null;
+
+      ColumnSortInfo info = table_.getColumnSortList().get(0);
+      @SuppressWarnings("unchecked")
+      final Comparator<StatusAndPath> comparator = sortHandler_.getComparator(
+            (Column<StatusAndPath, ?>) info.getColumn());
+      if (comparator == null || info.isAscending())
+         return comparator;
+
+      return new Comparator<StatusAndPath>()
+      {
+         @Override
+         public int compare(StatusAndPath a, StatusAndPath b)
+         {
+            return comparator.compare(b, a);
+         }
+      };
+   }
+
    public ArrayList<StatusAndPath> getSelectedItems()
+   {
+      return getSelectedItemsInOrder();
+   }
+
+   private ArrayList<StatusAndPath> getSelectedItemsInOrder()
    {
       SelectionModel<? super StatusAndPath> selectionModel = table_.getSelectionModel();
+      List<StatusAndPath> list = dataProvider_.getList();
+
+      // look up a few selected items rather than checking every item
+      if (selectionModel == selectionModel_ &&
+          selectionModel_.getSelectedSet().size() * 8 < list.size())
+      {
+         ArrayList<StatusAndPath> results = getSelectedItemsByIndex();
+         if (results != null)
+            return results;
+      }
 
       ArrayList<StatusAndPath> results = new ArrayList<StatusAndPath>();
-      for (StatusAndPath item : dataProvider_.getList())
+      for (StatusAndPath item : list)
       {
          if (selectionModel.isSelected(item))
             results.add(item);
@@ -329,16 +548,35 @@ public abstract class ChangelistTable extends Composite
       return results;
    }
 
-   public ArrayList<String> getSelectedPaths()
+   // The selected items in row order, found by raw path; null if any of them
+   // can't be found that way (e.g. if the file has since been renamed)
+   private ArrayList<StatusAndPath> getSelectedItemsByIndex()
    {
-      SelectionModel<? super StatusAndPath> selectionModel = table_.getSelectionModel();
+      List<StatusAndPath> list = dataProvider_.getList();
+      Set<StatusAndPath> selected = selectionModel_.getSelectedSet();
 
-      ArrayList<String> results = new ArrayList<String>();
-      for (StatusAndPath item : dataProvider_.getList())
+      int[] rows = new int[selected.size()];
+      int count = 0;
+      for (StatusAndPath item : selected)
       {
-         if (selectionModel.isSelected(item))
-            results.add(item.getPath());
+         Integer row = items_.getRow(item.getRawPath());
+         if (row == null || !selectionModel_.isSelected(list.get(row)))
+            return null;
+         rows[count++] = row;
       }
+      Arrays.sort(rows, 0, count);
+
+      ArrayList<StatusAndPath> results = new ArrayList<StatusAndPath>(count);
+      for (int i = 0; i < count; i++)
+         results.add(list.get(rows[i]));
+      return results;
+   }
+
+   public ArrayList<String> getSelectedPaths()
+   {
+      ArrayList<String> results = new ArrayList<String>();
+      for (StatusAndPath item : getSelectedItemsInOrder())
+         results.add(item.getPath());
       return results;
    }
 
@@ -351,12 +589,10 @@ public abstract class ChangelistTable extends Composite
 
    public ArrayList<String> getSelectedDiscardablePaths()
    {
-      SelectionModel<? super StatusAndPath> selectionModel = table_.getSelectionModel();
-
       ArrayList<String> results = new ArrayList<String>();
-      for (StatusAndPath item : dataProvider_.getList())
+      for (StatusAndPath item : getSelectedItemsInOrder())
       {
-         if (selectionModel.isSelected(item) && item.isDiscardable())
+         if (item.isDiscardable())
             results.add(item.getPath());
       }
       return results;
@@ -365,7 +601,7 @@ public abstract class ChangelistTable extends Composite
    public void selectNextUnselectedItem()
    {
       boolean selectNext = false;
-      for (StatusAndPath path : table_.getVisibleItems())
+      for (StatusAndPath path : dataProvider_.getList())
       {
          if (selectionModel_.isSelected(path))
             selectNext = true;
@@ -428,10 +664,28 @@ public abstract class ChangelistTable extends Composite
    protected final MultiSelectionModel<StatusAndPath> selectionModel_;
    protected final ColumnSortEvent.ListHandler<StatusAndPath> sortHandler_;
    protected final ListDataProvider<StatusAndPath> dataProvider_;
+   private final ChangelistItems<StatusAndPath> items_;
    private final ProgressPanel progressPanel_;
    private LayoutPanel layout_;
    private ScrollPanel scrollPanel_;
    private ChangelistInfoBar infoBar_;
    private boolean selectFirstItemByDefault_;
+   // the rows rendered, and estimates of the row and header heights from
+   // them
+   private int renderedStart_ = 0;
+   private int renderedEnd_ = 0;
+   private double rowHeight_ = 20;
+   private int headerHeight_ = 0;
+
+   private static final int RENDER_PAGE_ROWS = 100;
+   private static final ChangelistItems.KeyProvider<StatusAndPath> RAW_PATH_KEY =
+         new ChangelistItems.KeyProvider<StatusAndPath>()
+   {
+      @Override
+      public String getKey(StatusAndPath item)
+      {
+         return item.getRawPath();
+      }
+   };
    private static final ChangelistTableCellTableResources resources_ = GWT.<ChangelistTableCellTableResources>create(ChangelistTableCellTableResources.class);
 }
@@ -16,6 +16,9 @@ package org.rstudio.studio.client.workbench.views.vcs.common.diff;
 
 import java.util.ArrayList;
 
+// A row of a LineTableView: either the header of a chunk, or one of the
+// chunk's lines (read from the chunk as it's needed, so that showing a line
+// needn't create a Line object for it)
 public class ChunkOrLine
 {
    public static ArrayList<ChunkOrLine> fromChunk(DiffChunk chunk)
@@ -23,33 +26,72 @@ public class ChunkOrLine
       ArrayList<ChunkOrLine> list = new ArrayList<ChunkOrLine>();
       if (!chunk.shouldIgnore())
          list.add(new ChunkOrLine(chunk));
-      for (Line line : chunk.getLines())
-         list.add(new ChunkOrLine(line));
+      for (int i = 0; i < chunk.getLineCount(); i++)
+         list.add(new ChunkOrLine(chunk, i));
       return list;
    }
 
    public ChunkOrLine(DiffChunk chunk)
    {
-      chunk_ = chunk;
-      line_ = null;
+      this(chunk, -1);
    }
 
-   public ChunkOrLine(Line line)
+   public ChunkOrLine(DiffChunk chunk, int line)
    {
-      line_ = line;
-      chunk_ = null;
+      chunk_ = chunk;
+      lineIndex_ = line;
    }
 
+   // Returns the chunk if this is its header, otherwise null
    public DiffChunk getChunk()
    {
-      return chunk_;
+      return lineIndex_ < 0 ? chunk_ : null;
    }
 
+   // Returns the line, or null if this is a chunk header
    public Line getLine()
    {
+      if (lineIndex_ < 0)
+         return null;
+      if (line_ == null)
+         line_ = chunk_.getLine(lineIndex_);
       return line_;
    }
 
+   public boolean isLine()
+   {
+      return lineIndex_ >= 0;
+   }
+
+   public int getDiffIndex()
+   {
+      return lineIndex_ < 0 ? chunk_.getDiffIndex()
+                            : chunk_.getLineDiffIndex(lineIndex_);
+   }
+
+   // The methods below are for lines only
+
+   public Line.Type getLineType()
+   {
+      return chunk_.getLineType(lineIndex_);
+   }
+
+   public String getLineText()
+   {
+      return chunk_.getLineText(lineIndex_);
+   }
+
+   public int getLineNumber(int range)
+   {
+      return chunk_.getLineNumber(lineIndex_, range);
+   }
+
+   public boolean lineAppliesTo(int range)
+   {
+      return chunk_.lineAppliesTo(lineIndex_, range);
+   }
+
    private final DiffChunk chunk_;
-   private final Line line_;
+   private final int lineIndex_;
+   private Line line_;
 }
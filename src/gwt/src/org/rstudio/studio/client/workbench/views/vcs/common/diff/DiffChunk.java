@@ -26,6 +26,19 @@ public class DiffChunk
       this.ranges_ = ranges;
       this.lineText_ = lineText;
       this.diffLines_ = diffLines;
+      this.lineColumns_ = null;
+      diffIndex_ = diffIndex;
+   }
+
+   public DiffChunk(Range[] ranges,
+                    String lineText,
+                    LineColumns lineColumns,
+                    int diffIndex)
+   {
+      this.ranges_ = ranges;
+      this.lineText_ = lineText;
+      this.diffLines_ = null;
+      this.lineColumns_ = lineColumns;
       diffIndex_ = diffIndex;
    }
 
@@ -39,14 +52,71 @@ public class DiffChunk
       newRanges[0] = ranges_[1];
       newRanges[1] = ranges_[0];
 
+      if (lineColumns_ != null)
+      {
+         return new DiffChunk(newRanges,
+                              lineText_,
+                              lineColumns_.reverse(), diffIndex_);
+      }
+
       return new DiffChunk(newRanges,
                            lineText_,
                            Line.reverseLines(diffLines_), diffIndex_);
    }
 
+   // Chunks read by UnifiedParser keep their lines in columns, in which case
+   // this creates a Line for each of them (on every call); the getLine*
+   // methods below read a single line without doing so
    public ArrayList<Line> getLines()
    {
-      return diffLines_;
+      if (lineColumns_ == null)
+         return diffLines_;
+
+      ArrayList<Line> lines = new ArrayList<Line>(lineColumns_.size());
+      for (int i = 0; i < lineColumns_.size(); i++)
+         lines.add(lineColumns_.getLine(i));
+      return lines;
+   }
+
+   public int getLineCount()
+   {
+      return lineColumns_ != null ? lineColumns_.size() : diffLines_.size();
+   }
+
+   public Line getLine(int line)
+   {
+      return lineColumns_ != null ? lineColumns_.getLine(line)
+                                  : diffLines_.get(line);
+   }
+
+   public Line.Type getLineType(int line)
+   {
+      return lineColumns_ != null ? lineColumns_.getType(line)
+                                  : diffLines_.get(line).getType();
+   }
+
+   public String getLineText(int line)
+   {
+      return lineColumns_ != null ? lineColumns_.getText(line)
+                                  : diffLines_.get(line).getText();
+   }
+
+   public int getLineNumber(int line, int range)
+   {
+      return lineColumns_ != null ? lineColumns_.getLineNumber(line, range)
+                                  : diffLines_.get(line).getLines()[range];
+   }
+
+   public boolean lineAppliesTo(int line, int range)
+   {
+      return lineColumns_ != null ? lineColumns_.appliesTo(line, range)
+                                  : diffLines_.get(line).getAppliesTo()[range];
+   }
+
+   public int getLineDiffIndex(int line)
+   {
+      return lineColumns_ != null ? lineColumns_.getDiffIndex(line)
+                                  : diffLines_.get(line).getDiffIndex();
    }
 
    public Range[] getRanges()
@@ -76,6 +146,7 @@ public class DiffChunk
 
    private final String lineText_;
    private final ArrayList<Line> diffLines_;
+   private final LineColumns lineColumns_;
    private final int diffIndex_;
    private final Range[] ranges_;
 }
@@ -19,4 +19,6 @@ public interface DiffParser
    DiffFileHeader nextFilePair();
 
    DiffChunk nextChunk();
+
+   LazyDiffChunk nextLazyChunk();
 }
@@ -0,0 +1,194 @@
+/*
+ * DiffRows.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+import java.util.ArrayList;
+
+/**
+ * The rows of a diff as shown in a LineTableView: a header row for each
+ * chunk (unless it should be ignored) followed by its lines. Chunks are
+ * only parsed when one of their rows is first asked for, so the rows of a
+ * large diff can be counted and shown without parsing all of it. Rows are
+ * created as they're asked for, and read their chunk's lines in place.
+ */
+public class DiffRows
+{
+   public DiffRows()
+   {
+   }
+
+   // Creates the rows of the remaining chunks of the parser's current file
+   public static DiffRows fromParser(DiffParser parser)
+   {
+      DiffRows rows = new DiffRows();
+      LazyDiffChunk chunk;
+      while (null != (chunk = parser.nextLazyChunk()))
+         rows.addChunk(chunk);
+      return rows;
+   }
+
+   public void addChunk(LazyDiffChunk chunk)
+   {
+      if (!chunks_.isEmpty() &&
+          chunk.getDiffIndex() < chunks_.get(chunks_.size() - 1).getDiffIndex())
+      {
+         ordered_ = false;
+      }
+
+      chunks_.add(chunk);
+      startRows_.add(rowCount_);
+      rowCount_ += chunk.getLineCount() + (chunk.shouldIgnore() ? 0 : 1);
+   }
+
+   public int getRowCount()
+   {
+      return rowCount_;
+   }
+
+   public ChunkOrLine getRow(int row)
+   {
+      int chunk = findChunkForRow(row);
+      LazyDiffChunk lazyChunk = chunks_.get(chunk);
+      int offset = row - startRows_.get(chunk);
+      if (lazyChunk.shouldIgnore())
+         return new ChunkOrLine(lazyChunk.getChunk(), offset);
+      else if (offset == 0)
+         return new ChunkOrLine(lazyChunk.getChunk());
+      else
+         return new ChunkOrLine(lazyChunk.getChunk(), offset - 1);
+   }
+
+   public ArrayList<ChunkOrLine> getRows(int start, int count)
+   {
+      ArrayList<ChunkOrLine> rows = new ArrayList<ChunkOrLine>(count);
+      for (int i = start; i < start + count; i++)
+         rows.add(getRow(i));
+      return rows;
+   }
+
+   // Returns the row showing the given chunk header or line, or -1 if there
+   // isn't one
+   public int getRowIndex(ChunkOrLine value)
+   {
+      int diffIndex = value.getDiffIndex();
+
+      int chunk = findChunkForDiffIndex(diffIndex);
+      if (chunk < 0)
+         return -1;
+
+      LazyDiffChunk lazyChunk = chunks_.get(chunk);
+      int offset = diffIndex - lazyChunk.getDiffIndex();
+      if (lazyChunk.shouldIgnore())
+         offset--;
+      return offset < 0 ? -1 : startRows_.get(chunk) + offset;
+   }
+
+   // The number of files compared by the diff
+   public int getFilesCompared()
+   {
+      for (int i = chunks_.size() - 1; i >= 0; i--)
+         if (!chunks_.get(i).shouldIgnore())
+            return chunks_.get(i).getRangeCount();
+      return 2;
+   }
+
+   // Returns every chunk, parsing those not yet parsed
+   public ArrayList<DiffChunk> getChunks()
+   {
+      ArrayList<DiffChunk> chunks = new ArrayList<DiffChunk>();
+      for (LazyDiffChunk chunk : chunks_)
+         if (!chunk.shouldIgnore())
+            chunks.add(chunk.getChunk());
+      return chunks;
+   }
+
+   // Returns the chunks containing any of the given lines, which is all the
+   // context a patch of those lines needs
+   public ArrayList<DiffChunk> getChunksContaining(ArrayList<Line> lines)
+   {
+      boolean[] contains = new boolean[chunks_.size()];
+      for (Line line : lines)
+      {
+         int chunk = findChunkForDiffIndex(line.getDiffIndex());
+         if (chunk >= 0)
+            contains[chunk] = true;
+      }
+
+      ArrayList<DiffChunk> chunks = new ArrayList<DiffChunk>();
+      for (int i = 0; i < contains.length; i++)
+         if (contains[i] && !chunks_.get(i).shouldIgnore())
+            chunks.add(chunks_.get(i).getChunk());
+      return chunks;
+   }
+
+   private int findChunkForRow(int row)
+   {
+      if (row < 0 || row >= rowCount_)
+         throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount_);
+
+      // the last chunk starting at or before the row
+      int low = 0;
+      int high = chunks_.size() - 1;
+      while (low < high)
+      {
+         int mid = (low + high + 1) / 2;
+         if (startRows_.get(mid) <= row)
+            low = mid;
+         else
+            high = mid - 1;
+      }
+      return low;
+   }
+
+   private int findChunkForDiffIndex(int diffIndex)
+   {
+      if (!ordered_)
+      {
+         for (int i = 0; i < chunks_.size(); i++)
+            if (containsDiffIndex(i, diffIndex))
+               return i;
+         return -1;
+      }
+
+      int low = 0;
+      int high = chunks_.size() - 1;
+      while (low < high)
+      {
+         int mid = (low + high + 1) / 2;
+         if (chunks_.get(mid).getDiffIndex() <= diffIndex)
+            low = mid;
+         else
+            high = mid - 1;
+      }
+      return containsDiffIndex(low, diffIndex) ? low : -1;
+   }
+
+   private boolean containsDiffIndex(int chunk, int diffIndex)
+   {
+      if (chunk >= chunks_.size())
+         return false;
+
+      LazyDiffChunk lazyChunk = chunks_.get(chunk);
+      return diffIndex >= lazyChunk.getDiffIndex() &&
+             diffIndex <= lazyChunk.getDiffIndex() + lazyChunk.getLineCount();
+   }
+
+   private final ArrayList<LazyDiffChunk> chunks_ =
+         new ArrayList<LazyDiffChunk>();
+   private final ArrayList<Integer> startRows_ = new ArrayList<Integer>();
+   private int rowCount_ = 0;
+   // whether the chunks are in order of diff index
+   private boolean ordered_ = true;
+}
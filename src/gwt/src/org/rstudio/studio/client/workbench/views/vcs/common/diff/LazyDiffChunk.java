@@ -0,0 +1,86 @@
+/*
+ * LazyDiffChunk.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+/**
+ * A chunk of a diff whose lines are only parsed (by the UnifiedParser that
+ * found it) when they're first asked for. The number of lines and the diff
+ * indices they span are known up front.
+ */
+public class LazyDiffChunk
+{
+   public LazyDiffChunk(DiffChunk chunk)
+   {
+      parser_ = null;
+      offset_ = -1;
+      diffIndex_ = chunk.getDiffIndex();
+      lineCount_ = chunk.getLineCount();
+      rangeCount_ = chunk.shouldIgnore() ? 0 : chunk.getRanges().length;
+      chunk_ = chunk;
+   }
+
+   LazyDiffChunk(UnifiedParser parser,
+                 int offset,
+                 int diffIndex,
+                 int lineCount,
+                 int rangeCount)
+   {
+      parser_ = parser;
+      offset_ = offset;
+      diffIndex_ = diffIndex;
+      lineCount_ = lineCount;
+      rangeCount_ = rangeCount;
+   }
+
+   public DiffChunk getChunk()
+   {
+      if (chunk_ == null)
+         chunk_ = parser_.parseChunkAt(offset_, diffIndex_, lineCount_);
+      return chunk_;
+   }
+
+   public boolean isParsed()
+   {
+      return chunk_ != null;
+   }
+
+   public int getDiffIndex()
+   {
+      return diffIndex_;
+   }
+
+   public int getLineCount()
+   {
+      return lineCount_;
+   }
+
+   // The number of files compared (as DiffChunk.getRanges().length)
+   public int getRangeCount()
+   {
+      return rangeCount_;
+   }
+
+   public boolean shouldIgnore()
+   {
+      return rangeCount_ == 0;
+   }
+
+   private final UnifiedParser parser_;
+   private final int offset_;
+   private final int diffIndex_;
+   private final int lineCount_;
+   private final int rangeCount_;
+   private DiffChunk chunk_;
+}
@@ -116,9 +116,19 @@ public class Line implements Comparable<Line>
       if (appliesTo_.length > 2)
          throw new UnsupportedOperationException("Can't reverse combined diff");
 
+      if (appliesTo_.length < 2)
+      {
+         return new Line(type_.getInverse(),
+                         lines_[1],
+                         lines_[0],
+                         text_,
+                         diffIndex_);
+      }
+
+      // the files swap places, and so do the files each line applies to
       return new Line(type_.getInverse(),
-                      lines_[1],
-                      lines_[0],
+                      new boolean[] { appliesTo_[1], appliesTo_[0] },
+                      new int[] { lines_[1], lines_[0] },
                       text_,
                       diffIndex_);
    }
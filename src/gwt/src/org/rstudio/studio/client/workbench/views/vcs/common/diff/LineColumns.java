@@ -0,0 +1,183 @@
+/*
+ * LineColumns.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+import org.rstudio.studio.client.workbench.views.vcs.common.diff.Line.Type;
+
+/**
+ * The lines of a diff chunk, stored a column at a time in parallel arrays
+ * rather than as a Line object (with its own arrays and text) per line. The
+ * text of each line is kept as offsets into the diff it was parsed from.
+ * Lines have consecutive diff indices.
+ *
+ * Line objects can be created for individual lines as they're needed.
+ */
+public class LineColumns
+{
+   LineColumns(String data, int rangeCount, int capacity, int firstDiffIndex)
+   {
+      data_ = data;
+      rangeCount_ = rangeCount;
+      firstDiffIndex_ = firstDiffIndex;
+      allocate(Math.max(1, capacity));
+   }
+
+   // Appends a line; positions holds its line number in each file
+   void add(Type type,
+            boolean[] appliesTo,
+            int[] positions,
+            int textStart,
+            int textEnd)
+   {
+      if (size_ == types_.length)
+         grow();
+
+      int appliesToMask = 0;
+      for (int i = 0; i < rangeCount_; i++)
+      {
+         if (appliesTo[i])
+            appliesToMask |= 1 << i;
+         lineNumbers_[size_ * rangeCount_ + i] = positions[i];
+      }
+
+      types_[size_] = type.ordinal();
+      appliesTo_[size_] = appliesToMask;
+      textStart_[size_] = textStart;
+      textEnd_[size_] = textEnd;
+      size_++;
+   }
+
+   public int size()
+   {
+      return size_;
+   }
+
+   public int getRangeCount()
+   {
+      return rangeCount_;
+   }
+
+   public Type getType(int line)
+   {
+      return TYPES[types_[line]];
+   }
+
+   public int getLineNumber(int line, int range)
+   {
+      return lineNumbers_[line * rangeCount_ + range];
+   }
+
+   public boolean appliesTo(int line, int range)
+   {
+      return (appliesTo_[line] & (1 << range)) != 0;
+   }
+
+   public String getText(int line)
+   {
+      return data_.substring(textStart_[line], textEnd_[line]);
+   }
+
+   // Appends the text of the line without creating a string for it
+   public void appendText(int line, StringBuilder builder)
+   {
+      builder.append(data_, textStart_[line], textEnd_[line]);
+   }
+
+   public int getDiffIndex(int line)
+   {
+      return firstDiffIndex_ + line;
+   }
+
+   public Line getLine(int line)
+   {
+      boolean[] appliesTo = new boolean[rangeCount_];
+      int[] lineNumbers = new int[rangeCount_];
+      for (int i = 0; i < rangeCount_; i++)
+      {
+         appliesTo[i] = appliesTo(line, i);
+         lineNumbers[i] = getLineNumber(line, i);
+      }
+
+      return new Line(getType(line),
+                      appliesTo,
+                      lineNumbers,
+                      getText(line),
+                      getDiffIndex(line));
+   }
+
+   // As Line.reverse, for every line (sharing the text of this one)
+   public LineColumns reverse()
+   {
+      if (rangeCount_ != 2)
+         throw new UnsupportedOperationException("Can't reverse combined diff");
+
+      LineColumns reversed = new LineColumns(data_,
+                                             rangeCount_,
+                                             size_,
+                                             firstDiffIndex_);
+      for (int i = 0; i < size_; i++)
+      {
+         reversed.types_[i] = getType(i).getInverse().ordinal();
+         reversed.lineNumbers_[2 * i] = lineNumbers_[2 * i + 1];
+         reversed.lineNumbers_[2 * i + 1] = lineNumbers_[2 * i];
+         reversed.appliesTo_[i] = ((appliesTo_[i] & 1) << 1) |
+                                  ((appliesTo_[i] >> 1) & 1);
+      }
+      System.arraycopy(textStart_, 0, reversed.textStart_, 0, size_);
+      System.arraycopy(textEnd_, 0, reversed.textEnd_, 0, size_);
+      reversed.size_ = size_;
+      return reversed;
+   }
+
+   private void allocate(int capacity)
+   {
+      types_ = new int[capacity];
+      lineNumbers_ = new int[capacity * rangeCount_];
+      appliesTo_ = new int[capacity];
+      textStart_ = new int[capacity];
+      textEnd_ = new int[capacity];
+   }
+
+   private void grow()
+   {
+      int[] types = types_;
+      int[] lineNumbers = lineNumbers_;
+      int[] appliesTo = appliesTo_;
+      int[] textStart = textStart_;
+      int[] textEnd = textEnd_;
+
+      allocate(types.length * 2);
+      System.arraycopy(types, 0, types_, 0, size_);
+      System.arraycopy(lineNumbers, 0, lineNumbers_, 0, size_ * rangeCount_);
+      System.arraycopy(appliesTo, 0, appliesTo_, 0, size_);
+      System.arraycopy(textStart, 0, textStart_, 0, size_);
+      System.arraycopy(textEnd, 0, textEnd_, 0, size_);
+   }
+
+   private final String data_;
+   private final int rangeCount_;
+   private final int firstDiffIndex_;
+   private int size_ = 0;
+
+   private int[] types_;
+   // the line number of line i in file r is at [i * rangeCount_ + r]
+   private int[] lineNumbers_;
+   // bit r is set if line i applies to file r
+   private int[] appliesTo_;
+   private int[] textStart_;
+   private int[] textEnd_;
+
+   private static final Type[] TYPES = Type.values();
+}
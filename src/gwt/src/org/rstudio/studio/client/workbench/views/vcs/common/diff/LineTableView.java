@@ -17,22 +17,29 @@ package org.rstudio.studio.client.workbench.views.vcs.common.diff;
 import com.google.gwt.cell.client.AbstractCell;
 import com.google.gwt.cell.client.ValueUpdater;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.user.cellview.client.CellTable;
 import com.google.gwt.user.cellview.client.Column;
 import com.google.gwt.user.cellview.client.RowStyles;
 import com.google.gwt.user.cellview.client.TextColumn;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import com.google.gwt.view.client.CellPreviewEvent;
 import com.google.gwt.view.client.MultiSelectionModel;
 import com.google.gwt.view.client.ProvidesKey;
 import com.google.gwt.view.client.SelectionChangeEvent;
 import com.google.gwt.view.client.SelectionChangeEvent.Handler;
 import com.google.inject.Inject;
 import org.rstudio.core.client.SafeHtmlUtil;
+import org.rstudio.core.client.command.KeyboardShortcut;
 import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.dom.DomUtils.NodePredicate;
 import org.rstudio.core.client.theme.RStudioCellTableStyle;
@@ -48,8 +55,15 @@ import org.rstudio.studio.client.workbench.views.vcs.common.events.DiffLinesActi
 import org.rstudio.studio.client.workbench.views.vcs.common.events.DiffLinesActionHandler;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-
+import java.util.Collections;
+
+/**
+ * Shows the rows of a diff. Only the rows in view of the scroll panel the
+ * table is in (and a page either side) are rendered, with the table's
+ * margins standing in for the rest, so large diffs can be shown without
+ * rendering (or parsing) all of them. Selection is kept over all the rows,
+ * rendered or not.
+ */
 public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements Display
 {
    public interface LineTableViewCellTableResources extends CellTable.Resources
@@ -138,13 +152,13 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
       @Override
       public void render(Context context, ChunkOrLine value, SafeHtmlBuilder sb)
       {
-         if (value.getLine() != null)
+         if (value.isLine())
          {
-            sb.appendEscaped(value.getLine().getText());
+            sb.appendEscaped(value.getLineText());
             if (showActions_
-                && value.getLine().getType() != Line.Type.Same
-                && value.getLine().getType() != Line.Type.Info
-                && value == firstSelectedLine_)
+                && value.getLineType() != Line.Type.Same
+                && value.getLineType() != Line.Type.Info
+                && isFirstSelectedLine(value))
             {
                renderActionButtons(
                      sb,
@@ -258,14 +272,13 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
             @Override
             public String getValue(ChunkOrLine object)
             {
-               Line line = object.getLine();
-               if (line == null)
+               if (!object.isLine())
                   return "\u00A0";
 
-               if (!line.getAppliesTo()[index])
+               if (!object.lineAppliesTo(index))
                   return "\u00A0";
 
-               return intToString(line.getLines()[index]);
+               return intToString(object.getLineNumber(index));
             }
          };
          col.setHorizontalAlignment(TextColumn.ALIGN_RIGHT);
@@ -294,21 +307,19 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
          @Override
          public String getStyleNames(ChunkOrLine chunkOrLine, int rowIndex)
          {
-            Line line = chunkOrLine.getLine();
-
-            if (line == null)
+            if (!chunkOrLine.isLine())
             {
                return res.cellTableStyle().header();
             }
             else
             {
                String prefix = "";
-               if (startRows_.contains(rowIndex))
+               if (isStartRow(rowIndex))
                   prefix += res.cellTableStyle().start() + " ";
-               if (endRows_.contains(rowIndex))
+               if (isEndRow(rowIndex))
                   prefix += res.cellTableStyle().end() + " ";
 
-               switch (line.getType())
+               switch (chunkOrLine.getLineType())
                {
                   case Same:
                      return prefix + res.cellTableStyle().same();
@@ -333,18 +344,15 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
          @Override
          public Object getKey(ChunkOrLine item)
          {
-            if (item.getChunk() != null)
-               return item.getChunk().getDiffIndex();
-            else
-               return item.getLine().getDiffIndex();
+            return item.getDiffIndex();
          }
       }) {
          @Override
          public void setSelected(ChunkOrLine object, boolean selected)
          {
-            if (object.getLine() != null &&
-                object.getLine().getType() != Line.Type.Same &&
-                object.getLine().getType() != Line.Type.Info)
+            if (object.isLine() &&
+                object.getLineType() != Line.Type.Same &&
+                object.getLineType() != Line.Type.Info)
             {
                super.setSelected(object, selected);
             }
@@ -358,8 +366,8 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
             ChunkOrLine newFirstSelectedLine = null;
             for (ChunkOrLine value : selectionModel_.getSelectedSet())
             {
-               if (value.getLine() != null &&
-                   (newFirstSelectedLine == null || newFirstSelectedLine.getLine().compareTo(value.getLine()) > 0))
+               if (value.isLine() &&
+                   (newFirstSelectedLine == null || newFirstSelectedLine.getDiffIndex() > value.getDiffIndex()))
                {
                   newFirstSelectedLine = value;
                }
@@ -367,7 +375,7 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
 
             if (newFirstSelectedLine != null)
                refreshValue(newFirstSelectedLine);
-            if (firstSelectedLine_ != newFirstSelectedLine)
+            if (!isFirstSelectedLine(newFirstSelectedLine))
             {
                if (firstSelectedLine_ != null)
                   refreshValue(firstSelectedLine_);
@@ -376,21 +384,165 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
             firstSelectedLine_ = newFirstSelectedLine;
          }
       });
-      setSelectionModel(selectionModel_);
+      setSelectionModel(selectionModel_, new LineSelectionManager());
+
+      setData(new DiffRows(), PatchMode.Working);
+   }
+
+   // Selects lines on click as DefaultSelectionEventManager does, but over
+   // all the rows rather than just those rendered, so that shift-click
+   // selects the lines between even when some aren't rendered
+   private class LineSelectionManager
+         implements CellPreviewEvent.Handler<ChunkOrLine>
+   {
+      @Override
+      public void onCellPreview(CellPreviewEvent<ChunkOrLine> event)
+      {
+         NativeEvent nativeEvent = event.getNativeEvent();
+         if (!"click".equals(nativeEvent.getType()) || event.isCellEditing())
+            return;
+
+         int row = event.getIndex();
+         int modifiers = KeyboardShortcut.getModifierValue(nativeEvent);
+         boolean toggle = (modifiers & (KeyboardShortcut.CTRL |
+                                        KeyboardShortcut.META)) != 0;
+
+         if ((modifiers & KeyboardShortcut.SHIFT) != 0 && anchorRow_ >= 0)
+         {
+            if (!toggle)
+               selectionModel_.clear();
+
+            int first = Math.min(anchorRow_, row);
+            int last = Math.min(Math.max(anchorRow_, row),
+                                rows_.getRowCount() - 1);
+            for (int i = first; i <= last; i++)
+               selectionModel_.setSelected(rows_.getRow(i), true);
+         }
+         else if (toggle)
+         {
+            ChunkOrLine value = event.getValue();
+            selectionModel_.setSelected(value,
+                                        !selectionModel_.isSelected(value));
+            anchorRow_ = row;
+         }
+         else
+         {
+            selectionModel_.clear();
+            selectionModel_.setSelected(event.getValue(), true);
+            anchorRow_ = row;
+         }
+      }
+   }
+
+   // Call to render the rows in view of the given scroll panel (which the
+   // table must be inside); otherwise only the first page of rows is shown
+   public void setScrollPanel(ScrollPanel scrollPanel)
+   {
+      scrollPanel_ = scrollPanel;
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         @Override
+         public void onScroll(ScrollEvent event)
+         {
+            renderRowsInView(false);
+         }
+      });
+   }
+
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
 
-      setData(new ArrayList<ChunkOrLine>(), PatchMode.Working);
+      // the scroll panel is laid out by now
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         @Override
+         public void execute()
+         {
+            renderRowsInView(true);
+         }
+      });
+   }
+
+   // Renders the rows in view (and a page either side) unless they're
+   // already rendered, or regardless if force is true
+   private void renderRowsInView(boolean force)
+   {
+      // estimate the height of the rows not rendered from those that are
+      int bodyHeight = getTableBodyElement().getOffsetHeight();
+      if (renderedEnd_ > renderedStart_ && bodyHeight > 0)
+         rowHeight_ = (double) bodyHeight / (renderedEnd_ - renderedStart_);
+
+      int rowCount = rows_.getRowCount();
+      int first = 0;
+      int last = Math.min(rowCount, RENDER_PAGE_ROWS);
+
+      if (scrollPanel_ != null && isAttached())
+      {
+         int top = DomUtils.getRelativePosition(scrollPanel_.getElement(),
+                                                getElement()).getY()
+                   - topMargin_;
+         int viewTop = scrollPanel_.getVerticalScrollPosition() - top;
+         int viewBottom = viewTop + scrollPanel_.getOffsetHeight();
+
+         int firstInView = (int) Math.floor(viewTop / rowHeight_);
+         int lastInView = (int) Math.ceil(viewBottom / rowHeight_);
+         if (!force &&
+             (firstInView >= renderedStart_ || renderedStart_ == 0) &&
+             (lastInView <= renderedEnd_ || renderedEnd_ == rowCount))
+         {
+            return;
+         }
+
+         first = Math.max(0, firstInView - RENDER_PAGE_ROWS);
+         last = Math.min(rowCount, lastInView + RENDER_PAGE_ROWS);
+
+         // keep a page rendered when the table is out of view
+         if (first >= rowCount)
+            first = Math.max(0, rowCount - RENDER_PAGE_ROWS);
+         if (last <= first)
+            last = Math.min(rowCount, first + RENDER_PAGE_ROWS);
+      }
+
+      renderedStart_ = first;
+      renderedEnd_ = last;
+      setVisibleRange(first, last - first);
+      setRowData(first, rows_.getRows(first, last - first));
+
+      topMargin_ = (int) Math.round(first * rowHeight_);
+      getElement().getStyle().setMarginTop(topMargin_, Unit.PX);
+      getElement().getStyle().setMarginBottom(
+            (int) Math.round((rowCount - last) * rowHeight_), Unit.PX);
+   }
+
+   // Scrolls the scroll panel so that the given row is rendered and in view
+   private void scrollRowIntoView(int row)
+   {
+      if (scrollPanel_ != null &&
+          (row < renderedStart_ || row >= renderedEnd_))
+      {
+         int top = DomUtils.getRelativePosition(scrollPanel_.getElement(),
+                                                getElement()).getY()
+                   - topMargin_;
+         scrollPanel_.setVerticalScrollPosition(
+               top + (int) Math.round(row * rowHeight_));
+         renderRowsInView(true);
+      }
+
+      if (row >= renderedStart_ && row < renderedEnd_)
+         DomUtils.scrollIntoViewVert(getRowElement(row - renderedStart_));
    }
 
    private void refreshValue(ChunkOrLine value)
    {
-      int index = lines_.indexOf(value);
-      if (index >= 0)
+      int index = rows_.getRowIndex(value);
+      if (index >= renderedStart_ && index < renderedEnd_)
       {
          ArrayList<ChunkOrLine> list = new ArrayList<ChunkOrLine>();
          list.add(value);
          setRowData(index, list);
       }
-
    }
 
    private String intToString(Integer value)
@@ -427,7 +579,7 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
    }
 
    @Override
-   public void setData(ArrayList<ChunkOrLine> diffData, PatchMode patchMode)
+   public void setData(DiffRows diffData, PatchMode patchMode)
    {
       removeStyleName(RES.cellTableStyle().stageMode());
       removeStyleName(RES.cellTableStyle().workingMode());
@@ -441,83 +593,142 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
             break;
       }
 
-      lines_ = diffData;
-      setPageSize(diffData.size());
+      rows_ = diffData;
       selectionModel_.clear();
       firstSelectedLine_ = null;
-      setRowData(diffData);
+      anchorRow_ = -1;
+      setRowCount(diffData.getRowCount(), true);
+      renderRowsInView(true);
+   }
 
-      startRows_.clear();
-      endRows_.clear();
+   // Rows are given borders where runs of insertions and deletions start and
+   // end. Note: the ends don't include the borders between insertions and
+   // deletions, or vice versa. This is to avoid 2px borders between these
+   // regions when just about everything else is 1px.
+   private boolean isStartRow(int row)
+   {
+      if (row == 0)
+         return useStartBorder_;
 
-      Line.Type state = Line.Type.Same;
-      boolean suppressNextStart = true; // Suppress at start to avoid 2px border
-      for (int i = 0; i < lines_.size(); i++)
-      {
-         ChunkOrLine chunkOrLine = lines_.get(i);
-         Line line = chunkOrLine.getLine();
-         boolean isChunk = line == null;
-         Line.Type newState = isChunk ? Line.Type.Same : line.getType();
+      // Suppress after chunk headers to avoid 2px border
+      ChunkOrLine previous = rows_.getRow(row - 1);
+      if (!previous.isLine())
+         return false;
 
-         if (useStartBorder_ && i == 0)
-            startRows_.add(i);
+      Line.Type state = getRowState(rows_.getRow(row));
+      return state != Line.Type.Same && state != getRowState(previous);
+   }
 
-         // Edge case: last line is a diff line
-         if (useEndBorder_ && i == lines_.size() - 1)
-            endRows_.add(i);
+   private boolean isEndRow(int row)
+   {
+      // Edge case: last line is a diff line
+      if (row == rows_.getRowCount() - 1)
+         return useEndBorder_;
+
+      ChunkOrLine next = rows_.getRow(row + 1);
+      return next.isLine() &&
+             getRowState(rows_.getRow(row)) != Line.Type.Same &&
+             getRowState(next) == Line.Type.Same;
+   }
 
-         if (newState != state)
+   private Line.Type getRowState(ChunkOrLine chunkOrLine)
+   {
+      return chunkOrLine.isLine() ? chunkOrLine.getLineType() : Line.Type.Same;
+   }
+
+   // Rows are created as they're rendered, so the first selected line is
+   // identified by its diff index rather than by the row object
+   private boolean isFirstSelectedLine(ChunkOrLine value)
+   {
+      if (firstSelectedLine_ == null || value == null)
+         return firstSelectedLine_ == value;
+      return firstSelectedLine_.getDiffIndex() == value.getDiffIndex();
+   }
+
+   @Override
+   public void moveSelection(boolean up, boolean extend)
+   {
+      int rowCount = rows_.getRowCount();
+      if (rowCount == 0)
+         return;
+
+      int min = rowCount;
+      int max = -1;
+      for (ChunkOrLine value : selectionModel_.getSelectedSet())
+      {
+         int row = rows_.getRowIndex(value);
+         if (row >= 0)
          {
-            // Note: endRows_ doesn't include the borders between insertions and
-            // deletions, or vice versa. This is to avoid 2px borders between
-            // these regions when just about everything else is 1px.
-            if (state != Line.Type.Same && newState == Line.Type.Same && !isChunk)
-               endRows_.add(i-1);
-            if (!suppressNextStart && newState != Line.Type.Same)
-               startRows_.add(i);
-
-            state = newState;
+            min = Math.min(min, row);
+            max = Math.max(max, row);
          }
+      }
 
-         suppressNextStart = isChunk;
+      int row;
+      if (up)
+      {
+         row = Math.max(0, min - 1);
+         if (!canSelectRow(row))
+            row = min;
+      }
+      else
+      {
+         row = Math.min(rowCount - 1, max + 1);
+         if (!canSelectRow(row))
+            row = max;
       }
+
+      if (row < 0 || row >= rowCount)
+         return;
+
+      if (!extend)
+         selectionModel_.clear();
+      selectionModel_.setSelected(rows_.getRow(row), true);
+      anchorRow_ = row;
+      scrollRowIntoView(row);
    }
 
    @Override
-   protected boolean canSelectVisibleRow(int visibleRow)
+   protected void selectAll()
    {
-      if (visibleRow < 0 || visibleRow >= lines_.size())
+      for (int i = 0; i < rows_.getRowCount(); i++)
+         selectionModel_.setSelected(rows_.getRow(i), true);
+   }
+
+   private boolean canSelectRow(int row)
+   {
+      if (row < 0 || row >= rows_.getRowCount())
          return false;
 
-      Line line = lines_.get(visibleRow).getLine();
-      return line != null && (line.getType() == Type.Insertion
-                              || line.getType() == Type.Deletion);
+      ChunkOrLine value = rows_.getRow(row);
+      return value.isLine() && (value.getLineType() == Type.Insertion
+                                || value.getLineType() == Type.Deletion);
    }
 
    @Override
    public void clear()
    {
-      setData(new ArrayList<ChunkOrLine>(), PatchMode.Working);
+      setData(new DiffRows(), PatchMode.Working);
    }
 
    @Override
    public ArrayList<Line> getSelectedLines()
    {
       ArrayList<Line> selected = new ArrayList<Line>();
-      for (ChunkOrLine line : lines_)
-         if (line.getLine() != null && selectionModel_.isSelected(line))
-            selected.add(line.getLine());
+      for (ChunkOrLine value : selectionModel_.getSelectedSet())
+         if (value.isLine())
+            selected.add(value.getLine());
+      Collections.sort(selected);
       return selected;
    }
 
    @Override
    public ArrayList<Line> getAllLines()
    {
-      ArrayList<Line> selected = new ArrayList<Line>();
-      for (ChunkOrLine line : lines_)
-         if (line.getLine() != null)
-            selected.add(line.getLine());
-      return selected;
+      ArrayList<Line> all = new ArrayList<Line>();
+      for (DiffChunk chunk : rows_.getChunks())
+         all.addAll(chunk.getLines());
+      return all;
    }
 
    @Override
@@ -544,14 +755,22 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
    }
 
    private boolean showActions_ = true;
-   private ArrayList<ChunkOrLine> lines_;
+   private DiffRows rows_ = new DiffRows();
    private SwitchableSelectionModel<ChunkOrLine> selectionModel_;
-   private HashSet<Integer> startRows_ = new HashSet<Integer>();
-   private HashSet<Integer> endRows_ = new HashSet<Integer>();
+   // the row shift-click selects from
+   private int anchorRow_ = -1;
+   private ScrollPanel scrollPanel_;
+   // the rows rendered are [renderedStart_, renderedEnd_)
+   private int renderedStart_ = 0;
+   private int renderedEnd_ = 0;
+   private double rowHeight_ = DEFAULT_ROW_HEIGHT;
+   private int topMargin_ = 0;
    private boolean useStartBorder_ = false;
    private boolean useEndBorder_ = true;
    // Keep explicit track of the first selected line so we can render it differently
    private ChunkOrLine firstSelectedLine_;
+   private static final int RENDER_PAGE_ROWS = 100;
+   private static final double DEFAULT_ROW_HEIGHT = 16;
    private static final LineTableViewCellTableResources RES = GWT.create(LineTableViewCellTableResources.class);
    private static final LineActionButtonRenderer blueButtonRenderer_ = LineActionButtonRenderer.createBlue();
    private static final LineActionButtonRenderer grayButtonRenderer_ = LineActionButtonRenderer.createGray();
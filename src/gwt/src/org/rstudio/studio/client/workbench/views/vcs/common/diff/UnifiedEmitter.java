@@ -53,7 +53,10 @@ public class UnifiedEmitter
 
    public void addContext(DiffChunk chunk)
    {
-      contextLines_.addAll(chunk.getLines());
+      // insertions aren't context (see createPatch), so don't create them
+      for (int i = 0; i < chunk.getLineCount(); i++)
+         if (chunk.getLineType(i) != Type.Insertion)
+            contextLines_.add(chunk.getLine(i));
    }
 
    public void addDiffs(ArrayList<Line> lines)
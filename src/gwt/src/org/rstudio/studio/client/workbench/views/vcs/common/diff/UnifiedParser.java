@@ -66,15 +66,60 @@ public class UnifiedParser implements DiffParser
 
    @Override
    public DiffChunk nextChunk()
+   {
+      return readChunk(true, 0);
+   }
+
+   // Finds the next chunk without building its lines, which are parsed
+   // when the chunk is first asked for
+   @Override
+   public LazyDiffChunk nextLazyChunk()
+   {
+      DiffChunk chunk = readChunk(false, 0);
+      if (chunk == null)
+         return null;
+
+      return new LazyDiffChunk(this,
+                               chunkOffset_,
+                               chunk.getDiffIndex(),
+                               diffIndex_ - chunk.getDiffIndex() - 1,
+                               chunk.getRanges().length);
+   }
+
+   // Parses the chunk (of the given number of lines) whose header starts at
+   // the given offset, leaving the parser where it was
+   DiffChunk parseChunkAt(int offset, int diffIndex, int lineCount)
+   {
+      int pos = pos_;
+      int currentDiffIndex = diffIndex_;
+      try
+      {
+         pos_ = offset;
+         diffIndex_ = diffIndex;
+         return readChunk(true, lineCount);
+      }
+      finally
+      {
+         pos_ = pos;
+         diffIndex_ = currentDiffIndex;
+      }
+   }
+
+   // The lines of the chunk are kept as columns (see LineColumns) with
+   // their text as offsets into data_, so reading them creates no objects
+   // per line; lineCount is how many lines to make room for, if known
+   private DiffChunk readChunk(boolean buildLines, int lineCount)
    {
       String nextLine = peekLine();
       if (nextLine != null && isNewFileLine(nextLine))
          return null;
 
       String line;
-      while (null != (line = nextLine()) && !(line.startsWith("@@") || line.startsWith("--- ")))
+      do
       {
+         chunkOffset_ = pos_;
       }
+      while (null != (line = nextLine()) && !(line.startsWith("@@") || line.startsWith("--- ")));
 
       if (line == null)
          return null;
@@ -99,35 +144,47 @@ public class UnifiedParser implements DiffParser
          counts[i] = ranges[i].rowCount;
          positions[i] = ranges[i].startRow-1;
          MASK_ALL[i] = true;
+         // there are at least as many lines as in any one of the files
+         lineCount = Math.max(lineCount, counts[i]);
       }
       int columns = ranges.length - 1;
 
       boolean[] mask = new boolean[ranges.length];
+      boolean[] unmasked = new boolean[ranges.length];
 
-      ArrayList<Line> lines = new ArrayList<Line>();
+      LineColumns lines = buildLines
+            ? new LineColumns(data_, ranges.length, lineCount, diffIndex_)
+            : null;
       for (;
            !isEmpty(counts) || nextLineIsComment();
            diffIndex_++)
       {
-         String diffLine = nextLine();
-         if (diffLine == null)
+         if (!advanceLine())
             throw new DiffFormatException("Diff ended prematurely");
-         if (diffLine.length() < columns)
+         if (lineEnd_ - lineStart_ < columns)
             throw new DiffFormatException("Unexpected line format");
 
          int directive = ' ';
          for (int i = 0; i < columns; i++)
          {
-            mask[i] = diffLine.charAt(i) != ' ';
+            char c = data_.charAt(lineStart_ + i);
+            mask[i] = c != ' ';
             if (mask[i])
             {
                if (directive == ' ')
-                  directive = diffLine.charAt(i);
-               else if (directive != diffLine.charAt(i))
+                  directive = c;
+               else if (directive != c)
                   throw new DiffFormatException("Conflicting directives");
             }
          }
 
+         if (!buildLines)
+         {
+            skipLine(directive, positions, counts, mask, MASK_ALL);
+            continue;
+         }
+
+         int textStart = lineStart_ + columns;
          switch (directive)
          {
             case ' ':
@@ -135,43 +192,28 @@ public class UnifiedParser implements DiffParser
 
                addToSelected(positions, MASK_ALL, +1);
                addToSelected(counts, MASK_ALL, -1);
-               lines.add(new Line(Type.Same,
-                                  MASK_ALL,
-                                  clone(positions),
-                                  diffLine.substring(columns),
-                                  diffIndex_));
+               lines.add(Type.Same, MASK_ALL, positions, textStart, lineEnd_);
                break;
             case '-':
                // Masked positions increase by one
 
                addToSelected(positions, mask, +1);
                addToSelected(counts, mask, -1);
-               lines.add(new Line(Type.Deletion,
-                                  clone(mask),
-                                  clone(positions),
-                                  diffLine.substring(columns),
-                                  diffIndex_));
+               lines.add(Type.Deletion, mask, positions, textStart, lineEnd_);
                break;
             case '+':
                // Unmasked positions increase by one (including new)
 
                addToUnselected(positions, mask, +1);
                addToUnselected(counts, mask, -1);
-               lines.add(new Line(Type.Insertion,
-                                  complement(mask),
-                                  clone(positions),
-                                  diffLine.substring(columns),
-                                  diffIndex_));
+               complement(mask, unmasked);
+               lines.add(Type.Insertion, unmasked, positions, textStart, lineEnd_);
                break;
             case '\\':
                // No positions move??
 
                // e.g. "\\ No newline at end of file"
-               lines.add(new Line(Type.Comment,
-                                  MASK_NONE,
-                                  clone(positions),
-                                  diffLine.substring(columns),
-                                  diffIndex_));
+               lines.add(Type.Comment, MASK_NONE, positions, textStart, lineEnd_);
                break;
             default:
                throw new DiffFormatException("Unexpected leading character");
@@ -184,31 +226,44 @@ public class UnifiedParser implements DiffParser
       return new DiffChunk(ranges, chunkHeaderInfo.extraInfo, lines, chunkDiffIndex);
    }
 
-   private boolean isNewFileLine(String nextLine)
+   // Moves the positions and counts past a line as readChunk does, without
+   // building it
+   private void skipLine(int directive,
+                         int[] positions,
+                         int[] counts,
+                         boolean[] mask,
+                         boolean[] maskAll)
    {
-      return nextLine.startsWith("diff ") || nextLine.startsWith("Index: ");
-   }
-
-   private boolean[] complement(boolean[] array)
-   {
-      boolean[] newArray = new boolean[array.length];
-      for (int i = 0; i < array.length; i++)
-         newArray[i] = !array[i];
-      return newArray;
+      switch (directive)
+      {
+         case ' ':
+            addToSelected(positions, maskAll, +1);
+            addToSelected(counts, maskAll, -1);
+            break;
+         case '-':
+            addToSelected(positions, mask, +1);
+            addToSelected(counts, mask, -1);
+            break;
+         case '+':
+            addToUnselected(positions, mask, +1);
+            addToUnselected(counts, mask, -1);
+            break;
+         case '\\':
+            break;
+         default:
+            throw new DiffFormatException("Unexpected leading character");
+      }
    }
 
-   private int[] clone(int[] array)
+   private boolean isNewFileLine(String nextLine)
    {
-      int[] newArray = new int[array.length];
-      System.arraycopy(array, 0, newArray, 0, array.length);
-      return newArray;
+      return nextLine.startsWith("diff ") || nextLine.startsWith("Index: ");
    }
 
-   private boolean[] clone(boolean[] array)
+   private void complement(boolean[] array, boolean[] result)
    {
-      boolean[] newArray = new boolean[array.length];
-      System.arraycopy(array, 0, newArray, 0, array.length);
-      return newArray;
+      for (int i = 0; i < array.length; i++)
+         result[i] = !array[i];
    }
 
    private void addToSelected(int[] array, boolean[] mask, int value)
@@ -271,13 +326,27 @@ public class UnifiedParser implements DiffParser
 
    private String nextLine(boolean peek)
    {
-      if (isEOD())
+      int pos = pos_;
+      if (!advanceLine())
          return null;
 
+      if (peek)
+         pos_ = pos;
+
+      return data_.substring(lineStart_, lineEnd_);
+   }
+
+   // Moves past the next line, setting lineStart_ and lineEnd_ to its
+   // bounds; returns false at the end of the data
+   private boolean advanceLine()
+   {
+      if (isEOD())
+         return false;
+
       int head = pos_;
-      // i will point to the tail (exclusive) of the string to be returned
+      // i will point to the tail (exclusive) of the line
       int i = data_.indexOf('\n', head);
-      // length will indicate how far past i we should set pos_ to (unless peek)
+      // length will indicate how far past i we should set pos_ to
       int length;
 
       if (i == -1)
@@ -295,15 +364,20 @@ public class UnifiedParser implements DiffParser
          length = 1;
       }
 
-      if (!peek)
-         pos_ = i + length;
-
-      return data_.substring(head, i);
+      pos_ = i + length;
+      lineStart_ = head;
+      lineEnd_ = i;
+      return true;
    }
 
    private final String data_;
    private int pos_;
    private int diffIndex_;
+   // where the header of the chunk last read starts
+   private int chunkOffset_;
+   // the bounds of the line last read (excluding its line ending)
+   private int lineStart_;
+   private int lineEnd_;
 }
 
 
@@ -15,6 +15,7 @@
 package org.rstudio.studio.client.workbench.views.vcs.common.events;
 
 import com.google.gwt.event.shared.GwtEvent;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 
 public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
 {
@@ -22,6 +23,7 @@ public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
 
    private final Reason reason_;
    private final int delayMs_;
+   private final StatusDelta statusDelta_;
 
    public static final Type<VcsRefreshHandler> TYPE = new Type<VcsRefreshHandler>();
 
@@ -34,6 +36,14 @@ public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
    {
       reason_ = reason;
       delayMs_ = delayMs;
+      statusDelta_ = null;
+   }
+
+   public VcsRefreshEvent(StatusDelta statusDelta)
+   {
+      reason_ = Reason.FileChange;
+      delayMs_ = 0;
+      statusDelta_ = statusDelta;
    }
 
    public Reason getReason()
@@ -46,6 +56,12 @@ public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
       return delayMs_;
    }
 
+   // The entries of the status that changed, or null if all of it may have
+   public StatusDelta getStatusDelta()
+   {
+      return statusDelta_;
+   }
+
    @Override
    public Type<VcsRefreshHandler> getAssociatedType()
    {
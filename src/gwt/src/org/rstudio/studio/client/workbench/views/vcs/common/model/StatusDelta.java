@@ -0,0 +1,50 @@
+/*
+ * StatusDelta.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.model;
+
+import org.rstudio.studio.client.common.vcs.StatusAndPath;
+
+import java.util.ArrayList;
+
+// The entries of a VcsState's status that changed since it was last
+// reported: those added or given a new status, and the raw paths of those
+// removed
+public class StatusDelta
+{
+   public StatusDelta(ArrayList<StatusAndPath> updated,
+                      ArrayList<String> removed)
+   {
+      updated_ = updated;
+      removed_ = removed;
+   }
+
+   public ArrayList<StatusAndPath> getUpdated()
+   {
+      return updated_;
+   }
+
+   public ArrayList<String> getRemoved()
+   {
+      return removed_;
+   }
+
+   public boolean isEmpty()
+   {
+      return updated_.isEmpty() && removed_.isEmpty();
+   }
+
+   private final ArrayList<StatusAndPath> updated_;
+   private final ArrayList<String> removed_;
+}
@@ -14,6 +14,8 @@
  */
 package org.rstudio.studio.client.workbench.views.vcs.common.model;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
@@ -37,7 +39,14 @@ import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEve
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+// The status of the files in the working copy. The status is indexed by
+// raw path, so that the status of a single file changing on disk is applied
+// in constant time; such changes are reported to handlers as a StatusDelta,
+// once per animation frame however many arrive in it.
 public abstract class VcsState
 {
    public VcsState(EventBus eventBus,
@@ -104,25 +113,9 @@ public abstract class VcsState
 
             if (status_ != null && status != null)
             {
-               for (int i = 0; i < status_.size(); i++)
-               {
-                  if (status.getRawPath().equals(status_.get(i).getRawPath()))
-                  {
-                     if (StringUtil.notNull(status.getStatus()).trim().length() == 0)
-                        status_.remove(i);
-                     else
-                        status_.set(i, status);
-                     handlers_.fireEvent(new VcsRefreshEvent(Reason.FileChange));
-                     return;
-                  }
-               }
-
-               if (status.getStatus().trim().length() != 0)
-               {
-                  status_.add(status);
-                  handlers_.fireEvent(new VcsRefreshEvent(Reason.FileChange));
-                  return;
-               }
+               // newer than any page of the snapshot still to be read
+               deltaGenerations_.put(status.getRawPath(), ++generation_);
+               updateStatus(status);
             }
          }
       }));
@@ -172,12 +165,133 @@ public abstract class VcsState
       return status_;
    }
 
+   // Replaces the whole status, as read from the server. Handlers are then
+   // expected to be sent a VcsRefreshEvent without a StatusDelta, which
+   // supersedes any changes not yet reported. Returns the generation of the
+   // snapshot, to be given to addStatus with the rest of it.
+   protected int setStatus(ArrayList<StatusAndPath> status)
+   {
+      status_ = status;
+      statusIndex_.clear();
+      pendingChanges_.clear();
+      deltaGenerations_.clear();
+      if (status_ != null)
+      {
+         for (int i = 0; i < status_.size(); i++)
+            statusIndex_.put(status_.get(i).getRawPath(), i);
+      }
+      snapshotGeneration_ = ++generation_;
+      return snapshotGeneration_;
+   }
+
+   // Merges more of the status into it, as when the rest of a large status
+   // is read from the server a page at a time after setStatus was given the
+   // first page; handlers are sent them as a StatusDelta. The pages are of
+   // the snapshot of the given generation, so an entry for a file that has
+   // changed since is out of date and is ignored, as are the pages of a
+   // snapshot that has been replaced.
+   protected void addStatus(ArrayList<StatusAndPath> status, int generation)
+   {
+      if (status_ == null || generation != snapshotGeneration_)
+         return;
+
+      for (StatusAndPath entry : status)
+      {
+         Integer changed = deltaGenerations_.get(entry.getRawPath());
+         if (changed != null && changed > generation)
+            continue;
+         updateStatus(entry);
+      }
+   }
+
    public void refresh()
    {
       if (session_.getSessionInfo().isVcsEnabled())
          refresh(true);
    }
 
+   private void updateStatus(StatusAndPath status)
+   {
+      String rawPath = status.getRawPath();
+      Integer index = statusIndex_.get(rawPath);
+      if (StringUtil.notNull(status.getStatus()).trim().length() == 0)
+      {
+         if (index == null)
+            return;
+
+         // move the last entry into the removed one's place
+         StatusAndPath last = status_.remove(status_.size() - 1);
+         if (index < status_.size())
+         {
+            status_.set(index, last);
+            statusIndex_.put(last.getRawPath(), index);
+         }
+         statusIndex_.remove(rawPath);
+         pendingChanges_.put(rawPath, null);
+      }
+      else
+      {
+         if (index == null)
+         {
+            statusIndex_.put(rawPath, status_.size());
+            status_.add(status);
+         }
+         else if (isSameStatus(status_.get(index), status))
+         {
+            // e.g. saving a file that was already modified
+            return;
+         }
+         else
+         {
+            status_.set(index, status);
+         }
+         pendingChanges_.put(rawPath, status);
+      }
+
+      if (!frameRequested_)
+      {
+         frameRequested_ = true;
+         AnimationScheduler.get().requestAnimationFrame(new AnimationCallback()
+         {
+            @Override
+            public void execute(double timestamp)
+            {
+               frameRequested_ = false;
+               fireStatusDelta();
+            }
+         });
+      }
+   }
+
+   private void fireStatusDelta()
+   {
+      if (pendingChanges_.isEmpty())
+         return;
+
+      ArrayList<StatusAndPath> updated = new ArrayList<StatusAndPath>();
+      ArrayList<String> removed = new ArrayList<String>();
+      for (Map.Entry<String, StatusAndPath> change : pendingChanges_.entrySet())
+      {
+         if (change.getValue() == null)
+            removed.add(change.getKey());
+         else
+            updated.add(change.getValue());
+      }
+      pendingChanges_.clear();
+
+      handlers_.fireEvent(new VcsRefreshEvent(new StatusDelta(updated, removed)));
+   }
+
+   private static boolean isSameStatus(StatusAndPath a, StatusAndPath b)
+   {
+      return a.getStatus().equals(b.getStatus()) &&
+             StringUtil.notNull(a.getPath()).equals(StringUtil.notNull(b.getPath())) &&
+             StringUtil.notNull(a.getChangelist()).equals(
+                   StringUtil.notNull(b.getChangelist())) &&
+             a.isDiscardable() == b.isDiscardable() &&
+             a.isDirectory() == b.isDirectory();
+   }
+
    protected abstract StatusAndPathInfo getStatusFromFile(FileSystemItem file);
 
    protected abstract boolean needsFullRefresh(FileSystemItem file);
@@ -187,7 +301,22 @@ public abstract class VcsState
    protected abstract boolean isInitialized();
 
    protected final HandlerManager handlers_ = new HandlerManager(this);
-   protected ArrayList<StatusAndPath> status_;
+   private ArrayList<StatusAndPath> status_;
+   // the index of each entry of status_, by raw path
+   private final HashMap<String, Integer> statusIndex_ =
+         new HashMap<String, Integer>();
+   // changes not yet reported to handlers, by raw path (null if removed)
+   private final LinkedHashMap<String, StatusAndPath> pendingChanges_ =
+         new LinkedHashMap<String, StatusAndPath>();
+   private boolean frameRequested_;
+   // incremented with each snapshot of the status and each change to a file
+   private int generation_ = 0;
+   // the generation of the current snapshot
+   private int snapshotGeneration_ = 0;
+   // the generation of the latest change to each file since the snapshot,
+   // by raw path
+   private final HashMap<String, Integer> deltaGenerations_ =
+         new HashMap<String, Integer>();
    protected final EventBus eventBus_;
    protected final GlobalDisplay globalDisplay_;
    protected final Session session_;
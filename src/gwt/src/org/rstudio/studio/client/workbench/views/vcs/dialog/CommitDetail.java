@@ -20,7 +20,6 @@ import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
-import com.google.gwt.event.dom.client.HasClickHandlers;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.i18n.client.DateTimeFormat;
 import com.google.gwt.i18n.client.DateTimeFormat.PredefinedFormat;
@@ -41,8 +40,6 @@ import org.rstudio.studio.client.workbench.views.vcs.common.events.ViewFileRevis
 import org.rstudio.studio.client.workbench.views.vcs.common.events.ViewFileRevisionHandler;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.HistoryPresenter.CommitDetailDisplay;
 
-import java.util.ArrayList;
-
 public class CommitDetail extends Composite implements CommitDetailDisplay
 {
    interface Binder extends UiBinder<Widget, CommitDetail>
@@ -50,8 +47,6 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
 
    public CommitDetail()
    {
-      sizeWarning_ = new SizeWarningWidget("commit");
-      sizeWarning_.setVisible(false);
       progressPanel_ = new ProgressPanel(ProgressImages.createLargeGray());
       initWidget(GWT.<Binder>create(Binder.class).createAndBindUi(this));
       
@@ -119,21 +114,14 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
             if (fileHeader == null)
                return false;
 
-            int filesCompared = 2;
-            ArrayList<ChunkOrLine> lines = new ArrayList<ChunkOrLine>();
-            DiffChunk chunk;
-            while (null != (chunk = unifiedParser.nextChunk()))
-            {
-               if (!chunk.shouldIgnore())
-                  filesCompared = chunk.getRanges().length;
-               lines.addAll(ChunkOrLine.fromChunk(chunk));
-            }
+            DiffRows rows = DiffRows.fromParser(unifiedParser);
 
-            LineTableView view = new LineTableView(filesCompared);
+            LineTableView view = new LineTableView(rows.getFilesCompared());
             view.setUseStartBorder(true);
             view.setUseEndBorder(false);
             view.setShowActions(false);
-            view.setData(lines, PatchMode.Stage);
+            view.setScrollPanel(container_);
+            view.setData(rows, PatchMode.Stage);
             view.setWidth("100%");
             
             final DiffFrame diffFrame = new DiffFrame(
@@ -206,15 +194,6 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
       labelParent_.setText(commit_.getParent());
    }
 
-   public void showSizeWarning(long sizeInBytes)
-   {
-      tocPanel_.setVisible(false);
-      detailPanel_.setVisible(false);
-      setProgressVisible(false);
-      sizeWarning_.setSize(sizeInBytes);
-      sizeWarning_.setVisible(true);
-   }
-
    private void setProgressVisible(boolean visible)
    {
       if (visible)
@@ -229,18 +208,6 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
       }
    }
 
-   public void hideSizeWarning()
-   {
-      tocPanel_.setVisible(true);
-      detailPanel_.setVisible(true);
-      sizeWarning_.setVisible(false);
-   }
-
-   public HasClickHandlers getOverrideSizeWarningButton()
-   {
-      return sizeWarning_;
-   }
-
    private final Invalidation invalidation_ = new Invalidation();
    private CommitInfo commit_;
    @UiField
@@ -261,8 +228,6 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
    ProgressPanel progressPanel_;
    @UiField
    VerticalPanel detailPanel_;
-   @UiField(provided = true)
-   SizeWarningWidget sizeWarning_;
    @UiField
    TableRowElement parentTableRow_;
    @UiField
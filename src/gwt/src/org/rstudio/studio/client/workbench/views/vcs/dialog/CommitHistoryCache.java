@@ -0,0 +1,176 @@
+/*
+ * CommitHistoryCache.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.dialog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pages of commit history, and the number of commits, as read from the
+ * server for each query (revision range, file filter and search text). The
+ * least recently used pages and counts are dropped once there are more than
+ * the cache holds.
+ */
+public class CommitHistoryCache
+{
+   public static class Query
+   {
+      public Query(String revision, String path, String searchText)
+      {
+         revision_ = revision == null ? "" : revision;
+         path_ = path == null ? "" : path;
+         searchText_ = searchText == null ? "" : searchText;
+      }
+
+      @Override
+      public boolean equals(Object o)
+      {
+         if (!(o instanceof Query))
+            return false;
+
+         Query other = (Query) o;
+         return revision_.equals(other.revision_) &&
+                path_.equals(other.path_) &&
+                searchText_.equals(other.searchText_);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return (revision_.hashCode() * 31 + path_.hashCode()) * 31 +
+                searchText_.hashCode();
+      }
+
+      private final String revision_;
+      private final String path_;
+      private final String searchText_;
+   }
+
+   public static class Page
+   {
+      public Page(Query query, int start, int length)
+      {
+         query_ = query;
+         start_ = start;
+         length_ = length;
+      }
+
+      public Query getQuery()
+      {
+         return query_;
+      }
+
+      public int getStart()
+      {
+         return start_;
+      }
+
+      public int getLength()
+      {
+         return length_;
+      }
+
+      // The page after this one, of the same length
+      public Page next()
+      {
+         return new Page(query_, start_ + length_, length_);
+      }
+
+      @Override
+      public boolean equals(Object o)
+      {
+         if (!(o instanceof Page))
+            return false;
+
+         Page other = (Page) o;
+         return start_ == other.start_ &&
+                length_ == other.length_ &&
+                query_.equals(other.query_);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return (query_.hashCode() * 31 + start_) * 31 + length_;
+      }
+
+      private final Query query_;
+      private final int start_;
+      private final int length_;
+   }
+
+   public CommitHistoryCache(int maxPages, int maxCounts)
+   {
+      pages_ = new LruMap<Page, ArrayList<CommitInfo>>(maxPages);
+      counts_ = new LruMap<Query, Integer>(maxCounts);
+   }
+
+   // Returns the commits of the page, or null if they aren't cached
+   public ArrayList<CommitInfo> getCommits(Page page)
+   {
+      return pages_.get(page);
+   }
+
+   public void putCommits(Page page, ArrayList<CommitInfo> commits)
+   {
+      pages_.put(page, commits);
+
+      // a short page is the end of the history
+      if (commits.size() < page.getLength())
+         counts_.put(page.getQuery(), page.getStart() + commits.size());
+   }
+
+   // Returns the number of commits the query matches, or null if it isn't
+   // cached
+   public Integer getCount(Query query)
+   {
+      return counts_.get(query);
+   }
+
+   public void putCount(Query query, int count)
+   {
+      counts_.put(query, count);
+   }
+
+   public void clear()
+   {
+      pages_.clear();
+      counts_.clear();
+   }
+
+   // A map in order of access, dropping the least recently accessed entry
+   // when there are too many
+   private static class LruMap<K, V> extends LinkedHashMap<K, V>
+   {
+      public LruMap(int maxSize)
+      {
+         super(16, 0.75f, true);
+         maxSize_ = maxSize;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+      {
+         return size() > maxSize_;
+      }
+
+      private final int maxSize_;
+      private static final long serialVersionUID = 1L;
+   }
+
+   private final LruMap<Page, ArrayList<CommitInfo>> pages_;
+   private final LruMap<Query, Integer> counts_;
+}
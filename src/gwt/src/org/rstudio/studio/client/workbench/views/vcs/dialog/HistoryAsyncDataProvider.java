@@ -28,6 +28,12 @@ import org.rstudio.studio.client.common.Value;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Pages of history are cached by query (revision, file filter and search
+// text) along with their count, and the page after the one shown is read
+// ahead, so that paging back and forth doesn't go back to the server
 public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitInfo>
 {
    @Inject
@@ -66,8 +72,25 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
    
    
 
+   // Drops the cached history, e.g. once commits have been made
+   public void clearCache()
+   {
+      cache_.clear();
+      pending_.clear();
+      generation_++;
+   }
+
    public void refreshCount()
    {
+      final CommitHistoryCache.Query query = getQuery();
+      Integer count = cache_.getCount(query);
+      if (count != null)
+      {
+         updateRowCount(count, true);
+         return;
+      }
+
+      final int generation = generation_;
       getHistoryCount(
             rev_, 
             fileFilter_.getValue(), 
@@ -77,6 +100,13 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
          @Override
          public void onResponseReceived(CommitCount response)
          {
+            if (generation == generation_)
+               cache_.putCount(query, response.getCount());
+
+            // the filters have changed since; another count is on its way
+            if (!query.equals(getQuery()))
+               return;
+
             updateRowCount(response.getCount(), true);
          }
 
@@ -98,23 +128,92 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
       if (length == 0)
          return;
 
+      CommitHistoryCache.Page page =
+            new CommitHistoryCache.Page(getQuery(), start, length);
+      ArrayList<CommitInfo> commits = cache_.getCommits(page);
+      if (commits != null)
+      {
+         showCommits(page, commits);
+         prefetch(page.next());
+         return;
+      }
+
+      PageRequest request = pending_.get(page);
+      if (request != null)
+      {
+         // being prefetched; show it when it arrives
+         request.display = display;
+         return;
+      }
+
+      requestPage(page, display);
+   }
+
+   // Reads the page into the cache in the background, unless it's past the
+   // end of the history or already read
+   private void prefetch(CommitHistoryCache.Page page)
+   {
+      Integer count = cache_.getCount(page.getQuery());
+      if (count != null && page.getStart() >= count)
+         return;
+
+      if (cache_.getCommits(page) != null || pending_.containsKey(page))
+         return;
+
+      requestPage(page, null);
+   }
+
+   // Reads the page from the server into the cache, and shows it in the
+   // display if there is one
+   private void requestPage(final CommitHistoryCache.Page page,
+                            HasData<CommitInfo> display)
+   {
+      final PageRequest request = new PageRequest();
+      request.display = display;
+      pending_.put(page, request);
+
+      final int start = page.getStart();
+      final int generation = generation_;
       getHistory(
             rev_, fileFilter_.getValue(),
-            start, length, searchText_.getValue(),
+            start, page.getLength(), searchText_.getValue(),
             new SimpleRequestCallback<RpcObjectList<CommitInfo>>("Error Fetching History")
             {
                @Override
                public void onResponseReceived(RpcObjectList<CommitInfo> response)
                {
-                  super.onResponseReceived(response);
-                  if (response.length() < length)
-                     updateRowCount(start + response.length(), true);
-                  updateRowData(start, response.toArrayList());
+                  // pages read before the cache was cleared are shown if
+                  // they're waited for, but not cached
+                  boolean current = generation == generation_;
+                  ArrayList<CommitInfo> commits = response.toArrayList();
+                  if (current)
+                  {
+                     pending_.remove(page);
+                     cache_.putCommits(page, commits);
+                  }
+
+                  if (request.display != null && isShowing(page, request.display))
+                  {
+                     showCommits(page, commits);
+                     if (current)
+                        prefetch(page.next());
+                  }
                }
 
                @Override
                public void onError(ServerError error)
                {
+                  if (generation == generation_)
+                     pending_.remove(page);
+
+                  HasData<CommitInfo> display = request.display;
+                  if (display == null)
+                  {
+                     // a failed prefetch is read again if it's shown
+                     Debug.logError(error);
+                     return;
+                  }
+
                   if (display instanceof AbstractHasData)
                   {
                      display.setVisibleRangeAndClearData(new Range(start, 0), true);
@@ -127,6 +226,40 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
             });
    }
 
+   private void showCommits(CommitHistoryCache.Page page,
+                            ArrayList<CommitInfo> commits)
+   {
+      if (commits.size() < page.getLength())
+         updateRowCount(page.getStart() + commits.size(), true);
+      updateRowData(page.getStart(), commits);
+   }
+
+   // Whether the display is still waiting for the page (the filters or the
+   // page it shows may have changed since it was asked for)
+   private boolean isShowing(CommitHistoryCache.Page page,
+                             HasData<CommitInfo> display)
+   {
+      Range range = display.getVisibleRange();
+      return page.getQuery().equals(getQuery()) &&
+             range.getStart() == page.getStart() &&
+             range.getLength() == page.getLength();
+   }
+
+   private CommitHistoryCache.Query getQuery()
+   {
+      FileSystemItem fileFilter = fileFilter_.getValue();
+      return new CommitHistoryCache.Query(
+            rev_,
+            fileFilter == null ? null : fileFilter.getPath(),
+            searchText_.getValue());
+   }
+
+   private static class PageRequest
+   {
+      // where to show the page when it arrives, or null if it's a prefetch
+      public HasData<CommitInfo> display;
+   }
+
    protected abstract void getHistoryCount(
          String revision,
          FileSystemItem fileFilter,
@@ -145,4 +278,17 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
    private HasValue<String> searchText_;
    private HasValue<FileSystemItem> fileFilter_;
    private HistoryStrategy strategy_;
+
+   private final CommitHistoryCache cache_ =
+         new CommitHistoryCache(MAX_CACHED_PAGES, MAX_CACHED_COUNTS);
+   // the pages being read from the server
+   private final HashMap<CommitHistoryCache.Page, PageRequest> pending_ =
+         new HashMap<CommitHistoryCache.Page, PageRequest>();
+   // incremented when the cache is cleared, so that pages read before then
+   // aren't cached
+   private int generation_ = 0;
+
+   // e.g. 5000 commits, at the history's 100 a page
+   private static final int MAX_CACHED_PAGES = 50;
+   private static final int MAX_CACHED_COUNTS = 20;
 }
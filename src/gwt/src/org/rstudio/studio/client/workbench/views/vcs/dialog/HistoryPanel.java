@@ -151,12 +151,6 @@ public class HistoryPanel extends Composite implements Display
       return commitDetail_;
    }
 
-   @Override
-   public HasClickHandlers getOverrideSizeWarningButton()
-   {
-      return commitDetail_.getOverrideSizeWarningButton();
-   }
-
    @Override
    public HasClickHandlers getRefreshButton()
    {
@@ -208,18 +202,6 @@ public class HistoryPanel extends Composite implements Display
       return branchToolbarButton_.addValueChangeHandler(handler);
    }
   
-   @Override
-   public void showSizeWarning(long sizeInBytes)
-   {
-      commitDetail_.showSizeWarning(sizeInBytes);
-   }
-
-   @Override
-   public void hideSizeWarning()
-   {
-      commitDetail_.hideSizeWarning();
-   }
-
    @Override
    public void onShow()
    {
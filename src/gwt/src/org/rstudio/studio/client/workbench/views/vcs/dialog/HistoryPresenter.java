@@ -21,7 +21,6 @@ import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.event.shared.HasHandlers;
-import com.google.gwt.json.client.JSONNumber;
 import com.google.gwt.user.cellview.client.LoadingStateChangeEvent;
 import com.google.gwt.user.cellview.client.LoadingStateChangeEvent.LoadingState;
 import com.google.gwt.user.client.ui.HasValue;
@@ -52,6 +51,8 @@ import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.model.Session;
 import org.rstudio.studio.client.workbench.views.vcs.common.diff.DiffParser;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.SwitchViewEvent;
+import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEvent;
+import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.ViewFileRevisionEvent;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.ViewFileRevisionHandler;
 import org.rstudio.studio.client.workbench.views.vcs.git.dialog.GitHistoryStrategy;
@@ -70,8 +71,6 @@ public class HistoryPresenter
       CommitListDisplay getCommitList();
       CommitDetailDisplay getCommitDetail();
 
-      HasClickHandlers getOverrideSizeWarningButton();
-
       HasClickHandlers getRefreshButton();
 
       HasData<CommitInfo> getDataDisplay();
@@ -87,9 +86,6 @@ public class HistoryPresenter
 
       void removeBranchToolbarButton();
       void removeSearchTextBox();
-      
-      void showSizeWarning(long sizeInBytes);
-      void hideSizeWarning();
 
       void onShow();
    }
@@ -168,7 +164,7 @@ public class HistoryPresenter
          @Override
          public void onSelectionChange(SelectionChangeEvent event)
          {
-            showCommitDetail(false);
+            showCommitDetail();
          }
       });
       view_.getCommitList().addRangeChangeHandler(new Handler()
@@ -194,16 +190,20 @@ public class HistoryPresenter
          @Override
          public void onClick(ClickEvent event)
          {
+            strategy_.clearHistoryCache();
             refreshHistory();
          }
       });
 
-      view_.getOverrideSizeWarningButton().addClickHandler(new ClickHandler()
+      // commits, pulls, checkouts etc. are followed by a full refresh (as
+      // opposed to a change to the status of individual files)
+      strategy_.addVcsRefreshHandler(new VcsRefreshHandler()
       {
          @Override
-         public void onClick(ClickEvent event)
+         public void onVcsRefresh(VcsRefreshEvent event)
          {
-            showCommitDetail(true);
+            if (event.getStatusDelta() == null)
+               strategy_.clearHistoryCache();
          }
       });
 
@@ -319,21 +319,15 @@ public class HistoryPresenter
       });
    }
 
-   private void showCommitDetail(boolean noSizeWarning)
+   private void showCommitDetail()
    {
       final CommitInfo commitInfo = view_.getCommitList().getSelectedCommit();
 
-      if (!noSizeWarning
-          && commitInfo != null
-          && commitInfo.getId().equals(commitShowing_))
-      {
+      if (commitInfo != null && commitInfo.getId().equals(commitShowing_))
          return;
-      }
 
       commitShowing_ = null;
 
-      view_.hideSizeWarning();
-
       view_.getCommitDetail().setSelectedCommit(commitInfo);
       view_.getCommitDetail().showDetailProgress();
       invalidation_.invalidate();
@@ -345,7 +339,6 @@ public class HistoryPresenter
 
       strategy_.showCommit(
             commitInfo.getId(),
-            noSizeWarning,
             new SimpleRequestCallback<String>()
             {
                @Override
@@ -366,10 +359,7 @@ public class HistoryPresenter
                {
                   commitShowing_ = null;
 
-                  JSONNumber size = error.getClientInfo().isNumber();
-                  if (size != null)
-                     view_.showSizeWarning((long) size.doubleValue());
-                  else if (strategy_.getShowHistoryErrors())
+                  if (strategy_.getShowHistoryErrors())
                      super.onError(error);
                   else
                      Debug.logError(error);
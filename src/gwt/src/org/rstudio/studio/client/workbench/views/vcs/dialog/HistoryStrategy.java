@@ -49,7 +49,6 @@ public interface HistoryStrategy
    HandlerRegistration addVcsRefreshHandler(VcsRefreshHandler refreshHandler);
 
    void showCommit(String commitId,
-                   boolean noSizeWarning,
                    ServerRequestCallback<String> requestCallback);
 
    void addDataDisplay(HasData<CommitInfo> display);
@@ -57,6 +56,9 @@ public interface HistoryStrategy
 
    void refreshCount();
 
+   // Drops history read before now, so that it's read again when next shown
+   void clearHistoryCache();
+
    void initializeHistory(HasData<CommitInfo> dataDisplay);
 
    AbstractPager getPager();
@@ -66,7 +66,10 @@ public class GitChangelistTablePresenter
          @Override
          public void onVcsRefresh(VcsRefreshEvent event)
          {
-            view_.setItems(gitState_.getStatus());
+            if (event.getStatusDelta() != null)
+               view_.updateItems(event.getStatusDelta());
+            else
+               view_.setItems(gitState_.getStatus());
             
             RemoteBranchInfo remote = gitState_.getRemoteBranchInfo();
             if (remote != null && remote.getCommitsBehind() > 0)
@@ -32,6 +32,7 @@ import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.model.Session;
 import org.rstudio.studio.client.workbench.ui.WorkbenchPane;
 import org.rstudio.studio.client.workbench.views.vcs.CheckoutBranchToolbarButton;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 import org.rstudio.studio.client.workbench.views.vcs.git.GitPresenter.Display;
 
 import java.util.ArrayList;
@@ -142,6 +143,12 @@ public class GitPane extends WorkbenchPane implements Display
       table_.setItems(items);
    }
 
+   @Override
+   public void updateItems(StatusDelta delta)
+   {
+      table_.updateItems(delta);
+   }
+
    @Override
    public ArrayList<String> getSelectedPaths()
    {
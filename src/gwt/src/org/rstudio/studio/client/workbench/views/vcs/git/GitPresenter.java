@@ -45,6 +45,7 @@ import org.rstudio.studio.client.workbench.views.vcs.common.VCSFileOpener;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEvent;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
 import org.rstudio.studio.client.workbench.views.vcs.common.model.GitHubViewRequest;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 import org.rstudio.studio.client.workbench.views.vcs.git.model.GitState;
 
 import java.util.ArrayList;
@@ -56,6 +57,7 @@ public class GitPresenter extends BaseVcsPresenter implements IsWidget
    public interface Display extends WorkbenchView, IsWidget
    {
       void setItems(ArrayList<StatusAndPath> items);
+      void updateItems(StatusDelta delta);
       ArrayList<String> getSelectedPaths();
       ArrayList<StatusAndPath> getSelectedItems();
       int getSelectedItemCount();
@@ -98,7 +100,10 @@ public class GitPresenter extends BaseVcsPresenter implements IsWidget
          @Override
          public void onVcsRefresh(VcsRefreshEvent event)
          {
-            view_.setItems(gitState_.getStatus());
+            if (event.getStatusDelta() != null)
+               view_.updateItems(event.getStatusDelta());
+            else
+               view_.setItems(gitState_.getStatus());
          }
       });
 
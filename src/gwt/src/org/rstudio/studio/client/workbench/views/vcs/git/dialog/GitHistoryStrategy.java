@@ -116,10 +116,10 @@ public class GitHistoryStrategy implements HistoryStrategy
 
    @Override
    public void showCommit(String commitId,
-                          boolean noSizeWarning,
                           ServerRequestCallback<String> requestCallback)
    {
-      server_.gitShow(commitId, noSizeWarning, requestCallback);
+      // commits are rendered as they're scrolled, however large
+      server_.gitShow(commitId, true, requestCallback);
    }
 
    @Override
@@ -140,6 +140,12 @@ public class GitHistoryStrategy implements HistoryStrategy
       dataProvider_.refreshCount();
    }
 
+   @Override
+   public void clearHistoryCache()
+   {
+      dataProvider_.clearCache();
+   }
+
    @Override
    public void initializeHistory(HasData<CommitInfo> dataDisplay)
    {
@@ -49,11 +49,10 @@ import org.rstudio.studio.client.common.vcs.StatusAndPath;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.views.vcs.CheckoutBranchToolbarButton;
 import org.rstudio.studio.client.workbench.views.vcs.common.ChangelistTable;
-import org.rstudio.studio.client.workbench.views.vcs.common.diff.ChunkOrLine;
+import org.rstudio.studio.client.workbench.views.vcs.common.diff.DiffRows;
 import org.rstudio.studio.client.workbench.views.vcs.common.diff.LineTablePresenter;
 import org.rstudio.studio.client.workbench.views.vcs.common.diff.LineTableView;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.SharedStyles;
-import org.rstudio.studio.client.workbench.views.vcs.dialog.SizeWarningWidget;
 import org.rstudio.studio.client.workbench.views.vcs.git.dialog.GitReviewPresenter.Display;
 import org.rstudio.studio.client.workbench.views.vcs.git.GitChangelistTablePresenter;
 
@@ -218,13 +217,13 @@ public class GitReviewPanel extends ResizeComposite implements Display
       lines_ = diffPane;
       lines_.getElement().setTabIndex(-1);
 
-      overrideSizeWarning_ = new SizeWarningWidget("diff");
-
       changelist.setSelectFirstItemByDefault(true);
 
       Widget widget = GWT.<Binder>create(Binder.class).createAndBindUi(this);
       initWidget(widget);
 
+      lines_.setScrollPanel(diffScroll_);
+
       topToolbar_.addStyleName(RES.styles().toolbar());
 
       switchViewButton_ = new LeftRightToggleButton("Changes", "History", true);
@@ -438,12 +437,12 @@ public class GitReviewPanel extends ResizeComposite implements Display
    }
 
    @Override
-   public void setData(ArrayList<ChunkOrLine> lines, PatchMode patchMode)
+   public void setData(DiffRows rows, PatchMode patchMode)
    {
       int vscroll = diffScroll_.getVerticalScrollPosition();
       int hscroll = diffScroll_.getHorizontalScrollPosition();
 
-      getLineTableDisplay().setData(lines, patchMode);
+      getLineTableDisplay().setData(rows, patchMode);
 
       diffScroll_.setVerticalScrollPosition(vscroll);
       diffScroll_.setHorizontalScrollPosition(hscroll);
@@ -515,24 +514,6 @@ public class GitReviewPanel extends ResizeComposite implements Display
       return listBoxAdapter_;
    }
 
-   @Override
-   public HasClickHandlers getOverrideSizeWarningButton()
-   {
-      return overrideSizeWarning_;
-   }
-
-   @Override
-   public void showSizeWarning(long sizeInBytes)
-   {
-      overrideSizeWarning_.setSize(sizeInBytes);
-      diffScroll_.setWidget(overrideSizeWarning_);
-   }
-
-   @Override
-   public void hideSizeWarning()
-   {
-      diffScroll_.setWidget(lines_);
-   }
    
    @Override
    public void showContextMenu(final int clientX, 
@@ -661,7 +642,6 @@ public class GitReviewPanel extends ResizeComposite implements Display
    private final FileTypeRegistry fileTypeRegistry_;
    private LeftRightToggleButton switchViewButton_;
 
-   private SizeWarningWidget overrideSizeWarning_;
 
    private static final Resources RES = GWT.create(Resources.class);
    static {
@@ -105,11 +105,7 @@ public class GitReviewPresenter implements ReviewPresenter
 
       HasValue<Boolean> getCommitIsAmend();
 
-      void setData(ArrayList<ChunkOrLine> lines, PatchMode patchMode);
-
-      HasClickHandlers getOverrideSizeWarningButton();
-      void showSizeWarning(long sizeInBytes);
-      void hideSizeWarning();
+      void setData(DiffRows rows, PatchMode patchMode);
 
       void showContextMenu(int clientX, 
                            int clientY, 
@@ -173,7 +169,7 @@ public class GitReviewPresenter implements ReviewPresenter
       public void onDiffLinesAction(DiffLinesActionEvent event)
       {
          ArrayList<Line> lines = view_.getLineTableDisplay().getSelectedLines();
-         doPatch(event.getAction(), lines, activeChunks_);
+         doPatch(event.getAction(), lines, activeRows_.getChunksContaining(lines));
       }
 
       private void doPatch(Action action,
@@ -289,6 +285,7 @@ public class GitReviewPresenter implements ReviewPresenter
          public void onSelectionChange(SelectionChangeEvent event)
          {
             overrideSizeWarning_ = false;
+            sizeWarningShown_ = false;
             view_.setFilesCommandsEnabled(view_.getSelectedPaths().size() > 0);
             if (initialized_)
                updateDiff(true);
@@ -563,16 +560,6 @@ public class GitReviewPresenter implements ReviewPresenter
                   });
          }
       });
-
-      view_.getOverrideSizeWarningButton().addClickHandler(new ClickHandler()
-      {
-         @Override
-         public void onClick(ClickEvent event)
-         {
-            overrideSizeWarning_ = true;
-            updateDiff(false);
-         }
-      });
    }
 
    private GitChangelistTable getTable()
@@ -611,8 +598,6 @@ public class GitReviewPresenter implements ReviewPresenter
 
    private void updateDiff(boolean allowModeSwitch)
    {
-      view_.hideSizeWarning();
-
       final ArrayList<StatusAndPath> paths = view_.getChangelistTable().getSelectedItems();
       if (paths.size() != 1)
       {
@@ -690,22 +675,12 @@ public class GitReviewPresenter implements ReviewPresenter
                   UnifiedParser parser = new UnifiedParser(response);
                   parser.nextFilePair();
 
-                  ArrayList<ChunkOrLine> allLines = new ArrayList<ChunkOrLine>();
-
-                  activeChunks_.clear();
-                  for (DiffChunk chunk;
-                       null != (chunk = parser.nextChunk());)
-                  {
-                     activeChunks_.add(chunk);
-                     allLines.add(new ChunkOrLine(chunk));
-                     for (Line line : chunk.getLines())
-                        allLines.add(new ChunkOrLine(line));
-                  }
+                  activeRows_ = DiffRows.fromParser(parser);
 
                   view_.setShowActions(
                         !"??".equals(item.getStatus()) &&
                         !"UU".equals(item.getStatus()));
-                  view_.setData(allLines, patchMode);
+                  view_.setData(activeRows_, patchMode);
                }
 
                @Override
@@ -713,16 +688,45 @@ public class GitReviewPresenter implements ReviewPresenter
                {
                   JSONNumber size = error.getClientInfo().isNumber();
                   if (size != null)
-                     view_.showSizeWarning((long) size.doubleValue());
-                  else
                   {
-                     if (error.getCode() != ServerError.TRANSMISSION)
-                        super.onError(error);
+                     if (!token.isInvalid())
+                        confirmLargeDiff((long) size.doubleValue());
+                  }
+                  else if (error.getCode() != ServerError.TRANSMISSION)
+                  {
+                     super.onError(error);
                   }
                }
             });
    }
 
+   // The diff of the selected file is too large to show without asking
+   // (although it's rendered as it's scrolled, it's fetched in full). Ask
+   // once per selection, as the diff is updated whenever the status is.
+   private void confirmLargeDiff(long size)
+   {
+      if (sizeWarningShown_)
+         return;
+      sizeWarningShown_ = true;
+      
+      globalDisplay_.showYesNoMessage(
+            GlobalDisplay.MSG_QUESTION,
+            "Large Diff",
+            "The diff of the selected file is " +
+            StringUtil.formatFileSize(size) + ".\n\n" +
+            "Are you sure you want to show it?",
+            new Operation()
+            {
+               @Override
+               public void execute()
+               {
+                  overrideSizeWarning_ = true;
+                  updateDiff(false);
+               }
+            },
+            false);
+   }
+
    private void clearDiff()
    {
       softModeSwitch_ = false;
@@ -800,7 +804,7 @@ public class GitReviewPresenter implements ReviewPresenter
    private final GitPresenterCore gitPresenterCore_;
    private final Display view_;
    private final GlobalDisplay globalDisplay_;
-   private ArrayList<DiffChunk> activeChunks_ = new ArrayList<DiffChunk>();
+   private DiffRows activeRows_ = new DiffRows();
    private String currentResponse_;
    private String currentSourceEncoding_;
    private String currentFilename_;
@@ -814,4 +818,5 @@ public class GitReviewPresenter implements ReviewPresenter
    private static final String KEY_CONTEXT_LINES = "context_lines";
 
    private boolean overrideSizeWarning_ = false;
+   private boolean sizeWarningShown_ = false;
 }
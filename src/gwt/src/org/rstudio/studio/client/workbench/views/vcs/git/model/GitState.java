@@ -14,6 +14,7 @@
  */
 package org.rstudio.studio.client.workbench.views.vcs.git.model;
 
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.user.client.Command;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -82,17 +83,44 @@ public class GitState extends VcsState
    
    public void refresh(final boolean showError, final Command onCompleted)
    {
-      server_.gitAllStatus(new ServerRequestCallback<AllStatus>()
+      final int refreshId = ++refreshId_;
+      server_.gitAllStatus(STATUS_PAGE_SIZE,
+                           new ServerRequestCallback<AllStatus>()
       {
          @Override
          public void onResponseReceived(AllStatus response)
          {
-            status_ = StatusAndPath.fromInfos(response.getStatus());
+            // a later refresh has superseded this one
+            if (refreshId != refreshId_)
+            {
+               if (onCompleted != null)
+                  onCompleted.execute();
+               return;
+            }
+
+            // show the first page straight away, and read the rest of a
+            // large status in the background
+            int generation = setStatus(
+                  StatusAndPath.fromInfos(response.getStatus()));
             branches_ = response.getBranches();
             remoteBranchInfo_ = response.getRemoteBranchInfo();
             handlers_.fireEvent(new VcsRefreshEvent(Reason.VcsOperation));
-            if (onCompleted != null)
+
+            int offset = response.getStatus().length();
+            if (offset < response.getStatusCount())
+            {
+               readStatusPages(refreshId,
+                               generation,
+                               response.getStatusId(),
+                               offset,
+                               2 * STATUS_PAGE_SIZE,
+                               response.getStatusCount(),
+                               onCompleted);
+            }
+            else if (onCompleted != null)
+            {
                onCompleted.execute();
+            }
          }
 
          @Override
@@ -106,8 +134,72 @@ public class GitState extends VcsState
       });
    }
 
+   private void readStatusPages(final int refreshId,
+                                final int generation,
+                                final int statusId,
+                                final int offset,
+                                final int pageSize,
+                                final int count,
+                                final Command onCompleted)
+   {
+      server_.gitStatusPage(
+            statusId,
+            offset,
+            pageSize,
+            new ServerRequestCallback<JsArray<StatusAndPathInfo>>()
+      {
+         @Override
+         public void onResponseReceived(JsArray<StatusAndPathInfo> response)
+         {
+            // a later refresh has superseded this one, or the server no
+            // longer has the rest of the status (it keeps only the few most
+            // recently read); either way there's nothing more to read for
+            // this refresh
+            if (refreshId != refreshId_ || response == null)
+            {
+               if (onCompleted != null)
+                  onCompleted.execute();
+               return;
+            }
+
+            addStatus(StatusAndPath.fromInfos(response), generation);
+
+            int next = offset + response.length();
+            if (next < count && response.length() > 0)
+            {
+               readStatusPages(refreshId,
+                               generation,
+                               statusId,
+                               next,
+                               Math.min(2 * pageSize, MAX_STATUS_PAGE_SIZE),
+                               count,
+                               onCompleted);
+            }
+            else if (onCompleted != null)
+            {
+               onCompleted.execute();
+            }
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            Debug.logError(error);
+            if (onCompleted != null)
+               onCompleted.execute();
+         }
+      });
+   }
+
    private BranchesInfo branches_;
    private RemoteBranchInfo remoteBranchInfo_;
    private final GitServerOperations server_;
+   private int refreshId_ = 0;
+
+   // the number of status entries read from the server first; later pages
+   // double in size (up to the maximum), so that merging each into the
+   // entries already read copies them only a few times in all
+   private static final int STATUS_PAGE_SIZE = 1000;
+   private static final int MAX_STATUS_PAGE_SIZE = 16000;
 
 }
@@ -126,8 +126,8 @@ public class SVNDiffParser implements DiffParser
          if (section.isProperty)
          {
             String trimmed = StringUtil.trimBlankLines(section.data);
-            pendingDiffChunks_.add(
-                  createInfoChunk(StringUtil.getLineIterator(trimmed)));
+            pendingDiffChunks_.add(new LazyDiffChunk(
+                  createInfoChunk(StringUtil.getLineIterator(trimmed))));
          }
          else
          {
@@ -154,18 +154,18 @@ public class SVNDiffParser implements DiffParser
                   // correct content, but we want it in the order of the message
                   // that the file can't be displayed, then a blank line, then
                   // the property changes.
-                  pendingDiffChunks_.add(0, chunk);
-                  pendingDiffChunks_.add(
-                        1, createInfoChunk(StringUtil.getLineIterator("\n")));
+                  pendingDiffChunks_.add(0, new LazyDiffChunk(chunk));
+                  pendingDiffChunks_.add(1, new LazyDiffChunk(
+                        createInfoChunk(StringUtil.getLineIterator("\n"))));
                }
                else
                {
-                  pendingDiffChunks_.add(chunk);
+                  pendingDiffChunks_.add(new LazyDiffChunk(chunk));
                }
             }
 
-            DiffChunk chunk;
-            while (null != (chunk = parser.nextChunk()))
+            LazyDiffChunk chunk;
+            while (null != (chunk = parser.nextLazyChunk()))
             {
                pendingDiffChunks_.add(chunk);
             }
@@ -196,6 +196,13 @@ public class SVNDiffParser implements DiffParser
 
    @Override
    public DiffChunk nextChunk()
+   {
+      LazyDiffChunk chunk = nextLazyChunk();
+      return chunk == null ? null : chunk.getChunk();
+   }
+
+   @Override
+   public LazyDiffChunk nextLazyChunk()
    {
       if (pendingDiffChunks_.size() == 0)
          return null;
@@ -203,7 +210,7 @@ public class SVNDiffParser implements DiffParser
       return pendingDiffChunks_.remove(0);
    }
 
-   private final ArrayList<DiffChunk> pendingDiffChunks_ = new ArrayList<DiffChunk>();
+   private final ArrayList<LazyDiffChunk> pendingDiffChunks_ = new ArrayList<LazyDiffChunk>();
    private final ArrayList<Section> sections_;
    private int diffIndex_;
 }
@@ -113,11 +113,11 @@ public class SVNHistoryStrategy implements HistoryStrategy
 
    @Override
    public void showCommit(String commitId,
-                          boolean noSizeWarning,
                           ServerRequestCallback<String> requestCallback)
    {
+      // commits are rendered as they're scrolled, however large
       int rev = parseRevision(commitId);
-      server_.svnShow(rev, noSizeWarning, requestCallback);
+      server_.svnShow(rev, true, requestCallback);
    }
 
    @Override
@@ -137,6 +137,12 @@ public class SVNHistoryStrategy implements HistoryStrategy
    {
    }
 
+   @Override
+   public void clearHistoryCache()
+   {
+      dataProvider_.clearCache();
+   }
+
    @Override
    public void initializeHistory(final HasData<CommitInfo> dataDisplay)
    {
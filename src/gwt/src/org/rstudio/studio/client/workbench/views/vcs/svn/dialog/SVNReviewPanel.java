@@ -49,11 +49,10 @@ import org.rstudio.studio.client.common.vcs.GitServerOperations.PatchMode;
 import org.rstudio.studio.client.common.vcs.StatusAndPath;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.views.vcs.common.ChangelistTable;
-import org.rstudio.studio.client.workbench.views.vcs.common.diff.ChunkOrLine;
+import org.rstudio.studio.client.workbench.views.vcs.common.diff.DiffRows;
 import org.rstudio.studio.client.workbench.views.vcs.common.diff.LineTablePresenter;
 import org.rstudio.studio.client.workbench.views.vcs.common.diff.LineTableView;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.SharedStyles;
-import org.rstudio.studio.client.workbench.views.vcs.dialog.SizeWarningWidget;
 import org.rstudio.studio.client.workbench.views.vcs.svn.SVNChangelistTablePresenter;
 import org.rstudio.studio.client.workbench.views.vcs.svn.dialog.SVNReviewPresenter.Display;
 
@@ -209,13 +208,13 @@ public class SVNReviewPanel extends ResizeComposite implements Display
       lines_.getElement().setTabIndex(-1);
       lines_.hideStageCommands();
 
-      overrideSizeWarning_ = new SizeWarningWidget("diff");
-
       changelist.setSelectFirstItemByDefault(true);
 
       Widget widget = GWT.<Binder>create(Binder.class).createAndBindUi(this);
       initWidget(widget);
 
+      lines_.setScrollPanel(diffScroll_);
+
       topToolbar_.addStyleName(RES.styles().toolbar());
 
       switchViewButton_ = new LeftRightToggleButton("Changes", "History", true);
@@ -346,12 +345,12 @@ public class SVNReviewPanel extends ResizeComposite implements Display
 
 
    @Override
-   public void setData(ArrayList<ChunkOrLine> lines)
+   public void setData(DiffRows rows)
    {
       int vscroll = diffScroll_.getVerticalScrollPosition();
       int hscroll = diffScroll_.getHorizontalScrollPosition();
 
-      getLineTableDisplay().setData(lines, PatchMode.Working);
+      getLineTableDisplay().setData(rows, PatchMode.Working);
 
       diffScroll_.setVerticalScrollPosition(vscroll);
       diffScroll_.setHorizontalScrollPosition(hscroll);
@@ -393,24 +392,6 @@ public class SVNReviewPanel extends ResizeComposite implements Display
       return listBoxAdapter_;
    }
 
-   @Override
-   public HasClickHandlers getOverrideSizeWarningButton()
-   {
-      return overrideSizeWarning_;
-   }
-
-   @Override
-   public void showSizeWarning(long sizeInBytes)
-   {
-      overrideSizeWarning_.setSize(sizeInBytes);
-      diffScroll_.setWidget(overrideSizeWarning_);
-   }
-
-   @Override
-   public void hideSizeWarning()
-   {
-      diffScroll_.setWidget(lines_);
-   }
 
    @Override
    public void showContextMenu(final int clientX, 
@@ -473,7 +454,6 @@ public class SVNReviewPanel extends ResizeComposite implements Display
 
    private LeftRightToggleButton switchViewButton_;
 
-   private SizeWarningWidget overrideSizeWarning_;
 
    private static final Resources RES = GWT.create(Resources.class);
    static {
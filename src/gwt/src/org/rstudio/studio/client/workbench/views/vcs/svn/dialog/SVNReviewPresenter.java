@@ -22,7 +22,6 @@ import com.google.gwt.event.logical.shared.HasAttachHandlers;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
-import com.google.gwt.json.client.JSONNumber;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.ui.HasValue;
 import com.google.gwt.user.client.ui.IsWidget;
@@ -43,7 +42,6 @@ import org.rstudio.studio.client.common.SimpleRequestCallback;
 import org.rstudio.studio.client.common.vcs.DiffResult;
 import org.rstudio.studio.client.common.vcs.SVNServerOperations;
 import org.rstudio.studio.client.common.vcs.StatusAndPath;
-import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.model.ClientState;
@@ -84,11 +82,7 @@ public class SVNReviewPresenter implements ReviewPresenter
 
       HasClickHandlers getDiscardAllButton();
 
-      void setData(ArrayList<ChunkOrLine> lines);
-
-      HasClickHandlers getOverrideSizeWarningButton();
-      void showSizeWarning(long sizeInBytes);
-      void hideSizeWarning();
+      void setData(DiffRows rows);
 
       void showContextMenu(int clientX, int clientY);
 
@@ -134,7 +128,7 @@ public class SVNReviewPresenter implements ReviewPresenter
       public void onDiffLinesAction(DiffLinesActionEvent event)
       {
          ArrayList<Line> lines = view_.getLineTableDisplay().getSelectedLines();
-         doPatch(event.getAction(), lines, activeChunks_);
+         doPatch(event.getAction(), lines, activeRows_.getChunksContaining(lines));
       }
 
       private void doPatch(Action action,
@@ -239,7 +233,6 @@ public class SVNReviewPresenter implements ReviewPresenter
          @Override
          public void onSelectionChange(SelectionChangeEvent event)
          {
-            overrideSizeWarning_ = false;
             commandHandler_.setFilesCommandsEnabled(view_.getSelectedPaths().size() > 0);
             if (initialized_)
                updateDiff();
@@ -326,16 +319,6 @@ public class SVNReviewPresenter implements ReviewPresenter
             updateDiff();
          }
       });
-
-      view_.getOverrideSizeWarningButton().addClickHandler(new ClickHandler()
-      {
-         @Override
-         public void onClick(ClickEvent event)
-         {
-            overrideSizeWarning_ = true;
-            updateDiff();
-         }
-      });
    }
 
    private void applyPatch(ArrayList<DiffChunk> chunks,
@@ -366,8 +349,6 @@ public class SVNReviewPresenter implements ReviewPresenter
 
    private void updateDiff()
    {
-      view_.hideSizeWarning();
-
       final ArrayList<StatusAndPath> paths = view_.getChangelistTable().getSelectedItems();
       if (paths.size() != 1)
       {
@@ -393,7 +374,8 @@ public class SVNReviewPresenter implements ReviewPresenter
       server_.svnDiffFile(
             item.getPath(),
             view_.getContextLines().getValue(),
-            overrideSizeWarning_,
+            // diffs are rendered as they're scrolled, however large
+            true,
             new SimpleRequestCallback<DiffResult>("Diff Error")
             {
                @Override
@@ -413,35 +395,11 @@ public class SVNReviewPresenter implements ReviewPresenter
                   SVNDiffParser parser = new SVNDiffParser(response);
                   parser.nextFilePair();
 
-                  ArrayList<ChunkOrLine> allLines = new ArrayList<ChunkOrLine>();
-
-                  activeChunks_.clear();
-                  for (DiffChunk chunk;
-                       null != (chunk = parser.nextChunk());)
-                  {
-                     if (!chunk.shouldIgnore())
-                     {
-                        activeChunks_.add(chunk);
-                        allLines.add(new ChunkOrLine(chunk));
-                     }
-
-                     for (Line line : chunk.getLines())
-                        allLines.add(new ChunkOrLine(line));
-                  }
+                  activeRows_ = DiffRows.fromParser(parser);
 
                   view_.getLineTableDisplay().setShowActions(
                         !"?".equals(item.getStatus()));
-                  view_.setData(allLines);
-               }
-
-               @Override
-               public void onError(ServerError error)
-               {
-                  JSONNumber size = error.getClientInfo().isNumber();
-                  if (size != null)
-                     view_.showSizeWarning((long) size.doubleValue());
-                  else
-                     super.onError(error);
+                  view_.setData(activeRows_);
                }
             });
    }
@@ -509,7 +467,7 @@ public class SVNReviewPresenter implements ReviewPresenter
    private final SVNServerOperations server_;
    private final SVNCommandHandler commandHandler_;
    private final Display view_;
-   private ArrayList<DiffChunk> activeChunks_ = new ArrayList<DiffChunk>();
+   private DiffRows activeRows_ = new DiffRows();
    private String currentResponse_;
    private String currentEncoding_;
    private String currentFilename_;
@@ -520,6 +478,5 @@ public class SVNReviewPresenter implements ReviewPresenter
    
    private final HashSet<String> undiffableStatuses_ = new HashSet<String>();
 
-   private boolean overrideSizeWarning_ = false;
 
 }
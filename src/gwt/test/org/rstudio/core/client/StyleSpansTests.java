@@ -0,0 +1,146 @@
+/*
+ * StyleSpansTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+// Checks the span-based class assignment used by VirtualConsole against the
+// per-character class list it replaced, for output with interleaved
+// output/error classes and progress-bar style overwrites
+public class StyleSpansTests extends TestCase
+{
+   public void testMatchesPerCharacterClasses() throws Exception
+   {
+      PerCharacterClasses expected = new PerCharacterClasses();
+      StyleSpans actual = new StyleSpans();
+      replay(createTrace(20000, 1), expected, actual);
+
+      assertEquals(expected.size(), actual.getLength());
+      for (int i = 0; i < expected.size(); i++)
+         assertEquals(expected.get(i), actual.getClassAt(i));
+   }
+
+   public void testOneSpanPerRun()
+   {
+      PerCharacterClasses perChar = new PerCharacterClasses();
+      StyleSpans spans = new StyleSpans();
+      replay(createTrace(TOTAL_CHARS, 2), perChar, spans);
+
+      // the runs of characters of the same class, as redraw walks them
+      int runs = 0;
+      String last = null;
+      for (int i = 0; i < perChar.size(); i++)
+      {
+         String clazz = perChar.get(i);
+         if (!clazz.equals(last))
+            runs++;
+         last = clazz;
+      }
+
+      // the spans are merged as they're set, so there's one for each run
+      // (however many writes made it) rather than one per write
+      assertEquals(runs, spans.getSpanCount());
+      for (int i = 0; i < spans.getSpanCount(); i++)
+      {
+         assertTrue(spans.getSpanEnd(i) > spans.getSpanStart(i));
+         if (i > 0)
+         {
+            assertEquals(spans.getSpanEnd(i - 1), spans.getSpanStart(i));
+            assertFalse(spans.getSpanClass(i).equals(
+                  spans.getSpanClass(i - 1)));
+         }
+      }
+      assertEquals(perChar.size(), spans.getLength());
+   }
+
+   // Creates a trace of (start, end, class) writes: mostly appends of
+   // 20-200 character chunks alternating between output and error every
+   // few chunks, with occasional carriage-return style overwrites of the
+   // end of the last line
+   private int[][] createTrace(int totalChars, long seed)
+   {
+      Random random = new Random(seed);
+      ArrayList<int[]> trace = new ArrayList<int[]>();
+      int length = 0;
+      int clazz = 0;
+      int lineStart = 0;
+      while (length < totalChars)
+      {
+         if (random.nextInt(4) == 0)
+            clazz = 1 - clazz;
+
+         int chunk = 20 + random.nextInt(180);
+         if (random.nextInt(10) == 0 && length > lineStart)
+         {
+            // overwrite from the start of the current line
+            int end = Math.min(length, lineStart + chunk);
+            trace.add(new int[] { lineStart, end, clazz });
+         }
+         else
+         {
+            trace.add(new int[] { length, length + chunk, clazz });
+            length += chunk;
+            if (random.nextInt(3) == 0)
+               lineStart = length;
+         }
+      }
+      return trace.toArray(new int[trace.size()][]);
+   }
+
+   private void replay(int[][] trace,
+                       PerCharacterClasses perChar,
+                       StyleSpans spans)
+   {
+      for (int[] write : trace)
+      {
+         String clazz = CLASSES[write[2]];
+         if (perChar != null)
+            perChar.set(write[0], write[1], clazz);
+         if (spans != null)
+            spans.set(write[0], write[1], clazz);
+      }
+   }
+
+   // The representation VirtualConsole previously used: one entry per
+   // character, padded one element at a time
+   private static class PerCharacterClasses
+   {
+      public void set(int start, int end, String clazz)
+      {
+         while (classes_.size() < end)
+            classes_.add(null);
+         for (int i = start; i < end; i++)
+            classes_.set(i, clazz);
+      }
+
+      public String get(int i)
+      {
+         return classes_.get(i);
+      }
+
+      public int size()
+      {
+         return classes_.size();
+      }
+
+      private final ArrayList<String> classes_ = new ArrayList<String>();
+   }
+
+   private static final int TOTAL_CHARS = 200000;
+   private static final String[] CLASSES = { "output", "error" };
+}
@@ -0,0 +1,94 @@
+/*
+ * TextHashTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+import junit.framework.TestCase;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+public class TextHashTests extends TestCase
+{
+   public void testSha1KnownValues()
+   {
+      assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709",
+                   TextHash.sha1(""));
+      assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+                   TextHash.sha1("abc"));
+      assertEquals("84983e441c3bd26ebaae4aa1f95129e5e54670f1",
+                   TextHash.sha1(
+                     "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq"));
+   }
+
+   public void testCrc32KnownValues()
+   {
+      assertEquals("0", TextHash.crc32(""));
+      assertEquals("3421780262", TextHash.crc32("123456789"));
+   }
+
+   // the djb2 block hashes once used collided on these
+   public void testCollidingBlocksDiffer()
+   {
+      assertFalse(TextHash.sha1("ab").equals(TextHash.sha1("bA")));
+   }
+
+   public void testMatchesJdk() throws Exception
+   {
+      Random random = new Random(1);
+      for (int i = 0; i < 200; i++)
+      {
+         String text = randomText(random, random.nextInt(300));
+         byte[] utf8 = text.getBytes("UTF-8");
+
+         MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+         StringBuilder expected = new StringBuilder();
+         for (byte b : sha1.digest(utf8))
+            expected.append(String.format("%02x", b & 0xFF));
+         assertEquals(expected.toString(), TextHash.sha1(text));
+
+         CRC32 crc32 = new CRC32();
+         crc32.update(utf8);
+         assertEquals(String.valueOf(crc32.getValue()), TextHash.crc32(text));
+
+         assertEquals(utf8.length, TextHash.utf8Length(text));
+      }
+   }
+
+   // ascii, two and three byte characters, and surrogate pairs
+   private static String randomText(Random random, int length)
+   {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < length; i++)
+      {
+         switch (random.nextInt(4))
+         {
+            case 0:
+               text.append((char) (0x20 + random.nextInt(0x5F)));
+               break;
+            case 1:
+               text.append((char) (0x80 + random.nextInt(0x780)));
+               break;
+            case 2:
+               text.append((char) (0x800 + random.nextInt(0xD000)));
+               break;
+            default:
+               text.appendCodePoint(0x10000 + random.nextInt(0x10000));
+               break;
+         }
+      }
+      return text.toString();
+   }
+}
@@ -0,0 +1,345 @@
+/*
+ * RpcBatchTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.jsonrpc;
+
+import java.util.ArrayList;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.json.client.JSONValue;
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class RpcBatchTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudio";
+   }
+
+   public void testResponsesInRequestOrder()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      for (int i = 0; i < 3; i++)
+         batch.add(createRequest("order_echo", i), recorder);
+
+      batch.send();
+      assertEquals(1, session.batches.size());
+      assertEquals(3, session.batches.get(0).size());
+
+      session.respond();
+      assertEquals("0,1,2", recorder.results());
+      assertEquals(0, recorder.errors.size());
+   }
+
+   public void testRequestErrorIsolated()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      batch.add(createRequest("isolated_echo", 1), recorder);
+      batch.add(createRequest("fail", 2), recorder);
+      batch.add(createRequest("isolated_echo", 3), recorder);
+
+      batch.send();
+      session.respond();
+      assertEquals("1,3", recorder.results());
+      assertEquals(1, recorder.errors.size());
+      assertEquals(RpcError.PARAM_INVALID, recorder.errors.get(0).getCode());
+   }
+
+   public void testTransmissionErrorFailsEveryRequest()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      batch.add(createRequest("transmission_echo", 1), recorder);
+      batch.add(createRequest("transmission_echo", 2), recorder);
+
+      batch.send();
+      session.fail(RpcError.create(RpcError.TRANSMISSION_ERROR, "Failed"));
+      assertEquals("", recorder.results());
+      assertEquals(2, recorder.errors.size());
+      assertEquals(0, session.sent.size());
+   }
+
+   public void testInvalidBatchResponseFailsEveryRequest()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      batch.add(createRequest("invalid_echo", 1), recorder);
+      batch.add(createRequest("invalid_echo", 2), recorder);
+
+      batch.send();
+      session.respondWith("{\"result\": [{\"result\": [1]}]}");
+      assertEquals(2, recorder.errors.size());
+      assertEquals(RpcError.TRANSMISSION_ERROR,
+                   recorder.errors.get(0).getCode());
+   }
+
+   public void testRejectedBatchSendsEachRequestOnce()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      RpcRequest cancelled = createRequest("rejected_echo", 2);
+      batch.add(createRequest("rejected_echo", 1), recorder);
+      batch.add(cancelled, recorder);
+      batch.add(createRequest("rejected_echo", 3), recorder);
+
+      batch.send();
+      assertEquals(3, countLogEntries("rejected_echo"));
+      cancelled.cancel();
+
+      session.respondWith(
+            "{\"error\": {\"code\": 3, \"message\": \"Unauthorized\"}}");
+      assertFalse(session.batchingUnsupported);
+      assertEquals(2, session.sent.size());
+      assertEquals("", recorder.results());
+
+      // the requests being resent are neither logged nor measured again
+      // (their entries, begun with the batch, are completed when they are
+      // sent on their own)
+      assertEquals(3, countLogEntries("rejected_echo"));
+      assertEquals(2, countLiveLogEntries("rejected_echo"));
+      assertEquals(0, countMetrics("rejected_echo"));
+   }
+
+   public void testMethodNotFoundDisablesBatching()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      batch.add(createRequest("unsupported_echo", 1), recorder);
+      batch.add(createRequest("unsupported_echo", 2), recorder);
+
+      batch.send();
+      session.respondWith(
+            "{\"error\": {\"code\": 7, \"message\": \"Not found\"}}");
+      assertTrue(session.batchingUnsupported);
+      assertEquals(2, session.sent.size());
+   }
+
+   public void testCancelledRequestsSkipped()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      RpcRequest cancelledQueued = createRequest("cancel_echo", 1);
+      RpcRequest cancelledSent = createRequest("cancel_echo", 3);
+      batch.add(cancelledQueued, recorder);
+      batch.add(createRequest("cancel_echo", 2), recorder);
+      batch.add(cancelledSent, recorder);
+      batch.add(createRequest("cancel_echo", 4), recorder);
+      cancelledQueued.cancel();
+
+      batch.send();
+      assertEquals(3, session.batches.get(0).size());
+
+      cancelledSent.cancel();
+      session.respond();
+      assertEquals("2,4", recorder.results());
+   }
+
+   public void testSingleRequestSentOnItsOwn()
+   {
+      StandInSession session = new StandInSession();
+      RpcBatch batch = new RpcBatch(session);
+      Recorder recorder = new Recorder();
+      RpcRequest cancelled = createRequest("single_echo", 1);
+      batch.add(cancelled, recorder);
+      batch.add(createRequest("single_echo", 2), recorder);
+      cancelled.cancel();
+
+      batch.send();
+      assertEquals(0, session.batches.size());
+      assertEquals(1, session.sent.size());
+   }
+
+   public void testResendUsesBatchedLogEntry()
+   {
+      RpcRequest request = new RpcRequest("nonexistent",
+                                          "resend_echo",
+                                          new JSONArray(),
+                                          null,
+                                          false,
+                                          null,
+                                          null,
+                                          0);
+      request.beginBatched();
+      request.send(new Recorder());
+      assertEquals(1, countLogEntries("resend_echo"));
+      request.cancel();
+   }
+
+   private static RpcRequest createRequest(String method, int value)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONNumber(value));
+      return new RpcRequest("rpc/" + method,
+                            method,
+                            params,
+                            null,
+                            false,
+                            null,
+                            null,
+                            0);
+   }
+
+   private static int countLogEntries(String method)
+   {
+      int count = 0;
+      for (RequestLogEntry entry : RequestLog.getEntries())
+      {
+         if (method.equals(entry.getRequestMethodName()))
+            count++;
+      }
+      return count;
+   }
+
+   private static int countLiveLogEntries(String method)
+   {
+      int count = 0;
+      for (RequestLogEntry entry : RequestLog.getEntries())
+      {
+         if (method.equals(entry.getRequestMethodName()) && entry.isAlive())
+            count++;
+      }
+      return count;
+   }
+
+   private static int countMetrics(String method)
+   {
+      JSONArray methods = RpcMetrics.getSnapshot().get("methods").isArray();
+      for (int i = 0; i < methods.size(); i++)
+      {
+         JSONObject metrics = methods.get(i).isObject();
+         if (method.equals(metrics.get("method").isString().stringValue()))
+            return (int) metrics.get("count").isNumber().doubleValue();
+      }
+      return 0;
+   }
+
+   // Takes the place of the session: records the batches and individual
+   // requests sent, and answers a batch as the session's rpc_batch handler
+   // would with stand-in methods (every method echoes its params, except
+   // "fail" which fails)
+   private static class StandInSession implements RpcBatch.Transport
+   {
+      public void sendBatch(JSONArray params, RpcRequestCallback callback)
+      {
+         batches.add(params.get(0).isArray());
+         callbacks.add(callback);
+      }
+
+      public void send(RpcRequest request, RpcRequestCallback callback)
+      {
+         sent.add(request);
+      }
+
+      public void onBatchingUnsupported()
+      {
+         batchingUnsupported = true;
+      }
+
+      public void respond()
+      {
+         JSONArray entries = batches.get(batches.size() - 1);
+         JSONArray results = new JSONArray();
+         for (int i = 0; i < entries.size(); i++)
+         {
+            JSONObject entry = entries.get(i).isObject();
+            JSONObject response = new JSONObject();
+            String method = entry.get("method").isString().stringValue();
+            if (method.equals("fail"))
+            {
+               JSONObject error = new JSONObject();
+               error.put("code", new JSONNumber(RpcError.PARAM_INVALID));
+               error.put("message", new JSONString("Param invalid"));
+               response.put("error", error);
+            }
+            else
+            {
+               response.put("result", entry.get("params"));
+            }
+            results.set(i, response);
+         }
+
+         JSONObject response = new JSONObject();
+         response.put("result", results);
+         respondWith(response.toString());
+      }
+
+      public void respondWith(String response)
+      {
+         callbacks.get(callbacks.size() - 1).onResponseReceived(
+               null, RpcResponse.parse(response));
+      }
+
+      public void fail(RpcError error)
+      {
+         callbacks.get(callbacks.size() - 1).onError(null, error);
+      }
+
+      public final ArrayList<JSONArray> batches = new ArrayList<JSONArray>();
+      public final ArrayList<RpcRequestCallback> callbacks =
+            new ArrayList<RpcRequestCallback>();
+      public final ArrayList<RpcRequest> sent = new ArrayList<RpcRequest>();
+      public boolean batchingUnsupported = false;
+   }
+
+   // Records the results (the echoed param) and errors of the requests
+   private static class Recorder implements RpcRequestCallback
+   {
+      public void onResponseReceived(RpcRequest request, RpcResponse response)
+      {
+         if (response.getError() != null)
+         {
+            errors.add(response.getError());
+            return;
+         }
+
+         JSONValue result =
+               new JSONArray(response.<JavaScriptObject>getResult()).get(0);
+         results.add((int) result.isNumber().doubleValue());
+      }
+
+      public void onError(RpcRequest request, RpcError error)
+      {
+         errors.add(error);
+      }
+
+      public String results()
+      {
+         StringBuilder builder = new StringBuilder();
+         for (int i = 0; i < results.size(); i++)
+         {
+            if (i > 0)
+               builder.append(",");
+            builder.append(results.get(i));
+         }
+         return builder.toString();
+      }
+
+      public final ArrayList<Integer> results = new ArrayList<Integer>();
+      public final ArrayList<RpcError> errors = new ArrayList<RpcError>();
+   }
+}
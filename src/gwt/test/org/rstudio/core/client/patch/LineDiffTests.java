@@ -0,0 +1,166 @@
+/*
+ * LineDiffTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client.patch;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class LineDiffTests extends TestCase
+{
+   public void testPatchReproducesNewContents() throws Exception
+   {
+      Random random = new Random(7);
+      for (int i = 0; i < 2000; i++)
+      {
+         String orig = createScript(random, random.nextInt(40));
+         String edited = orig;
+         int edits = random.nextInt(8);
+         for (int j = 0; j < edits; j++)
+            edited = randomEdit(random, edited);
+
+         LineDiff diff = new LineDiff(orig, edited, 1000,
+                                      1 + random.nextInt(4));
+         assertEquals(edited, diff.patch(orig));
+         assertEquals(orig.equals(edited), diff.isEmpty());
+
+         int previousEnd = 0;
+         for (int j = 0; j < diff.getHunkCount(); j++)
+         {
+            assertTrue(diff.getOffsets().get(j) >= previousEnd);
+            previousEnd = diff.getOffsets().get(j) + diff.getLengths().get(j);
+         }
+      }
+   }
+
+   public void testScatteredEditsProduceSeparateHunks() throws Exception
+   {
+      String orig = "a <- 1\nb <- 2\nc <- 3\nd <- 4\ne <- 5\n";
+      String edited = "a <- 10\nb <- 2\nc <- 3\nd <- 4\ne <- 50\n";
+
+      LineDiff diff = new LineDiff(orig, edited);
+      assertEquals(2, diff.getHunkCount());
+      assertEquals("0", diff.getReplacements().get(0));
+      assertEquals(6, (int) diff.getOffsets().get(0));
+      assertEquals("0", diff.getReplacements().get(1));
+      assertEquals(edited, diff.patch(orig));
+
+      diff = new LineDiff(orig, edited, 1000, 1);
+      assertEquals(1, diff.getHunkCount());
+      assertEquals(edited, diff.patch(orig));
+   }
+
+   public void testPayloadNoLargerThanSubstringDiff()
+   {
+      Random random = new Random(42);
+      String orig = createScript(random, 5000);
+
+      // edit traces typical between two autosaves: a single edit, edits at
+      // the top and bottom of the file, scattered edits, a pasted block, a
+      // find/replace across the file, and a wholesale rewrite
+      String[] traces = new String[6];
+      traces[0] = editAt(orig, orig.length() / 2, "x");
+      traces[1] = editAt(editAt(orig, orig.length() - 100, "# end\n"),
+                         100, "library(stats)\n");
+      traces[2] = orig;
+      for (int i = 0; i < 10; i++)
+         traces[2] = editAt(traces[2], random.nextInt(traces[2].length()),
+                            "y");
+      traces[3] = editAt(orig, orig.length() / 3,
+                         createScript(new Random(3), 200));
+      traces[4] = orig.replace("value", "amount");
+      traces[5] = createScript(new Random(5), 5000);
+
+      for (String edited : traces)
+      {
+         SubstringDiff substringDiff = new SubstringDiff(orig, edited);
+         LineDiff lineDiff = new LineDiff(orig, edited);
+         assertEquals(edited, lineDiff.patch(orig));
+
+         int payload = 0;
+         for (String replacement : lineDiff.getReplacements())
+            payload += replacement.length();
+         assertTrue(payload <= substringDiff.getReplacement().length());
+      }
+
+      // scattered edits are sent as separate hunks rather than as the
+      // whole of the text between the first and last of them
+      LineDiff scattered = new LineDiff(orig, traces[1]);
+      assertEquals(2, scattered.getHunkCount());
+      assertTrue(scattered.getReplacements().get(0).length() < 100);
+      assertTrue(scattered.getReplacements().get(1).length() < 100);
+   }
+
+   // An R script of function definitions and calls, with enough repeated
+   // lines (blank lines, closing braces) to exercise line matching
+   private static String createScript(Random random, int lines)
+   {
+      StringBuilder script = new StringBuilder();
+      for (int i = 0; i < lines; i++)
+      {
+         switch (random.nextInt(6))
+         {
+         case 0:
+            script.append("f").append(random.nextInt(500))
+                  .append(" <- function(x, value = ")
+                  .append(random.nextInt(100)).append(") {\n");
+            break;
+         case 1:
+            script.append("  value <- x * ").append(random.nextInt(1000))
+                  .append(" + mean(data$col").append(random.nextInt(20))
+                  .append(")\n");
+            break;
+         case 2:
+            script.append("}\n");
+            break;
+         case 3:
+            script.append("\n");
+            break;
+         case 4:
+            script.append("# compute the value for step ")
+                  .append(random.nextInt(10000)).append('\n');
+            break;
+         default:
+            script.append("result").append(random.nextInt(50))
+                  .append(" <- lapply(items, function(item) item$value)\n");
+            break;
+         }
+      }
+      return script.toString();
+   }
+
+   private static String randomEdit(Random random, String value)
+   {
+      int offset = value.length() == 0 ? 0 : random.nextInt(value.length());
+      switch (random.nextInt(4))
+      {
+      case 0:
+         return editAt(value, offset, "z");
+      case 1:
+         return editAt(value, offset, "\n");
+      case 2:
+         return value.substring(0, offset) +
+                value.substring(Math.min(value.length(),
+                                         offset + random.nextInt(30)));
+      default:
+         return editAt(value, offset, createScript(random, 3));
+      }
+   }
+
+   private static String editAt(String value, int offset, String text)
+   {
+      return value.substring(0, offset) + text + value.substring(offset);
+   }
+}
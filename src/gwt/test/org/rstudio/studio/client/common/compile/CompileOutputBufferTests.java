@@ -0,0 +1,139 @@
+/*
+ * CompileOutputBufferTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.compile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.core.client.VirtualConsole;
+import org.rstudio.core.client.widget.PreWidget;
+
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.user.client.ui.RootPanel;
+
+public class CompileOutputBufferTests extends GWTTestCase
+{
+   @Override
+   public String getModuleName()
+   {
+      return "org.rstudio.studio.RStudio";
+   }
+
+   // With no line cap the buffer shows just what rewriting the output
+   // element with the whole of a VirtualConsole's text after each chunk did
+   public void testMatchesFullRewrite()
+   {
+      ArrayList<String> chunks = createLog(256 * 1024, 42);
+      CompileOutputBuffer buffer = new CompileOutputBuffer();
+      buffer.setMaxLines(0);
+      feed(buffer, chunks);
+      assertEquals(feedFullRewrite(chunks), getText(buffer));
+   }
+
+   // Trimming happens in batches, so there can be a batch over the cap
+   public void testLinesCapped()
+   {
+      CompileOutputBuffer buffer = new CompileOutputBuffer();
+      buffer.setMaxLines(1000);
+      feed(buffer, createLog(1024 * 1024, 7));
+
+      int lines = StringUtil.countMatches(getText(buffer), '\n');
+      assertTrue(lines >= 1000);
+      assertTrue(lines <= 1000 + 500);
+   }
+
+   // A form feed clears the output, so it must not leave the buffer
+   // counting the lines from before it (and trimming away those after it).
+   // Enough lines follow the form feed that trimming runs, which leaves
+   // exactly the lines allowed.
+   public void testFormFeedResetsLineCount()
+   {
+      CompileOutputBuffer buffer = new CompileOutputBuffer();
+      buffer.setMaxLines(2);
+      buffer.writeOutput(createLines("before", 1000));
+      buffer.writeOutput("\f" + createLines("after", 1000));
+
+      assertEquals("after 998\nafter 999\n", getText(buffer));
+   }
+
+   private String createLines(String prefix, int count)
+   {
+      StringBuilder lines = new StringBuilder();
+      for (int i = 0; i < count; i++)
+         lines.append(prefix).append(' ').append(i).append('\n');
+      return lines.toString();
+   }
+
+   // Chunks of build output: mostly compiler/check lines delivered in
+   // 100 B - 8 KB chunks, with occasional runs of \r progress updates
+   private ArrayList<String> createLog(int totalBytes, int seed)
+   {
+      Random random = new Random(seed);
+      ArrayList<String> chunks = new ArrayList<String>();
+      int bytes = 0;
+      while (bytes < totalBytes)
+      {
+         StringBuilder chunk = new StringBuilder();
+         if (random.nextInt(20) == 0)
+         {
+            chunk.append('\r').append("downloading: ")
+                 .append(random.nextInt(100)).append('%');
+         }
+         else
+         {
+            int size = 100 + random.nextInt(8000);
+            while (chunk.length() < size)
+            {
+               chunk.append("g++ -I/usr/share/R/include -DNDEBUG -fpic -O2 -c ")
+                    .append("file").append(random.nextInt(1000)).append(".cpp")
+                    .append('\n');
+            }
+         }
+         chunks.add(chunk.toString());
+         bytes += chunk.length();
+      }
+      return chunks;
+   }
+
+   private String feedFullRewrite(List<String> chunks)
+   {
+      PreWidget output = new PreWidget();
+      RootPanel.get().add(output);
+      VirtualConsole console = new VirtualConsole();
+      for (String chunk : chunks)
+      {
+         console.submit(chunk);
+         output.setText(console.toString());
+      }
+      String text = output.getElement().getInnerText();
+      RootPanel.get().remove(output);
+      return text;
+   }
+
+   private void feed(CompileOutputBuffer buffer, List<String> chunks)
+   {
+      RootPanel.get().add(buffer);
+      for (String chunk : chunks)
+         buffer.writeOutput(chunk);
+      RootPanel.get().remove(buffer);
+   }
+
+   private String getText(CompileOutputBuffer buffer)
+   {
+      return buffer.getElement().getInnerText();
+   }
+}
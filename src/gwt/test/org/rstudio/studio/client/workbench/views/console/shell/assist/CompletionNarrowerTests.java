@@ -0,0 +1,260 @@
+/*
+ * CompletionNarrowerTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell.assist;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+// Checks CompletionNarrower against filtering the full list and sorting it
+// with a comparator that scores both sides of every comparison (as
+// CompletionRequester used to). The scoring function is
+// CodeSearchOracle.scoreMatch without its file-specific penalties
+// (CodeSearchOracle depends on GWT).
+public class CompletionNarrowerTests extends TestCase
+{
+   public void testMatchesFullSort() throws Exception
+   {
+      Random random = new Random(11);
+      List<Symbol> symbols = createSymbols(random, 3000);
+
+      for (int i = 0; i < 200; i++)
+      {
+         CompletionNarrower<Symbol> narrower = new CompletionNarrower<Symbol>(
+               symbols, new SymbolMatcher(), 1 + random.nextInt(5000));
+
+         String word = symbols.get(random.nextInt(symbols.size())).name;
+         String typed = word.substring(0, 1 + random.nextInt(word.length()));
+         for (int j = 1; j <= typed.length(); j++)
+         {
+            String token = typed.substring(0, j);
+            assertEquals(sortByComparator(symbols, token),
+                         narrower.narrow(token));
+         }
+
+         // revisiting an earlier token (as on backspace)
+         String token = typed.substring(0, 1);
+         assertEquals(sortByComparator(symbols, token),
+                      narrower.narrow(token));
+      }
+   }
+
+   public void testCacheIsBounded() throws Exception
+   {
+      Random random = new Random(5);
+      List<Symbol> symbols = createSymbols(random, 20000);
+      CompletionNarrower<Symbol> narrower = new CompletionNarrower<Symbol>(
+            symbols, new SymbolMatcher(), 4000);
+
+      for (int i = 0; i < 500; i++)
+      {
+         String word = symbols.get(random.nextInt(symbols.size())).name;
+         narrower.narrow(word.substring(0, 1 + random.nextInt(word.length())));
+         assertTrue(narrower.getCachedItemCount() <= 4000);
+      }
+   }
+
+   public void testScoresOnlyPreviousMatches() throws Exception
+   {
+      Random random = new Random(42);
+      List<Symbol> symbols = createSymbols(random, 20000);
+      String[] words = { "data_frame", "read.csv", "ggplot", "summarise_at" };
+
+      for (String word : words)
+      {
+         SymbolMatcher matcher = new SymbolMatcher();
+         CompletionNarrower<Symbol> narrower = new CompletionNarrower<Symbol>(
+               symbols, matcher, 50000);
+
+         // each character typed scores only the items that matched the
+         // token before it, each of them once
+         int candidates = symbols.size();
+         for (int j = 1; j <= word.length(); j++)
+         {
+            matcher.scores = 0;
+            List<Symbol> actual = narrower.narrow(word.substring(0, j));
+            assertEquals(candidates, matcher.scores);
+            candidates = actual.size();
+         }
+
+         // and a token seen before isn't scored again
+         matcher.scores = 0;
+         narrower.narrow(word.substring(0, 1));
+         assertEquals(0, matcher.scores);
+      }
+   }
+
+   // The narrowing CompletionRequester used to do
+   private static List<Symbol> sortByComparator(List<Symbol> symbols,
+                                                final String token)
+   {
+      ArrayList<Symbol> result = new ArrayList<Symbol>();
+      for (Symbol symbol : symbols)
+         if (isMatch(symbol.name, token))
+            result.add(symbol);
+
+      Collections.sort(result, new Comparator<Symbol>()
+      {
+         @Override
+         public int compare(Symbol lhs, Symbol rhs)
+         {
+            int lhsScore = scoreMatch(lhs.name, token);
+            int rhsScore = scoreMatch(rhs.name, token);
+            if (lhs.argument) lhsScore -= 3;
+            if (rhs.argument) rhsScore -= 3;
+
+            if (lhsScore == rhsScore)
+               return lhs.name.length() - rhs.name.length();
+            else
+               return lhsScore < rhsScore ? -1 : 1;
+         }
+      });
+      return result;
+   }
+
+   private static class SymbolMatcher
+         implements CompletionNarrower.Matcher<Symbol>
+   {
+      @Override
+      public int score(Symbol symbol, String token)
+      {
+         scores++;
+         if (!isMatch(symbol.name, token))
+            return CompletionNarrower.NO_MATCH;
+         int score = scoreMatch(symbol.name, token);
+         if (symbol.argument)
+            score -= 3;
+         return score;
+      }
+
+      @Override
+      public int tieBreak(Symbol symbol)
+      {
+         return symbol.name.length();
+      }
+
+      @Override
+      public boolean isRefinement(String prefix, String token)
+      {
+         return true;
+      }
+
+      public int scores = 0;
+   }
+
+   // As StringUtil.isSubsequence (case insensitive), plus the filtering of
+   // names starting with '.'
+   private static boolean isMatch(String name, String token)
+   {
+      if (!token.startsWith(".") && name.startsWith("."))
+         return false;
+
+      String nameLower = name.toLowerCase();
+      String tokenLower = token.toLowerCase();
+      int index = -1;
+      for (int i = 0; i < tokenLower.length(); i++)
+      {
+         index = nameLower.indexOf(tokenLower.charAt(i), index + 1);
+         if (index == -1)
+            return false;
+      }
+      return true;
+   }
+
+   // As CodeSearchOracle.scoreMatch for non-file targets
+   private static int scoreMatch(String suggestion, String query)
+   {
+      String suggestionLower = suggestion.toLowerCase();
+      String queryLower = query.toLowerCase();
+
+      int totalPenalty = 0;
+      int matchPos = -1;
+      for (int j = 0; j < query.length(); j++)
+      {
+         matchPos = suggestionLower.indexOf(queryLower.charAt(j), matchPos + 1);
+         int penalty = matchPos;
+
+         if (matchPos >= 1)
+         {
+            char prevChar = suggestionLower.charAt(matchPos - 1);
+            if (prevChar == '_' || prevChar == '-' || prevChar == '.')
+               penalty = j;
+         }
+
+         if (suggestion.charAt(matchPos) == query.charAt(j))
+            penalty--;
+
+         totalPenalty += penalty;
+      }
+      return totalPenalty;
+   }
+
+   // Symbols like those of a session with a few large packages attached:
+   // words joined with '_' or '.', some camel-cased, some hidden, and a few
+   // function arguments
+   private static List<Symbol> createSymbols(Random random, int count)
+   {
+      String[] words = {
+         "data", "frame", "read", "csv", "write", "table", "plot", "gg",
+         "summarise", "summary", "at", "if", "all", "group", "by", "mutate",
+         "filter", "select", "arrange", "join", "left", "inner", "model",
+         "matrix", "apply", "map", "reduce", "str", "detect", "replace",
+         "as", "is", "numeric", "character", "factor", "level", "na", "omit"
+      };
+
+      List<Symbol> symbols = new ArrayList<Symbol>();
+      for (int i = 0; i < count; i++)
+      {
+         StringBuilder name = new StringBuilder();
+         if (random.nextInt(20) == 0)
+            name.append('.');
+         int parts = 1 + random.nextInt(3);
+         char separator = random.nextBoolean() ? '_' : '.';
+         for (int j = 0; j < parts; j++)
+         {
+            String word = words[random.nextInt(words.length)];
+            if (j > 0)
+            {
+               if (random.nextInt(4) == 0)
+                  word = Character.toUpperCase(word.charAt(0)) +
+                         word.substring(1);
+               else
+                  name.append(separator);
+            }
+            name.append(word);
+         }
+         if (random.nextInt(3) == 0)
+            name.append(random.nextInt(100));
+         symbols.add(new Symbol(name.toString(), random.nextInt(50) == 0));
+      }
+      return symbols;
+   }
+
+   private static class Symbol
+   {
+      public Symbol(String name, boolean argument)
+      {
+         this.name = name;
+         this.argument = argument;
+      }
+
+      public final String name;
+      public final boolean argument;
+   }
+}
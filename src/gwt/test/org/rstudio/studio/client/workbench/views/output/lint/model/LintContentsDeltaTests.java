@@ -0,0 +1,121 @@
+/*
+ * LintContentsDeltaTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.output.lint.model;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+public class LintContentsDeltaTests extends TestCase
+{
+   public void testSingleEdit()
+   {
+      LintContentsDelta delta = LintContentsDelta.create("x <- 1\ny <- 2\n",
+                                                         "x <- 1\ny <- 23\n");
+      assertEquals(13, delta.getStart());
+      assertEquals(13, delta.getEnd());
+      assertEquals("3", delta.getText());
+   }
+
+   public void testUnchanged()
+   {
+      LintContentsDelta delta = LintContentsDelta.create("abc", "abc");
+      assertEquals(delta.getStart(), delta.getEnd());
+      assertEquals("", delta.getText());
+   }
+
+   // the edit is between the halves of a pair with the same high surrogate
+   public void testSurrogatePairsAreNotSplit() throws Exception
+   {
+      String oldContents = "a\uD83D\uDE00b";
+      String newContents = "a\uD83D\uDE01b";
+      LintContentsDelta delta = LintContentsDelta.create(oldContents,
+                                                         newContents);
+      assertEquals(1, delta.getStart());
+      assertEquals(5, delta.getEnd());
+      assertEquals("\uD83D\uDE01", delta.getText());
+      assertEquals(newContents, apply(oldContents, delta));
+   }
+
+   // the session replaces the bytes of its copy, and checks the hash
+   public void testAppliesToUtf8() throws Exception
+   {
+      Random random = new Random(1);
+      String contents = randomText(random, 200);
+      for (int i = 0; i < 500; i++)
+      {
+         StringBuilder edited = new StringBuilder(contents);
+         int start = random.nextInt(edited.length() + 1);
+         int end = Math.min(edited.length(), start + random.nextInt(10));
+         // keep the text valid: don't edit half of a surrogate pair
+         if (start > 0 && Character.isLowSurrogate(edited.charAt(start)))
+            start--;
+         if (end < edited.length() && Character.isLowSurrogate(edited.charAt(end)))
+            end++;
+         edited.replace(start, end, randomText(random, random.nextInt(10)));
+         String newContents = edited.toString();
+
+         LintContentsDelta delta = LintContentsDelta.create(contents,
+                                                            newContents);
+         String applied = apply(contents, delta);
+         assertEquals(newContents, applied);
+
+         CRC32 crc32 = new CRC32();
+         crc32.update(applied.getBytes("UTF-8"));
+         assertEquals(String.valueOf(crc32.getValue()), delta.getHash());
+
+         contents = newContents;
+      }
+   }
+
+   private static String apply(String contents, LintContentsDelta delta)
+         throws Exception
+   {
+      byte[] bytes = contents.getBytes("UTF-8");
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      result.write(bytes, 0, delta.getStart());
+      result.write(delta.getText().getBytes("UTF-8"));
+      result.write(bytes, delta.getEnd(), bytes.length - delta.getEnd());
+      return new String(result.toByteArray(), "UTF-8");
+   }
+
+   // ascii (mostly, so that edits often share a prefix or suffix), two and
+   // three byte characters, and surrogate pairs
+   private static String randomText(Random random, int length)
+   {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < length; i++)
+      {
+         switch (random.nextInt(6))
+         {
+            case 0:
+               text.append((char) (0x80 + random.nextInt(0x780)));
+               break;
+            case 1:
+               text.append((char) (0x800 + random.nextInt(0xD000)));
+               break;
+            case 2:
+               text.appendCodePoint(0x1F600 + random.nextInt(4));
+               break;
+            default:
+               text.append((char) ('a' + random.nextInt(3)));
+               break;
+         }
+      }
+      return text.toString();
+   }
+}
@@ -0,0 +1,270 @@
+/*
+ * TokenWindowTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.text.ace;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+public class TokenWindowTests extends TestCase
+{
+   public void testWidensBackToStart()
+   {
+      Document doc = new Document();
+      for (int i = 0; i < 1000; i++)
+         doc.addRow("x" + i + " ,");
+
+      Document.Scanner scanner = doc.scanner(999, 1);
+      TokenWindow.Cursor cursor = new TokenWindow(scanner, 999).getCursor();
+      assertEquals(",", cursor.currentValue());
+
+      int count = 1;
+      while (cursor.moveToPreviousToken())
+      {
+         String expected = count % 2 == 0 ? "," : "x" + (999 - count / 2);
+         assertEquals(expected, cursor.currentValue());
+         count++;
+      }
+      assertEquals(2000, count);
+      assertEquals("x0", cursor.currentValue());
+
+      // the rows read double each time the window is widened
+      assertTrue(scanner.scans <= 6);
+   }
+
+   public void testWidensForwardToEnd()
+   {
+      Document doc = new Document();
+      for (int i = 0; i < 1000; i++)
+         doc.addRow("x" + i);
+
+      Document.Scanner scanner = doc.scanner(0, 0);
+      TokenWindow.Cursor cursor = new TokenWindow(scanner, 0).getCursor();
+
+      int count = 1;
+      while (cursor.moveToNextToken())
+      {
+         assertEquals("x" + count, cursor.currentValue());
+         count++;
+      }
+      assertEquals(1000, count);
+      assertTrue(scanner.scans <= 6);
+
+      // stays on the last token
+      assertFalse(cursor.moveToNextToken());
+      assertEquals("x999", cursor.currentValue());
+   }
+
+   public void testEmptyRows()
+   {
+      Document doc = new Document();
+      doc.addRow("a");
+      for (int i = 0; i < 300; i++)
+         doc.addRow("");
+      doc.addRow("b");
+
+      TokenWindow.Cursor cursor =
+            new TokenWindow(doc.scanner(301, 0), 301).getCursor();
+      assertTrue(cursor.moveToPreviousToken());
+      assertEquals("a", cursor.currentValue());
+      assertFalse(cursor.moveToPreviousToken());
+   }
+
+   public void testMatchingTokensBeyondWindow()
+   {
+      Document doc = new Document();
+      doc.addRow("f (");
+      for (int i = 0; i < 500; i++)
+         doc.addRow("g ( a [ 1 ] ) ,");
+      doc.addRow(")");
+
+      TokenWindow.Cursor close =
+            new TokenWindow(doc.scanner(501, 0), 501).getCursor();
+      assertTrue(close.bwdToMatchingToken());
+      assertEquals("(", close.currentValue());
+      assertTrue(close.moveToPreviousToken());
+      assertEquals("f", close.currentValue());
+
+      TokenWindow.Cursor open =
+            new TokenWindow(doc.scanner(0, 1), 0).getCursor();
+      assertTrue(open.fwdToMatchingToken());
+      assertEquals(")", open.currentValue());
+      assertFalse(open.moveToNextToken());
+   }
+
+   public void testUnmatchedTokenLeavesCursorAtStart()
+   {
+      Document doc = new Document();
+      for (int i = 0; i < 200; i++)
+         doc.addRow("a");
+      doc.addRow(")");
+
+      TokenWindow.Cursor cursor =
+            new TokenWindow(doc.scanner(200, 0), 200).getCursor();
+      assertFalse(cursor.bwdToMatchingToken());
+      assertEquals("a", cursor.currentValue());
+      assertFalse(cursor.moveToPreviousToken());
+   }
+
+   public void testOpeningBracketBeyondWindow()
+   {
+      Document doc = new Document();
+      doc.addRow("f (");
+      for (int i = 0; i < 300; i++)
+         doc.addRow("g ( 1 , 2 ) ,");
+      doc.addRow("a");
+
+      TokenWindow.Cursor cursor =
+            new TokenWindow(doc.scanner(301, 0), 301).getCursor();
+      assertEquals(300, cursor.findOpeningBracketCountCommas("(", false));
+      assertEquals("(", cursor.currentValue());
+      assertTrue(cursor.moveToPreviousToken());
+      assertEquals("f", cursor.currentValue());
+
+      // an open brace in the way
+      doc = new Document();
+      doc.addRow("f (");
+      doc.addRow("{");
+      for (int i = 0; i < 300; i++)
+         doc.addRow("b ,");
+      cursor = new TokenWindow(doc.scanner(301, 0), 301).getCursor();
+      assertEquals(-1, cursor.findOpeningBracketCountCommas("(", true));
+      assertEquals("b", cursor.currentValue());
+   }
+
+   // Rows of tokens (given separated by spaces), scanned as TokenCursor
+   // would scan the rows of the code model
+   private static class Document
+   {
+      public void addRow(String tokens)
+      {
+         ArrayList<String> row = new ArrayList<String>();
+         for (String token : tokens.split(" "))
+         {
+            if (token.length() > 0)
+               row.add(token);
+         }
+         rows_.add(row);
+      }
+
+      public Scanner scanner(int row, int offset)
+      {
+         return new Scanner(row, offset);
+      }
+
+      // Scans around the token at the given offset on the given row,
+      // counting the scans
+      public class Scanner implements TokenWindow.Scanner
+      {
+         public Scanner(int row, int offset)
+         {
+            row_ = row;
+            offset_ = offset;
+         }
+
+         @Override
+         public TokenWindow.Scan scanRows(int startRow, int endRow)
+         {
+            scans++;
+            Scan scan = new Scan();
+            scan.startRow = startRow;
+            scan.endRow = Math.min(endRow, rows_.size() - 1);
+            for (int row = startRow; row <= scan.endRow; row++)
+            {
+               if (row == row_)
+                  scan.cursorIndex = scan.values.size() + offset_;
+
+               ArrayList<String> tokens = rows_.get(row);
+               for (int i = 0; i < tokens.size(); i++)
+               {
+                  scan.values.add(tokens.get(i));
+                  scan.rows.add(row);
+                  scan.columns.add(i);
+               }
+            }
+            return scan;
+         }
+
+         public int scans = 0;
+         private final int row_;
+         private final int offset_;
+      }
+
+      private final ArrayList<ArrayList<String>> rows_ =
+            new ArrayList<ArrayList<String>>();
+   }
+
+   private static class Scan implements TokenWindow.Scan
+   {
+      @Override
+      public int length()
+      {
+         return values.size();
+      }
+
+      @Override
+      public String getType(int index)
+      {
+         String value = values.get(index);
+         return value.matches("[()\\[\\]{}]") ? "paren" : "identifier";
+      }
+
+      @Override
+      public String getValue(int index)
+      {
+         return values.get(index);
+      }
+
+      @Override
+      public int getRow(int index)
+      {
+         return rows.get(index);
+      }
+
+      @Override
+      public int getColumn(int index)
+      {
+         return columns.get(index);
+      }
+
+      @Override
+      public int getStartRow()
+      {
+         return startRow;
+      }
+
+      @Override
+      public int getEndRow()
+      {
+         return endRow;
+      }
+
+      @Override
+      public int getCursorIndex()
+      {
+         return cursorIndex;
+      }
+
+      public final ArrayList<String> values = new ArrayList<String>();
+      public final ArrayList<Integer> rows = new ArrayList<Integer>();
+      public final ArrayList<Integer> columns = new ArrayList<Integer>();
+      @Override
+      public int startRow;
+      @Override
+      public int endRow;
+      @Override
+      public int cursorIndex = -1;
+   }
+}
@@ -0,0 +1,377 @@
+/*
+ * ChangelistItemsTests.java
+ *
+ * Copyright (C) 2009-16 by RStudio, Inc.
+ *
+ * Unless you have received this program directly from RStudio pursuant
+ * to the terms of a commercial license agreement with RStudio, then
+ * this program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common;
+
+import junit.framework.TestCase;
+
+import org.rstudio.studio.client.common.vcs.StatusAndPath.PathComparator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+public class ChangelistItemsTests extends TestCase
+{
+   public void testNeighboursMovingTooAreReinserted()
+   {
+      ArrayList<Item> list = items("a:4", "b:5", "c:6");
+      apply(list, new String[0], items("b:1", "c:2"), VALUE_ORDER);
+      assertEquals("[b:1, c:2, a:4]", list.toString());
+   }
+
+   public void testRemovalsAndUpdates()
+   {
+      ArrayList<Item> list = items("a:1", "b:2", "c:3", "d:4", "e:5");
+      boolean moved = apply(list,
+                            new String[] { "a", "d", "missing" },
+                            items("c:3", "e:0", "f:2"),
+                            VALUE_ORDER);
+      assertTrue(moved);
+      assertEquals("[e:0, b:2, f:2, c:3]", list.toString());
+   }
+
+   public void testSameOrderReplacesInPlace()
+   {
+      ArrayList<Item> list = items("a:1", "b:2", "c:3");
+      Item replaced = list.get(1);
+      boolean moved = apply(list, new String[0], items("b:2"), VALUE_ORDER);
+      assertFalse(moved);
+      assertEquals("[a:1, b:2, c:3]", list.toString());
+      assertTrue(replaced != list.get(1));
+   }
+
+   public void testItemsMissingFromList()
+   {
+      ArrayList<Item> list = items("a:1", "b:2", "c:3", "d:4");
+      ChangelistItems<Item> items = new ChangelistItems<Item>(list, KEY);
+
+      // the list changed without the items being reset
+      list.remove(2);
+      list.remove(0);
+      items.invalidateRows();
+
+      items.applyDelta(Arrays.asList("a"),
+                       items("c:0", "d:5"),
+                       VALUE_ORDER);
+      assertEquals("[c:0, b:2, d:5]", list.toString());
+   }
+
+   public void testUnsorted()
+   {
+      ArrayList<Item> list = items("a:3", "b:1", "c:2");
+      apply(list, new String[] { "c" }, items("a:9", "d:0"), null);
+      assertEquals("[a:9, b:1, d:0]", list.toString());
+   }
+
+   public void testMatchesSortingTheResult()
+   {
+      Random random = new Random(1);
+      for (int iteration = 0; iteration < 500; iteration++)
+      {
+         // the model of the items: their values by key
+         LinkedHashMap<String, Integer> model =
+               new LinkedHashMap<String, Integer>();
+         ArrayList<Item> list = new ArrayList<Item>();
+         int size = random.nextInt(iteration % 2 == 0 ? 20 : 200);
+         for (int i = 0; i < size; i++)
+         {
+            Item item = new Item("k" + i, random.nextInt(50));
+            model.put(item.key, item.value);
+            list.add(item);
+         }
+         Collections.sort(list, VALUE_ORDER);
+
+         // large deltas take the single pass path, small ones don't
+         int changes = random.nextInt(iteration % 3 == 0 ? 100 : 10);
+         ArrayList<String> removed = new ArrayList<String>();
+         ArrayList<Item> updated = new ArrayList<Item>();
+         for (int i = 0; i < changes; i++)
+         {
+            // a key is removed or updated at most once
+            String key = "k" + random.nextInt(size + 20);
+            boolean changed = removed.contains(key);
+            for (Item item : updated)
+               changed |= item.key.equals(key);
+            if (changed)
+               continue;
+
+            if (random.nextInt(3) == 0)
+            {
+               removed.add(key);
+               model.remove(key);
+            }
+            else if (!model.containsKey(key) || random.nextBoolean())
+            {
+               Item item = new Item(key, random.nextInt(50));
+               updated.add(item);
+               model.put(key, item.value);
+            }
+         }
+
+         apply(list, removed.toArray(new String[0]), updated, VALUE_ORDER);
+
+         assertEquals(model.size(), list.size());
+         for (int i = 0; i < list.size(); i++)
+         {
+            Item item = list.get(i);
+            assertEquals(model.get(item.key), Integer.valueOf(item.value));
+            if (i > 0)
+               assertTrue(list.toString(),
+                          list.get(i - 1).value <= item.value);
+         }
+      }
+   }
+
+   public void testRowsAfterSuccessiveDeltas()
+   {
+      Random random = new Random(3);
+      ArrayList<Item> list = new ArrayList<Item>();
+      ChangelistItems<Item> items = new ChangelistItems<Item>(list, KEY);
+      for (int delta = 0; delta < 200; delta++)
+      {
+         ArrayList<String> removed = new ArrayList<String>();
+         ArrayList<Item> updated = new ArrayList<Item>();
+         int changes = random.nextInt(delta % 5 == 0 ? 100 : 5);
+         for (int i = 0; i < changes; i++)
+         {
+            String key = "k" + random.nextInt(300);
+            if (random.nextInt(4) == 0)
+               removed.add(key);
+            else
+               updated.add(new Item(key, random.nextInt(20)));
+         }
+         items.applyDelta(removed, updated, VALUE_ORDER);
+
+         // the last change to each key wins
+         for (int i = 0; i < list.size(); i++)
+         {
+            Item item = list.get(i);
+            assertEquals(Integer.valueOf(i), items.getRow(item.key));
+            if (i > 0)
+               assertTrue(list.get(i - 1).value <= item.value);
+         }
+         for (Item item : updated)
+         {
+            if (!removed.contains(item.key))
+               assertNotNull(items.getRow(item.key));
+         }
+         for (String key : removed)
+         {
+            boolean readded = false;
+            for (Item item : updated)
+               readded |= item.key.equals(key);
+            if (!readded)
+               assertNull(items.getRow(key));
+         }
+      }
+   }
+
+   public void testMergeMatchesSort()
+   {
+      Random random = new Random(2);
+      ArrayList<Item> all = new ArrayList<Item>();
+      for (int i = 0; i < 5000; i++)
+         all.add(new Item("k" + i, random.nextInt(1000)));
+
+      ArrayList<Item> merged = new ArrayList<Item>();
+      for (int page = 0; page < all.size(); page += 1000)
+         merged = ChangelistItems.merge(merged,
+                                        all.subList(page, page + 1000),
+                                        VALUE_ORDER);
+
+      // both stable, so in the same order
+      Collections.sort(all, VALUE_ORDER);
+      assertEquals(all, merged);
+   }
+
+   // The rest of a large status applied a page at a time, as GitState reads
+   // it and ChangelistTable.updateItems applies it, leaves the rows as
+   // sorting the whole status at once would
+   public void testPagedStatusMatchesSortingAll()
+   {
+      ArrayList<String> paths = createPaths(new Random(4), 50000);
+
+      ArrayList<String> list = new ArrayList<String>(
+            paths.subList(0, PAGE_SIZE));
+      Collections.sort(list, PATH_ORDER);
+      ChangelistItems<String> items =
+            new ChangelistItems<String>(list, PATH_KEY);
+      List<String> none = Collections.emptyList();
+      int pageSize = 2 * PAGE_SIZE;
+      for (int page = PAGE_SIZE;
+           page < paths.size();
+           page += pageSize, pageSize = Math.min(2 * pageSize, MAX_PAGE_SIZE))
+      {
+         assertTrue(items.applyDelta(
+               none,
+               paths.subList(page, Math.min(paths.size(), page + pageSize)),
+               PATH_ORDER));
+      }
+
+      ArrayList<String> sorted = new ArrayList<String>(paths);
+      Collections.sort(sorted, PATH_ORDER);
+      assertEquals(sorted, list);
+      for (int i = 0; i < list.size(); i += 997)
+         assertEquals(Integer.valueOf(i), items.getRow(list.get(i)));
+   }
+
+   // PathComparator orders paths as splitting them into directory and name
+   // on every comparison (as it used to) did
+   public void testPathComparatorMatchesSplitting()
+   {
+      Random random = new Random(1);
+      ArrayList<String> paths = createPaths(random, 2000);
+      paths.add("README");
+      paths.add("a\\b\\c");
+      paths.add("a/");
+      paths.add("");
+      for (int i = 0; i < 20000; i++)
+      {
+         String a = paths.get(random.nextInt(paths.size()));
+         String b = paths.get(random.nextInt(paths.size()));
+         assertEquals(a + " vs " + b,
+                      Integer.signum(compareBySplitting(a, b)),
+                      Integer.signum(PathComparator.comparePaths(a, b)));
+      }
+   }
+
+   private static boolean apply(List<Item> list,
+                                String[] removed,
+                                List<Item> updated,
+                                Comparator<Item> comparator)
+   {
+      ChangelistItems<Item> items = new ChangelistItems<Item>(list, KEY);
+      return items.applyDelta(Arrays.asList(removed), updated, comparator);
+   }
+
+   // Items given as "key:value"
+   private static ArrayList<Item> items(String... specs)
+   {
+      ArrayList<Item> items = new ArrayList<Item>();
+      for (String spec : specs)
+      {
+         String[] parts = spec.split(":");
+         items.add(new Item(parts[0], Integer.parseInt(parts[1])));
+      }
+      return items;
+   }
+
+   // The untracked files of a build tree that isn't ignored
+   private static ArrayList<String> createPaths(Random random, int count)
+   {
+      ArrayList<String> paths = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++)
+      {
+         StringBuilder path = new StringBuilder("build");
+         for (int depth = 1 + random.nextInt(4); depth > 0; depth--)
+            path.append('/').append(DIRS[random.nextInt(DIRS.length)]);
+         path.append("/file_").append(i)
+             .append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+         paths.add(path.toString());
+      }
+      return paths;
+   }
+
+   private static int compareBySplitting(String a, String b)
+   {
+      String[] splitA = splitDirAndName(a);
+      String[] splitB = splitDirAndName(b);
+      int result = splitA[0].compareTo(splitB[0]);
+      if (result == 0)
+         result = splitA[1].compareTo(splitB[1]);
+      return result;
+   }
+
+   private static String[] splitDirAndName(String path)
+   {
+      int index = path.lastIndexOf("/");
+      if (index < 0)
+         index = path.lastIndexOf("\\");
+      if (index < 0)
+         return new String[] { "", path };
+      else
+         return new String[] { path.substring(0, index),
+                               path.substring(index + 1) };
+   }
+
+   private static class Item
+   {
+      public Item(String key, int value)
+      {
+         this.key = key;
+         this.value = value;
+      }
+
+      @Override
+      public String toString()
+      {
+         return key + ":" + value;
+      }
+
+      public final String key;
+      public final int value;
+   }
+
+   private static final ChangelistItems.KeyProvider<Item> KEY =
+         new ChangelistItems.KeyProvider<Item>()
+   {
+      @Override
+      public String getKey(Item item)
+      {
+         return item.key;
+      }
+   };
+
+   private static final Comparator<Item> VALUE_ORDER = new Comparator<Item>()
+   {
+      @Override
+      public int compare(Item a, Item b)
+      {
+         return a.value - b.value;
+      }
+   };
+
+   private static final ChangelistItems.KeyProvider<String> PATH_KEY =
+         new ChangelistItems.KeyProvider<String>()
+   {
+      @Override
+      public String getKey(String path)
+      {
+         return path;
+      }
+   };
+
+   private static final Comparator<String> PATH_ORDER =
+         new Comparator<String>()
+   {
+      @Override
+      public int compare(String a, String b)
+      {
+         return PathComparator.comparePaths(a, b);
+      }
+   };
+
+   private static final String[] DIRS = {
+         "obj", "lib", "x86_64", "debug", "release", "gen", "src", "tmp" };
+   private static final String[] EXTENSIONS = { ".o", ".d", ".so", ".tmp" };
+
+   // as GitState
+   private static final int PAGE_SIZE = 1000;
+   private static final int MAX_PAGE_SIZE = 16000;
+}
@@ -18,6 +18,8 @@ import junit.framework.TestCase;
 
 import java.io.*;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Random;
 
 public class UnifiedParserTest extends TestCase
 {
@@ -99,4 +101,283 @@ public class UnifiedParserTest extends TestCase
       }
       assertEquals(readFileResource(testName + ".out.txt"), stringWriter.toString());
    }
+
+   public void testLineColumns() throws Exception
+   {
+      String diff2 = readFileResource("diff2.txt");
+      checkLineColumns(readFileResource("diff1.txt"));
+      checkLineColumns(diff2);
+      checkLineColumns(diff2.replace("\n", "\r\n"));
+   }
+
+   public void testReverse() throws Exception
+   {
+      UnifiedParser parser = createParser(readFileResource("diff2.txt"));
+      DiffChunk chunk;
+      while (null != (chunk = parser.nextChunk()))
+      {
+         ArrayList<Line> lines = chunk.getLines();
+         ArrayList<Line> expected = Line.reverseLines(lines);
+         ArrayList<Line> actual = chunk.reverse().getLines();
+         assertEquals(expected.size(), actual.size());
+         for (int i = 0; i < expected.size(); i++)
+         {
+            // a line applies to the same files, which have swapped places
+            boolean[] appliesTo = lines.get(i).getAppliesTo();
+            assertEquals(appliesTo[1], expected.get(i).getAppliesTo()[0]);
+            assertEquals(appliesTo[0], expected.get(i).getAppliesTo()[1]);
+            assertEquals(appliesTo[1], actual.get(i).getAppliesTo()[0]);
+            assertEquals(appliesTo[0], actual.get(i).getAppliesTo()[1]);
+            assertEquals(expected.get(i).getType(), actual.get(i).getType());
+            assertEquals(expected.get(i).getOldLine(), actual.get(i).getOldLine());
+            assertEquals(expected.get(i).getNewLine(), actual.get(i).getNewLine());
+            assertEquals(expected.get(i).getText(), actual.get(i).getText());
+            assertEquals(expected.get(i).getDiffIndex(),
+                         actual.get(i).getDiffIndex());
+         }
+      }
+   }
+
+   public void testLazyRows() throws Exception
+   {
+      checkLazyRows(readFileResource("diff1.txt"));
+      checkLazyRows(readFileResource("diff2.txt"));
+   }
+
+   public void testGeneratedDiff() throws Exception
+   {
+      String diff = createDiff(new Random(3), 200000);
+      checkLineColumns(diff);
+      checkLazyRows(diff);
+
+      // the lines parsed into columns are those UnifiedParser used to
+      // create a Line for each of
+      ArrayList<Line> expected = parseAsLines(diff);
+      ArrayList<Line> actual = new ArrayList<Line>();
+      UnifiedParser parser = new UnifiedParser(diff);
+      DiffChunk chunk;
+      while (null != (chunk = parser.nextChunk()))
+         actual.addAll(chunk.getLines());
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         Line lhs = expected.get(i);
+         Line rhs = actual.get(i);
+         assertEquals(lhs.getDiffIndex(), rhs.getDiffIndex());
+         assertEquals(lhs.getType(), rhs.getType());
+         assertEquals(lhs.getText(), rhs.getText());
+         for (int r = 0; r < 2; r++)
+         {
+            assertEquals(lhs.getLines()[r], rhs.getLines()[r]);
+            assertEquals(lhs.getAppliesTo()[r], rhs.getAppliesTo()[r]);
+         }
+      }
+   }
+
+   // Checks the columns of every chunk against the Lines created from them
+   private void checkLineColumns(String data)
+   {
+      UnifiedParser parser = createParser(data);
+      DiffChunk chunk;
+      while (null != (chunk = parser.nextChunk()))
+      {
+         int rangeCount = chunk.getRanges().length;
+         ArrayList<Line> lines = chunk.getLines();
+         assertEquals(lines.size(), chunk.getLineCount());
+         for (int i = 0; i < lines.size(); i++)
+         {
+            Line line = lines.get(i);
+            assertEquals(chunk.getDiffIndex() + 1 + i, line.getDiffIndex());
+            assertEquals(line.getDiffIndex(), chunk.getLineDiffIndex(i));
+            assertEquals(line.getType(), chunk.getLineType(i));
+            assertEquals(line.getText(), chunk.getLineText(i));
+            assertTrue(line.getText().indexOf('\r') < 0);
+            assertEquals(rangeCount, line.getLines().length);
+            for (int r = 0; r < rangeCount; r++)
+            {
+               assertEquals(line.getLines()[r], chunk.getLineNumber(i, r));
+               assertEquals(line.getAppliesTo()[r], chunk.lineAppliesTo(i, r));
+            }
+         }
+      }
+   }
+
+   // Checks the rows of chunks parsed as they're shown against those of
+   // chunks parsed up front
+   private void checkLazyRows(String data)
+   {
+      ArrayList<ChunkOrLine> expected = new ArrayList<ChunkOrLine>();
+      UnifiedParser parser = createParser(data);
+      DiffChunk chunk;
+      while (null != (chunk = parser.nextChunk()))
+         expected.addAll(ChunkOrLine.fromChunk(chunk));
+
+      DiffRows rows = DiffRows.fromParser(createParser(data));
+      assertEquals(expected.size(), rows.getRowCount());
+
+      // rows from the end first, so that chunks are parsed out of order
+      for (int i = expected.size() - 1; i >= 0; i--)
+      {
+         ChunkOrLine row = rows.getRow(i);
+         assertEquals(expected.get(i).isLine(), row.isLine());
+         assertEquals(expected.get(i).getDiffIndex(), row.getDiffIndex());
+         assertEquals(i, rows.getRowIndex(row));
+         if (row.isLine())
+         {
+            assertEquals(expected.get(i).getLineType(), row.getLineType());
+            assertEquals(expected.get(i).getLineText(), row.getLineText());
+            assertEquals(expected.get(i).getLineNumber(0),
+                         row.getLineNumber(0));
+         }
+         else
+         {
+            assertEquals(UnifiedEmitter.createChunkString(expected.get(i).getChunk()),
+                         UnifiedEmitter.createChunkString(row.getChunk()));
+         }
+      }
+   }
+
+   // Creates a parser positioned at the first chunk of the diff
+   private UnifiedParser createParser(String data)
+   {
+      UnifiedParser parser = new UnifiedParser(data);
+      if (data.startsWith("diff "))
+         assertNotNull(parser.nextFilePair());
+      return parser;
+   }
+
+   // The Lines UnifiedParser used to create for a two-way diff: each line
+   // read as a substring, then a Line with another substring for its text
+   // and its own copies of the position and mask arrays
+   private static ArrayList<Line> parseAsLines(String data)
+   {
+      ArrayList<Line> lines = new ArrayList<Line>();
+      boolean[] MASK_NONE = new boolean[2];
+      boolean[] MASK_ALL = new boolean[] { true, true };
+      int[] positions = new int[2];
+      int diffIndex = 0;
+
+      int pos = 0;
+      while (pos < data.length())
+      {
+         int end = data.indexOf('\n', pos);
+         if (end < 0)
+            end = data.length();
+         String line = data.substring(pos, end);
+         pos = end + 1;
+
+         switch (line.charAt(0))
+         {
+            case '@':
+               Range[] ranges = new ChunkHeaderParser(line).parse().ranges;
+               positions[0] = ranges[0].startRow - 1;
+               positions[1] = ranges[1].startRow - 1;
+               break;
+            case ' ':
+               positions[0]++;
+               positions[1]++;
+               lines.add(new Line(Line.Type.Same,
+                                  MASK_ALL,
+                                  positions.clone(),
+                                  line.substring(1),
+                                  diffIndex));
+               break;
+            case '-':
+               positions[0]++;
+               lines.add(new Line(Line.Type.Deletion,
+                                  new boolean[] { true, false },
+                                  positions.clone(),
+                                  line.substring(1),
+                                  diffIndex));
+               break;
+            case '+':
+               positions[1]++;
+               lines.add(new Line(Line.Type.Insertion,
+                                  new boolean[] { false, true },
+                                  positions.clone(),
+                                  line.substring(1),
+                                  diffIndex));
+               break;
+            case '\\':
+               lines.add(new Line(Line.Type.Comment,
+                                  MASK_NONE,
+                                  positions.clone(),
+                                  line.substring(1),
+                                  diffIndex));
+               break;
+            default:
+               throw new DiffFormatException("Unexpected leading character");
+         }
+         diffIndex++;
+      }
+      return lines;
+   }
+
+   // A diff of about the given size of one large file: chunks of a few
+   // context lines around runs of deletions and insertions
+   private static String createDiff(Random random, int size)
+   {
+      StringBuilder diff = new StringBuilder();
+      StringBuilder chunk = new StringBuilder();
+      int oldLine = 1;
+      int newLine = 1;
+      while (diff.length() < size)
+      {
+         int unchanged = random.nextInt(50);
+         oldLine += unchanged;
+         newLine += unchanged;
+
+         chunk.setLength(0);
+         int oldCount = 0;
+         int newCount = 0;
+         int runs = 1 + random.nextInt(4);
+         for (int run = 0; run < runs; run++)
+         {
+            for (int i = 0; i < 3; i++)
+            {
+               appendLine(chunk, ' ', random);
+               oldCount++;
+               newCount++;
+            }
+            for (int i = random.nextInt(12); i > 0; i--)
+            {
+               appendLine(chunk, '-', random);
+               oldCount++;
+            }
+            for (int i = random.nextInt(12); i > 0; i--)
+            {
+               appendLine(chunk, '+', random);
+               newCount++;
+            }
+         }
+         for (int i = 0; i < 3; i++)
+         {
+            appendLine(chunk, ' ', random);
+            oldCount++;
+            newCount++;
+         }
+
+         diff.append("@@ -").append(oldLine).append(',').append(oldCount)
+             .append(" +").append(newLine).append(',').append(newCount)
+             .append(" @@\n")
+             .append(chunk);
+         oldLine += oldCount;
+         newLine += newCount;
+      }
+      return diff.toString();
+   }
+
+   private static void appendLine(StringBuilder chunk,
+                                  char directive,
+                                  Random random)
+   {
+      int n = random.nextInt(100000);
+      chunk.append(directive);
+      for (int i = random.nextInt(4); i >= 0; i--)
+         chunk.append("   ");
+      chunk.append("value_").append(n)
+           .append(" <- compute(value_").append(n % 97)
+           .append(", \"").append(Integer.toHexString(n * 31)).append("\")\n");
+   }
 }